@@ -0,0 +1,62 @@
+package com.timgroup.saros.proxy;
+
+/**
+ * Stops calls to an endpoint that failed repeatedly. After a cool down one
+ * call is let through again and if it succeeds the breaker closes.
+ * 
+ * This class is not thread safe.
+ */
+class CircuitBreaker {
+
+    private final int failureThreshold;
+    private final long coolDownMillis;
+
+    private int failures = 0;
+    private long openedAt = -1;
+
+    public CircuitBreaker(int failureThreshold, long coolDownMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.coolDownMillis = coolDownMillis;
+    }
+
+    /**
+     * @return whether a call may be made at the given time
+     */
+    public boolean allowRequest(long now) {
+        return openedAt < 0 || now - openedAt >= coolDownMillis;
+    }
+
+    /**
+     * Closes the breaker.
+     * 
+     * @return <code>true</code> if the breaker was open before
+     */
+    public boolean succeeded() {
+        boolean wasOpen = isOpen();
+        failures = 0;
+        openedAt = -1;
+        return wasOpen;
+    }
+
+    /**
+     * Counts a failed call and opens the breaker if the threshold is reached.
+     * A failed call after the cool down opens it again immediately.
+     * 
+     * @return <code>true</code> if the breaker was closed before and is open
+     *         now
+     */
+    public boolean failed(long now) {
+        failures++;
+
+        if (!isOpen() && failures < failureThreshold)
+            return false;
+
+        boolean opened = !isOpen();
+        openedAt = now;
+        return opened;
+    }
+
+    public boolean isOpen() {
+        return openedAt >= 0;
+    }
+}
@@ -0,0 +1,76 @@
+package com.timgroup.saros.proxy;
+
+/**
+ * Counts what happened to the activities forwarded to the IDE endpoint.
+ */
+public class ForwardingStatistics {
+
+    private long forwarded = 0;
+    private long coalesced = 0;
+    private long dropped = 0;
+    private long failed = 0;
+
+    private long totalLatency = 0;
+    private long maxLatency = 0;
+
+    synchronized void forwarded(long latencyMillis) {
+        forwarded++;
+        totalLatency += latencyMillis;
+        maxLatency = Math.max(maxLatency, latencyMillis);
+    }
+
+    /**
+     * A pending navigation was replaced by a newer one for the same file.
+     */
+    synchronized void coalesced() {
+        coalesced++;
+    }
+
+    /**
+     * A navigation was discarded because the queue was full or the endpoint
+     * is not available.
+     */
+    synchronized void dropped() {
+        dropped++;
+    }
+
+    synchronized void failed() {
+        failed++;
+    }
+
+    public synchronized long getForwarded() {
+        return forwarded;
+    }
+
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return average time in milliseconds a successful call to the endpoint
+     *         took
+     */
+    public synchronized long getAverageLatency() {
+        return forwarded == 0 ? 0 : totalLatency / forwarded;
+    }
+
+    public synchronized long getMaxLatency() {
+        return maxLatency;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "forwarded: " + forwarded + " coalesced: " + coalesced
+            + " dropped: " + dropped + " failed: " + failed
+            + " average latency: " + getAverageLatency() + "ms max latency: "
+            + maxLatency + "ms";
+    }
+}
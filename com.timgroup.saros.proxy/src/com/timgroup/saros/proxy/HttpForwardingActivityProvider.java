@@ -3,17 +3,25 @@ package com.timgroup.saros.proxy;
 import com.timgroup.saros4intellij.proxy.Position;
 import com.timgroup.saros4intellij.proxy.client.HttpClientNavigator;
 
+import de.fu_berlin.inf.dpp.activities.SPath;
 import de.fu_berlin.inf.dpp.activities.business.EditorActivity;
 import de.fu_berlin.inf.dpp.activities.business.EditorActivity.Type;
 import de.fu_berlin.inf.dpp.activities.business.IActivity;
+import de.fu_berlin.inf.dpp.activities.business.TextEditActivity;
+import de.fu_berlin.inf.dpp.activities.business.TextSelectionActivity;
 import de.fu_berlin.inf.dpp.project.AbstractActivityProvider;
 
+/**
+ * Forwards where the remote users are working to the IDE endpoint: opened
+ * editors, selections and the end of text edits become navigations. They are
+ * sent asynchronously by a {@link NavigationForwarder}.
+ */
 public class HttpForwardingActivityProvider extends AbstractActivityProvider {
 
-    private final HttpClientNavigator httpClientNavigator;
+    private final NavigationForwarder forwarder;
 
     public HttpForwardingActivityProvider(String host, int port) {
-        httpClientNavigator = new HttpClientNavigator(host, port);
+        forwarder = new NavigationForwarder(new HttpClientNavigator(host, port));
     }
     
     @Override
@@ -21,10 +29,26 @@ public class HttpForwardingActivityProvider extends AbstractActivityProvider {
         if (activity instanceof EditorActivity) {
             EditorActivity edit = (EditorActivity) activity;
             if (edit.getType() == Type.ACTIVATED) {
-                String filename = "/" + edit.getPath().getProjectRelativePath().toPortableString();
-                httpClientNavigator.goTo(filename, new Position(0));
+                forwarder.goTo(toFilename(edit.getPath()), new Position(0));
             }
+        } else if (activity instanceof TextSelectionActivity) {
+            TextSelectionActivity selection = (TextSelectionActivity) activity;
+            forwarder.goTo(toFilename(selection.getPath()), new Position(selection.getOffset()));
+        } else if (activity instanceof TextEditActivity) {
+            TextEditActivity edit = (TextEditActivity) activity;
+            forwarder.goTo(toFilename(edit.getPath()), new Position(edit.getOffset() + edit.getText().length()));
         }
+    }
+
+    private String toFilename(SPath path) {
+        return "/" + path.getProjectRelativePath().toPortableString();
+    }
+
+    public ForwardingStatistics getStatistics() {
+        return forwarder.getStatistics();
+    }
 
+    public void dispose() {
+        forwarder.dispose();
     }
 }
@@ -0,0 +1,153 @@
+package com.timgroup.saros.proxy;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Logger;
+
+import com.timgroup.saros4intellij.proxy.Position;
+import com.timgroup.saros4intellij.proxy.client.HttpClientNavigator;
+
+import de.fu_berlin.inf.dpp.util.NamedThreadFactory;
+import de.fu_berlin.inf.dpp.util.Utils;
+
+/**
+ * Sends navigations to the IDE endpoint on its own thread, so a slow or hung
+ * endpoint does not block the caller.
+ * 
+ * Only the latest navigation per file is kept while it waits to be sent, and at
+ * most {@link #MAX_PENDING} files are pending; the oldest one is dropped if
+ * there are more. After {@link #FAILURE_THRESHOLD} failed calls in a row the
+ * endpoint is not called for {@link #COOL_DOWN} milliseconds and navigations
+ * are dropped meanwhile.
+ */
+public class NavigationForwarder {
+
+    private static final Logger logger = Logger.getLogger(NavigationForwarder.class);
+
+    private static final int MAX_PENDING = Integer.getInteger("com.timgroup.saros.proxy.MAX_PENDING", 64);
+
+    private static final int FAILURE_THRESHOLD = Integer.getInteger("com.timgroup.saros.proxy.FAILURE_THRESHOLD", 3);
+
+    private static final long COOL_DOWN = Long.getLong("com.timgroup.saros.proxy.COOL_DOWN", 10000L);
+
+    private final HttpClientNavigator httpClientNavigator;
+
+    private final ExecutorService forwardingDispatch = Executors.newSingleThreadExecutor(new NamedThreadFactory(
+        "Saros-Proxy-Forwarding-"));
+
+    /** pending navigations by file, in the order they were requested */
+    private final LinkedHashMap<String, Position> pending = new LinkedHashMap<String, Position>();
+
+    /** whether a drain task is submitted, guarded by pending */
+    private boolean draining = false;
+
+    /** only accessed by the forwarding dispatch thread */
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(FAILURE_THRESHOLD, COOL_DOWN);
+
+    private final ForwardingStatistics statistics = new ForwardingStatistics();
+
+    private final Runnable drain = Utils.wrapSafe(logger, new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    });
+
+    public NavigationForwarder(HttpClientNavigator httpClientNavigator) {
+        this.httpClientNavigator = httpClientNavigator;
+    }
+
+    /**
+     * Queues a navigation, replacing a pending one for the same file.
+     */
+    public void goTo(String filename, Position position) {
+        // shutdown and submission are both guarded by pending
+        synchronized (pending) {
+            if (forwardingDispatch.isShutdown())
+                return;
+
+            if (pending.remove(filename) != null) {
+                statistics.coalesced();
+            } else if (pending.size() >= MAX_PENDING) {
+                Iterator<String> oldest = pending.keySet().iterator();
+                oldest.next();
+                oldest.remove();
+                statistics.dropped();
+            }
+
+            pending.put(filename, position);
+
+            if (draining)
+                return;
+
+            draining = true;
+            forwardingDispatch.submit(drain);
+        }
+    }
+
+    protected void drain() {
+        while (true) {
+            Entry<String, Position> next;
+
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+
+                Iterator<Entry<String, Position>> it = pending.entrySet().iterator();
+                next = it.next();
+                it.remove();
+            }
+
+            forward(next.getKey(), next.getValue());
+        }
+    }
+
+    protected void forward(String filename, Position position) {
+        long start = System.currentTimeMillis();
+
+        if (!circuitBreaker.allowRequest(start)) {
+            statistics.dropped();
+            return;
+        }
+
+        try {
+            httpClientNavigator.goTo(filename, position);
+        } catch (RuntimeException e) {
+            statistics.failed();
+            logger.debug("Could not forward navigation to " + filename, e);
+
+            if (circuitBreaker.failed(System.currentTimeMillis()))
+                logger.warn("IDE endpoint is not responding, dropping navigations for " + COOL_DOWN + "ms: "
+                    + e.getMessage());
+            return;
+        }
+
+        statistics.forwarded(System.currentTimeMillis() - start);
+
+        if (circuitBreaker.succeeded())
+            logger.info("IDE endpoint is responding again");
+    }
+
+    public ForwardingStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Stops forwarding, pending navigations are discarded.
+     */
+    public void dispose() {
+        synchronized (pending) {
+            forwardingDispatch.shutdownNow();
+            pending.clear();
+            draining = false;
+        }
+
+        logger.info("Forwarding statistics: " + statistics);
+    }
+}
@@ -47,6 +47,8 @@ public class StartupSarosProxy implements IStartup {
         
         private ISarosSession session;
 
+        private HttpForwardingActivityProvider forwardingProvider;
+
         @Override
         public void sessionStarting(ISarosSession session) {
         }
@@ -59,14 +61,21 @@ public class StartupSarosProxy implements IStartup {
         public void sessionStarted(ISarosSession session) {
             this.session = session;
             this.session.addActivityProvider(new HttpReceivingActivityProvider(session));
-            this.session.addActivityProvider(new HttpForwardingActivityProvider(INTELLIJ_HOST, INTELLIJ_PORT));
+            this.forwardingProvider = new HttpForwardingActivityProvider(INTELLIJ_HOST, INTELLIJ_PORT);
+            this.session.addActivityProvider(forwardingProvider);
         }
 
         @Override
         public void postOutgoingInvitationCompleted(IProgressMonitor monitor, User user) { }
 
         @Override
-        public void sessionEnded(ISarosSession project) { }
+        public void sessionEnded(ISarosSession project) {
+            if (forwardingProvider != null) {
+                project.removeActivityProvider(forwardingProvider);
+                forwardingProvider.dispose();
+                forwardingProvider = null;
+            }
+        }
 
     };
     
@@ -5,6 +5,7 @@ import org.jivesoftware.smack.provider.PacketExtensionProvider;
 import org.jivesoftware.smack.provider.ProviderManager;
 import org.xmlpull.v1.XmlPullParser;
 
+import de.fu_berlin.inf.dpp.net.internal.extensions.IndexedPacketFilter;
 import de.fu_berlin.inf.dpp.whiteboard.sxe.constants.SXEMessageType;
 import de.fu_berlin.inf.dpp.whiteboard.sxe.net.SXEMessage;
 import de.fu_berlin.inf.dpp.whiteboard.sxe.net.SXEMessageReader;
@@ -46,11 +47,21 @@ public class SXEExtensionProvider implements PacketExtensionProvider {
 		return pe;
 	}
 
-	public SXEPacketFilter getInvitationPacketFilter() {
-		return new SXEPacketFilter(SXEMessageType.STATE_OFFER);
+	public IndexedPacketFilter getInvitationPacketFilter() {
+		return getPacketFilter(new SXEPacketFilter(SXEMessageType.STATE_OFFER));
 	}
 
-	public SXEPacketFilter getRecordsPacketFilter(SXESession session) {
-		return new SXEPacketFilter(session, SXEMessageType.RECORDS);
+	public IndexedPacketFilter getRecordsPacketFilter(SXESession session) {
+		return getPacketFilter(new SXEPacketFilter(session,
+				SXEMessageType.RECORDS));
+	}
+
+	/**
+	 * Returns the given filter indexed by the SXE element so the receiver only
+	 * offers it packets containing SXE messages.
+	 */
+	public IndexedPacketFilter getPacketFilter(SXEPacketFilter filter) {
+		return new IndexedPacketFilter(SXEMessage.SXE_TAG,
+				SXEMessage.SXE_XMLNS, null, filter);
 	}
 }
@@ -3,8 +3,9 @@ package de.fu_berlin.inf.dpp.whiteboard.net;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -31,6 +32,7 @@ import de.fu_berlin.inf.dpp.whiteboard.sxe.constants.SXEMessageType;
 import de.fu_berlin.inf.dpp.whiteboard.sxe.net.ISXETransmitter;
 import de.fu_berlin.inf.dpp.whiteboard.sxe.net.SXEIncomingSynchronizationProcess;
 import de.fu_berlin.inf.dpp.whiteboard.sxe.net.SXEMessage;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.net.SXEMessageBatcher;
 import de.fu_berlin.inf.dpp.whiteboard.sxe.records.serializable.RecordDataObject;
 
 /**
@@ -55,11 +57,28 @@ public class SarosSXETransmitter implements ISXETransmitter {
 	public static final Logger log = Logger
 			.getLogger(SarosSXETransmitter.class);
 
+	/**
+	 * Time in milliseconds successive record messages are collected to send
+	 * them as one message, 0 to send every message immediately
+	 */
+	private static final long BATCH_WINDOW = Long.getLong(
+			"de.fu_berlin.inf.dpp.whiteboard.SXE_BATCH_WINDOW", 50L);
+
 	/* we don't want to block the GUI for sending */
-	protected ExecutorService sendingDispatch = Executors
-			.newSingleThreadExecutor(new NamedThreadFactory(
+	protected ScheduledExecutorService sendingDispatch = Executors
+			.newSingleThreadScheduledExecutor(new NamedThreadFactory(
 					"Whiteboard-SXESending-Dispatch-"));
 
+	/** only accessed by the sending dispatch thread */
+	private final SXEMessageBatcher batcher = new SXEMessageBatcher();
+
+	private final Runnable flushBatch = Utils.wrapSafe(log, new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	});
+
 	private final SXEExtensionProvider provider = SXEExtensionProvider
 			.getInstance();
 
@@ -115,11 +134,51 @@ public class SarosSXETransmitter implements ISXETransmitter {
 
 			@Override
 			public void run() {
-				sendWithoutDispatch(msg);
+				batch(msg);
 			}
 		}));
 	}
 
+	/**
+	 * Adds the message to the current batch which is sent after
+	 * {@link #BATCH_WINDOW} milliseconds. Messages that cannot be batched are
+	 * sent after the current batch.
+	 */
+	protected void batch(SXEMessage msg) {
+		if (BATCH_WINDOW <= 0) {
+			sendWithoutDispatch(msg);
+			return;
+		}
+
+		if (!batcher.canAdd(msg))
+			flush();
+
+		if (!batcher.canAdd(msg)) {
+			sendWithoutDispatch(msg);
+			return;
+		}
+
+		boolean newBatch = batcher.isEmpty();
+
+		batcher.add(msg);
+
+		if (batcher.isFull())
+			flush();
+		else if (newBatch)
+			sendingDispatch.schedule(flushBatch, BATCH_WINDOW,
+					TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sends the current batch, if any
+	 */
+	protected void flush() {
+		SXEMessage msg = batcher.drain();
+
+		if (msg != null)
+			sendWithoutDispatch(msg);
+	}
+
 	protected void sendWithoutDispatch(SXEMessage msg) {
 		SXEExtension extension = new SXEExtension();
 		extension.setMessage(msg);
@@ -151,8 +210,8 @@ public class SarosSXETransmitter implements ISXETransmitter {
 
 		Packet packet;
 
-		PacketFilter filter = new SXEPacketFilter(msg.getSession(),
-				msg.getTo(), awaitFor);
+		PacketFilter filter = provider.getPacketFilter(new SXEPacketFilter(
+				msg.getSession(), msg.getTo(), awaitFor));
 
 		SarosPacketCollector collector = receiver.createCollector(filter);
 
@@ -1,5 +1,8 @@
 package de.fu_berlin.inf.dpp.whiteboard.sxe;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -45,6 +48,13 @@ public class SXEController extends AbstractSXEMessageHandler {
 
 	private static final Logger log = Logger.getLogger(SXEController.class);
 
+	private static final Comparator<SetRecord> VERSION_COMPARATOR = new Comparator<SetRecord>() {
+		@Override
+		public int compare(SetRecord r1, SetRecord r2) {
+			return r1.getVersion() - r2.getVersion();
+		}
+	};
+
 	protected enum State {
 		DISCONNECTED, INIT, CONNECTING, CONNECTED;
 	}
@@ -125,33 +135,58 @@ public class SXEController extends AbstractSXEMessageHandler {
 	}
 
 	/**
-	 * Accepts a remote state and applies it to this controller, discarding the
-	 * previous content. </br>
+	 * <p>
+	 * Accepts a remote state or a part of it and applies it to this
+	 * controller. The first part discards the previous content and is shown
+	 * immediately, following parts are added to it.
+	 * </p>
 	 * 
-	 * Queues messages will be applied afterwards and the lists is cleared.
+	 * <p>
+	 * After the last part, queued messages will be applied and the list is
+	 * cleared.
+	 * </p>
 	 * 
 	 * @param message
 	 *            the state message
+	 * @see SXEMessage#isDocumentBegin()
+	 * @see SXEMessage#isDocumentEnd()
 	 */
-	public void startSession(SXEMessage message) {
-		log.debug(prefix() + "receive state and start session at invitee side");
+	public void applyState(SXEMessage message) {
+		log.debug(prefix() + "receive " + message.getRecords().size()
+				+ " state records at invitee side");
 
 		if (!(connectionState == State.CONNECTING)) {
 			log.error("Received state while not in connecting state");
 			return;
 		}
 
-		document.clear();
+		if (message.isDocumentBegin()) {
+			document.clear();
 
-		if (message.getRecords().isEmpty()) {
-			log.warn("Received empty list of state records. Unsupported. ");
-			assert (false);
+			if (message.getRecords().isEmpty()) {
+				log.warn("Received empty list of state records. Unsupported. ");
+				assert (false);
+			}
 		}
 
 		for (RecordDataObject r : message.getRecords()) {
 			apply(r);
 		}
 
+		if (message.isDocumentBegin())
+			fireStateMessageApplied(message, document.getRoot());
+
+		if (message.isDocumentEnd())
+			startSessionAfterState();
+
+		notifyLocalListeners();
+	}
+
+	/**
+	 * Changes to connected state and applies the messages queued while
+	 * receiving the state.
+	 */
+	protected void startSessionAfterState() {
 		connectionState = State.CONNECTED;
 
 		if (unappliedBigVersionSetRecords.size() != 0)
@@ -168,11 +203,6 @@ public class SXEController extends AbstractSXEMessageHandler {
 			}
 		}
 		queuedMessagesWhileSynchronizing.clear();
-
-		fireStateMessageApplied(message, document.getRoot());
-
-		notifyLocalListeners();
-
 	}
 
 	/**
@@ -367,11 +397,17 @@ public class SXEController extends AbstractSXEMessageHandler {
 
 			List<SetRecord> setRecords = unappliedBigVersionSetRecords
 					.remove(cause.getTarget().getRid());
-			if (setRecords != null)
+			if (setRecords != null) {
+				/*
+				 * apply in order of versions, so every record makes the next
+				 * one casual ready instead of queuing it again
+				 */
+				Collections.sort(setRecords, VERSION_COMPARATOR);
 				for (SetRecord sr : setRecords) {
 					log.debug("Applying queued set-record " + sr);
 					apply(sr);
 				}
+			}
 		}
 	}
 
@@ -564,7 +600,7 @@ public class SXEController extends AbstractSXEMessageHandler {
 		public List<T> put(String key, T value) {
 			List<T> l = get(key);
 			if (l == null) {
-				l = new LinkedList<T>();
+				l = new ArrayList<T>(4);
 				super.put(key, l);
 			}
 			l.add(value);
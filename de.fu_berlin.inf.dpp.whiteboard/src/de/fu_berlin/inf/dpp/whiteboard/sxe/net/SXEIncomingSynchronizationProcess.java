@@ -23,6 +23,9 @@ import de.fu_berlin.inf.dpp.whiteboard.sxe.constants.SXEMessageType;
  * - send accept-state</br>
  * 
  * - wait for state</br>
+ * 
+ * - if the state is not complete, send ack-state and wait for the next part
+ * </br>
  * </p>
  * 
  * @author jurke
@@ -94,20 +97,43 @@ public class SXEIncomingSynchronizationProcess extends SXESynchronization {
 							log.debug(prefix()
 									+ "queue incoming records from now");
 
-							final SXEMessage stateMessage = controller
+							SXEMessage stateMessage = controller
 									.getTransmitter().sendAndAwait(monitor,
 											msg, SXEMessageType.STATE);
 
-							log.debug(prefix() + "state received");
+							int received = 0;
 
-							SWTUtils.runSafeSWTSync(log, new Runnable() {
+							while (true) {
+								received += stateMessage.getRecords().size();
 
-								@Override
-								public void run() {
-									controller.startSession(stateMessage);
-								}
+								log.debug(prefix() + received
+										+ " state records received");
+								monitor.subTask("Received " + received
+										+ " whiteboard records");
 
-							});
+								final SXEMessage part = stateMessage;
+
+								SWTUtils.runSafeSWTSync(log, new Runnable() {
+
+									@Override
+									public void run() {
+										controller.applyState(part);
+									}
+
+								});
+
+								if (part.isDocumentEnd())
+									break;
+
+								msg = session.getNextMessage(
+										SXEMessageType.ACK_STATE, peer);
+
+								stateMessage = controller.getTransmitter()
+										.sendAndAwait(monitor, msg,
+												SXEMessageType.STATE);
+							}
+
+							log.debug(prefix() + "state received");
 
 							// TODO send ack? Note: is not included in SXE
 
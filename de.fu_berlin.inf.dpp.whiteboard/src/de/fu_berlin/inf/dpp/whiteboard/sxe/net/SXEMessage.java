@@ -30,6 +30,13 @@ public class SXEMessage {
 	private String from;
 	private String to;
 
+	/*
+	 * a state may be sent in several STATE messages, the first one contains
+	 * document-begin and the last one document-end
+	 */
+	private boolean documentBegin;
+	private boolean documentEnd;
+
 	// private String sessionName;
 
 	public SXEMessage(SXESession sessionId, String msgId) {
@@ -69,6 +76,28 @@ public class SXEMessage {
 		this.to = to;
 	}
 
+	/**
+	 * @return whether this is the first message of a state
+	 */
+	public boolean isDocumentBegin() {
+		return documentBegin;
+	}
+
+	public void setDocumentBegin(boolean documentBegin) {
+		this.documentBegin = documentBegin;
+	}
+
+	/**
+	 * @return whether this is the last message of a state
+	 */
+	public boolean isDocumentEnd() {
+		return documentEnd;
+	}
+
+	public void setDocumentEnd(boolean documentEnd) {
+		this.documentEnd = documentEnd;
+	}
+
 	public List<RecordDataObject> getRecords() {
 		return records;
 	}
@@ -0,0 +1,108 @@
+package de.fu_berlin.inf.dpp.whiteboard.sxe.net;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.fu_berlin.inf.dpp.whiteboard.sxe.constants.SXEMessageType;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.records.serializable.RecordDataObject;
+
+/**
+ * <p>
+ * Collects the records of successive SXE messages to send them as one message.
+ * </p>
+ * 
+ * <p>
+ * Only {@link SXEMessageType#RECORDS} messages of the same session and to the
+ * same recipient are merged. The records keep their order and versions, so the
+ * merged message is applied exactly like the single messages would have been.
+ * Every other message has to be sent after the pending batch to preserve the
+ * order.
+ * </p>
+ * 
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ */
+public class SXEMessageBatcher {
+
+	/**
+	 * Maximum number of records of a batch. A full batch should be sent
+	 * immediately.
+	 */
+	public static final int MAX_BATCH_RECORDS = 500;
+
+	private SXEMessage first;
+
+	private final List<RecordDataObject> records = new ArrayList<RecordDataObject>();
+
+	/**
+	 * @return whether the message can be added to this batch
+	 */
+	public boolean canAdd(SXEMessage msg) {
+		if (msg.getMessageType() != SXEMessageType.RECORDS)
+			return false;
+
+		if (first == null)
+			return true;
+
+		if (!first.getSession().equals(msg.getSession()))
+			return false;
+
+		if (first.getTo() == null)
+			return msg.getTo() == null;
+
+		return first.getTo().equals(msg.getTo());
+	}
+
+	/**
+	 * Adds the records of the message to the batch.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the message cannot be added, see
+	 *             {@link #canAdd(SXEMessage)}
+	 */
+	public void add(SXEMessage msg) {
+		if (!canAdd(msg))
+			throw new IllegalArgumentException("Cannot batch message: " + msg);
+
+		if (first == null)
+			first = msg;
+
+		if (msg.getRecords() != null)
+			records.addAll(msg.getRecords());
+	}
+
+	public boolean isEmpty() {
+		return first == null;
+	}
+
+	/**
+	 * @return whether {@link #MAX_BATCH_RECORDS} are reached
+	 */
+	public boolean isFull() {
+		return records.size() >= MAX_BATCH_RECORDS;
+	}
+
+	/**
+	 * Returns the batched records as one message and starts a new batch.
+	 * 
+	 * @return the message with all records of this batch or null if the batch
+	 *         is empty
+	 */
+	public SXEMessage drain() {
+		if (first == null)
+			return null;
+
+		SXEMessage msg = new SXEMessage(first.getSession(),
+				first.getMessageId());
+		msg.setMessageType(SXEMessageType.RECORDS);
+		msg.setTo(first.getTo());
+		msg.setFrom(first.getFrom());
+		msg.setRecords(new ArrayList<RecordDataObject>(records));
+
+		first = null;
+		records.clear();
+
+		return msg;
+	}
+}
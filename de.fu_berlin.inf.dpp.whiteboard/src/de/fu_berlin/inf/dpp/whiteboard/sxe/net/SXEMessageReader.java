@@ -104,6 +104,8 @@ public class SXEMessageReader {
 			IOException {
 		XmlPullParser xpp = new MXParser();
 		xpp.setInput(new ByteArrayInputStream(raw.getBytes("UTF-8")), "UTF-8");
+		// move to the sxe tag like Smack does before calling the provider
+		xpp.nextTag();
 		return parseMessage(xpp);
 	}
 
@@ -141,6 +143,9 @@ public class SXEMessageReader {
 				if (isRecord(xpp.getName())) {
 					message.setRecords(getRecords(xpp));
 					eventType = xpp.getEventType();
+					// the tag following the records, i.e. document-end
+					if (eventType == XmlPullParser.START_TAG)
+						continue;
 				} else if (xpp.getName().equals("description")) {
 					// TODO read description
 					if (messageType != SXEMessageType.STATE_OFFER)
@@ -153,12 +158,14 @@ public class SXEMessageReader {
 						log.warn("Wrong entry 'document-begin' in "
 								+ messageType + ". Only allowed in "
 								+ SXEMessageType.STATE + " message.");
+					message.setDocumentBegin(true);
 				} else if (xpp.getName().equals("document-end")) {
 
 					if (messageType != SXEMessageType.STATE)
 						log.warn("Wrong entry 'document-end' in " + messageType
 								+ ". Only allowed in " + SXEMessageType.STATE
 								+ " message.");
+					message.setDocumentEnd(true);
 				} else
 					log.warn("Unknown tag: " + xpp.getName()
 							+ ". Message type: " + messageType);
@@ -66,8 +66,12 @@ public class SXEMessageWriter {
 			case RECORDS:
 				writer.writeRecords(rdos);
 				break;
+			case ACK_STATE:
+				writer.writeAckState();
+				break;
 			case STATE:
-				writer.writeState(rdos);
+				writer.writeState(rdos, msg.isDocumentBegin(),
+						msg.isDocumentEnd());
 				break;
 			case STATE_OFFER:
 				writer.writeStateOffer();
@@ -159,6 +163,11 @@ public class SXEMessageWriter {
 			handler.endElement("", "", "accept-state");
 		}
 
+		public void writeAckState() throws SAXException {
+			handler.startElement("", "", "ack-state", null);
+			handler.endElement("", "", "ack-state");
+		}
+
 		public void writeRecords(List<RecordDataObject> rdos)
 				throws SAXException {
 			for (RecordDataObject record : rdos) {
@@ -168,19 +177,33 @@ public class SXEMessageWriter {
 
 		public void writeState(List<RecordDataObject> records)
 				throws SAXException {
+			writeState(records, true, true);
+		}
+
+		/**
+		 * Writes a state or a part of it. Only the first part contains
+		 * document-begin and only the last one document-end.
+		 */
+		public void writeState(List<RecordDataObject> records,
+				boolean documentBegin, boolean documentEnd)
+				throws SAXException {
 			handler.startElement("", "", "state", null);
 
-			// TODO prolog
-			handler.startElement("", "", "document-begin", null);
-			handler.endElement("", "", "document-begin");
+			if (documentBegin) {
+				// TODO prolog
+				handler.startElement("", "", "document-begin", null);
+				handler.endElement("", "", "document-begin");
+			}
 
 			for (RecordDataObject record : records) {
 				writeRecord(record);
 			}
 
-			// TODO last-sender, last-id
-			handler.startElement("", "", "document-end", null);
-			handler.endElement("", "", "document-end");
+			if (documentEnd) {
+				// TODO last-sender, last-id
+				handler.startElement("", "", "document-end", null);
+				handler.endElement("", "", "document-end");
+			}
 
 			handler.endElement("", "", "state");
 		}
@@ -6,12 +6,13 @@ import java.util.concurrent.Callable;
 
 import org.apache.log4j.Logger;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
 
 import de.fu_berlin.inf.dpp.exceptions.LocalCancellationException;
 import de.fu_berlin.inf.dpp.ui.util.SWTUtils;
 import de.fu_berlin.inf.dpp.whiteboard.sxe.SXEController;
 import de.fu_berlin.inf.dpp.whiteboard.sxe.constants.SXEMessageType;
-import de.fu_berlin.inf.dpp.whiteboard.sxe.records.IRecord;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.records.serializable.RecordDataObject;
 import de.fu_berlin.inf.dpp.whiteboard.sxe.util.SXEUtils;
 
 /**
@@ -29,6 +30,12 @@ import de.fu_berlin.inf.dpp.whiteboard.sxe.util.SXEUtils;
  * - if accepted send state </br>
  * </p>
  * 
+ * <p>
+ * The state is sent in parts of {@link #STATE_CHUNK_SIZE} records. Every part
+ * but the last one has to be acknowledged by ack-state before the next one is
+ * sent, so the invitee can apply it meanwhile.
+ * </p>
+ * 
  * @author jurke
  * 
  */
@@ -37,6 +44,20 @@ public class SXEOutgoingSynchronizationProcess extends SXESynchronization {
 	public static final Logger log = Logger
 			.getLogger(SXEOutgoingSynchronizationProcess.class);
 
+	/**
+	 * Number of records sent in one state message
+	 */
+	private static final int STATE_CHUNK_SIZE = Integer.getInteger(
+			"de.fu_berlin.inf.dpp.whiteboard.SXE_STATE_CHUNK_SIZE", 500);
+
+	/**
+	 * Number of SetRecords per node sent unchanged, previous ones are merged
+	 * 
+	 * @see de.fu_berlin.inf.dpp.whiteboard.sxe.records.NodeRecord#getState(int)
+	 */
+	private static final int STATE_HISTORY = Integer.getInteger(
+			"de.fu_berlin.inf.dpp.whiteboard.SXE_STATE_HISTORY", 16);
+
 	public SXEOutgoingSynchronizationProcess(SXEController controller,
 			ISXETransmitter sxe, String to) {
 		super(controller, controller.getSession(), to);
@@ -61,40 +82,34 @@ public class SXEOutgoingSynchronizationProcess extends SXESynchronization {
 
 				log.debug(prefix() + peer + " accepted state-offer");
 
+				List<RecordDataObject> state;
+
 				try {
-					List<IRecord> state = SWTUtils
-							.runSWTSync(new Callable<List<IRecord>>() {
+					state = SWTUtils
+							.runSWTSync(new Callable<List<RecordDataObject>>() {
 
 								@Override
-								public List<IRecord> call() throws Exception {
-									return controller.getDocumentRecord()
-											.getState();
+								public List<RecordDataObject> call()
+										throws Exception {
+									return SXEUtils.toDataObjects(controller
+											.getDocumentRecord().getState(
+													STATE_HISTORY));
 								}
 
 							});
-
-					/* send state */
-
-					msg = session.getNextMessage(SXEMessageType.STATE, peer);
-					msg.setRecords(SXEUtils.toDataObjects(state));
-
-					log.debug(prefix() + "Sending state to " + msg.getTo());
-
-					log.debug("Send message: " + msg);
-					controller.getTransmitter().sendAsync(msg);
-
-					/*
-					 * TODO we might want to send an ack here to confirm that
-					 * everything went well (i.e. and add the user to the
-					 * session)
-					 */
-					// sxe.sendAndAwait(monitor, msg, SXEMessageType.ACK_STATE);
-
 				} catch (Exception e) {
 					log.error("Error while synchronizing whiteboard state: "
 							+ e.getMessage());
+					return;
 				}
 
+				sendState(monitor, state);
+
+				/*
+				 * TODO we might want to send an ack here to confirm that
+				 * everything went well (i.e. and add the user to the session)
+				 */
+
 			} else if (answer.getMessageType() == SXEMessageType.REFUSE_STATE) {
 				log.debug(prefix() + peer + " refused state offer");
 			} else
@@ -117,4 +132,42 @@ public class SXEOutgoingSynchronizationProcess extends SXESynchronization {
 
 	}
 
+	/**
+	 * Sends the state records in parts and waits for the acknowledgment of
+	 * every part but the last one.
+	 */
+	protected void sendState(IProgressMonitor monitor,
+			List<RecordDataObject> state) throws IOException,
+			LocalCancellationException {
+
+		int chunkSize = Math.max(1, STATE_CHUNK_SIZE);
+		int chunks = Math.max(1, (state.size() + chunkSize - 1) / chunkSize);
+
+		SubMonitor progress = SubMonitor.convert(monitor,
+				"Sending whiteboard state", chunks);
+
+		log.debug(prefix() + "Sending " + state.size() + " state records in "
+				+ chunks + " messages to " + peer);
+
+		for (int i = 0; i < chunks; i++) {
+			int from = i * chunkSize;
+			int to = Math.min(state.size(), from + chunkSize);
+
+			SXEMessage msg = session.getNextMessage(SXEMessageType.STATE, peer);
+			msg.setRecords(state.subList(from, to));
+			msg.setDocumentBegin(i == 0);
+			msg.setDocumentEnd(i == chunks - 1);
+
+			if (msg.isDocumentEnd())
+				controller.getTransmitter().sendAsync(msg);
+			else
+				controller.getTransmitter().sendAndAwait(progress, msg,
+						SXEMessageType.ACK_STATE);
+
+			progress.worked(1);
+		}
+
+		progress.done();
+	}
+
 }
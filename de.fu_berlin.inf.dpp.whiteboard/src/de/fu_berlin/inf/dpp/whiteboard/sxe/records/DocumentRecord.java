@@ -1,5 +1,6 @@
 package de.fu_berlin.inf.dpp.whiteboard.sxe.records;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -160,6 +161,22 @@ public class DocumentRecord {
 		return records;
 	}
 
+	/**
+	 * Like {@link #getState()} but superseded SetRecords are merged, see
+	 * {@link NodeRecord#getState(int)}.
+	 * 
+	 * @param history
+	 *            number of SetRecords to include unchanged per NodeRecord
+	 * @return all records defining the current state of the XML document
+	 */
+	public List<IRecord> getState(int history) {
+		List<IRecord> records = new ArrayList<IRecord>(newRecords.size());
+		for (NodeRecord r : newRecords.values()) {
+			records.addAll(r.getState(history));
+		}
+		return records;
+	}
+
 	public boolean contains(NodeRecord r) {
 		return newRecords.containsKey(r.getRid());
 	}
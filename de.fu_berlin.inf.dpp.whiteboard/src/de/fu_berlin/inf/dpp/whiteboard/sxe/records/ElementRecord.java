@@ -1,5 +1,8 @@
 package de.fu_berlin.inf.dpp.whiteboard.sxe.records;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -33,6 +36,12 @@ public class ElementRecord extends NodeRecord {
 	private final NodeSet<ElementRecord> children = new NodeSet<ElementRecord>();
 	private final AttributeSet attributes = new AttributeSet();
 
+	/**
+	 * Cached result of {@link #getVisibleChildElements()}, null if the child
+	 * elements or their visibility changed since it was created
+	 */
+	private List<ElementRecord> visibleChildren;
+
 	/**
 	 * Used to notify listeners only after a whole SXECommand/SXEMessage was
 	 * executed.
@@ -49,49 +58,88 @@ public class ElementRecord extends NodeRecord {
 		return children;
 	}
 
+	/**
+	 * <p>
+	 * Returns the visible child elements in the order of their
+	 * primary-weights.
+	 * </p>
+	 * 
+	 * <p>
+	 * The list is cached until a child is added, removed, moved or its
+	 * visibility changes, so it must not be modified.
+	 * </p>
+	 * 
+	 * @return an unmodifiable list of the visible child elements
+	 */
 	public List<ElementRecord> getVisibleChildElements() {
-		LinkedList<ElementRecord> visibleChildren = new LinkedList<ElementRecord>();
-		for (ElementRecord e : children) {
-			if (e.isVisible())
-				visibleChildren.add(e);
+		if (visibleChildren == null) {
+			ArrayList<ElementRecord> visible = new ArrayList<ElementRecord>(
+					children.size());
+			for (ElementRecord e : children) {
+				if (e.isVisible())
+					visible.add(e);
+			}
+			visibleChildren = Collections.unmodifiableList(visible);
 		}
 		return visibleChildren;
 	}
 
-	protected List<ElementRecord> getAllDescendantElements() {
-		LinkedList<ElementRecord> descendants = new LinkedList<ElementRecord>();
-
-		descendants.addAll(getChildElements());
+	/**
+	 * Invalidates the cached visible child elements.
+	 */
+	protected void childrenChanged() {
+		visibleChildren = null;
+	}
 
-		for (ElementRecord er : getChildElements()) {
-			descendants.addAll(er.getAllDescendantElements());
-		}
+	/**
+	 * Called by a child whose visibility changed.
+	 * 
+	 * @param child
+	 */
+	protected void childVisibilityChanged(NodeRecord child) {
+		if (!child.getNodeType().equals(NodeType.ATTR))
+			childrenChanged();
+	}
 
+	protected List<ElementRecord> getAllDescendantElements() {
+		List<ElementRecord> descendants = new ArrayList<ElementRecord>();
+		addAllDescendantElements(descendants, false);
 		return descendants;
 	}
 
 	public List<ElementRecord> getAllVisibleDescendantElements() {
-		LinkedList<ElementRecord> descendants = new LinkedList<ElementRecord>();
+		List<ElementRecord> descendants = new ArrayList<ElementRecord>();
+		addAllDescendantElements(descendants, true);
+		return descendants;
+	}
 
-		descendants.addAll(getVisibleChildElements());
+	/**
+	 * Adds all descendant elements to the passed list, first the children,
+	 * then the descendants of every child respective their order.
+	 */
+	private void addAllDescendantElements(List<ElementRecord> descendants,
+			boolean onlyVisible) {
+		Collection<ElementRecord> elements = onlyVisible ? getVisibleChildElements()
+				: children;
 
-		for (ElementRecord er : getVisibleChildElements()) {
-			descendants.addAll(er.getAllVisibleDescendantElements());
-		}
+		descendants.addAll(elements);
 
-		return descendants;
+		for (ElementRecord er : elements)
+			er.addAllDescendantElements(descendants, onlyVisible);
 	}
 
 	protected List<NodeRecord> getAllDescendantNodes() {
-		List<NodeRecord> records = new LinkedList<NodeRecord>();
+		List<NodeRecord> records = new ArrayList<NodeRecord>();
+		addAllDescendantNodes(records);
+		return records;
+	}
 
+	private void addAllDescendantNodes(List<NodeRecord> records) {
 		records.addAll(getAttributes());
 		records.addAll(getChildElements());
 
 		for (ElementRecord r : getChildElements())
-			records.addAll(r.getAllDescendantNodes());
-
-		return records;
+			r.addAllDescendantNodes(records);
 	}
 
 	protected AttributeSet getAttributes() {
@@ -254,6 +302,7 @@ public class ElementRecord extends NodeRecord {
 		} else {
 			children.remove(child);
 			children.add((ElementRecord) child);
+			childrenChanged();
 		}
 	}
 
@@ -267,6 +316,7 @@ public class ElementRecord extends NodeRecord {
 		super.clear();
 		children.clear();
 		attributes.clear();
+		childrenChanged();
 	}
 
 	@Override
@@ -307,6 +357,7 @@ public class ElementRecord extends NodeRecord {
 			eCopy.setParent(copy);
 			copy.children.add(eCopy);
 		}
+		copy.childrenChanged();
 		return copy;
 	}
 
@@ -341,6 +392,7 @@ public class ElementRecord extends NodeRecord {
 
 	protected void add(ElementRecord r) {
 		children.add(r);
+		childrenChanged();
 	}
 
 	protected void add(AttributeRecord r) {
@@ -353,6 +405,7 @@ public class ElementRecord extends NodeRecord {
 			attributes.remove(r);
 		} else {
 			this.children.remove(r);
+			childrenChanged();
 		}
 	}
 
@@ -412,8 +465,11 @@ public class ElementRecord extends NodeRecord {
 		if (currentParent == newParent)
 			return false;
 
-		if (this == newParent || getAllDescendantElements().contains(newParent))
-			return true;
+		// this is an ancestor of the new parent, no need to collect the subtree
+		for (ElementRecord r = newParent; r != null; r = r.getParent()) {
+			if (r == this)
+				return true;
+		}
 
 		return false;
 	}
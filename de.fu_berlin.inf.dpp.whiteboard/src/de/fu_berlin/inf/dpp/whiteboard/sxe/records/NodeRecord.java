@@ -1,7 +1,7 @@
 package de.fu_berlin.inf.dpp.whiteboard.sxe.records;
 
-import java.util.LinkedList;
-import java.util.ListIterator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import org.apache.log4j.Logger;
@@ -173,10 +173,60 @@ public abstract class NodeRecord extends AbstractRecord implements
 	 * 
 	 * @return the list of applied SetRecords
 	 */
-	public LinkedList<SetRecord> getSetRecords() {
+	public List<SetRecord> getSetRecords() {
 		return setRecords;
 	}
 
+	/**
+	 * <p>
+	 * Returns this record followed by its SetRecords to synchronize a new peer.
+	 * </p>
+	 * 
+	 * <p>
+	 * Only the last <code>history</code> SetRecords are included. The previous
+	 * ones are replaced by a single SetRecord that sets all mutable fields to
+	 * their values at its version. Note, a conflict that reverts to an earlier
+	 * version falls back to the initial values on the new peer.
+	 * </p>
+	 * 
+	 * @param history
+	 *            number of SetRecords to include unchanged
+	 * @return the records that define the current state of this record
+	 */
+	public List<IRecord> getState(int history) {
+		int first = Math.max(0, setRecords.size() - Math.max(0, history));
+
+		List<IRecord> records = new ArrayList<IRecord>(setRecords.size()
+				- first + 2);
+		records.add(this);
+
+		if (first > 0)
+			records.add(getMutableFieldsAt(first - 1));
+
+		records.addAll(setRecords.subList(first, setRecords.size()));
+
+		return records;
+	}
+
+	/**
+	 * @param index
+	 *            index of a SetRecord in {@link #getSetRecords()}
+	 * @return the mutable fields after applying the SetRecord at index as
+	 *         SetRecord with its version
+	 */
+	protected SetRecord getMutableFieldsAt(int index) {
+		SetRecord state = new SetRecord(this, setRecords.get(index)
+				.getVersion());
+
+		for (int i = index; i >= 0 && !state.setsAllMutableFields(); i--)
+			state.fillEmptyMutableFieldsFrom(setRecords.get(i));
+
+		if (!state.setsAllMutableFields())
+			state.fillEmptyMutableFieldsFrom(initialSet);
+
+		return state;
+	}
+
 	/**
 	 * Important: For new-records, the target is this.
 	 * 
@@ -406,8 +456,6 @@ public abstract class NodeRecord extends AbstractRecord implements
 	protected SetRecord getNewStateAndRevertHistory(int version) {
 		if (setRecords.isEmpty())
 			return initialSet;
-		ListIterator<SetRecord> it = setRecords.listIterator(setRecords.size());
-		SetRecord previous;
 		SetRecord setTo = new SetRecord(this);
 
 		/*
@@ -415,17 +463,13 @@ public abstract class NodeRecord extends AbstractRecord implements
 		 * version. Then iterate further until we found a previous value for
 		 * every mutable field.
 		 */
+		setRecords.removeFromVersion(version);
 
-		while (it.hasPrevious()) {
-			previous = it.previous();
-			if (previous.getVersion() >= version) {
-				it.remove();
-			} else {
-				setTo.fillEmptyMutableFieldsFrom(previous);
-				if (setTo.setsAllMutableFields())
-					// we found a record that changes all mutable values
-					return setTo;
-			}
+		for (int i = setRecords.size() - 1; i >= 0; i--) {
+			setTo.fillEmptyMutableFieldsFrom(setRecords.get(i));
+			if (setTo.setsAllMutableFields())
+				// we found a record that changes all mutable values
+				return setTo;
 		}
 		// if not complete, fill by initial values;
 		if (!setTo.setsAllMutableFields())
@@ -466,6 +510,8 @@ public abstract class NodeRecord extends AbstractRecord implements
 		if (setRecord.getSetVisibilityTo() != null
 				&& !setRecord.getSetVisibilityTo().equals(visible)) {
 			visible = setRecord.getSetVisibilityTo();
+			if (currentParent != null)
+				currentParent.childVisibilityChanged(this);
 		}
 
 		// Because of SortedSet functionality we have to re-attach a child on
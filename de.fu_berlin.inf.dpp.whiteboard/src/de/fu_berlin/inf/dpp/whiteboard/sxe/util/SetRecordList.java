@@ -1,7 +1,7 @@
 package de.fu_berlin.inf.dpp.whiteboard.sxe.util;
 
-import java.util.LinkedList;
-import java.util.ListIterator;
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
 
 import de.fu_berlin.inf.dpp.whiteboard.sxe.records.SetRecord;
 
@@ -13,12 +13,14 @@ import de.fu_berlin.inf.dpp.whiteboard.sxe.records.SetRecord;
  * </p>
  * 
  * <p>
- * It also overrides the contains() method to start searching at the and to
- * break if version reached or smaller than the provided one.
+ * Because the versions are strictly increasing the list is backed by an array
+ * and records are looked up by their version with a binary search. Thus
+ * contains() is O(log n) even for nodes with thousands of set records like
+ * long polylines.
  * </p>
  * 
  */
-public class SetRecordList extends LinkedList<SetRecord> {
+public class SetRecordList extends ArrayList<SetRecord> {
 
 	private static final long serialVersionUID = 1L;
 
@@ -27,19 +29,65 @@ public class SetRecordList extends LinkedList<SetRecord> {
 		if (!(o instanceof SetRecord))
 			return false;
 
-		ListIterator<SetRecord> it = listIterator(size());
 		SetRecord r = (SetRecord) o;
-		SetRecord previous;
-
-		while (it.hasPrevious()) {
-			previous = it.previous();
-			if (previous.getVersion() == r.getVersion())
-				return r.equals(previous);
-			if (previous.getVersion() < r.getVersion())
-				break;
+		int index = indexOfVersion(r.getVersion());
+
+		if (index < 0)
+			return false;
+
+		return r.equals(get(index));
+	}
+
+	/**
+	 * @param version
+	 * @return the index of the set record with the provided version or
+	 *         (-(insertion point) - 1) if there is none, respective
+	 *         {@link java.util.Collections#binarySearch(java.util.List, Object)}
+	 */
+	public int indexOfVersion(int version) {
+		int low = 0;
+		int high = size() - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midVersion = get(mid).getVersion();
+
+			if (midVersion < version)
+				low = mid + 1;
+			else if (midVersion > version)
+				high = mid - 1;
+			else
+				return mid;
 		}
 
-		return false;
+		return -(low + 1);
+	}
+
+	/**
+	 * Removes all set records with a version greater or equal than the
+	 * provided one.
+	 * 
+	 * @param version
+	 */
+	public void removeFromVersion(int version) {
+		int index = indexOfVersion(version);
+
+		if (index < 0)
+			index = -(index + 1);
+
+		if (index < size())
+			removeRange(index, size());
+	}
+
+	/**
+	 * @return the set record with the highest version
+	 * @throws NoSuchElementException
+	 *             if this list is empty
+	 */
+	public SetRecord getLast() {
+		if (isEmpty())
+			throw new NoSuchElementException();
+		return get(size() - 1);
 	}
 
 	@Override
@@ -60,11 +108,9 @@ public class SetRecordList extends LinkedList<SetRecord> {
 	}
 
 	@Override
-	public void addFirst(SetRecord r) {
-		if (!isEmpty())
-			throw new IllegalArgumentException(
-					"Can only append set-records to the end");
-		add(r);
+	public SetRecord set(int i, SetRecord r) {
+		throw new UnsupportedOperationException(
+				"Can only append set-records to the end");
 	}
 
 	// @Override
@@ -92,7 +92,7 @@ public class MockedSXETransmitter implements ISXETransmitter {
 
 			@Override
 			public void run() {
-				localController.startSession(message);
+				localController.applyState(message);
 			}
 
 		});
@@ -0,0 +1,91 @@
+package de.fu_berlin.inf.dpp.whiteboard.sxe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.fu_berlin.inf.dpp.whiteboard.sxe.constants.SXEMessageType;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.records.serializable.RecordDataObject;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.records.serializable.SetRecordDataObject;
+
+public class SXEMessageBatcherTest {
+
+	private final SXESession session = new SXESession("1");
+
+	private final SXEMessageBatcher batcher = new SXEMessageBatcher();
+
+	private SXEMessage createMessage(SXEMessageType type, String to,
+			int records) {
+		SXEMessage msg = session.getNextMessage(type, to);
+		List<RecordDataObject> rdos = new ArrayList<RecordDataObject>();
+		for (int i = 0; i < records; i++)
+			rdos.add(new SetRecordDataObject());
+		msg.setRecords(rdos);
+		return msg;
+	}
+
+	@Test
+	public void testMergeKeepsOrder() {
+		SXEMessage m1 = createMessage(SXEMessageType.RECORDS, null, 2);
+		SXEMessage m2 = createMessage(SXEMessageType.RECORDS, null, 1);
+
+		assertTrue(batcher.isEmpty());
+		batcher.add(m1);
+		assertTrue(batcher.canAdd(m2));
+		batcher.add(m2);
+
+		SXEMessage merged = batcher.drain();
+
+		assertEquals(m1.getMessageId(), merged.getMessageId());
+		assertEquals(SXEMessageType.RECORDS, merged.getMessageType());
+		assertNull(merged.getTo());
+		assertEquals(3, merged.getRecords().size());
+		assertSame(m1.getRecords().get(0), merged.getRecords().get(0));
+		assertSame(m1.getRecords().get(1), merged.getRecords().get(1));
+		assertSame(m2.getRecords().get(0), merged.getRecords().get(2));
+
+		assertTrue(batcher.isEmpty());
+		assertNull(batcher.drain());
+	}
+
+	@Test
+	public void testOnlyRecordsToSameRecipient() {
+		assertFalse(batcher.canAdd(createMessage(
+				SXEMessageType.STATE_OFFER, null, 0)));
+
+		batcher.add(createMessage(SXEMessageType.RECORDS, null, 1));
+
+		assertFalse(batcher.canAdd(createMessage(SXEMessageType.RECORDS,
+				"alice@jabber.org", 1)));
+
+		assertFalse(batcher.canAdd(new SXESession("2").getNextMessage(
+				SXEMessageType.RECORDS)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddIncompatible() {
+		batcher.add(createMessage(SXEMessageType.RECORDS, "alice@jabber.org",
+				1));
+		batcher.add(createMessage(SXEMessageType.RECORDS, null, 1));
+	}
+
+	@Test
+	public void testFull() {
+		batcher.add(createMessage(SXEMessageType.RECORDS, null,
+				SXEMessageBatcher.MAX_BATCH_RECORDS - 1));
+		assertFalse(batcher.isFull());
+
+		batcher.add(createMessage(SXEMessageType.RECORDS, null, 1));
+		assertTrue(batcher.isFull());
+
+		batcher.drain();
+		assertFalse(batcher.isFull());
+	}
+}
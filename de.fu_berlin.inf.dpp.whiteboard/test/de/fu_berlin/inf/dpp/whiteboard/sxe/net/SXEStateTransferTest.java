@@ -0,0 +1,133 @@
+package de.fu_berlin.inf.dpp.whiteboard.sxe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import de.fu_berlin.inf.dpp.whiteboard.sxe.SXEController;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.constants.SXEMessageType;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.records.DocumentRecord;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.records.ElementRecord;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.records.IRecord;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.records.NodeRecord;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.records.SXEDefaultRecordFactory;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.records.SetRecord;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.records.serializable.RecordDataObject;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.util.SXEUtils;
+
+public class SXEStateTransferTest {
+
+	private final SXEDefaultRecordFactory recordFactory = new SXEDefaultRecordFactory();
+	private final SXEController controller = new SXEController(recordFactory);
+	private final DocumentRecord document = controller.getDocumentRecord();
+	private final ElementRecord root = document.getRoot();
+
+	private final SXEMessageWriter writer = new SXEMessageWriter();
+	private final SXEMessageReader reader = new SXEMessageReader();
+
+	private ElementRecord createChild(ElementRecord parent) {
+		ElementRecord r = recordFactory.createElementRecord(document, null,
+				"rect");
+		r.setParent(parent);
+		assertTrue(r.apply(document));
+		return r;
+	}
+
+	private void move(NodeRecord r, float primaryWeight) {
+		SetRecord set = new SetRecord(r);
+		set.setPrimaryWeight(primaryWeight);
+		assertTrue(set.apply(document));
+	}
+
+	@Test
+	public void testStateWithFullHistory() {
+		ElementRecord r = createChild(root);
+		move(r, 1f);
+		move(r, 2f);
+
+		List<IRecord> state = r.getState(16);
+
+		assertEquals(3, state.size());
+		assertSame(r, state.get(0));
+		assertSame(r.getSetRecords().get(0), state.get(1));
+		assertSame(r.getSetRecords().get(1), state.get(2));
+	}
+
+	@Test
+	public void testSupersededSetRecordsAreMerged() {
+		ElementRecord r = createChild(root);
+		for (int i = 1; i <= 5; i++)
+			move(r, i);
+		assertTrue(r.getRemoveRecord().apply(document));
+
+		List<IRecord> state = r.getState(2);
+
+		assertEquals(4, state.size());
+		assertSame(r, state.get(0));
+
+		SetRecord merged = (SetRecord) state.get(1);
+		assertEquals(4, merged.getVersion());
+		assertEquals(Float.valueOf(4f), merged.getPrimaryWeight());
+		assertSame(root, merged.getParentToChange());
+		assertEquals(Boolean.TRUE, merged.getSetVisibilityTo());
+
+		assertSame(r.getSetRecords().get(4), state.get(2));
+		assertSame(r.getSetRecords().get(5), state.get(3));
+	}
+
+	@Test
+	public void testStateInPartsRestoresDocument() throws Exception {
+		ElementRecord a = createChild(root);
+		ElementRecord b = createChild(root);
+		ElementRecord c = createChild(a);
+
+		for (int i = 0; i < 10; i++)
+			move(a, i);
+		assertTrue(b.createMoveRecord(a, 3f).apply(document));
+		assertTrue(c.getRemoveRecord().apply(document));
+		move(b, 7f);
+
+		List<RecordDataObject> state = SXEUtils.toDataObjects(document
+				.getState(1));
+
+		SXEController invitee = new SXEController(recordFactory);
+		invitee.initNetwork(new MockedSXETransmitter(new SXENetworkMock()));
+		SXESession session = new SXESession();
+		assertTrue(invitee.switchToConnectingState(session));
+
+		int chunkSize = 2;
+		for (int i = 0; i < state.size(); i += chunkSize) {
+			SXEMessage msg = session.getNextMessage(SXEMessageType.STATE);
+			msg.setRecords(state.subList(i,
+					Math.min(state.size(), i + chunkSize)));
+			msg.setDocumentBegin(i == 0);
+			msg.setDocumentEnd(i + chunkSize >= state.size());
+
+			invitee.applyState(reader.parseMessage(writer
+					.getSXEMessageAsString(msg)));
+
+			assertEquals(msg.isDocumentEnd(), invitee.isConnected());
+		}
+
+		DocumentRecord copy = invitee.getDocumentRecord();
+
+		for (NodeRecord r : new NodeRecord[] { a, b, c }) {
+			NodeRecord other = copy.getRecordById(r.getRid());
+			assertEquals(r.getVersion(), other.getVersion());
+			assertEquals(r.getPrimaryWeight(), other.getPrimaryWeight());
+			assertEquals(r.isVisible(), other.isVisible());
+			assertEquals(r.getParent(), other.getParent());
+		}
+
+		assertFalse(copy.getRecordById(c.getRid()).isVisible());
+		assertEquals(root.getVisibleChildElements(), copy.getRoot()
+				.getVisibleChildElements());
+		assertEquals(a.getVisibleChildElements(), copy.getElementRecordById(
+				a.getRid()).getVisibleChildElements());
+	}
+}
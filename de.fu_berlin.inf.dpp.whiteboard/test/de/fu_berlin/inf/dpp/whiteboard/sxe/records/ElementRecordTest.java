@@ -0,0 +1,130 @@
+package de.fu_berlin.inf.dpp.whiteboard.sxe.records;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import de.fu_berlin.inf.dpp.whiteboard.sxe.SXEController;
+
+public class ElementRecordTest {
+
+	private final SXEDefaultRecordFactory recordFactory = new SXEDefaultRecordFactory();
+	private final SXEController controller = new SXEController(recordFactory);
+	private final DocumentRecord document = recordFactory
+			.createDocument(controller);
+	private final ElementRecord root = recordFactory.createRoot(document);
+
+	{
+		root.apply(document);
+	}
+
+	private ElementRecord createChild(ElementRecord parent) {
+		ElementRecord r = recordFactory.createElementRecord(document, null,
+				"rect");
+		r.setParent(parent);
+		assertTrue(r.apply(document));
+		return r;
+	}
+
+	@Test
+	public void testVisibleChildElementsAreCached() {
+		ElementRecord a = createChild(root);
+		ElementRecord b = createChild(root);
+
+		List<ElementRecord> visible = root.getVisibleChildElements();
+		assertEquals(2, visible.size());
+		assertSame(a, visible.get(0));
+		assertSame(b, visible.get(1));
+
+		assertSame(visible, root.getVisibleChildElements());
+	}
+
+	@Test
+	public void testCacheIsInvalidatedOnAdd() {
+		createChild(root);
+		List<ElementRecord> visible = root.getVisibleChildElements();
+
+		ElementRecord b = createChild(root);
+
+		assertEquals(1, visible.size());
+		assertEquals(2, root.getVisibleChildElements().size());
+		assertTrue(root.getVisibleChildElements().contains(b));
+	}
+
+	@Test
+	public void testCacheIsInvalidatedOnVisibilityChange() {
+		ElementRecord a = createChild(root);
+		ElementRecord b = createChild(root);
+		root.getVisibleChildElements();
+
+		assertTrue(a.getRemoveRecord().apply(document));
+
+		assertEquals(1, root.getVisibleChildElements().size());
+		assertSame(b, root.getVisibleChildElements().get(0));
+
+		assertTrue(a.getRecreateRecord().apply(document));
+
+		assertEquals(2, root.getVisibleChildElements().size());
+	}
+
+	@Test
+	public void testCacheIsInvalidatedOnMove() {
+		ElementRecord a = createChild(root);
+		ElementRecord b = createChild(root);
+		ElementRecord group = createChild(root);
+		root.getVisibleChildElements();
+		group.getVisibleChildElements();
+
+		assertTrue(a.createMoveRecord(group).apply(document));
+
+		assertEquals(2, root.getVisibleChildElements().size());
+		assertSame(a, group.getVisibleChildElements().get(0));
+
+		// move b to the end
+		assertTrue(b.createMoveRecord(root).apply(document));
+		assertSame(b, root.getVisibleChildElements().get(1));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testVisibleChildElementsAreUnmodifiable() {
+		createChild(root);
+		root.getVisibleChildElements().clear();
+	}
+
+	@Test
+	public void testVisibleDescendants() {
+		ElementRecord a = createChild(root);
+		ElementRecord a1 = createChild(a);
+		ElementRecord b = createChild(root);
+		createChild(b);
+
+		b.getRemoveRecord().apply(document);
+
+		List<ElementRecord> descendants = root
+				.getAllVisibleDescendantElements();
+		assertEquals(2, descendants.size());
+		assertSame(a, descendants.get(0));
+		assertSame(a1, descendants.get(1));
+
+		assertEquals(4, root.getAllDescendantElements().size());
+	}
+
+	@Test
+	public void testCircularRelationship() {
+		ElementRecord a = createChild(root);
+		ElementRecord a1 = createChild(a);
+		ElementRecord a11 = createChild(a1);
+		ElementRecord b = createChild(root);
+
+		assertTrue(a.isCircularRelationship(a));
+		assertTrue(a.isCircularRelationship(a11));
+		assertFalse(a.isCircularRelationship(b));
+		assertFalse(a.isCircularRelationship(root));
+		assertFalse(a11.isCircularRelationship(a));
+	}
+}
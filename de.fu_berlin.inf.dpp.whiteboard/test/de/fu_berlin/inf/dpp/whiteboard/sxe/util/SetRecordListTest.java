@@ -0,0 +1,100 @@
+package de.fu_berlin.inf.dpp.whiteboard.sxe.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.fu_berlin.inf.dpp.whiteboard.sxe.TestUtils;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.records.DocumentRecord;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.records.ElementRecord;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.records.SXEDefaultRecordFactory;
+import de.fu_berlin.inf.dpp.whiteboard.sxe.records.SetRecord;
+
+public class SetRecordListTest {
+
+	private final SXEDefaultRecordFactory recordFactory = new SXEDefaultRecordFactory();
+	private final DocumentRecord document = TestUtils
+			.getEmptyDocument(recordFactory);
+	private final ElementRecord target = document.getRoot()
+			.createNewElementRecord(null, "polyline");
+
+	private final SetRecordList list = new SetRecordList();
+
+	private void fill(int... versions) {
+		for (int version : versions)
+			list.add(new SetRecord(target, version));
+	}
+
+	@Test
+	public void testContains() {
+		fill(1, 2, 4, 7, 8);
+
+		for (int version : new int[] { 1, 2, 4, 7, 8 })
+			assertTrue(list.contains(new SetRecord(target, version)));
+
+		for (int version : new int[] { 0, 3, 5, 6, 9 })
+			assertFalse(list.contains(new SetRecord(target, version)));
+
+		assertFalse(list.contains("no set record"));
+	}
+
+	@Test
+	public void testContainsComparesRecord() {
+		fill(1, 2);
+
+		SetRecord other = new SetRecord(target, 2);
+		other.setSender("bob");
+
+		assertFalse(list.contains(other));
+	}
+
+	@Test
+	public void testIndexOfVersion() {
+		fill(2, 4, 6);
+
+		assertEquals(0, list.indexOfVersion(2));
+		assertEquals(2, list.indexOfVersion(6));
+		assertEquals(-1, list.indexOfVersion(1));
+		assertEquals(-2, list.indexOfVersion(3));
+		assertEquals(-4, list.indexOfVersion(7));
+	}
+
+	@Test
+	public void testRemoveFromVersion() {
+		fill(1, 2, 4, 7);
+
+		list.removeFromVersion(3);
+		assertEquals(2, list.size());
+		assertEquals(2, list.getLast().getVersion());
+
+		list.removeFromVersion(2);
+		assertEquals(1, list.size());
+
+		list.removeFromVersion(5);
+		assertEquals(1, list.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddSmallerVersion() {
+		fill(3, 2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInsert() {
+		fill(1, 3);
+		list.add(1, new SetRecord(target, 2));
+	}
+
+	@Test
+	public void testManyRecords() {
+		for (int i = 1; i <= 10000; i++)
+			list.add(new SetRecord(target, i * 2));
+
+		for (int i = 1; i <= 10000; i++) {
+			assertTrue(list.contains(new SetRecord(target, i * 2)));
+			assertFalse(list.contains(new SetRecord(target, i * 2 + 1)));
+		}
+	}
+}
@@ -608,15 +608,21 @@ public class FileList {
                 /** {@link IChecksumCache} **/
                 String path = file.getFullPath().toPortableString();
 
+                IPath location = file.getLocation();
+                long size = location == null ? -1 : location.toFile().length();
+                long localTimeStamp = file.getLocalTimeStamp();
+                long modificationStamp = file.getModificationStamp();
+
                 if (checksumCache != null)
-                    checksum = checksumCache.getChecksum(path);
+                    checksum = checksumCache.getChecksum(path, size,
+                        localTimeStamp, modificationStamp);
 
                 data.checksum = checksum == null ? FileUtils.checksum(file)
                     : checksum;
 
                 if (checksumCache != null) {
                     boolean isInvalid = checksumCache.addChecksum(path,
-                        data.checksum);
+                        data.checksum, size, localTimeStamp, modificationStamp);
 
                     if (isInvalid && checksum != null)
                         log.warn("calculated checksum on dirty data: "
@@ -47,7 +47,6 @@ import de.fu_berlin.inf.dpp.editor.internal.EditorAPI;
 import de.fu_berlin.inf.dpp.invitation.hooks.SessionNegotiationHookManager;
 import de.fu_berlin.inf.dpp.net.IReceiver;
 import de.fu_berlin.inf.dpp.net.ITransmitter;
-import de.fu_berlin.inf.dpp.net.IncomingTransferObject;
 import de.fu_berlin.inf.dpp.net.RosterTracker;
 import de.fu_berlin.inf.dpp.net.SarosNet;
 import de.fu_berlin.inf.dpp.net.business.CancelInviteHandler;
@@ -63,6 +62,7 @@ import de.fu_berlin.inf.dpp.net.internal.Socks5Transport;
 import de.fu_berlin.inf.dpp.net.internal.StreamServiceManager;
 import de.fu_berlin.inf.dpp.net.internal.XMPPReceiver;
 import de.fu_berlin.inf.dpp.net.internal.XMPPTransmitter;
+import de.fu_berlin.inf.dpp.net.internal.extensions.ActivitiesAcknowledgementExtension;
 import de.fu_berlin.inf.dpp.net.internal.extensions.ActivitiesExtension;
 import de.fu_berlin.inf.dpp.net.internal.extensions.CancelInviteExtension;
 import de.fu_berlin.inf.dpp.net.internal.extensions.CancelProjectNegotiationExtension;
@@ -100,10 +100,11 @@ import de.fu_berlin.inf.dpp.preferences.PreferenceUtils;
 import de.fu_berlin.inf.dpp.project.IChecksumCache;
 import de.fu_berlin.inf.dpp.project.SarosRosterListener;
 import de.fu_berlin.inf.dpp.project.SarosSessionManager;
-import de.fu_berlin.inf.dpp.project.internal.ChecksumCacheImpl;
 import de.fu_berlin.inf.dpp.project.internal.ColorNegotiationHook;
 import de.fu_berlin.inf.dpp.project.internal.FileContentNotifierBridge;
 import de.fu_berlin.inf.dpp.project.internal.FollowingActivitiesManager;
+import de.fu_berlin.inf.dpp.project.internal.IFileContentChangedNotifier;
+import de.fu_berlin.inf.dpp.project.internal.PersistentChecksumCache;
 import de.fu_berlin.inf.dpp.synchronize.UISynchronizer;
 import de.fu_berlin.inf.dpp.synchronize.internal.SWTSynchronizer;
 import de.fu_berlin.inf.dpp.ui.RemoteProgressManager;
@@ -116,6 +117,7 @@ import de.fu_berlin.inf.dpp.util.VersionManager;
 import de.fu_berlin.inf.dpp.util.pico.ChildContainer;
 import de.fu_berlin.inf.dpp.util.pico.ChildContainerProvider;
 import de.fu_berlin.inf.dpp.util.pico.DotGraphMonitor;
+import de.fu_berlin.inf.dpp.util.sendfile.FileContentStreamService;
 import de.fu_berlin.inf.dpp.util.sendfile.FileStreamService;
 import de.fu_berlin.inf.dpp.videosharing.VideoSharing;
 import de.fu_berlin.inf.dpp.videosharing.VideoSharingService;
@@ -291,12 +293,6 @@ public class SarosContext implements ISarosContext {
         Component.create(InvitationHandler.class),
         Component.create(LeaveAndKickHandler.class),
 
-        // FIXME: remove all extensions providers here !
-
-        // Extension Providers
-        Component
-            .create(IncomingTransferObject.IncomingTransferObjectExtensionProvider.class),
-
         // UI handlers
         Component.create(HostLeftAloneInSessionHandler.class),
         Component.create(NegotiationHandler.class),
@@ -304,12 +300,14 @@ public class SarosContext implements ISarosContext {
 
         // streaming services
         Component.create(FileStreamService.class),
+        Component.create(FileContentStreamService.class),
         Component.create(AudioService.class),
         Component.create(VideoSharingService.class),
 
         // Cache support
-        Component.create(IChecksumCache.class, new ChecksumCacheImpl(
-            new FileContentNotifierBridge())),
+        Component.create(IFileContentChangedNotifier.class,
+            FileContentNotifierBridge.class),
+        Component.create(IChecksumCache.class, PersistentChecksumCache.class),
 
         // Version support
         Component.create(VersionManager.class),
@@ -339,6 +337,7 @@ public class SarosContext implements ISarosContext {
 
         try {
             Class.forName(ActivitiesExtension.class.getName());
+            Class.forName(ActivitiesAcknowledgementExtension.class.getName());
             Class.forName(CancelInviteExtension.class.getName());
             Class.forName(InvitationOfferingExtension.class.getName());
             Class.forName(InvitationParameterExchangeExtension.class.getName());
@@ -54,8 +54,9 @@ public class FileActivity extends AbstractActivity implements IResourceActivity
         throws IOException {
 
         IFile file = path.getFile();
-        Long checksum = FileUtils.checksum(file);
         byte[] content = FileUtils.getLocalFileContent(file);
+        Long checksum = content != null ? FileUtils.checksum(content)
+            : FileUtils.checksum(file);
 
         return new FileActivity(source, Type.CREATED, path, null, content,
             purpose, checksum);
@@ -81,11 +82,14 @@ public class FileActivity extends AbstractActivity implements IResourceActivity
         SPath sourcePath, boolean contentChange) throws IOException {
 
         byte[] content = null;
+        Long checksum = null;
         if (contentChange) {
             content = FileUtils.getLocalFileContent(destPath.getFile());
+            if (content != null)
+                checksum = FileUtils.checksum(content);
         }
         return new FileActivity(source, Type.MOVED, destPath, sourcePath,
-            content, Purpose.ACTIVITY, null);
+            content, Purpose.ACTIVITY, checksum);
     }
 
     /**
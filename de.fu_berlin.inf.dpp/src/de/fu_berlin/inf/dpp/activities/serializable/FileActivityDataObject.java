@@ -30,6 +30,13 @@ public class FileActivityDataObject extends AbstractProjectActivityDataObject {
 
     protected Long checksum;
 
+    /**
+     * ID of the content if it was not sent inside this data object but has to
+     * be fetched separately, <code>null</code> otherwise
+     */
+    @XStreamAsAttribute
+    protected String contentID;
+
     /**
      * Generic constructor for {@link FileActivityDataObject}s
      * 
@@ -63,6 +70,48 @@ public class FileActivityDataObject extends AbstractProjectActivityDataObject {
         return this.type;
     }
 
+    public SPathDataObject getOldPath() {
+        return this.oldPath;
+    }
+
+    /**
+     * @return the content of the file or <code>null</code> if there is none or
+     *         it was replaced by a {@linkplain #getContentID() reference}
+     */
+    public byte[] getData() {
+        return this.data;
+    }
+
+    public Long getChecksum() {
+        return this.checksum;
+    }
+
+    /**
+     * @return the ID of the content that has to be fetched before this data
+     *         object can be turned into an activity or <code>null</code> if
+     *         the content is contained in this data object
+     */
+    public String getContentID() {
+        return this.contentID;
+    }
+
+    /**
+     * Replaces the content of the file by a reference to the content with the
+     * given ID.
+     */
+    public void setContentReference(String contentID) {
+        this.contentID = contentID;
+        this.data = null;
+    }
+
+    /**
+     * Replaces the reference to the content of the file by the content itself.
+     */
+    public void setContent(byte[] data) {
+        this.data = data;
+        this.contentID = null;
+    }
+
     @Override
     public String toString() {
         if (type == Type.MOVED)
@@ -77,6 +126,7 @@ public class FileActivityDataObject extends AbstractProjectActivityDataObject {
         final int prime = 31;
         int result = super.hashCode();
         result = prime * result + Arrays.hashCode(data);
+        result = prime * result + ObjectUtils.hashCode(contentID);
         result = prime * result + ObjectUtils.hashCode(oldPath);
         result = prime * result + ObjectUtils.hashCode(type);
         return result;
@@ -99,6 +149,8 @@ public class FileActivityDataObject extends AbstractProjectActivityDataObject {
             return false;
         if (!Arrays.equals(data, other.data))
             return false;
+        if (!ObjectUtils.equals(this.contentID, other.contentID))
+            return false;
 
         return true;
     }
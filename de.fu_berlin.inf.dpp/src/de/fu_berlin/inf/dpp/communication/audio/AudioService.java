@@ -43,6 +43,18 @@ public class AudioService extends StreamService {
         return new long[] { 1000 };
     }
 
+    // speex frames are already compressed
+    @Override
+    public boolean[] getCompressible() {
+        return new boolean[] { false };
+    }
+
+    // audio frames are small, but every delayed frame is audible
+    @Override
+    public int getWeight() {
+        return 8;
+    }
+
     @Override
     public int[] getBufferSize() {
         return new int[] { getChunkSize()[0] * 2 };
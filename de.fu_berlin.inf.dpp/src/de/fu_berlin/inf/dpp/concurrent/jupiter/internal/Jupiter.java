@@ -20,10 +20,6 @@
  */
 package de.fu_berlin.inf.dpp.concurrent.jupiter.internal;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 
@@ -73,7 +69,7 @@ public class Jupiter implements Algorithm {
      * corresponds to the 'outgoing' list in the Jupiter pseudo code
      * description.
      */
-    protected final List<OperationWrapper> ackJupiterActivityList;
+    protected final OutgoingQueue ackJupiterActivityList;
 
     /**
      * Class constructor that creates a new Jupiter algorithm.
@@ -85,7 +81,7 @@ public class Jupiter implements Algorithm {
         this.inclusion = new GOTOInclusionTransformation();
         this.vectorTime = new JupiterVectorTime(0, 0);
         this.isClientSide = isClientSide;
-        this.ackJupiterActivityList = new ArrayList<OperationWrapper>();
+        this.ackJupiterActivityList = new OutgoingQueue();
     }
 
     /**
@@ -100,8 +96,8 @@ public class Jupiter implements Algorithm {
             op, source, editor);
 
         // add(op, myMsgs) to outgoing;
-        this.ackJupiterActivityList.add(new OperationWrapper(op,
-            this.vectorTime.getLocalOperationCount()));
+        this.ackJupiterActivityList.add(op,
+            this.vectorTime.getLocalOperationCount());
 
         // myMsgs = myMsgs + 1;
         this.vectorTime = this.vectorTime.incrementLocalOperationCount();
@@ -208,8 +204,7 @@ public class Jupiter implements Algorithm {
         int[] result = new int[indices.length];
         System.arraycopy(indices, 0, result, 0, indices.length);
         for (int i = 0; i < this.ackJupiterActivityList.size(); i++) {
-            OperationWrapper wrap = this.ackJupiterActivityList.get(i);
-            Operation ack = wrap.getOperation();
+            Operation ack = this.ackJupiterActivityList.getOperation(i);
             for (int k = 0; k < indices.length; k++) {
                 result[k] = transformIndex(result[k], ack);
             }
@@ -241,14 +236,8 @@ public class Jupiter implements Algorithm {
      *            the remote JupiterVectorTime
      */
     protected void discardAcknowledgedOperations(JupiterVectorTime time) {
-        Iterator<OperationWrapper> iter = this.ackJupiterActivityList
-            .iterator();
-        while (iter.hasNext()) {
-            OperationWrapper wrap = iter.next();
-            if (wrap.getLocalOperationCount() < time.getRemoteOperationCount()) {
-                iter.remove();
-            }
-        }
+        this.ackJupiterActivityList.discardBefore(time
+            .getRemoteOperationCount());
         // ASSERT msg.myMsgs == otherMsgs
         assert time.getLocalOperationCount() == this.vectorTime
             .getRemoteOperationCount() : "msg.myMsgs != otherMsgs !!";
@@ -266,9 +255,8 @@ public class Jupiter implements Algorithm {
     protected Operation transform(Operation newOp) {
         for (int ackJupiterActivityListCnt = 0; ackJupiterActivityListCnt < this.ackJupiterActivityList
             .size(); ackJupiterActivityListCnt++) {
-            OperationWrapper wrap = this.ackJupiterActivityList
-                .get(ackJupiterActivityListCnt);
-            Operation existingOp = wrap.getOperation();
+            Operation existingOp = this.ackJupiterActivityList
+                .getOperation(ackJupiterActivityListCnt);
 
             Operation transformedOp;
 
@@ -283,9 +271,8 @@ public class Jupiter implements Algorithm {
                 existingOp = this.inclusion.transform(existingOp, newOp,
                     Boolean.TRUE);
             }
-            this.ackJupiterActivityList
-                .set(ackJupiterActivityListCnt, new OperationWrapper(
-                    existingOp, wrap.getLocalOperationCount()));
+            this.ackJupiterActivityList.setOperation(
+                ackJupiterActivityListCnt, existingOp);
 
             newOp = transformedOp;
         }
@@ -304,7 +291,7 @@ public class Jupiter implements Algorithm {
         throws TransformationException {
         if (!this.ackJupiterActivityList.isEmpty()
             && (time.getRemoteOperationCount() < this.ackJupiterActivityList
-                .get(0).getLocalOperationCount())) {
+                .getLocalOperationCount(0))) {
             throw new TransformationException("Precondition #1 violated.");
         } else if (time.getRemoteOperationCount() > this.vectorTime
             .getLocalOperationCount()) {
@@ -319,34 +306,95 @@ public class Jupiter implements Algorithm {
     }
 
     /**
-     * This is a simple helper class used in the implementation of the Jupiter
-     * algorithm. A OperationWrapper instance is created with an operation and
-     * the current local operation count and inserted into the outgoing queue
-     * (see {@link Jupiter#ackJupiterActivityList}).
+     * The outgoing queue of the Jupiter algorithm. Every entry consists of an
+     * operation and the local operation count at the time the operation was
+     * generated (see {@link Jupiter#ackJupiterActivityList}).
      * 
-     * @valueObject Instances of this class should be treated as value objects
-     *              and should be treated as immutable.
+     * The entries are stored in a ring buffer. As acknowledged operations are
+     * always discarded from the head of the queue (the local operation counts
+     * are increasing) discarding does not need to move the remaining entries
+     * and transformed operations are replaced in place.
      * 
      * @see Jupiter#generateJupiterActivity(Operation, User, SPath)
      * @see Jupiter#receiveJupiterActivity(JupiterActivity)
      */
-    protected static class OperationWrapper {
+    protected static class OutgoingQueue {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private Operation[] operations = new Operation[INITIAL_CAPACITY];
+
+        private int[] counts = new int[INITIAL_CAPACITY];
+
+        private int head;
+
+        private int size;
 
-        protected final Operation op;
+        void add(Operation op, int count) {
+            if (size == operations.length)
+                grow();
 
-        protected final int count;
+            int index = (head + size) & (operations.length - 1);
+            operations[index] = op;
+            counts[index] = count;
+            size++;
+        }
 
-        OperationWrapper(Operation op, int count) {
-            this.op = op;
-            this.count = count;
+        Operation getOperation(int i) {
+            return operations[index(i)];
         }
 
-        Operation getOperation() {
-            return this.op;
+        void setOperation(int i, Operation op) {
+            operations[index(i)] = op;
         }
 
-        int getLocalOperationCount() {
-            return this.count;
+        int getLocalOperationCount(int i) {
+            return counts[index(i)];
+        }
+
+        /**
+         * Removes all entries with a local operation count less than the given
+         * count from the head of this queue.
+         */
+        void discardBefore(int count) {
+            while (size > 0 && counts[head] < count) {
+                operations[head] = null;
+                head = (head + 1) & (operations.length - 1);
+                size--;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        private int index(int i) {
+            if (i < 0 || i >= size)
+                throw new IndexOutOfBoundsException("index: " + i + ", size: "
+                    + size);
+
+            return (head + i) & (operations.length - 1);
+        }
+
+        private void grow() {
+            int capacity = operations.length * 2;
+
+            Operation[] newOperations = new Operation[capacity];
+            int[] newCounts = new int[capacity];
+
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) & (operations.length - 1);
+                newOperations[i] = operations[index];
+                newCounts[i] = counts[index];
+            }
+
+            operations = newOperations;
+            counts = newCounts;
+            head = 0;
         }
 
         /**
@@ -354,7 +402,17 @@ public class Jupiter implements Algorithm {
          */
         @Override
         public String toString() {
-            return ("OperationWrapper(" + this.op + ", " + this.count + ")");
+            StringBuilder builder = new StringBuilder("[");
+
+            for (int i = 0; i < size; i++) {
+                if (i > 0)
+                    builder.append(", ");
+
+                builder.append("(").append(getOperation(i)).append(", ")
+                    .append(getLocalOperationCount(i)).append(")");
+            }
+
+            return builder.append("]").toString();
         }
     }
 
@@ -18,6 +18,9 @@ import de.fu_berlin.inf.dpp.net.JID;
  * The JupiterDocumentServer is the host side component managing all server
  * Jupiter instances.
  * 
+ * All methods are synchronized on the instance, so every document has its own
+ * lock and activities for different documents can be transformed concurrently.
+ * 
  * TODO [CO] Document and review this class
  */
 public class JupiterDocumentServer {
@@ -32,6 +35,11 @@ public class JupiterDocumentServer {
 
     protected final SPath editor;
 
+    /**
+     * Whether this server was removed from its JupiterServer
+     */
+    protected boolean disposed;
+
     /**
      * Create a new JupiterDocument (server-side) representing the document
      * identified by the given SPath
@@ -49,7 +57,7 @@ public class JupiterDocumentServer {
         return this.proxies.remove(jid) != null;
     }
 
-    public Map<JID, JupiterActivity> transformJupiterActivity(
+    public synchronized Map<JID, JupiterActivity> transformJupiterActivity(
         JupiterActivity jupiterActivity) throws TransformationException {
 
         Map<JID, JupiterActivity> result = new HashMap<JID, JupiterActivity>();
@@ -81,7 +89,20 @@ public class JupiterDocumentServer {
         return result;
     }
 
-    public boolean isExist(JID jid) {
+    /**
+     * Marks this server as removed. A removed server must not be used to
+     * transform activities anymore, as the clients reset their Jupiter
+     * instances for the document.
+     */
+    public synchronized void dispose() {
+        disposed = true;
+    }
+
+    public synchronized boolean isDisposed() {
+        return disposed;
+    }
+
+    public synchronized boolean isExist(JID jid) {
         if (this.proxies.containsKey(jid)) {
             return true;
         }
@@ -112,7 +133,7 @@ public class JupiterDocumentServer {
             addProxyClient(jid);
     }
 
-    public Map<JID, ChecksumActivity> withTimestamp(
+    public synchronized Map<JID, ChecksumActivity> withTimestamp(
         ChecksumActivity checksumActivity) throws TransformationException {
 
         Map<JID, ChecksumActivity> result = new HashMap<JID, ChecksumActivity>();
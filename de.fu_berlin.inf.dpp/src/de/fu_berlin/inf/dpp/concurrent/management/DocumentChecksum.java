@@ -1,5 +1,10 @@
 package de.fu_berlin.inf.dpp.concurrent.management;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentListener;
@@ -10,15 +15,38 @@ import de.fu_berlin.inf.dpp.activities.SPath;
  * This Class represents a checksum of a document. It contains the path, the
  * length and the hash code of the document.
  * 
+ * The hash code is equal to the {@link String#hashCode()} of the document
+ * content. It is maintained incrementally: the document is divided into blocks
+ * whose hash codes are updated from the document events, so {@link #update()}
+ * only has to combine the block hash codes instead of copying and hashing the
+ * whole document.
+ * 
  * @author chjacob
  */
 public class DocumentChecksum {
 
+    private static final Logger log = Logger.getLogger(DocumentChecksum.class);
+
     /**
      * Constant used for representing a missing file
      */
     public static final int NON_EXISTING_DOC = -1;
 
+    /** the number of characters that is hashed as one block */
+    private static final int BLOCK_SIZE = 4096;
+
+    private static final int BLOCK_SIZE_POWER = power(BLOCK_SIZE);
+
+    private static class Block {
+        private final int length;
+        private final int hash;
+
+        private Block(int length, int hash) {
+            this.length = length;
+            this.hash = hash;
+        }
+    }
+
     protected IDocumentListener dirtyListener = new IDocumentListener() {
 
         @Override
@@ -29,6 +57,17 @@ public class DocumentChecksum {
         @Override
         public void documentChanged(DocumentEvent event) {
             dirty = true;
+
+            if (blocks == null)
+                return;
+
+            try {
+                updateBlocks(event);
+            } catch (BadLocationException e) {
+                log.warn("could not update checksum of " + path
+                    + " incrementally", e);
+                blocks = null;
+            }
         }
     };
 
@@ -45,6 +84,12 @@ public class DocumentChecksum {
 
     protected boolean dirty;
 
+    /**
+     * the hash codes of the consecutive blocks of the document or
+     * <code>null</code> if they have to be recalculated
+     */
+    private List<Block> blocks;
+
     /**
      * Creates a new Checksum for the document represented in the given path.
      * 
@@ -101,6 +146,7 @@ public class DocumentChecksum {
         if (document != null)
             doc.addDocumentListener(dirtyListener);
 
+        blocks = null;
         dirty = true;
     }
 
@@ -113,13 +159,139 @@ public class DocumentChecksum {
         if (document == null) {
             this.length = this.hash = NON_EXISTING_DOC;
         } else {
+            if (blocks == null)
+                blocks = createBlocks(document.get());
+
             this.length = document.getLength();
-            this.hash = document.get().hashCode();
+            this.hash = combineBlocks();
         }
 
         dirty = false;
     }
 
+    /**
+     * Replaces the blocks that are affected by the given change with the
+     * blocks of the changed text.
+     * 
+     * Neighbouring blocks shorter than {@link #BLOCK_SIZE} are hashed again as
+     * well, so they are merged with the changed text. This way no two short
+     * blocks are adjacent and the number of blocks stays below twice the
+     * number of full blocks, no matter how many changes are made.
+     */
+    private void updateBlocks(DocumentEvent event) throws BadLocationException {
+
+        int offset = event.getOffset();
+        int removed = event.getLength();
+        int inserted = event.getText() == null ? 0 : event.getText().length();
+
+        // find the blocks that contain the replaced region
+        int first = 0;
+        int start = 0;
+
+        while (first < blocks.size() - 1
+            && start + blocks.get(first).length <= offset) {
+            start += blocks.get(first).length;
+            first++;
+        }
+
+        int last = first;
+        int end = blocks.isEmpty() ? 0 : start + blocks.get(first).length;
+
+        while (last < blocks.size() - 1 && end < offset + removed) {
+            last++;
+            end += blocks.get(last).length;
+        }
+
+        if (first > 0 && blocks.get(first - 1).length < BLOCK_SIZE) {
+            first--;
+            start -= blocks.get(first).length;
+        }
+
+        if (last < blocks.size() - 1
+            && blocks.get(last + 1).length < BLOCK_SIZE) {
+            last++;
+            end += blocks.get(last).length;
+        }
+
+        int changedLength = end - start + inserted - removed;
+
+        List<Block> changedBlocks = createBlocks(document.get(start,
+            changedLength));
+
+        if (!blocks.isEmpty())
+            blocks.subList(first, last + 1).clear();
+
+        blocks.addAll(first, changedBlocks);
+    }
+
+    /**
+     * For testing purposes only.
+     * 
+     * @return the number of blocks the hash code is combined from or
+     *         <code>-1</code> if the blocks have to be recalculated
+     */
+    int getBlockCount() {
+        return blocks == null ? -1 : blocks.size();
+    }
+
+    private int combineBlocks() {
+        int result = 0;
+
+        for (Block block : blocks) {
+            int power = block.length == BLOCK_SIZE ? BLOCK_SIZE_POWER
+                : power(block.length);
+
+            result = result * power + block.hash;
+        }
+
+        return result;
+    }
+
+    /**
+     * Splits the given text into blocks of at most {@link #BLOCK_SIZE}
+     * characters.
+     */
+    private static List<Block> createBlocks(String text) {
+        int length = text.length();
+
+        List<Block> result = new ArrayList<Block>(length / BLOCK_SIZE + 1);
+
+        int position = 0;
+
+        while (position < length) {
+            int blockLength = Math.min(BLOCK_SIZE, length - position);
+
+            int hash = 0;
+
+            for (int i = position; i < position + blockLength; i++)
+                hash = 31 * hash + text.charAt(i);
+
+            result.add(new Block(blockLength, hash));
+            position += blockLength;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns 31 to the power of the given exponent (modulo 2^32) as used by
+     * {@link String#hashCode()}.
+     */
+    private static int power(int exponent) {
+        int result = 1;
+        int base = 31;
+
+        while (exponent > 0) {
+            if ((exponent & 1) != 0)
+                result *= base;
+
+            base *= base;
+            exponent >>= 1;
+        }
+
+        return result;
+    }
+
     /**
      * Returns whether this checksum represents a file which exists at the host.
      * 
@@ -17,6 +17,13 @@ import de.fu_berlin.inf.dpp.project.ISarosSession;
  * number of paths.
  * 
  * (in contrast to a JupiterDocumentServer which only handles a single path)
+ * 
+ * The lock of this class only guards the mapping of paths to
+ * JupiterDocumentServers. The transformation itself is synchronized on the
+ * JupiterDocumentServer of the affected path, so activities for different
+ * documents do not block each other. A JupiterDocumentServer that is removed
+ * while it is looked up is disposed and the lookup is repeated, so no
+ * activity is transformed by a removed server.
  */
 public class JupiterServer {
 
@@ -33,8 +40,15 @@ public class JupiterServer {
         this.sarosSession = sarosSession;
     }
 
-    public synchronized void removePath(SPath path) {
-        concurrentDocuments.remove(path);
+    public void removePath(SPath path) {
+        JupiterDocumentServer docServer;
+
+        synchronized (this) {
+            docServer = concurrentDocuments.remove(path);
+        }
+
+        if (docServer != null)
+            docServer.dispose();
     }
 
     public synchronized void addUser(User user) {
@@ -75,26 +89,45 @@ public class JupiterServer {
         return docServer;
     }
 
-    public synchronized void reset(SPath path, JID jid) {
-        getServer(path).reset(jid);
+    public void reset(SPath path, JID jid) {
+        while (true) {
+            JupiterDocumentServer docServer = getServer(path);
+
+            synchronized (docServer) {
+                if (!docServer.isDisposed()) {
+                    docServer.reset(jid);
+                    return;
+                }
+            }
+        }
     }
 
-    public synchronized Map<JID, JupiterActivity> transform(
+    public Map<JID, JupiterActivity> transform(
         JupiterActivity jupiterActivity) throws TransformationException {
 
-        JupiterDocumentServer docServer = getServer(jupiterActivity.getPath());
+        while (true) {
+            JupiterDocumentServer docServer = getServer(jupiterActivity
+                .getPath());
 
-        return docServer.transformJupiterActivity(jupiterActivity);
+            synchronized (docServer) {
+                if (!docServer.isDisposed())
+                    return docServer.transformJupiterActivity(jupiterActivity);
+            }
+        }
     }
 
-    public synchronized Map<JID, ChecksumActivity> withTimestamp(
-        ChecksumActivity checksumActivity)
-        throws TransformationException {
+    public Map<JID, ChecksumActivity> withTimestamp(
+        ChecksumActivity checksumActivity) throws TransformationException {
 
-        JupiterDocumentServer docServer = getServer(checksumActivity
-            .getPath());
+        while (true) {
+            JupiterDocumentServer docServer = getServer(checksumActivity
+                .getPath());
 
-        return docServer.withTimestamp(checksumActivity);
+            synchronized (docServer) {
+                if (!docServer.isDisposed())
+                    return docServer.withTimestamp(checksumActivity);
+            }
+        }
     }
 
 }
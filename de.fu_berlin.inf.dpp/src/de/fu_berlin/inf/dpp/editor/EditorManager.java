@@ -29,7 +29,6 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 
 import org.apache.commons.lang.ObjectUtils;
-import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.log4j.Logger;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
@@ -174,6 +173,20 @@ public class EditorManager extends AbstractActivityProvider {
 
     ContributionAnnotationManager contributionAnnotationManager;
 
+    /**
+     * The remote text edits which are applied to the document but whose
+     * cursor update and listener notification are still pending, see
+     * {@link #flushTextEdits()}
+     */
+    private RemoteTextEditBatch textEditBatch;
+
+    private final Runnable flushTextEdits = new Runnable() {
+        @Override
+        public void run() {
+            flushTextEdits();
+        }
+    };
+
     private IActivityReceiver activityReceiver = new AbstractActivityReceiver() {
         @Override
         public void receive(EditorActivity editorActivity) {
@@ -328,6 +341,8 @@ public class EditorManager extends AbstractActivityProvider {
                 @Override
                 public void run() {
 
+                    flushTextEdits();
+
                     setFollowing(null);
 
                     editorAPI.removeEditorPartListener(EditorManager.this);
@@ -738,6 +753,9 @@ public class EditorManager extends AbstractActivityProvider {
             return;
         }
 
+        if (!(activity instanceof TextEditActivity))
+            flushTextEdits();
+
         // First let the remote managers update itself based on the
         // Activity
         remoteEditorManager.exec(activity);
@@ -764,6 +782,13 @@ public class EditorManager extends AbstractActivityProvider {
         }
     }
 
+    /**
+     * Applies the text edit to the document of its file. Successive edits of
+     * the same user to the same file are collected in a batch, the document
+     * provider stays connected for the whole batch and the cursor and the
+     * {@link ISharedEditorListener}s are updated when the batch is
+     * {@linkplain #flushTextEdits() flushed}.
+     */
     protected void execTextEdit(TextEditActivity textEdit) {
 
         log.trace("EditorManager.execTextEdit invoked");
@@ -778,7 +803,23 @@ public class EditorManager extends AbstractActivityProvider {
             return;
         }
 
-        User user = textEdit.getSource();
+        if (textEditBatch != null && !textEditBatch.accepts(textEdit))
+            flushTextEdits();
+
+        if (textEditBatch == null) {
+            textEditBatch = RemoteTextEditBatch.open(path,
+                textEdit.getSource(), getAnnotationModels(path),
+                contributionAnnotationManager);
+
+            if (textEditBatch == null)
+                return;
+
+            /*
+             * The batch is completed at the latest after all activities that
+             * are currently executed in the SWT thread.
+             */
+            SWTUtils.runSafeSWTAsync(log, flushTextEdits);
+        }
 
         /*
          * Disable documentListener temporarily to avoid being notified of the
@@ -786,26 +827,49 @@ public class EditorManager extends AbstractActivityProvider {
          */
         documentListener.enabled = false;
 
-        replaceText(path, textEdit.getOffset(), textEdit.getReplacedText(),
-            textEdit.getText(), user);
+        textEditBatch.apply(textEdit);
 
         documentListener.enabled = true;
+    }
+
+    /**
+     * Completes the current batch of remote text edits: disconnects the
+     * document provider, moves the cursor annotation of the user to the end of
+     * the last edit and informs the {@link ISharedEditorListener}s about the
+     * edits.
+     * 
+     * @swt This must be called from the SWT thread.
+     */
+    protected void flushTextEdits() {
+        if (textEditBatch == null)
+            return;
+
+        RemoteTextEditBatch batch = textEditBatch;
+        textEditBatch = null;
+
+        batch.close();
+
+        List<TextEditActivity> edits = batch.getEdits();
+
+        if (edits.isEmpty())
+            return;
+
+        User user = batch.getSource();
+        SPath path = batch.getPath();
+        TextEditActivity last = edits.get(edits.size() - 1);
 
         /*
-         * If the text edit ends in the visible region of a local editor, set
-         * the cursor annotation.
-         * 
-         * TODO Performance optimization in case of batch operation might make
-         * sense. Problem: How to recognize batch operations?
+         * If the last text edit ends in the visible region of a local editor,
+         * set the cursor annotation.
          */
+        int cursorOffset = last.getOffset() + last.getText().length();
+
         for (IEditorPart editorPart : editorPool.getEditors(path)) {
             ITextViewer viewer = EditorAPI.getViewer(editorPart);
             if (viewer == null) {
                 // No text viewer for the editorPart found.
                 continue;
             }
-            int cursorOffset = textEdit.getOffset()
-                + textEdit.getText().length();
             if (viewer.getTopIndexStartOffset() <= cursorOffset
                 && cursorOffset <= viewer.getBottomIndexEndOffset()) {
 
@@ -814,9 +878,10 @@ public class EditorManager extends AbstractActivityProvider {
             }
         }
 
-        // inform all registered ISharedEditorListeners about this text edit
-        editorListenerDispatch.textEditRecieved(user, path, textEdit.getText(),
-            textEdit.getReplacedText(), textEdit.getOffset());
+        // inform all registered ISharedEditorListeners about the text edits
+        for (TextEditActivity edit : edits)
+            editorListenerDispatch.textEditRecieved(user, path, edit.getText(),
+                edit.getReplacedText(), edit.getOffset());
     }
 
     protected void execTextSelection(TextSelectionActivity selection) {
@@ -1237,101 +1302,21 @@ public class EditorManager extends AbstractActivityProvider {
     }
 
     /**
-     * This method is called when a remote text edit has been received over the
-     * network to apply the change to the local files.
-     * 
-     * @param path
-     *            The path in which the change should be made.
-     * 
-     *            TODO We would like to be able to allow changing editors which
-     *            are not driven by files someday, but it is not possible yet.
-     * 
-     * @param offset
-     *            The position into the document of the given file, where the
-     *            change started.
-     * 
-     * @param replacedText
-     *            The text which is to be replaced by this operation at the
-     *            given offset (is "" if this operation is only inserting text)
-     * 
-     * @param text
-     *            The text which is to be inserted at the given offset instead
-     *            of the replaced text (is "" if this operation is only deleting
-     *            text)
-     * @param source
-     *            The User who caused this change.
+     * Returns the annotation models of all open editors of the given file.
      */
-    protected void replaceText(SPath path, int offset, String replacedText,
-        String text, User source) {
-
-        IFile file = path.getFile();
-        FileEditorInput input = new FileEditorInput(file);
-        IDocumentProvider provider = getDocumentProvider(input);
+    protected List<IAnnotationModel> getAnnotationModels(SPath path) {
+        List<IAnnotationModel> models = new ArrayList<IAnnotationModel>();
 
-        try {
-            provider.connect(input);
-        } catch (CoreException e) {
-            log.error(
-                "Could not connect document provider for file: "
-                    + file.toString(), e);
-            // TODO Trigger a consistency recovery
-            return;
-        }
-
-        try {
-            IDocument doc = provider.getDocument(input);
-            if (doc == null) {
-                log.error("Could not connect document provider for file: "
-                    + file.toString(), new StackTrace());
-                // TODO Trigger a consistency recovery
-                return;
-            }
-
-            // Check if the replaced text is really there.
-            if (log.isDebugEnabled()) {
-
-                String is;
-                try {
-                    is = doc.get(offset, replacedText.length());
-                    if (!is.equals(replacedText)) {
-                        log.error("replaceText should be '"
-                            + StringEscapeUtils.escapeJava(replacedText)
-                            + "' is '" + StringEscapeUtils.escapeJava(is) + "'");
-                    }
-                } catch (BadLocationException e) {
-                    // Ignore, because this is going to fail again just below
-                }
-            }
-
-            // Try to replace
-            try {
-                doc.replace(offset, replacedText.length(), text);
-            } catch (BadLocationException e) {
-                log.error(String.format(
-                    "Could not apply TextEdit at %d-%d of document "
-                        + "with length %d.\nWas supposed to replace"
-                        + " '%s' with '%s'.", offset,
-                    offset + replacedText.length(), doc.getLength(),
-                    replacedText, text));
-                return;
-            }
-
-            for (IEditorPart editorPart : editorPool.getEditors(path)) {
+        for (IEditorPart editorPart : editorPool.getEditors(path)) {
 
-                if (editorPart instanceof ITextEditor) {
-                    ITextEditor textEditor = (ITextEditor) editorPart;
-                    IAnnotationModel model = textEditor.getDocumentProvider()
-                        .getAnnotationModel(textEditor.getEditorInput());
-                    contributionAnnotationManager.insertAnnotation(model,
-                        offset, text.length(), source);
-                }
+            if (editorPart instanceof ITextEditor) {
+                ITextEditor textEditor = (ITextEditor) editorPart;
+                models.add(textEditor.getDocumentProvider().getAnnotationModel(
+                    textEditor.getEditorInput()));
             }
-            IAnnotationModel model = provider.getAnnotationModel(input);
-            contributionAnnotationManager.insertAnnotation(model, offset,
-                text.length(), source);
-        } finally {
-            provider.disconnect(input);
         }
+
+        return models;
     }
 
     /**
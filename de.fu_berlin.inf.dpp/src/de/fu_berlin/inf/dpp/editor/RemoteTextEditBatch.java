@@ -0,0 +1,206 @@
+package de.fu_berlin.inf.dpp.editor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.log4j.Logger;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentRewriteSession;
+import org.eclipse.jface.text.DocumentRewriteSessionType;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.source.IAnnotationModel;
+import org.eclipse.ui.part.FileEditorInput;
+import org.eclipse.ui.texteditor.IDocumentProvider;
+
+import de.fu_berlin.inf.dpp.User;
+import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.activities.business.TextEditActivity;
+import de.fu_berlin.inf.dpp.editor.internal.ContributionAnnotationManager;
+import de.fu_berlin.inf.dpp.util.StackTrace;
+
+/**
+ * Successive remote text edits of one user to one file.
+ * 
+ * The document provider stays connected until the batch is
+ * {@linkplain #close() closed}, and as soon as the batch contains more than
+ * one edit they are applied inside a {@link DocumentRewriteSession}, so the
+ * editors showing the document are only redrawn once for the whole batch.
+ * 
+ * Every edit is applied to the document immediately, only the redraw of the
+ * editors is delayed.
+ * 
+ * @swt This class must only be used from the SWT thread.
+ */
+class RemoteTextEditBatch {
+
+    private static final Logger log = Logger
+        .getLogger(RemoteTextEditBatch.class);
+
+    private final SPath path;
+
+    private final User source;
+
+    private final FileEditorInput input;
+
+    private final IDocumentProvider provider;
+
+    private final IDocument document;
+
+    private final List<IAnnotationModel> annotationModels;
+
+    private final ContributionAnnotationManager contributionAnnotationManager;
+
+    private final List<TextEditActivity> edits = new ArrayList<TextEditActivity>();
+
+    private DocumentRewriteSession rewriteSession;
+
+    private RemoteTextEditBatch(SPath path, User source,
+        FileEditorInput input, IDocumentProvider provider, IDocument document,
+        List<IAnnotationModel> annotationModels,
+        ContributionAnnotationManager contributionAnnotationManager) {
+
+        this.path = path;
+        this.source = source;
+        this.input = input;
+        this.provider = provider;
+        this.document = document;
+        this.annotationModels = annotationModels;
+        this.contributionAnnotationManager = contributionAnnotationManager;
+    }
+
+    /**
+     * Connects the document provider of the given file.
+     * 
+     * @param annotationModels
+     *            the annotation models of the open editors of the file, the
+     *            annotation model of the document provider is added
+     * @return the new batch or <code>null</code> if the document of the file
+     *         is not available
+     */
+    static RemoteTextEditBatch open(SPath path, User source,
+        List<IAnnotationModel> annotationModels,
+        ContributionAnnotationManager contributionAnnotationManager) {
+
+        IFile file = path.getFile();
+        FileEditorInput input = new FileEditorInput(file);
+        IDocumentProvider provider = EditorManager.getDocumentProvider(input);
+
+        try {
+            provider.connect(input);
+        } catch (CoreException e) {
+            log.error(
+                "Could not connect document provider for file: "
+                    + file.toString(), e);
+            // TODO Trigger a consistency recovery
+            return null;
+        }
+
+        IDocument document = provider.getDocument(input);
+
+        if (document == null) {
+            log.error("Could not connect document provider for file: "
+                + file.toString(), new StackTrace());
+            // TODO Trigger a consistency recovery
+            provider.disconnect(input);
+            return null;
+        }
+
+        List<IAnnotationModel> models = new ArrayList<IAnnotationModel>(
+            annotationModels);
+        models.add(provider.getAnnotationModel(input));
+
+        return new RemoteTextEditBatch(path, source, input, provider,
+            document, models, contributionAnnotationManager);
+    }
+
+    /**
+     * Returns whether the given edit can be added to this batch.
+     */
+    boolean accepts(TextEditActivity edit) {
+        return path.equals(edit.getPath()) && source.equals(edit.getSource());
+    }
+
+    SPath getPath() {
+        return path;
+    }
+
+    User getSource() {
+        return source;
+    }
+
+    /**
+     * Applies the edit to the document.
+     */
+    void apply(TextEditActivity edit) {
+        int offset = edit.getOffset();
+        String replacedText = edit.getReplacedText();
+        String text = edit.getText();
+
+        // Check if the replaced text is really there.
+        if (log.isDebugEnabled()) {
+
+            String is;
+            try {
+                is = document.get(offset, replacedText.length());
+                if (!is.equals(replacedText)) {
+                    log.error("replaceText should be '"
+                        + StringEscapeUtils.escapeJava(replacedText)
+                        + "' is '" + StringEscapeUtils.escapeJava(is) + "'");
+                }
+            } catch (BadLocationException e) {
+                // Ignore, because this is going to fail again just below
+            }
+        }
+
+        if (!edits.isEmpty() && rewriteSession == null
+            && document instanceof IDocumentExtension4) {
+            rewriteSession = ((IDocumentExtension4) document)
+                .startRewriteSession(DocumentRewriteSessionType.UNRESTRICTED);
+        }
+
+        // Try to replace
+        try {
+            document.replace(offset, replacedText.length(), text);
+        } catch (BadLocationException e) {
+            log.error(String.format(
+                "Could not apply TextEdit at %d-%d of document "
+                    + "with length %d.\nWas supposed to replace"
+                    + " '%s' with '%s'.", offset,
+                offset + replacedText.length(), document.getLength(),
+                replacedText, text));
+            return;
+        }
+
+        edits.add(edit);
+
+        for (IAnnotationModel model : annotationModels)
+            contributionAnnotationManager.insertAnnotation(model, offset,
+                text.length(), source);
+    }
+
+    /**
+     * @return the edits that were applied to the document, in the order they
+     *         were applied
+     */
+    List<TextEditActivity> getEdits() {
+        return Collections.unmodifiableList(edits);
+    }
+
+    /**
+     * Ends the rewrite session and disconnects the document provider.
+     */
+    void close() {
+        try {
+            if (rewriteSession != null)
+                ((IDocumentExtension4) document)
+                    .stopRewriteSession(rewriteSession);
+        } finally {
+            provider.disconnect(input);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package de.fu_berlin.inf.dpp.editor.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.IAnnotationModel;
+
+import de.fu_berlin.inf.dpp.editor.annotations.ContributionAnnotation;
+
+/**
+ * The {@link ContributionAnnotation}s of one annotation model, ordered by
+ * their offset.
+ * 
+ * The positions of the annotations are updated in place by the document when
+ * the text changes. This shifts, grows and shrinks them but never changes
+ * their order, so the order established when an annotation is added stays
+ * valid and annotations can be looked up by a binary search over their current
+ * offsets. This relies on the contribution annotations of one model never
+ * overlapping each other, which is ensured by the
+ * {@link ContributionAnnotationManager}.
+ * 
+ * Annotations that were removed from the model by somebody else, whose
+ * position was deleted or whose text was deleted completely are
+ * {@linkplain #removeStaleAnnotations() stale} and are dropped from the index
+ * as soon as a lookup encounters them.
+ */
+class ContributionAnnotationIndex {
+
+    private final IAnnotationModel model;
+
+    private final List<ContributionAnnotation> annotations = new ArrayList<ContributionAnnotation>();
+
+    private final List<ContributionAnnotation> staleAnnotations = new ArrayList<ContributionAnnotation>();
+
+    ContributionAnnotationIndex(IAnnotationModel model) {
+        this.model = model;
+    }
+
+    IAnnotationModel getModel() {
+        return model;
+    }
+
+    boolean isEmpty() {
+        return annotations.isEmpty();
+    }
+
+    /**
+     * @return all annotations of this index ordered by their offset
+     */
+    List<ContributionAnnotation> getAnnotations() {
+        return Collections.unmodifiableList(annotations);
+    }
+
+    /**
+     * Returns the current position of the given annotation.
+     * 
+     * @return the position or <code>null</code> if the annotation is stale
+     */
+    Position getPosition(ContributionAnnotation annotation) {
+        Position position = model.getPosition(annotation);
+
+        if (position == null || position.isDeleted()
+            || position.getLength() == 0)
+            return null;
+
+        return position;
+    }
+
+    /**
+     * Returns the annotation whose position includes the given offset.
+     * 
+     * @return the annotation or <code>null</code> if there is none
+     */
+    ContributionAnnotation getAnnotationAt(int offset) {
+        ContributionAnnotation annotation = floor(offset);
+
+        if (annotation == null || !getPosition(annotation).includes(offset))
+            return null;
+
+        return annotation;
+    }
+
+    /**
+     * Adds the annotation at the place given by its position, which must not
+     * overlap the position of any other annotation of this index.
+     */
+    void add(ContributionAnnotation annotation, Position position) {
+        annotations.add(floorIndex(position.getOffset()) + 1, annotation);
+    }
+
+    void remove(ContributionAnnotation annotation) {
+        annotations.remove(annotation);
+    }
+
+    /**
+     * Removes all annotations from this index.
+     * 
+     * @return the removed annotations
+     */
+    List<ContributionAnnotation> clear() {
+        List<ContributionAnnotation> result = new ArrayList<ContributionAnnotation>(
+            annotations);
+
+        result.addAll(staleAnnotations);
+        annotations.clear();
+        staleAnnotations.clear();
+        return result;
+    }
+
+    /**
+     * Returns the stale annotations that were dropped from this index since
+     * the last call of this method. They still have to be removed from the
+     * model and the history.
+     */
+    List<ContributionAnnotation> removeStaleAnnotations() {
+        if (staleAnnotations.isEmpty())
+            return Collections.emptyList();
+
+        List<ContributionAnnotation> result = new ArrayList<ContributionAnnotation>(
+            staleAnnotations);
+
+        staleAnnotations.clear();
+        return result;
+    }
+
+    /**
+     * Returns the last annotation starting at or before the given offset.
+     */
+    private ContributionAnnotation floor(int offset) {
+        int index = floorIndex(offset);
+        return index == -1 ? null : annotations.get(index);
+    }
+
+    /**
+     * Binary search for the last annotation starting at or before the given
+     * offset. Stale annotations that are encountered on the way are dropped
+     * and the search is restarted, as their positions are no longer updated
+     * and would break the order.
+     * 
+     * @return the index of the annotation or <code>-1</code> if there is none
+     */
+    private int floorIndex(int offset) {
+        search: while (true) {
+            int low = 0;
+            int high = annotations.size() - 1;
+            int result = -1;
+
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+
+                Position position = getPosition(annotations.get(middle));
+
+                if (position == null) {
+                    staleAnnotations.add(annotations.remove(middle));
+                    continue search;
+                }
+
+                if (position.getOffset() <= offset) {
+                    result = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+
+            return result;
+        }
+    }
+}
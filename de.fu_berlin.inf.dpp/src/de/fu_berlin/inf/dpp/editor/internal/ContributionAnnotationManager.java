@@ -1,13 +1,14 @@
 package de.fu_berlin.inf.dpp.editor.internal;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
-import java.util.Queue;
+import java.util.Map.Entry;
 
 import org.apache.log4j.Logger;
 import org.eclipse.jface.preference.IPreferenceStore;
@@ -29,6 +30,16 @@ import de.fu_berlin.inf.dpp.ui.util.SWTUtils;
 /**
  * This class keeps a history of added {@link ContributionAnnotation}s and
  * removes old ones.
+ * 
+ * The contribution annotations of every annotation model are kept in a
+ * {@link ContributionAnnotationIndex}, so looking up the annotations around
+ * an edit does not require iterating over all annotations of the model. All
+ * changes caused by one edit are applied to the annotation model at once.
+ * 
+ * Every contribution gets an annotation of its own, even if it directly
+ * follows or precedes another annotation of the same user. Merging them would
+ * create one annotation that grows without limit but only counts as one entry
+ * of the history, so the history would no longer bound the highlighted text.
  */
 public class ContributionAnnotationManager {
 
@@ -37,7 +48,9 @@ public class ContributionAnnotationManager {
 
     static final int MAX_HISTORY_LENGTH = 20;
 
-    private final Map<User, LinkedList<ContributionAnnotation>> sourceToHistory = new HashMap<User, LinkedList<ContributionAnnotation>>();
+    private final Map<User, LinkedHashSet<ContributionAnnotation>> sourceToHistory = new HashMap<User, LinkedHashSet<ContributionAnnotation>>();
+
+    private final Map<IAnnotationModel, ContributionAnnotationIndex> modelToIndex = new HashMap<IAnnotationModel, ContributionAnnotationIndex>();
 
     private final ISarosSession sarosSession;
 
@@ -49,10 +62,17 @@ public class ContributionAnnotationManager {
         @Override
         public void userLeft(User user) {
             /*
-             * Just remove the annotations from the history. They are removed by
-             * the EditorManager from the editors.
+             * Just remove the annotations from the history and the indices.
+             * They are removed by the EditorManager from the editors.
              */
-            sourceToHistory.remove(user);
+            LinkedHashSet<ContributionAnnotation> history = sourceToHistory
+                .remove(user);
+
+            if (history == null)
+                return;
+
+            for (ContributionAnnotation annotation : history)
+                removeFromIndex(annotation);
         }
     };
 
@@ -91,8 +111,8 @@ public class ContributionAnnotationManager {
 
     /**
      * Inserts a contribution annotation to given model if there is not already
-     * a contribution annotation at given position. This method should be called
-     * after the text has changed.
+     * a contribution annotation of the same source at given position. This
+     * method should be called after the text has changed.
      * 
      * @param model
      *            to add the annotation to.
@@ -103,31 +123,53 @@ public class ContributionAnnotationManager {
      * @param source
      *            of the annotation.
      */
-    @SuppressWarnings("unchecked")
     public void insertAnnotation(IAnnotationModel model, int offset,
         int length, User source) {
 
-        if (!contribtionAnnotationsEnabled)
+        if (!contribtionAnnotationsEnabled || length <= 0)
             return;
 
-        if (length > 0) {
-            /* Return early if there already is an annotation at that offset */
-            for (Iterator<Annotation> it = model.getAnnotationIterator(); it
-                .hasNext();) {
-                Annotation annotation = it.next();
-
-                if (annotation instanceof ContributionAnnotation
-                    && model.getPosition(annotation).includes(offset)
-                    && ((ContributionAnnotation) annotation).getSource()
-                        .equals(source)) {
-                    return;
-                }
-            }
+        ContributionAnnotationIndex index = getIndex(model);
+
+        List<ContributionAnnotation> annotationsToRemove = new ArrayList<ContributionAnnotation>();
+        Map<ContributionAnnotation, Position> annotationsToAdd = new LinkedHashMap<ContributionAnnotation, Position>();
+
+        int end = offset + length;
+
+        ContributionAnnotation annotation = index.getAnnotationAt(offset);
+
+        if (annotation != null && annotation.getSource().equals(source)) {
+            /* Nothing to do if there already is an annotation at that offset */
+            replaceAnnotations(index, annotationsToRemove, annotationsToAdd);
+            return;
+        }
+
+        if (annotation != null) {
+            /*
+             * The text was inserted into the annotation of another user, which
+             * has grown accordingly, so cut the text out of it again.
+             */
+            Position position = index.getPosition(annotation);
+            int annotationEnd = position.getOffset() + position.getLength();
+
+            annotationsToRemove.add(annotation);
 
-            ContributionAnnotation annotation = new ContributionAnnotation(
-                source, model);
-            addContributionAnnotation(annotation, new Position(offset, length));
+            if (position.getOffset() < offset)
+                annotationsToAdd.put(
+                    new ContributionAnnotation(annotation.getSource(), model),
+                    new Position(position.getOffset(), offset
+                        - position.getOffset()));
+
+            if (annotationEnd > end)
+                annotationsToAdd.put(
+                    new ContributionAnnotation(annotation.getSource(), model),
+                    new Position(end, annotationEnd - end));
         }
+
+        annotationsToAdd.put(new ContributionAnnotation(source, model),
+            new Position(offset, length));
+
+        replaceAnnotations(index, annotationsToRemove, annotationsToAdd);
     }
 
     /**
@@ -140,51 +182,43 @@ public class ContributionAnnotationManager {
      * @param offset
      *            at which annotations should be splitted.
      */
-
-    @SuppressWarnings("unchecked")
     public void splitAnnotation(IAnnotationModel model, int offset) {
 
         if (!contribtionAnnotationsEnabled)
             return;
 
-        for (Iterator<Annotation> it = model.getAnnotationIterator(); it
-            .hasNext();) {
-            Annotation annotation = it.next();
+        ContributionAnnotationIndex index = modelToIndex.get(model);
 
-            if (annotation instanceof ContributionAnnotation) {
+        if (index == null)
+            return;
 
-                Position pos = model.getPosition(annotation);
+        List<ContributionAnnotation> annotationsToRemove = new ArrayList<ContributionAnnotation>();
+        Map<ContributionAnnotation, Position> annotationsToAdd = new LinkedHashMap<ContributionAnnotation, Position>();
 
-                if (pos == null) {
-                    /*
-                     * FIXME This error occurs when search/replacing lots of
-                     * small stuff as client
-                     */
-                    log.warn("Annotation could not be found: " + annotation);
-                    return;
-                }
+        ContributionAnnotation annotation = index.getAnnotationAt(offset);
 
-                if ((offset > pos.offset) && (offset < pos.offset + pos.length)) {
-                    Position beforeOffset = new Position(pos.offset, offset
-                        - pos.offset);
-                    Position afterOffset = new Position(offset, pos.length
-                        - (offset - pos.offset));
+        Position pos = null;
 
-                    ContributionAnnotation oldAnnotation = (ContributionAnnotation) annotation;
+        if (annotation != null)
+            pos = index.getPosition(annotation);
 
-                    removeFromHistory(oldAnnotation);
+        if (pos != null && offset > pos.offset) {
+            Position beforeOffset = new Position(pos.offset, offset
+                - pos.offset);
+            Position afterOffset = new Position(offset, pos.length
+                - (offset - pos.offset));
 
-                    ContributionAnnotation newAnnotation;
-                    User source = oldAnnotation.getSource();
+            User source = annotation.getSource();
 
-                    newAnnotation = new ContributionAnnotation(source, model);
-                    addContributionAnnotation(newAnnotation, beforeOffset);
+            annotationsToRemove.add(annotation);
 
-                    newAnnotation = new ContributionAnnotation(source, model);
-                    addContributionAnnotation(newAnnotation, afterOffset);
-                }
-            }
+            annotationsToAdd.put(new ContributionAnnotation(source, model),
+                beforeOffset);
+            annotationsToAdd.put(new ContributionAnnotation(source, model),
+                afterOffset);
         }
+
+        replaceAnnotations(index, annotationsToRemove, annotationsToAdd);
     }
 
     /**
@@ -194,26 +228,25 @@ public class ContributionAnnotationManager {
      * @param model
      *            the annotation model that should be refreshed
      */
-    @SuppressWarnings("unchecked")
     public void refreshAnnotations(IAnnotationModel model) {
-        List<Annotation> annotationsToRemove = new ArrayList<Annotation>();
-        Map<Annotation, Position> annotationsToAdd = new HashMap<Annotation, Position>();
+        ContributionAnnotationIndex index = modelToIndex.get(model);
 
-        for (Iterator<Annotation> it = model.getAnnotationIterator(); it
-            .hasNext();) {
+        if (index == null)
+            return;
 
-            Annotation annotation = it.next();
+        List<ContributionAnnotation> annotationsToRemove = new ArrayList<ContributionAnnotation>();
+        Map<ContributionAnnotation, Position> annotationsToAdd = new LinkedHashMap<ContributionAnnotation, Position>();
+        Map<ContributionAnnotation, ContributionAnnotation> replacements = new HashMap<ContributionAnnotation, ContributionAnnotation>();
 
-            if (!(annotation instanceof ContributionAnnotation))
-                continue;
+        List<ContributionAnnotation> annotations = new ArrayList<ContributionAnnotation>(
+            index.getAnnotations());
 
-            Position position = model.getPosition(annotation);
+        for (ContributionAnnotation annotation : annotations) {
 
-            if (position == null) {
-                log.warn("annotation could not be found in the current model: "
-                    + annotation);
+            Position position = index.getPosition(annotation);
+
+            if (position == null)
                 continue;
-            }
 
             /*
              * we rely on the fact the a user object is unique during a running
@@ -221,39 +254,33 @@ public class ContributionAnnotationManager {
              * reinserting the annotations would not refresh the colors as the
              * color id of the user has not changed
              */
-            annotationsToRemove.add(annotation);
             ContributionAnnotation annotationToAdd = new ContributionAnnotation(
-                ((ContributionAnnotation) annotation).getSource(), model);
-
-            annotationsToAdd.put(annotationToAdd, position);
+                annotation.getSource(), model);
 
-            replaceInHistory((ContributionAnnotation) annotation,
-                annotationToAdd);
+            annotationsToRemove.add(annotation);
+            annotationsToAdd.put(annotationToAdd,
+                new Position(position.getOffset(), position.getLength()));
+            replacements.put(annotation, annotationToAdd);
         }
 
-        if (annotationsToRemove.isEmpty())
-            return;
+        annotationsToRemove.addAll(index.removeStaleAnnotations());
 
-        if (model instanceof IAnnotationModelExtension) {
-            ((IAnnotationModelExtension) model).replaceAnnotations(
-                annotationsToRemove.toArray(new Annotation[0]),
-                annotationsToAdd);
+        for (ContributionAnnotation annotation : annotationsToRemove)
+            index.remove(annotation);
 
-            return;
-        }
+        replaceInHistory(replacements);
+        replaceInModel(model, annotationsToRemove, annotationsToAdd);
 
-        for (Annotation annotation : annotationsToRemove)
-            model.removeAnnotation(annotation);
-
-        for (Map.Entry<Annotation, Position> entry : annotationsToAdd
+        for (Entry<ContributionAnnotation, Position> entry : annotationsToAdd
             .entrySet())
-            model.addAnnotation(entry.getKey(), entry.getValue());
+            index.add(entry.getKey(), entry.getValue());
     }
 
     public void dispose() {
         sarosSession.removeListener(sharedProjectListener);
         preferenceStore.removePropertyChangeListener(propertyChangeListener);
         sourceToHistory.clear();
+        modelToIndex.clear();
     }
 
     /**
@@ -261,83 +288,194 @@ public class ContributionAnnotationManager {
      * 
      * @param source
      *            source of the user who's history we want.
-     * @return the history of source.
+     * @return the history of source, oldest annotations first.
      */
-    private Queue<ContributionAnnotation> getHistory(User source) {
-        LinkedList<ContributionAnnotation> result = sourceToHistory.get(source);
+    private LinkedHashSet<ContributionAnnotation> getHistory(User source) {
+        LinkedHashSet<ContributionAnnotation> result = sourceToHistory
+            .get(source);
         if (result == null) {
-            result = new LinkedList<ContributionAnnotation>();
+            result = new LinkedHashSet<ContributionAnnotation>();
             sourceToHistory.put(source, result);
         }
         return result;
     }
 
+    private ContributionAnnotationIndex getIndex(IAnnotationModel model) {
+        ContributionAnnotationIndex result = modelToIndex.get(model);
+        if (result == null) {
+            result = new ContributionAnnotationIndex(model);
+            modelToIndex.put(model, result);
+        }
+        return result;
+    }
+
     /**
-     * Add a contribution annotation to the annotation model and store it into
-     * the history of the associated user. Old entries are removed from the
-     * history and the annotation model.
+     * Removes the annotations from and adds the annotations to the index, the
+     * history of the associated users and the annotation model of the index.
+     * Stale annotations of the index are removed as well. Old entries are
+     * removed from the history and the annotation models.
      */
-    private void addContributionAnnotation(ContributionAnnotation annotation,
-        Position position) {
+    private void replaceAnnotations(ContributionAnnotationIndex index,
+        List<ContributionAnnotation> annotationsToRemove,
+        Map<ContributionAnnotation, Position> annotationsToAdd) {
+
+        IAnnotationModel model = index.getModel();
+
+        List<ContributionAnnotation> removed = new ArrayList<ContributionAnnotation>(
+            annotationsToRemove);
+
+        removed.addAll(index.removeStaleAnnotations());
+
+        for (ContributionAnnotation annotation : removed) {
+            index.remove(annotation);
 
-        annotation.getModel().addAnnotation(annotation, position);
+            LinkedHashSet<ContributionAnnotation> history = sourceToHistory
+                .get(annotation.getSource());
 
-        Queue<ContributionAnnotation> history = getHistory(annotation
-            .getSource());
-        history.add(annotation);
-        while (history.size() > MAX_HISTORY_LENGTH) {
-            ContributionAnnotation oldAnnotation = history.remove();
-            oldAnnotation.getModel().removeAnnotation(oldAnnotation);
+            if (history != null)
+                history.remove(annotation);
         }
+
+        for (ContributionAnnotation annotation : annotationsToAdd.keySet())
+            getHistory(annotation.getSource()).add(annotation);
+
+        Map<IAnnotationModel, List<ContributionAnnotation>> evicted = new HashMap<IAnnotationModel, List<ContributionAnnotation>>();
+
+        for (ContributionAnnotation annotation : annotationsToAdd.keySet())
+            removeOldAnnotations(annotation.getSource(), evicted);
+
+        List<ContributionAnnotation> evictedFromModel = evicted.remove(model);
+
+        if (evictedFromModel != null)
+            removed.addAll(evictedFromModel);
+
+        replaceInModel(model, removed, annotationsToAdd);
+
+        /*
+         * The index looks up the positions of its annotations in the model, so
+         * the new annotations can only be added once they are in the model.
+         */
+        for (Entry<ContributionAnnotation, Position> entry : annotationsToAdd
+            .entrySet())
+            index.add(entry.getKey(), entry.getValue());
+
+        if (index.isEmpty())
+            modelToIndex.remove(model);
+        else
+            modelToIndex.put(model, index);
+
+        for (Entry<IAnnotationModel, List<ContributionAnnotation>> entry : evicted
+            .entrySet())
+            replaceInModel(entry.getKey(), entry.getValue(),
+                Collections.<ContributionAnnotation, Position> emptyMap());
     }
 
     /**
-     * Removes an annotation from the user's history and the annotation model.
-     * 
-     * @param annotation
+     * Removes the oldest annotations from the history of the given user until
+     * it does not exceed the maximum length and from their index. The removed
+     * annotations are added to the given map of annotations that still have
+     * to be removed from their annotation model.
      */
-    private void removeFromHistory(ContributionAnnotation annotation) {
-        getHistory(annotation.getSource()).remove(annotation);
-        annotation.getModel().removeAnnotation(annotation);
+    private void removeOldAnnotations(User source,
+        Map<IAnnotationModel, List<ContributionAnnotation>> evicted) {
+
+        LinkedHashSet<ContributionAnnotation> history = getHistory(source);
+
+        for (Iterator<ContributionAnnotation> it = history.iterator(); history
+            .size() > MAX_HISTORY_LENGTH;) {
+
+            ContributionAnnotation oldAnnotation = it.next();
+            it.remove();
+            removeFromIndex(oldAnnotation);
+
+            List<ContributionAnnotation> annotations = evicted
+                .get(oldAnnotation.getModel());
+
+            if (annotations == null) {
+                annotations = new ArrayList<ContributionAnnotation>();
+                evicted.put(oldAnnotation.getModel(), annotations);
+            }
+
+            annotations.add(oldAnnotation);
+        }
+    }
+
+    private void removeFromIndex(ContributionAnnotation annotation) {
+        ContributionAnnotationIndex index = modelToIndex.get(annotation
+            .getModel());
+
+        if (index == null)
+            return;
+
+        index.remove(annotation);
+
+        if (index.isEmpty())
+            modelToIndex.remove(annotation.getModel());
     }
 
     /**
-     * Replaces an existing annotation in the current history with a new
-     * annotation.
+     * Replaces existing annotations in the current history with new
+     * annotations, keeping their order.
      * 
-     * @param oldAnnotation
-     * @param newAnnotation
+     * @param replacements
+     *            the new annotations by the annotations they replace
      */
-    private void replaceInHistory(ContributionAnnotation oldAnnotation,
-        ContributionAnnotation newAnnotation) {
-        assert oldAnnotation.getSource().equals(newAnnotation.getSource());
+    private void replaceInHistory(
+        Map<ContributionAnnotation, ContributionAnnotation> replacements) {
 
-        LinkedList<ContributionAnnotation> list = sourceToHistory
-            .get(oldAnnotation.getSource());
+        if (replacements.isEmpty())
+            return;
 
-        if (list == null) {
-            log.warn("a annotation history for user "
-                + oldAnnotation.getSource() + " does not exists");
+        for (Entry<User, LinkedHashSet<ContributionAnnotation>> entry : sourceToHistory
+            .entrySet()) {
 
-            return;
-        }
+            LinkedHashSet<ContributionAnnotation> history = new LinkedHashSet<ContributionAnnotation>();
 
-        for (ListIterator<ContributionAnnotation> it = list.listIterator(); it
-            .hasNext();) {
-            ContributionAnnotation annotation = it.next();
-            if (annotation.equals(oldAnnotation)) {
-                it.set(newAnnotation);
-                return;
+            for (ContributionAnnotation annotation : entry.getValue()) {
+                ContributionAnnotation newAnnotation = replacements
+                    .get(annotation);
+
+                history.add(newAnnotation != null ? newAnnotation
+                    : annotation);
             }
-        }
 
-        log.warn("could not find annotation " + oldAnnotation
-            + " in the current history for user: " + oldAnnotation.getSource());
+            entry.setValue(history);
+        }
     }
 
     private void removeAllAnnotations() {
-        for (Queue<ContributionAnnotation> queue : sourceToHistory.values())
-            while (!queue.isEmpty())
-                removeFromHistory(queue.peek());
+        for (ContributionAnnotationIndex index : modelToIndex.values())
+            replaceInModel(index.getModel(), index.clear(),
+                Collections.<ContributionAnnotation, Position> emptyMap());
+
+        modelToIndex.clear();
+        sourceToHistory.clear();
+    }
+
+    /**
+     * Removes and adds the given annotations with a single call to the
+     * annotation model if it supports it.
+     */
+    private static void replaceInModel(IAnnotationModel model,
+        List<? extends Annotation> annotationsToRemove,
+        Map<? extends Annotation, Position> annotationsToAdd) {
+
+        if (annotationsToRemove.isEmpty() && annotationsToAdd.isEmpty())
+            return;
+
+        if (model instanceof IAnnotationModelExtension) {
+            ((IAnnotationModelExtension) model).replaceAnnotations(
+                annotationsToRemove.toArray(new Annotation[0]),
+                annotationsToAdd);
+
+            return;
+        }
+
+        for (Annotation annotation : annotationsToRemove)
+            model.removeAnnotation(annotation);
+
+        for (Map.Entry<? extends Annotation, Position> entry : annotationsToAdd
+            .entrySet())
+            model.addAnnotation(entry.getKey(), entry.getValue());
     }
 }
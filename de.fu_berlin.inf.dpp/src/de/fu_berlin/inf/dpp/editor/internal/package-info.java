@@ -9,6 +9,8 @@
  * 
  * <li>the {@link ContributionAnnotationManager} keeps history about added annotations and removes old ones</li>
  * 
+ * <li>the {@link ContributionAnnotationIndex} keeps the contribution annotations of an annotation model ordered by their offset</li>
+ * 
  * <li>the {@link IEditorAPI} implemented by {@link EditorAPI}. The least functionality to use the editor.</li>
  * 
  * <li>the {@link EditorAPI} realises basic text editor interactions.</li>
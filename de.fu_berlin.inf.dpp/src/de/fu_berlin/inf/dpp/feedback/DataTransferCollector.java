@@ -130,17 +130,20 @@ public class DataTransferCollector extends AbstractStatisticCollector {
         for (Pair<NetTransferMode, List<TransferEvent>> transferClass : transferClasses) {
 
             long totalSize = 0;
+            long totalUncompressedSize = 0;
             long totalTransferTime = 0;
             int nTransferEvents = 0;
             for (TransferEvent event : transferClass.v) {
                 totalSize += event.getTransferredSize();
+                totalUncompressedSize += event.getUncompressedSize();
                 totalTransferTime += event.getTransmissionMillisecs();
                 nTransferEvents++;
             }
 
             data.setTransferStatistic(transferClass.p.toString(),
                 nTransferEvents, totalSize / 1024, totalTransferTime, totalSize
-                    * 1000.0 / 1024.0 / Math.max(1.0, totalTransferTime));
+                    * 1000.0 / 1024.0 / Math.max(1.0, totalTransferTime),
+                totalSize / (double) Math.max(1L, totalUncompressedSize));
         }
         transferEvents.clear();
     }
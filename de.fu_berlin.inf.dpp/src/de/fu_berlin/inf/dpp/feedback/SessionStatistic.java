@@ -136,6 +136,8 @@ public class SessionStatistic {
     protected static final String TRANSFER_STATS_TIME_SUFFIX = "total_time_ms";
     // Convenience value of total_size / total_time in KB/s
     protected static final String TRANSFER_STATS_THROUGHPUT_SUFFIX = "average_throughput_kbs";
+    // Ratio of total_size to the total size of the data before compression
+    protected static final String TRANSFER_STATS_COMPRESSION_RATIO_SUFFIX = "compression_ratio";
 
     /**
      * A pseudonym set by the user in the preferences to identify himself. This
@@ -634,7 +636,8 @@ public class SessionStatistic {
     }
 
     public void setTransferStatistic(String transferMode, int transferEvents,
-        long totalSize, long totalTransferTime, double throughput) {
+        long totalSize, long totalTransferTime, double throughput,
+        double compressionRatio) {
 
         String key = appendToKey(KEY_TRANSFER_STATS, transferMode);
 
@@ -646,6 +649,9 @@ public class SessionStatistic {
             String.valueOf(totalTransferTime));
         data.setProperty(appendToKey(key, TRANSFER_STATS_THROUGHPUT_SUFFIX),
             String.valueOf(Math.round(throughput * 10.0) / 10.0));
+        data.setProperty(
+            appendToKey(key, TRANSFER_STATS_COMPRESSION_RATIO_SUFFIX),
+            String.valueOf(Math.round(compressionRatio * 100.0) / 100.0));
     }
 
     public void setPseudonym(String pseudonym) {
@@ -6,6 +6,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -35,26 +36,35 @@ public class DecompressTask implements IWorkspaceRunnable {
 
     private final ZipInputStream in;
     private final IProgressMonitor monitor;
-    private final IProject project;
+    private final Map<String, IProject> idToProjectMapping;
+    private final String delimiter;
 
     /**
      * Creates a decompress task that can be executed by {@link IWorkspace#run}.
      * All necessary folders will be created on the fly and existing files will
      * be <b>overwritten without confirmation</b>.
      * 
+     * The name of every entry must consist of the projectID, the given
+     * delimiter and the project relative path of the file.
+     * 
      * @param in
      *            zip input stream providing the compressed data
-     * @param project
-     *            project to uncompress the data to
+     * @param idToProjectMapping
+     *            projectID => project to uncompress the data to
+     * @param delimiter
+     *            the delimiter that separates the projectID and the path in
+     *            the entry names
      * @param monitor
      *            monitor that is used for progress report and cancellation or
      *            <code>null</code> to use the monitor provided by the
      *            {@link #run(IProgressMonitor)} method
      */
-    public DecompressTask(ZipInputStream in, IProject project,
+    public DecompressTask(ZipInputStream in,
+        Map<String, IProject> idToProjectMapping, String delimiter,
         IProgressMonitor monitor) {
         this.in = in;
-        this.project = project;
+        this.idToProjectMapping = idToProjectMapping;
+        this.delimiter = delimiter;
         this.monitor = monitor;
     }
 
@@ -76,7 +86,28 @@ public class DecompressTask implements IWorkspaceRunnable {
                 if (subMonitor.isCanceled())
                     throw new OperationCanceledException();
 
-                IPath path = Path.fromPortableString(entry.getName());
+                String entryName = entry.getName();
+
+                int delimiterIdx = entryName.indexOf(delimiter);
+
+                if (delimiterIdx == -1) {
+                    LOG.warn("skipping entry without projectID: " + entryName);
+                    continue;
+                }
+
+                String projectID = entryName.substring(0, delimiterIdx);
+
+                IProject project = idToProjectMapping.get(projectID);
+
+                if (project == null) {
+                    LOG.warn("skipping entry of unknown project " + projectID
+                        + ": " + entryName);
+                    continue;
+                }
+
+                IPath path = Path.fromPortableString(entryName
+                    .substring(delimiterIdx + delimiter.length()));
+
                 IFile file = project.getFile(path);
 
                 /*
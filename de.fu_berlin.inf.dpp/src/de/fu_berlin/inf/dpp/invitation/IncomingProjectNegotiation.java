@@ -3,7 +3,6 @@ package de.fu_berlin.inf.dpp.invitation;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -11,7 +10,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import org.apache.commons.io.IOUtils;
@@ -75,6 +73,12 @@ public class IncomingProjectNegotiation extends ProjectNegotiation {
 
     private List<ProjectExchangeInfo> projectInfos;
 
+    /**
+     * the version of the archive format the inviter sends the missing files
+     * in
+     */
+    private final int archiveFormat;
+
     @Inject
     private PreferenceUtils preferenceUtils;
 
@@ -104,12 +108,13 @@ public class IncomingProjectNegotiation extends ProjectNegotiation {
 
     public IncomingProjectNegotiation(ISarosSession sarosSession, JID peer,
         String processID, List<ProjectExchangeInfo> projectInfos,
-        ISarosContext sarosContext) {
+        int archiveFormat, ISarosContext sarosContext) {
         super(peer, sarosContext);
 
         this.sarosSession = sarosSession;
         this.processID = processID;
         this.projectInfos = projectInfos;
+        this.archiveFormat = archiveFormat;
         this.localProjects = new HashMap<String, IProject>();
         this.jid = peer;
     }
@@ -181,6 +186,12 @@ public class IncomingProjectNegotiation extends ProjectNegotiation {
         try {
             checkCancellation(CancelOption.NOTIFY_PEER);
 
+            if (archiveFormat != ARCHIVE_FORMAT_VERSION)
+                throw new LocalCancellationException(peer.getName()
+                    + " sends the project archive in a format this Saros"
+                    + " version cannot read, please make sure you both use the"
+                    + " same version of Saros", CancelOption.NOTIFY_PEER);
+
             if (wasAutobuilding) {
                 desc.setAutoBuilding(false);
                 ws.setDescription(desc);
@@ -199,8 +210,8 @@ public class IncomingProjectNegotiation extends ProjectNegotiation {
             transmitter
                 .sendToSessionUser(ISarosSession.SESSION_CONNECTION_ID, peer,
                     FileListExtension.PROVIDER.create(new FileListExtension(
-                        sessionID, processID, missingFiles
-                            .toArray(new FileList[0]))));
+                        sessionID, processID, ARCHIVE_FORMAT_VERSION,
+                        missingFiles.toArray(new FileList[0]))));
 
             awaitActivityQueueingActivation(this.monitor.newChild(0));
 
@@ -226,7 +237,7 @@ public class IncomingProjectNegotiation extends ProjectNegotiation {
 
             // Host/Inviter decided to transmit files with one big archive
             if (filesMissing)
-                acceptArchive(archiveTransferListener, localProjects.size(),
+                acceptArchive(archiveTransferListener,
                     this.monitor.newChild(80));
 
             // We are finished with the exchanging process. Add all projects
@@ -286,15 +297,12 @@ public class IncomingProjectNegotiation extends ProjectNegotiation {
     }
 
     /**
-     * The archive with all missing files sorted by project will be received and
-     * unpacked project by project.
-     * 
-     * @param projectCount
-     *            how many projects will be in the big archive
+     * The archive with all missing files will be received and unpacked. It is
+     * stored in a temporary file first, so the workspace is only locked while
+     * the files are written and not during the whole transfer.
      */
     private void acceptArchive(ArchiveTransferListener archiveTransferListener,
-        int projectCount, SubMonitor monitor) throws IOException,
-        SarosCancellationException {
+        SubMonitor monitor) throws IOException, SarosCancellationException {
 
         // waiting for the big archive to come in
 
@@ -308,61 +316,18 @@ public class IncomingProjectNegotiation extends ProjectNegotiation {
          * the remote side, because his negotiation is already finished !
          */
 
-        ZipInputStream zipInputStream = null;
-        ZipEntry zipEntry;
-
-        SubMonitor zipStreamLoopMonitor = monitor.newChild(50,
-            SubMonitor.SUPPRESS_NONE);
-
-        zipStreamLoopMonitor.beginTask(null, 100);
+        InputStream archiveStream = null;
 
         try {
+            archiveStream = new BufferedInputStream(new FileInputStream(
+                archiveFile));
 
-            zipInputStream = new ZipInputStream(new BufferedInputStream(
-                new FileInputStream(archiveFile)));
-
-            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
-                // Every zipEntry is (again) a ZipArchive, which contains all
-                // missing files for one project.
-                SubMonitor currentArchiveMonitor = zipStreamLoopMonitor
-                    .newChild(100 / projectCount, SubMonitor.SUPPRESS_NONE);
-                /*
-                 * For every entry (which is a zipArchive for a single project)
-                 * we have to find out which project it is meant for. So we need
-                 * the projectID.
-                 * 
-                 * The archive name contains the projectID.
-                 * 
-                 * archiveName = projectID + this.projectIDDelimiter +
-                 * randomNumber + '.zip'
-                 */
-                String projectID = zipEntry.getName().substring(0,
-                    zipEntry.getName().indexOf(this.projectIDDelimiter));
-
-                IProject project = localProjects.get(projectID);
-
-                /*
-                 * see FileUtils.writeArchive ... do not wrap the zip input
-                 * stream here
-                 */
-                writeArchive(new FilterInputStream(zipInputStream) {
-                    @Override
-                    public void close() throws IOException {
-                        // prevent the ZipInputStream from being closed
-                    }
-                }, project, currentArchiveMonitor);
-
-                zipInputStream.closeEntry();
-                currentArchiveMonitor.done();
-            }
-        } catch (OperationCanceledException e) {
-            throw new LocalCancellationException(null,
-                CancelOption.DO_NOT_NOTIFY_PEER);
+            writeArchive(archiveStream,
+                monitor.newChild(50, SubMonitor.SUPPRESS_NONE));
         } finally {
-            IOUtils.closeQuietly(zipInputStream);
+            IOUtils.closeQuietly(archiveStream);
 
-            if (archiveFile != null)
-                archiveFile.delete();
+            archiveFile.delete();
 
             monitor.done();
         }
@@ -712,11 +677,12 @@ public class IncomingProjectNegotiation extends ProjectNegotiation {
      * @see WorkspaceModifyOperation
      */
     private void writeArchive(final InputStream archiveStream,
-        final IProject project, final IProgressMonitor monitor)
-        throws LocalCancellationException, IOException {
+        final IProgressMonitor monitor) throws LocalCancellationException,
+        IOException {
 
         final DecompressTask decompressTask = new DecompressTask(
-            new ZipInputStream(archiveStream), project, monitor);
+            new ZipInputStream(archiveStream), localProjects,
+            projectIDDelimiter, monitor);
 
         long startTime = System.currentTimeMillis();
 
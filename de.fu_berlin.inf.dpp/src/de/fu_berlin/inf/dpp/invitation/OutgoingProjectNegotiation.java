@@ -5,13 +5,13 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.CancellationException;
 
 import org.apache.log4j.Logger;
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
@@ -93,8 +93,6 @@ public class OutgoingProjectNegotiation extends ProjectNegotiation {
         createCollectors();
         File zipArchive = null;
 
-        List<File> zipArchives = new ArrayList<File>();
-
         observeMonitor(monitor);
 
         Exception exception = null;
@@ -144,7 +142,7 @@ public class OutgoingProjectNegotiation extends ProjectNegotiation {
 
                 sarosSession.userStartedQueuing(user);
 
-                zipArchives = createProjectArchives(projectFilesToSend, monitor);
+                zipArchive = createProjectArchive(projectFilesToSend, monitor);
                 monitor.subTask("");
             } finally {
                 if (stoppedUsers != null)
@@ -153,25 +151,8 @@ public class OutgoingProjectNegotiation extends ProjectNegotiation {
 
             checkCancellation(CancelOption.NOTIFY_PEER);
 
-            if (zipArchives.size() > 0) {
-
-                // pack all archive files into one big archive
-                zipArchive = File.createTempFile("SarosSyncArchive", ".zip");
-                try {
-                    FileZipper.zipFiles(zipArchives, zipArchive, false,
-                        new ZipProgressMonitor(monitor, zipArchives.size(),
-                            false));
-
-                    monitor.subTask("");
-                    monitor.done();
-
-                } catch (OperationCanceledException e) {
-                    throw new LocalCancellationException();
-                }
-                zipArchives.add(zipArchive);
-
+            if (zipArchive != null)
                 sendArchive(zipArchive, peer, processID, monitor);
-            }
 
             User user = sarosSession.getUser(peer);
 
@@ -185,11 +166,10 @@ public class OutgoingProjectNegotiation extends ProjectNegotiation {
             exception = e;
         } finally {
 
-            for (File archive : zipArchives) {
-                if (!archive.delete())
-                    log.warn("could not archive file: "
-                        + archive.getAbsolutePath());
-            }
+            if (zipArchive != null && !zipArchive.delete())
+                log.warn("could not delete archive file: "
+                    + zipArchive.getAbsolutePath());
+
             deleteCollectors();
             monitor.done();
         }
@@ -224,7 +204,7 @@ public class OutgoingProjectNegotiation extends ProjectNegotiation {
          * the remote side
          */
         ProjectNegotiationOfferingExtension offering = new ProjectNegotiationOfferingExtension(
-            sessionID, projectExchangeInfos, processID);
+            sessionID, projectExchangeInfos, processID, ARCHIVE_FORMAT_VERSION);
         try {
             transmitter.sendToSessionUser(ISarosSession.SESSION_CONNECTION_ID,
                 peer,
@@ -261,13 +241,21 @@ public class OutgoingProjectNegotiation extends ProjectNegotiation {
                 + peer + " while waiting for the file list",
                 CancelOption.DO_NOT_NOTIFY_PEER);
 
-        List<FileList> remoteFileLists = FileListExtension.PROVIDER.getPayload(
-            packet).getFileLists();
+        FileListExtension fileListExtension = FileListExtension.PROVIDER
+            .getPayload(packet);
 
         log.debug(this + " : remote file list has been received");
 
         checkCancellation(CancelOption.NOTIFY_PEER);
 
+        if (fileListExtension.getArchiveFormat() != ARCHIVE_FORMAT_VERSION)
+            throw new LocalCancellationException(peer.getName()
+                + " cannot receive the project archive of this Saros version,"
+                + " please make sure you both use the same version of Saros",
+                CancelOption.NOTIFY_PEER);
+
+        List<FileList> remoteFileLists = fileListExtension.getFileLists();
+
         for (FileList fileList : remoteFileLists) {
             projectFilesToSend
                 .put(fileList.getProjectID(), fileList.getPaths());
@@ -350,20 +338,21 @@ public class OutgoingProjectNegotiation extends ProjectNegotiation {
     }
 
     /**
+     * Creates one archive containing the files of all projects. The entry names
+     * are the project relative paths prefixed with the projectID and the
+     * {@link #projectIDDelimiter}, so the archive can be unpacked in a single
+     * pass on the remote side.
      * 
      * @param projectFilesToSend
      *            projectID => List of {@link IPath files} that will be sent to
      *            peer
-     * @return List of project archives
+     * @return the archive or <code>null</code> if there are no files to send
      */
-    private List<File> createProjectArchives(
+    private File createProjectArchive(
         MappedList<String, IPath> projectFilesToSend, IProgressMonitor monitor)
         throws IOException, SarosCancellationException {
 
-        log.debug(this + " : creating archive(s)");
-
-        SubMonitor subMonitor = SubMonitor.convert(monitor,
-            "Creating project archives...", projectFilesToSend.keySet().size());
+        log.debug(this + " : creating archive");
 
         /*
          * Use editorManager.saveText() because the EditorAPI.saveProject() will
@@ -381,52 +370,47 @@ public class OutgoingProjectNegotiation extends ProjectNegotiation {
 
         checkCancellation(CancelOption.NOTIFY_PEER);
 
-        List<File> archivesToSend = new LinkedList<File>();
+        Map<String, List<IFile>> filesToCompress = new HashMap<String, List<IFile>>();
+
+        int fileCount = 0;
 
         for (Map.Entry<String, List<IPath>> entry : projectFilesToSend
             .entrySet()) {
 
             String projectID = entry.getKey();
-            List<IPath> filesToCompress = entry.getValue();
-
-            File projectArchive = createProjectArchive(subMonitor.newChild(1),
-                filesToCompress, projectID);
+            List<IPath> paths = entry.getValue();
 
-            if (projectArchive != null)
-                archivesToSend.add(projectArchive);
+            if (paths.isEmpty())
+                continue;
 
-        }
-
-        subMonitor.done();
+            IProject project = sarosSession.getProject(projectID);
+            /*
+             * TODO: Ask the user whether to save the resources, but only if
+             * they have changed. How to ask Eclipse whether there are resource
+             * changes? if (outInvitationUI.confirmProjectSave(peer))
+             * getOpenEditors => filter per Project => if dirty ask to save
+             */
+            EditorAPI.saveProject(project, false);
 
-        return archivesToSend;
-    }
+            List<IFile> files = new ArrayList<IFile>(paths.size());
 
-    private File createProjectArchive(IProgressMonitor monitor,
-        List<IPath> toSend, String projectID) throws IOException,
-        SarosCancellationException {
+            for (IPath path : paths)
+                files.add(project.getFile(path));
 
-        IProject project = sarosSession.getProject(projectID);
-        /*
-         * TODO: Ask the user whether to save the resources, but only if they
-         * have changed. How to ask Eclipse whether there are resource changes?
-         * if (outInvitationUI.confirmProjectSave(peer)) getOpenEditors =>
-         * filter per Project => if dirty ask to save
-         */
-        EditorAPI.saveProject(project, false);
+            filesToCompress.put(projectID + projectIDDelimiter, files);
+            fileCount += files.size();
+        }
 
-        String prefix = projectID + projectIDDelimiter;
+        if (fileCount == 0) {
+            monitor.done();
+            return null;
+        }
 
-        File tempArchive = null;
+        File tempArchive = File.createTempFile("SarosSyncArchive", ".zip");
 
         try {
-            if (toSend.size() > 0) {
-                tempArchive = File.createTempFile(prefix, ".zip");
-
-                FileZipper.createProjectZipArchive(project, toSend,
-                    tempArchive, new ZipProgressMonitor(monitor, toSend.size(),
-                        true));
-            }
+            FileZipper.createProjectZipArchive(filesToCompress, tempArchive,
+                new ZipProgressMonitor(monitor, fileCount, true));
         } catch (OperationCanceledException e) {
             throw new LocalCancellationException();
         }
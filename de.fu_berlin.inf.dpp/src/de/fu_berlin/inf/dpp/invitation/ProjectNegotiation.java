@@ -69,16 +69,23 @@ public abstract class ProjectNegotiation extends CancelableProcess {
     protected FileTransferManager fileTransferManager;
 
     /**
-     * While sending all the projects with a big archive containing the project
-     * archives, we create a temp-File. This file is named "projectID" +
-     * projectIDDelimiter + "a random number chosen by 'Java'" + ".zip" This
-     * delimiter is the string that separates projectID and this random number.
-     * Now we can assign the zip archive to the matching project.
+     * All projects are sent in one archive. The name of every entry in this
+     * archive is "projectID" + projectIDDelimiter + "project relative path".
+     * This delimiter is the string that separates the projectID and the path,
+     * so every entry can be assigned to the matching project.
      * 
      * WARNING: If changed compatibility is broken
      */
     protected final String projectIDDelimiter = "&&&&";
 
+    /**
+     * The version of the archive layout described above. Both sides announce
+     * the version they use during the negotiation, which is canceled if the
+     * versions differ. Versions that do not announce it use <code>0</code>,
+     * which stands for the former layout of one nested archive per project.
+     */
+    protected static final int ARCHIVE_FORMAT_VERSION = 1;
+
     @Inject
     protected ISarosSessionManager sessionManager;
 
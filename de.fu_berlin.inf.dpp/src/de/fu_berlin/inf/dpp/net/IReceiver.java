@@ -53,8 +53,26 @@ public interface IReceiver {
     public SarosPacketCollector createCollector(PacketFilter filter);
 
     /**
-     * Transforms a transfer object back into a packet and dispatches the given
-     * packet to all registered packet listeners.
+     * Adds the given listener to the list of listeners notified when a new
+     * transfer object arrives.
+     * 
+     * @param listener
+     *            the listener to pass transfer objects to
+     */
+    public void addTransferObjectListener(ITransferObjectListener listener);
+
+    /**
+     * Removes the given listener from the list of transfer object listeners.
+     * 
+     * @param listener
+     *            the listener to remove
+     */
+    public void removeTransferObjectListener(ITransferObjectListener listener);
+
+    /**
+     * Dispatches the given transfer object to all registered transfer object
+     * listeners. If none of them processed it, it is transformed back into a
+     * packet and dispatched to all registered packet listeners.
      * 
      * @param transferObject
      *            the transfer object to dispatch
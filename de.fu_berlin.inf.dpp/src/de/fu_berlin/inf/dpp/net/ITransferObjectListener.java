@@ -0,0 +1,19 @@
+package de.fu_berlin.inf.dpp.net;
+
+/**
+ * Listener for incoming {@linkplain IncomingTransferObject transfer objects}
+ * that should be processed as they are instead of being converted back into a
+ * packet first.
+ */
+public interface ITransferObjectListener {
+
+    /**
+     * Called for every incoming transfer object before it is converted into a
+     * packet.
+     * 
+     * @return <code>true</code> if the transfer object was processed by this
+     *         listener and must not be dispatched as packet,
+     *         <code>false</code> otherwise
+     */
+    public boolean processTransferObject(IncomingTransferObject transferObject);
+}
@@ -25,7 +25,7 @@ public class SarosPacketCollector implements PacketListener {
 
     private static final Logger log = Logger
         .getLogger(SarosPacketCollector.class);
-    private boolean hasReveived = false;
+    private volatile boolean hasReveived = false;
 
     /**
      * Max number of packets that any one collector can hold. After the max is
@@ -38,7 +38,7 @@ public class SarosPacketCollector implements PacketListener {
         MAX_PACKETS);
     private CancelHook cancelHook;
     /** Once canceled is true, it can never become false again. */
-    private boolean canceled = false;
+    private volatile boolean canceled = false;
 
     /**
      * Creates a new packet collector. If the packet filter is <tt>null</tt>,
@@ -116,9 +116,8 @@ public class SarosPacketCollector implements PacketListener {
      * 
      * @param packet
      *            the packet to process
-     * @singleThreaded should only be accessed by the single threaded executer
-     *                 of
-     *                 {@link de.fu_berlin.inf.dpp.net.business.DispatchThreadContext}
+     * @sarosThread may be called concurrently by the threads of
+     *              {@link de.fu_berlin.inf.dpp.net.business.DispatchThreadContext}
      * 
      */
     @Override
@@ -1,19 +1,28 @@
 package de.fu_berlin.inf.dpp.net.business;
 
+import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.picocontainer.Disposable;
 
 import de.fu_berlin.inf.dpp.annotations.Component;
+import de.fu_berlin.inf.dpp.util.KeyedSerialExecutor;
+import de.fu_berlin.inf.dpp.util.KeyedSerialExecutor.Statistic;
 import de.fu_berlin.inf.dpp.util.NamedThreadFactory;
 import de.fu_berlin.inf.dpp.util.Utils;
 
 /**
- * The ExecutorService under which all incoming activityDataObjects should be
+ * The context under which all incoming activityDataObjects should be
  * executed.
  * 
+ * Runnables are dispatched by a key, e.g. the sender of a packet.
+ * Runnables with the same key are executed one after another in the order
+ * they were dispatched, runnables with different keys are executed in
+ * parallel by a pool of {@link #DISPATCH_THREADS} threads.
  */
 @Component(module = "core")
 public class DispatchThreadContext implements Disposable {
@@ -21,9 +30,24 @@ public class DispatchThreadContext implements Disposable {
     private static final Logger log = Logger
         .getLogger(DispatchThreadContext.class);
 
-    protected ExecutorService dispatch = Executors
-        .newSingleThreadExecutor(new NamedThreadFactory("DispatchContext",
-            false));
+    /**
+     * Number of threads executing runnables of different keys in parallel
+     */
+    private static final int DISPATCH_THREADS = Integer.getInteger(
+        "de.fu_berlin.inf.dpp.net.business.DISPATCH_THREADS", 4);
+
+    /**
+     * Key of runnables dispatched without a key
+     */
+    private static final Object DEFAULT_KEY = "default";
+
+    protected ExecutorService dispatch = new ThreadPoolExecutor(Math.max(1,
+        DISPATCH_THREADS), Math.max(1, DISPATCH_THREADS), 0L,
+        TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+        new NamedThreadFactory("DispatchContext-"));
+
+    protected KeyedSerialExecutor keyedDispatch = new KeyedSerialExecutor(
+        dispatch);
 
     /**
      * Execute the given runnable as if it was received via the network
@@ -34,16 +58,35 @@ public class DispatchThreadContext implements Disposable {
      * JupiterServer.
      */
     public void executeAsDispatch(Runnable runnable) {
-        dispatch.submit(Utils.wrapSafe(log, runnable));
+        executeAsDispatch(DEFAULT_KEY, runnable);
     }
 
-    public ExecutorService getDispatchExecutor() {
-        return dispatch;
+    /**
+     * Execute the given runnable after all runnables dispatched with the same
+     * key have been executed.
+     * 
+     * @param key
+     *            the key to order the runnable by, e.g. the sender of a
+     *            packet
+     */
+    public void executeAsDispatch(Object key, Runnable runnable) {
+        keyedDispatch.execute(key, Utils.wrapSafe(log, runnable));
+    }
+
+    /**
+     * @return the queue depth and service time for every key used so far
+     */
+    public List<Statistic> getStatistics() {
+        return keyedDispatch.getStatistics();
     }
 
     @Override
     public void dispose() {
         dispatch.shutdownNow();
+
+        if (log.isDebugEnabled())
+            for (Statistic statistic : getStatistics())
+                log.debug("dispatch statistic: " + statistic);
     }
 
     @Override
@@ -143,7 +143,7 @@ public class InvitationHandler {
                     + " and negotiation id: " + negotiationID);
 
                 sessionManager.incomingProjectReceived(fromJID, projectInfos,
-                    negotiationID);
+                    negotiationID, projectNegotiation.getArchiveFormat());
 
             }
 
@@ -84,7 +84,11 @@ public class LeaveAndKickHandler {
         this.sessionManager.addSarosSessionListener(sessionListener);
     }
 
-    private void kickReceived(JID from) {
+    /*
+     * Packets of different users are dispatched in parallel, so leave and kick
+     * messages are handled one after another by synchronizing on this handler.
+     */
+    private synchronized void kickReceived(JID from) {
         final ISarosSession sarosSession = sessionManager.getSarosSession();
 
         if (sarosSession == null)
@@ -102,7 +106,7 @@ public class LeaveAndKickHandler {
                 + " removed you from the current session.");
     }
 
-    private void leaveReceived(JID from) {
+    private synchronized void leaveReceived(JID from) {
 
         final ISarosSession sarosSession = sessionManager.getSarosSession();
 
@@ -124,8 +128,9 @@ public class LeaveAndKickHandler {
          * occur when two users leave a the "same" time
          * 
          * srossbach: it is not possible that multiple users can leave at the
-         * same time because this code is executed by the dispatch thread
-         * context which executes all incoming packets sequentially
+         * same time because leave messages are handled while holding the lock
+         * of this handler, and the leave message of a user is dispatched
+         * after all packets that user sent before
          */
         if (user.isHost()) {
             stopSession(sarosSession, "Closing the session",
@@ -2,7 +2,6 @@ package de.fu_berlin.inf.dpp.net.internal;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
@@ -10,6 +9,7 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.ProtocolException;
 import java.net.SocketException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -54,6 +54,12 @@ public class BinaryChannelConnection implements IByteStreamConnection {
      */
     private static final int CHUNKSIZE = 32 * 1024 - 1;
 
+    /**
+     * Max size of the buffer that is allocated in advance for a fragmented
+     * payload, larger payloads will grow the buffer while receiving
+     */
+    private static final int MAX_PREALLOCATED_PAYLOAD_SIZE = 4 * 1024 * 1024;
+
     private IByteStreamConnectionListener listener;
     private ReceiverThread receiveThread;
 
@@ -66,7 +72,7 @@ public class BinaryChannelConnection implements IByteStreamConnection {
     private boolean connected;
     private boolean initialized;
 
-    private Map<Integer, ByteArrayOutputStream> pendingFragmentedPackets = new HashMap<Integer, ByteArrayOutputStream>();
+    private Map<Integer, PayloadBuffer> pendingFragmentedPackets = new HashMap<Integer, PayloadBuffer>();
     private Map<Integer, BinaryChannelTransferObject> pendingTransferObjects = new HashMap<Integer, BinaryChannelTransferObject>();
 
     private DataInputStream inputStream;
@@ -79,6 +85,50 @@ public class BinaryChannelConnection implements IByteStreamConnection {
      */
     private NetTransferMode transferMode;
 
+    /**
+     * Buffer the chunks of a fragmented payload are read into. As the sender
+     * splits the payload into chunks of {@link #CHUNKSIZE} the size of the
+     * payload is known in advance up to the length of the last chunk, so the
+     * chunks can be read directly into the final array without intermediate
+     * copies.
+     */
+    private static class PayloadBuffer {
+        private final int chunks;
+        private byte[] data;
+        private int length;
+
+        private PayloadBuffer(int chunks) {
+            this.chunks = chunks;
+        }
+
+        private void readChunk(DataInputStream in, int chunkLength)
+            throws IOException {
+
+            if (data == null) {
+                long expectedSize = chunks <= 1 ? chunkLength : (long) chunks
+                    * CHUNKSIZE;
+
+                data = new byte[(int) Math.min(expectedSize,
+                    Math.max(chunkLength, MAX_PREALLOCATED_PAYLOAD_SIZE))];
+            }
+
+            if (data.length - length < chunkLength)
+                data = Arrays.copyOf(data,
+                    Math.max(data.length * 2, length + chunkLength));
+
+            in.readFully(data, length, chunkLength);
+            length += chunkLength;
+        }
+
+        /**
+         * Returns the received payload. The internal array is returned as is if
+         * it was completely filled.
+         */
+        private byte[] getPayload() {
+            return length == data.length ? data : Arrays.copyOf(data, length);
+        }
+    }
+
     private class ReceiverThread extends Thread {
 
         @Override
@@ -273,6 +323,9 @@ public class BinaryChannelConnection implements IByteStreamConnection {
                 if (oldTransferObject != null)
                     throw new IOException(
                         "replaced an transfer object that is still transmitted");
+
+                pendingFragmentedPackets.put(fragmentId, new PayloadBuffer(
+                    chunks));
                 break;
 
             case Opcode.DATA:
@@ -284,19 +337,15 @@ public class BinaryChannelConnection implements IByteStreamConnection {
                         "payload length field contains corrupted value: 0 < "
                             + payloadLength + " <= " + CHUNKSIZE);
 
-                byte[] payload = new byte[payloadLength];
-                inputStream.readFully(payload);
-
-                ByteArrayOutputStream out = pendingFragmentedPackets
+                PayloadBuffer buffer = pendingFragmentedPackets
                     .get(fragmentId);
 
-                if (out == null) {
-                    out = new ByteArrayOutputStream(payloadLength * 2);
-                    pendingFragmentedPackets.put(fragmentId, out);
-                }
+                if (buffer == null)
+                    throw new ProtocolException(
+                        "received data for an unknown transfer object: "
+                            + fragmentId);
 
-                out.write(payload);
-                out.flush();
+                buffer.readChunk(inputStream, payloadLength);
 
                 if (!pendingTransferObjects.get(fragmentId).isLastChunk())
                     break;
@@ -306,8 +355,7 @@ public class BinaryChannelConnection implements IByteStreamConnection {
                 BinaryChannelTransferObject fullyReceivedTransferObject = pendingTransferObjects
                     .remove(fragmentId);
 
-                payload = out.toByteArray();
-                out = null; // help GC
+                byte[] payload = buffer.getPayload();
 
                 fullyReceivedTransferObject.setPayload(payload.length, payload);
 
@@ -0,0 +1,91 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import java.util.zip.Deflater;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Decides whether the data of a stream is worth to be compressed. Every
+ * {@link #SAMPLE_INTERVAL}th packet a sample of at most {@link #SAMPLE_SIZE}
+ * bytes is compressed with the fastest compression level. If the sample does
+ * not shrink below {@link #THRESHOLD} percent of its size the following
+ * packets are sent uncompressed until the next sample is taken.
+ * 
+ * This class is not thread safe.
+ */
+class CompressionSampler {
+
+    private static final Logger log = Logger
+        .getLogger(CompressionSampler.class);
+
+    /**
+     * Number of packets after which the compressibility is measured again.
+     */
+    static final int SAMPLE_INTERVAL = Integer.getInteger(
+        "de.fu_berlin.inf.dpp.net.stream.COMPRESSION_SAMPLE_INTERVAL", 16);
+
+    /**
+     * Compressed size of a sample in percent of its original size at which the
+     * data is considered to be incompressible.
+     */
+    static final int THRESHOLD = Integer.getInteger(
+        "de.fu_berlin.inf.dpp.net.stream.COMPRESSION_THRESHOLD", 90);
+
+    static final int SAMPLE_SIZE = 4 * 1024;
+
+    /**
+     * Samples smaller than this are not measured, the zlib header would
+     * dominate the result.
+     */
+    private static final int MINIMUM_SAMPLE_SIZE = 64;
+
+    private final byte[] buffer = new byte[SAMPLE_SIZE + 64];
+
+    private int packets = 0;
+
+    private boolean compress = true;
+
+    /**
+     * @param data
+     *            the data of the next packet
+     * @return <code>true</code> if the packet should be compressed
+     */
+    public boolean shouldCompress(byte[] data) {
+        if (packets++ % SAMPLE_INTERVAL != 0)
+            return compress;
+
+        int length = Math.min(data.length, SAMPLE_SIZE);
+
+        if (length < MINIMUM_SAMPLE_SIZE)
+            return compress;
+
+        boolean compressible = getCompressedSize(data, length) * 100 < length
+            * THRESHOLD;
+
+        if (compressible != compress && log.isTraceEnabled())
+            log.trace("data is " + (compressible ? "" : "not ")
+                + "compressible, compression is turned "
+                + (compressible ? "on" : "off"));
+
+        compress = compressible;
+        return compress;
+    }
+
+    private int getCompressedSize(byte[] data, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+
+            int size = 0;
+
+            while (!deflater.finished() && size < length)
+                size += deflater.deflate(buffer);
+
+            return size;
+        } finally {
+            deflater.end();
+        }
+    }
+}
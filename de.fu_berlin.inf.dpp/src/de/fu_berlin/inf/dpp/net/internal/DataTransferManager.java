@@ -52,6 +52,8 @@ public class DataTransferManager implements IConnectionListener {
 
     private final TransferModeDispatch transferModeDispatch = new TransferModeDispatch();
 
+    private final PayloadCompressor compressor = new PayloadCompressor();
+
     private CopyOnWriteArrayList<IPacketInterceptor> packetInterceptors = new CopyOnWriteArrayList<IPacketInterceptor>();
 
     private volatile JID currentLocalJID;
@@ -116,7 +118,8 @@ public class DataTransferManager implements IConnectionListener {
                 long compressedPayloadLenght = payload.length;
 
                 try {
-                    payload = Utils.inflate(payload, null);
+                    payload = compressor.inflate(payload,
+                        description.getSize());
                 } catch (IOException e) {
                     log.error("could not decompress transfer object payload", e);
                     return;
@@ -269,8 +272,11 @@ public class DataTransferManager implements IConnectionListener {
 
             long sizeUncompressed = payload.length;
 
-            if (transferData.compressContent())
-                payload = Utils.deflate(payload, null);
+            if (transferData.compressContent()) {
+                // allows the receiver to allocate the exact buffer size
+                transferData.setSize(sizeUncompressed);
+                payload = compressor.deflate(payload);
+            }
 
             long transferStartTime = System.currentTimeMillis();
             connection.send(transferData, payload);
@@ -535,6 +541,7 @@ public class DataTransferManager implements IConnectionListener {
 
         connections.clear();
         transferModeDispatch.clear();
+        compressor.dispose();
 
         connection = null;
     }
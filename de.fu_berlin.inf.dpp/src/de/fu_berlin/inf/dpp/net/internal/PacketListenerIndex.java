@@ -0,0 +1,153 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.jivesoftware.smack.PacketListener;
+import org.jivesoftware.smack.filter.PacketFilter;
+import org.jivesoftware.smack.packet.Packet;
+import org.jivesoftware.smack.packet.PacketExtension;
+
+import de.fu_berlin.inf.dpp.net.internal.extensions.IndexedPacketFilter;
+import de.fu_berlin.inf.dpp.net.internal.extensions.SarosSessionPacketExtension;
+import de.fu_berlin.inf.dpp.net.internal.extensions.XStreamExtensionProvider.XStreamIQPacket;
+import de.fu_berlin.inf.dpp.net.internal.extensions.XStreamExtensionProvider.XStreamPacketExtension;
+
+/**
+ * Immutable snapshot of packet listeners and their filters.
+ * 
+ * Listeners with an {@link IndexedPacketFilter} are indexed by the element
+ * name, namespace and session ID of their filter, so only the listeners that
+ * may accept a packet have to be asked. Listeners with any other or no filter
+ * are offered every packet.
+ */
+class PacketListenerIndex {
+
+    static final PacketListenerIndex EMPTY = new PacketListenerIndex(
+        Collections.<PacketListener, PacketFilter> emptyMap());
+
+    /**
+     * A listener together with its filter.
+     */
+    static class Route {
+
+        private final PacketListener listener;
+
+        private final PacketFilter filter;
+
+        private Route(PacketListener listener, PacketFilter filter) {
+            this.listener = listener;
+            this.filter = filter;
+        }
+
+        /**
+         * Passes the packet to the listener if the filter accepts it.
+         */
+        void forward(Packet packet) {
+            if (filter == null || filter.accept(packet))
+                listener.processPacket(packet);
+        }
+    }
+
+    private final Map<String, List<Route>> indexedRoutes = new HashMap<String, List<Route>>();
+
+    private final List<Route> unindexedRoutes = new ArrayList<Route>();
+
+    PacketListenerIndex(Map<PacketListener, PacketFilter> listeners) {
+        for (Entry<PacketListener, PacketFilter> entry : listeners.entrySet()) {
+            PacketFilter filter = entry.getValue();
+            Route route = new Route(entry.getKey(), filter);
+
+            if (!(filter instanceof IndexedPacketFilter)) {
+                unindexedRoutes.add(route);
+                continue;
+            }
+
+            IndexedPacketFilter indexedFilter = (IndexedPacketFilter) filter;
+
+            String key = getKey(indexedFilter.getElementName(),
+                indexedFilter.getNamespace(), indexedFilter.getSessionID());
+
+            List<Route> routes = indexedRoutes.get(key);
+
+            if (routes == null) {
+                routes = new ArrayList<Route>();
+                indexedRoutes.put(key, routes);
+            }
+
+            routes.add(route);
+        }
+    }
+
+    /**
+     * Returns the routes of all listeners whose filter may accept the given
+     * packet.
+     */
+    Collection<Route> getRoutes(Packet packet) {
+        List<PacketExtension> extensions = new ArrayList<PacketExtension>(
+            packet.getExtensions());
+
+        if (packet instanceof XStreamIQPacket<?>)
+            extensions.add(((XStreamIQPacket<?>) packet).getChild());
+
+        if (extensions.isEmpty() || indexedRoutes.isEmpty())
+            return unindexedRoutes;
+
+        Set<Route> routes = new LinkedHashSet<Route>(unindexedRoutes);
+
+        for (PacketExtension extension : extensions) {
+            String elementName = extension.getElementName();
+            String namespace = extension.getNamespace();
+
+            if (elementName == null || namespace == null)
+                continue;
+
+            addRoutes(routes, getKey(elementName, namespace, null));
+
+            String sessionID = getSessionID(extension);
+
+            if (sessionID != null)
+                addRoutes(routes, getKey(elementName, namespace, sessionID));
+        }
+
+        return routes;
+    }
+
+    private void addRoutes(Set<Route> routes, String key) {
+        List<Route> indexed = indexedRoutes.get(key);
+
+        if (indexed != null)
+            routes.addAll(indexed);
+    }
+
+    private static String getSessionID(PacketExtension extension) {
+        if (!(extension instanceof XStreamPacketExtension<?>))
+            return null;
+
+        Object payload = ((XStreamPacketExtension<?>) extension).getPayload();
+
+        if (!(payload instanceof SarosSessionPacketExtension))
+            return null;
+
+        return ((SarosSessionPacketExtension) payload).getSessionID();
+    }
+
+    private static String getKey(String elementName, String namespace,
+        String sessionID) {
+
+        StringBuilder key = new StringBuilder(elementName).append(' ').append(
+            namespace);
+
+        if (sessionID != null)
+            key.append(' ').append(sessionID);
+
+        return key.toString();
+    }
+}
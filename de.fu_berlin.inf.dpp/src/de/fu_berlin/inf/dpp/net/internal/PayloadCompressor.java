@@ -0,0 +1,191 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses and decompresses the payload of transfer objects.
+ * 
+ * <p>
+ * Creating a {@link Deflater} or {@link Inflater} allocates native zlib
+ * memory that is only released by calling <code>end()</code> or when the
+ * object is finalized. As a payload is compressed for every packet this class
+ * keeps a bounded pool of reusable instances and work buffers instead of
+ * creating new ones for every call.
+ * </p>
+ * 
+ * <p>
+ * Every payload is still compressed as an independent zlib stream so the
+ * result is compatible with {@link de.fu_berlin.inf.dpp.util.Utils#inflate}.
+ * </p>
+ * 
+ * This class is thread safe.
+ */
+class PayloadCompressor {
+
+    private static final int POOL_SIZE = Integer.getInteger(
+        "de.fu_berlin.inf.dpp.net.compressor.POOL_SIZE", 4);
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    /** buffers that exceed this size are not returned to the pool */
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * size hints above this value are not trusted, the buffer is grown while
+     * inflating instead
+     */
+    private static final int MAX_SIZE_HINT = Integer.getInteger(
+        "de.fu_berlin.inf.dpp.net.compressor.MAX_SIZE_HINT", 8 * 1024 * 1024);
+
+    /** the maximum expansion of deflated data */
+    private static final int MAX_COMPRESSION_RATIO = 1032;
+
+    private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<Deflater>(
+        POOL_SIZE);
+
+    private final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<Inflater>(
+        POOL_SIZE);
+
+    private final BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(
+        POOL_SIZE * 2);
+
+    /**
+     * Compresses the given data.
+     * 
+     * @param data
+     *            the data to compress
+     * @return the compressed data
+     */
+    public byte[] deflate(byte[] data) {
+        Deflater deflater = deflaters.poll();
+
+        if (deflater == null)
+            deflater = new Deflater(Deflater.DEFLATED);
+
+        byte[] buffer = acquireBuffer(data.length + (data.length >> 8) + 64);
+
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            int length = 0;
+
+            while (!deflater.finished()) {
+                if (length == buffer.length)
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+
+                length += deflater.deflate(buffer, length, buffer.length
+                    - length);
+            }
+
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            releaseBuffer(buffer);
+            deflater.reset();
+
+            if (!deflaters.offer(deflater))
+                deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses the given data.
+     * 
+     * @param data
+     *            the data to decompress
+     * @param sizeHint
+     *            the expected size of the decompressed data or a value equal or
+     *            less than zero if the size is not known; the hint is only
+     *            used for the initial buffer if it is plausible for the given
+     *            data and does not exceed {@link #MAX_SIZE_HINT}
+     * @return the decompressed data
+     * @throws IOException
+     *             if the data is not in the zlib format or is truncated
+     */
+    public byte[] inflate(byte[] data, long sizeHint) throws IOException {
+        Inflater inflater = inflaters.poll();
+
+        if (inflater == null)
+            inflater = new Inflater();
+
+        long maximumSize = Math.min(MAX_SIZE_HINT, (long) data.length
+            * MAX_COMPRESSION_RATIO);
+
+        boolean exactSize = sizeHint > 0 && sizeHint <= maximumSize;
+
+        byte[] buffer = exactSize ? new byte[(int) sizeHint]
+            : acquireBuffer(data.length * 4);
+
+        try {
+            inflater.setInput(data);
+
+            int length = 0;
+
+            while (!inflater.finished()) {
+                if (length == buffer.length)
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+
+                int count = inflater.inflate(buffer, length, buffer.length
+                    - length);
+
+                length += count;
+
+                if (count == 0 && !inflater.finished()
+                    && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IOException("compressed data is truncated");
+            }
+
+            if (exactSize && length == buffer.length)
+                return buffer;
+
+            return Arrays.copyOf(buffer, length);
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            if (!exactSize)
+                releaseBuffer(buffer);
+
+            inflater.reset();
+
+            if (!inflaters.offer(inflater))
+                inflater.end();
+        }
+    }
+
+    /**
+     * Releases all pooled native resources. The compressor can still be used
+     * afterwards.
+     */
+    public void dispose() {
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null)
+            deflater.end();
+
+        Inflater inflater;
+        while ((inflater = inflaters.poll()) != null)
+            inflater.end();
+
+        buffers.clear();
+    }
+
+    private byte[] acquireBuffer(int minimumSize) {
+        byte[] buffer = buffers.poll();
+
+        if (buffer == null || buffer.length < minimumSize)
+            buffer = new byte[Math.min(Math.max(minimumSize, BUFFER_SIZE),
+                MAX_POOLED_BUFFER_SIZE)];
+
+        return buffer;
+    }
+
+    private void releaseBuffer(byte[] buffer) {
+        if (buffer.length <= MAX_POOLED_BUFFER_SIZE)
+            buffers.offer(buffer);
+    }
+}
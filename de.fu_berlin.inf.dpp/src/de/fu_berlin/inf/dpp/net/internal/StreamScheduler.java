@@ -0,0 +1,306 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Schedules outgoing items of several flows with a deficit round robin. Every
+ * flow has its own queue and a weight. Each time a flow gets its turn it may
+ * send {@link #QUANTUM} <code>* weight</code> bytes before the next flow is
+ * served, so a flow with a large backlog can not delay the items of other
+ * flows for longer than one quantum.
+ * </p>
+ * <p>
+ * The size of an item is usually only known after it was taken from the
+ * queue, so it has to be reported afterwards with {@link #charge(Object, int)}.
+ * A flow that exceeds its deficit has to wait for as many rounds as are needed
+ * to compensate it.
+ * </p>
+ * <p>
+ * The depth of every queue and the time items spent in it are recorded per
+ * flow and can be retrieved with {@link #getStatistics()}.
+ * </p>
+ * 
+ * This class is thread safe.
+ * 
+ * @param <K>
+ *            the type of the keys identifying the flows
+ * @param <E>
+ *            the type of the scheduled items
+ */
+class StreamScheduler<K, E> {
+
+    private static final Logger log = Logger.getLogger(StreamScheduler.class);
+
+    /**
+     * Number of bytes a flow with a weight of one may send per round.
+     */
+    static final int QUANTUM = Integer.getInteger(
+        "de.fu_berlin.inf.dpp.net.stream.QUANTUM", 8 * 1024);
+
+    /**
+     * Queue depth of a single flow at which a warning is logged.
+     */
+    static final int QUEUE_WARNING_SIZE = Integer.getInteger(
+        "de.fu_berlin.inf.dpp.net.stream.QUEUE_WARNING_SIZE", 1000);
+
+    /**
+     * Snapshot of the statistics of a flow.
+     */
+    static class FlowStatistics {
+        final Object key;
+        final int weight;
+        final int queueDepth;
+        final int maximumQueueDepth;
+        final long items;
+        final long bytes;
+        final long averageLatency;
+        final long maximumLatency;
+
+        private FlowStatistics(Flow<?> flow) {
+            this.key = flow.key;
+            this.weight = flow.weight;
+            this.queueDepth = flow.queue.size();
+            this.maximumQueueDepth = flow.maximumQueueDepth;
+            this.items = flow.items;
+            this.bytes = flow.bytes;
+            this.averageLatency = flow.items == 0 ? 0 : flow.totalLatency
+                / flow.items;
+            this.maximumLatency = flow.maximumLatency;
+        }
+
+        /**
+         * @return a description containing queue depths and latencies in
+         *         milliseconds
+         */
+        @Override
+        public String toString() {
+            return key + " [weight=" + weight + ", depth=" + queueDepth
+                + ", max depth=" + maximumQueueDepth + ", items=" + items
+                + ", bytes=" + bytes + ", avg latency=" + averageLatency
+                / 1000000 + " ms, max latency=" + maximumLatency / 1000000
+                + " ms]";
+        }
+    }
+
+    private static class Flow<E> {
+        private final Object key;
+        private final int weight;
+        private final ArrayDeque<QueuedItem<E>> queue = new ArrayDeque<QueuedItem<E>>();
+
+        private long deficit;
+        private boolean active;
+        private boolean inTurn;
+
+        private int maximumQueueDepth;
+        private long items;
+        private long bytes;
+        private long totalLatency;
+        private long maximumLatency;
+
+        private Flow(Object key, int weight) {
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+
+    private static class QueuedItem<E> {
+        private final E item;
+        private final long enqueueTime;
+
+        private QueuedItem(E item, long enqueueTime) {
+            this.item = item;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+
+    private final Map<K, Flow<E>> flows = new HashMap<K, Flow<E>>();
+
+    /**
+     * Flows that will be closed forever, no items are accepted for them
+     * anymore
+     */
+    private final Set<K> closedFlows = new HashSet<K>();
+
+    /**
+     * Flows with queued items in round robin order, the first one is the
+     * flow which currently has its turn. Removed flows are skipped lazily.
+     */
+    private final ArrayDeque<Flow<E>> activeFlows = new ArrayDeque<Flow<E>>();
+
+    /**
+     * Queues an item for the given flow. The flow is created with the given
+     * weight if it does not exist yet.
+     * 
+     * @param key
+     *            the flow of the item
+     * @param weight
+     *            the weight of the flow, values less than one are treated as
+     *            one
+     * @param item
+     *            the item to queue
+     * @return <code>false</code> if the flow was already closed and the item
+     *         was discarded, <code>true</code> otherwise
+     */
+    public synchronized boolean add(K key, int weight, E item) {
+        if (closedFlows.contains(key))
+            return false;
+
+        Flow<E> flow = flows.get(key);
+
+        if (flow == null) {
+            flow = new Flow<E>(key, Math.max(1, weight));
+            flows.put(key, flow);
+        }
+
+        flow.queue.add(new QueuedItem<E>(item, System.nanoTime()));
+
+        int depth = flow.queue.size();
+
+        if (depth > flow.maximumQueueDepth) {
+            flow.maximumQueueDepth = depth;
+
+            if (depth == QUEUE_WARNING_SIZE)
+                log.warn("outgoing queue of " + key + " contains " + depth
+                    + " items, the service produces more data than can be sent");
+        }
+
+        if (!flow.active) {
+            flow.active = true;
+            activeFlows.add(flow);
+            notifyAll();
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes the next item that should be sent, waiting if necessary until
+     * one is available.
+     * 
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public synchronized E take() throws InterruptedException {
+        while (true) {
+            while (activeFlows.isEmpty())
+                wait();
+
+            Flow<E> flow = activeFlows.peek();
+
+            if (flow.queue.isEmpty()) {
+                activeFlows.poll();
+                flow.active = false;
+                flow.inTurn = false;
+                flow.deficit = 0;
+                continue;
+            }
+
+            if (!flow.inTurn) {
+                flow.inTurn = true;
+                flow.deficit += (long) QUANTUM * flow.weight;
+            }
+
+            if (flow.deficit <= 0) {
+                flow.inTurn = false;
+                activeFlows.add(activeFlows.poll());
+                continue;
+            }
+
+            QueuedItem<E> queuedItem = flow.queue.poll();
+
+            long latency = System.nanoTime() - queuedItem.enqueueTime;
+
+            flow.items++;
+            flow.totalLatency += latency;
+            flow.maximumLatency = Math.max(flow.maximumLatency, latency);
+
+            return queuedItem.item;
+        }
+    }
+
+    /**
+     * Charges the given flow for the bytes that were sent for one of its
+     * items.
+     * 
+     * @param key
+     *            the flow of the sent item
+     * @param size
+     *            number of bytes sent
+     */
+    public synchronized void charge(K key, int size) {
+        Flow<E> flow = flows.get(key);
+
+        if (flow == null)
+            return;
+
+        flow.deficit -= size;
+        flow.bytes += size;
+    }
+
+    /**
+     * Discards all queued items of the given flow and closes it, so further
+     * items for the flow will not be accepted.
+     * 
+     * @param key
+     *            the flow to close
+     * @return <code>false</code> if the flow was already closed,
+     *         <code>true</code> otherwise
+     */
+    public synchronized boolean close(K key) {
+        if (!closedFlows.add(key))
+            return false;
+
+        Flow<E> flow = flows.remove(key);
+
+        if (flow == null)
+            return true;
+
+        if (log.isDebugEnabled())
+            log.debug("closing flow: " + new FlowStatistics(flow));
+
+        // the flow is removed from the active flows on its next turn
+        flow.queue.clear();
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the given flow was closed
+     */
+    public synchronized boolean isClosed(K key) {
+        return closedFlows.contains(key);
+    }
+
+    /**
+     * Discards all flows and their items.
+     */
+    public synchronized void clear() {
+        for (Flow<E> flow : flows.values())
+            flow.queue.clear();
+
+        flows.clear();
+        activeFlows.clear();
+        closedFlows.clear();
+    }
+
+    /**
+     * @return the statistics of all flows that are not closed
+     */
+    public synchronized List<FlowStatistics> getStatistics() {
+        List<FlowStatistics> statistics = new ArrayList<FlowStatistics>(
+            flows.size());
+
+        for (Flow<E> flow : flows.values())
+            statistics.add(new FlowStatistics(flow));
+
+        return statistics;
+    }
+}
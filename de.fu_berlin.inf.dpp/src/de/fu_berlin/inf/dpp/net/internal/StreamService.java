@@ -19,6 +19,8 @@
  */
 package de.fu_berlin.inf.dpp.net.internal;
 
+import java.util.Arrays;
+
 import de.fu_berlin.inf.dpp.Saros;
 import de.fu_berlin.inf.dpp.User;
 import de.fu_berlin.inf.dpp.exceptions.StreamServiceNotValidException;
@@ -100,6 +102,36 @@ public abstract class StreamService {
         return new long[] { 500 };
     }
 
+    /**
+     * Specifies for each stream whether its data should be compressed before
+     * it is sent. Streams containing data that is already compressed, like
+     * encoded images, video or audio, should not be compressed again. Data of
+     * compressible streams is still sent uncompressed as long as it turns out
+     * to be incompressible.
+     * 
+     * @return for each stream <code>true</code> if its data should be
+     *         compressed (array must be bigger than
+     *         {@link #getStreamsPerSession()})
+     */
+    public boolean[] getCompressible() {
+        boolean[] compressible = new boolean[getStreamsPerSession()];
+        Arrays.fill(compressible, true);
+        return compressible;
+    }
+
+    /**
+     * Weight of this service's sessions when the data of several sessions is
+     * waiting to be sent. A session with weight <code>n</code> may send
+     * <code>n</code> times as many bytes as a session with weight one before
+     * the other session's data is sent, so interactive services should use a
+     * higher weight than services transferring bulk data.
+     * 
+     * @return weight of this service's sessions, must be greater than zero
+     */
+    public int getWeight() {
+        return 1;
+    }
+
     /**
      * <p>
      * Specifies for each stream the buffer size. This is the maximal number of
@@ -131,8 +163,10 @@ public abstract class StreamService {
      * <ul>
      * <li>{@link #getServiceName()} contains only letters <code>a-zA-Z</code></li>
      * <li>{@link #getStreamsPerSession()} is greater than zero</li>
+     * <li>{@link #getWeight()} is greater than zero</li>
      * <li>Streams characteristics ({@link #getChunkSize()},
-     * {@link #getMaximumDelay()} and {@link #getBufferSize()}) are valid and
+     * {@link #getMaximumDelay()}, {@link #getBufferSize()} and
+     * {@link #getCompressible()}) are valid and
      * set for each stream</li>
      * </ul>
      * 
@@ -175,6 +209,14 @@ public abstract class StreamService {
                     "Delay has to be greater-than-or-equal 0.", this);
         }
 
+        if (getCompressible().length < getStreamsPerSession())
+            throw new StreamServiceNotValidException(
+                "Compressibility has to be set for every stream.", this);
+
+        if (getWeight() <= 0)
+            throw new StreamServiceNotValidException(
+                "Weight has to be greater than 0.", this);
+
         for (int bufferSize : getChunkSize()) {
             if (bufferSize <= 0)
                 throw new StreamServiceNotValidException(
@@ -26,10 +26,8 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
@@ -46,9 +44,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.log4j.Logger;
 import org.jivesoftware.smack.ConnectionListener;
-import org.jivesoftware.smack.PacketListener;
-import org.jivesoftware.smack.filter.PacketFilter;
-import org.jivesoftware.smack.packet.Packet;
 import org.picocontainer.Startable;
 import org.picocontainer.annotations.Inject;
 
@@ -63,8 +58,8 @@ import de.fu_berlin.inf.dpp.exceptions.SarosCancellationException;
 import de.fu_berlin.inf.dpp.exceptions.StreamException;
 import de.fu_berlin.inf.dpp.exceptions.StreamServiceNotValidException;
 import de.fu_berlin.inf.dpp.net.IReceiver;
+import de.fu_berlin.inf.dpp.net.ITransferObjectListener;
 import de.fu_berlin.inf.dpp.net.IncomingTransferObject;
-import de.fu_berlin.inf.dpp.net.IncomingTransferObject.IncomingTransferObjectExtensionProvider;
 import de.fu_berlin.inf.dpp.net.JID;
 import de.fu_berlin.inf.dpp.net.SarosNet;
 import de.fu_berlin.inf.dpp.net.internal.StreamServiceManager.StreamMetaPacketData.StreamClose;
@@ -129,8 +124,6 @@ public class StreamServiceManager implements Startable {
 
     protected SarosSessionObservable sarosSessionObservable;
 
-    protected IncomingTransferObjectExtensionProvider incomingTransferObjectExtensionProvider;
-
     protected volatile boolean started = false;
 
     /**
@@ -196,14 +189,12 @@ public class StreamServiceManager implements Startable {
         SarosSessionObservable sarosSessionObservable,
         SarosNet sarosNet,
         ISarosSessionManager sessionManager,
-        List<StreamService> streamServices,
-        IncomingTransferObjectExtensionProvider incomingTransferObjectExtensionProvider) {
+        List<StreamService> streamServices) {
 
         this.dataTransferManager = dataTransferManager;
         this.sarosSessionObservable = sarosSessionObservable;
         this.sarosNet = sarosNet;
         this.sessionManager = sessionManager;
-        this.incomingTransferObjectExtensionProvider = incomingTransferObjectExtensionProvider;
 
         // add all valid services
         StringBuilder addedServicesNames = new StringBuilder();
@@ -228,8 +219,8 @@ public class StreamServiceManager implements Startable {
 
         registerListeners();
 
-        xmppReceiver.addPacketListener(new StreamPacketListener(),
-            new StreamPacketFilter());
+        xmppReceiver
+            .addTransferObjectListener(new StreamTransferObjectListener());
     }
 
     protected void startThreads() {
@@ -1004,6 +995,12 @@ public class StreamServiceManager implements Startable {
      * processing earlier notifications.
      * </p>
      * <p>
+     * Every session has its own queue of notifications. The queues are served
+     * by a deficit round robin weighted with {@link StreamService#getWeight()},
+     * so a session sending bulk data can not delay the packets of interactive
+     * sessions.
+     * </p>
+     * <p>
      * Another purpose is sending data immediately via
      * {@link PacketSender#sendPacket(TransferDescription, byte[])}.
      * </p>
@@ -1015,12 +1012,11 @@ public class StreamServiceManager implements Startable {
      */
     class PacketSender implements Runnable {
 
-        protected BlockingQueue<DataNotification> notifications = new LinkedBlockingQueue<DataNotification>();
-
         /**
-         * For these sessions no data should be send anymore
+         * Schedules the notifications of all sessions, every session has its
+         * own queue which is weighted with {@link StreamService#getWeight()}
          */
-        protected Set<StreamSession> blockedSessions = new HashSet<StreamSession>();
+        protected StreamScheduler<StreamSession, DataNotification> notifications = new StreamScheduler<StreamSession, DataNotification>();
 
         protected Thread senderThread;
 
@@ -1042,17 +1038,19 @@ public class StreamServiceManager implements Startable {
                 try {
                     notification = notifications.take();
 
-                    synchronized (notifications) {
-                        // only process notification when removeData(...) is not
-                        // running
-                        packetToSend = notification.getPacket();
+                    StreamSession session = notification.getSession();
+
+                    packetToSend = notification.getPacket();
+
+                    if (packetToSend == null)
+                        continue;
+
+                    notifications.charge(session, packetToSend.data.length);
+
+                    // removeData(...) could have been called meanwhile
+                    if (notifications.isClosed(session))
+                        continue;
 
-                        if (packetToSend == null
-                            || blockedSessions.contains(packetToSend
-                                .getSession())) {
-                            continue;
-                        }
-                    }
                     internalSend(packetToSend);
                 } catch (InterruptedException e) {
                     // shutdown
@@ -1090,7 +1088,7 @@ public class StreamServiceManager implements Startable {
             if (packet.getSession() == null)
                 internalSend(packet);
             else
-                notifications.add(new DataNotification(packet));
+                addNotification(new DataNotification(packet));
 
         }
 
@@ -1115,9 +1113,13 @@ public class StreamServiceManager implements Startable {
          * @param notification
          */
         protected void addNotification(DataNotification notification) {
-            synchronized (notifications) {
-                notifications.add(notification);
-            }
+            StreamSession session = notification.getSession();
+
+            if (session == null)
+                return;
+
+            notifications.add(session, session.getService().getWeight(),
+                notification);
         }
 
         /**
@@ -1130,18 +1132,15 @@ public class StreamServiceManager implements Startable {
          */
         protected void removeData(StreamSession session) {
             assert session != null;
-            if (blockedSessions.contains(session))
-                return;
-
-            synchronized (notifications) {
-                blockedSessions.add(session);
+            notifications.close(session);
+        }
 
-                for (DataNotification notification : notifications) {
-                    StreamPath streamPath = notification.getStreamPath();
-                    if (streamPath.equals(session.getStreamPath()))
-                        notifications.remove(notification);
-                }
-            }
+        /**
+         * @return queue depths and latencies of all sessions that still send
+         *         data
+         */
+        protected List<StreamScheduler.FlowStatistics> getStatistics() {
+            return notifications.getStatistics();
         }
 
         protected void dispose() {
@@ -1149,6 +1148,11 @@ public class StreamServiceManager implements Startable {
                 return;
             disposed = true;
 
+            if (log.isDebugEnabled()) {
+                for (StreamScheduler.FlowStatistics statistics : getStatistics())
+                    log.debug("outgoing stream statistics: " + statistics);
+            }
+
             senderThread.interrupt();
             notifications.clear();
         }
@@ -1164,21 +1168,28 @@ public class StreamServiceManager implements Startable {
             StreamSessionOutputStream stream;
             boolean removeAllAvailableData = false;
             StreamPacket packet;
+            StreamSession session;
 
             public DataNotification(StreamSessionOutputStream stream,
                 boolean removeAllAvailableData) {
                 super();
                 this.stream = stream;
                 this.removeAllAvailableData = removeAllAvailableData;
+                this.session = stream.getSession();
             }
 
             public DataNotification(StreamPacket packet) {
                 this.packet = packet;
+                this.session = packet.getSession();
             }
 
-            protected StreamPath getStreamPath() {
-                return packet == null ? stream.getSession().getStreamPath()
-                    : packet.getStreamPath();
+            /**
+             * @return the session this notification belongs to or
+             *         <code>null</code> when the packet is not related to an
+             *         established session
+             */
+            protected StreamSession getSession() {
+                return session;
             }
 
             /**
@@ -1204,6 +1215,9 @@ public class StreamServiceManager implements Startable {
                             sarosSessionID.getValue(),
                             stream.getStreamPath(data.length).toString());
 
+                    transferDescription.setCompressContent(stream
+                        .compressData(data));
+
                     try {
                         return new StreamPacket(transferDescription, data);
                     } catch (IllegalArgumentException e) {
@@ -1694,43 +1708,31 @@ public class StreamServiceManager implements Startable {
 
     }
 
-    class StreamPacketListener implements PacketListener {
+    class StreamTransferObjectListener implements ITransferObjectListener {
 
         @Override
-        public void processPacket(Packet packet) {
-            IncomingTransferObject ito = incomingTransferObjectExtensionProvider
-                .getPayload(packet);
+        public boolean processTransferObject(IncomingTransferObject ito) {
+            TransferDescription transferDescription = ito
+                .getTransferDescription();
+
+            if (!Utils.equals(transferDescription.getSessionID(),
+                sarosSessionID.getValue()))
+                return false;
+
+            if (!ObjectUtils.equals(transferDescription.getType(),
+                TransferDescription.STREAM_DATA)
+                && !ObjectUtils.equals(transferDescription.getType(),
+                    TransferDescription.STREAM_META))
+                return false;
+
             try {
                 if (receiver != null)
                     receiver.offerPacket(new StreamPacket(ito));
             } catch (IllegalArgumentException e) {
                 log.error("Received not valid packet: " + ito);
-                return;
             }
-        }
-    }
-
-    class StreamPacketFilter implements PacketFilter {
 
-        @Override
-        public boolean accept(Packet packet) {
-            IncomingTransferObject payload = incomingTransferObjectExtensionProvider
-                .getPayload(packet);
-
-            if (payload == null) {
-                return false;
-            }
-
-            TransferDescription transferDescription = payload
-                .getTransferDescription();
-            if (!Utils.equals(transferDescription.getSessionID(),
-                sarosSessionID.getValue()))
-                return false;
-
-            return ObjectUtils.equals(transferDescription.getType(),
-                TransferDescription.STREAM_DATA)
-                || ObjectUtils.equals(transferDescription.getType(),
-                    TransferDescription.STREAM_META);
+            return true;
         }
     }
 
@@ -442,6 +442,11 @@ public class StreamSession implements Disposable {
          */
         protected Semaphore freeBuffer;
         protected int bufferSize;
+        /**
+         * Decides whether data of this stream is compressed,
+         * <code>null</code> if the service declared it as incompressible
+         */
+        protected CompressionSampler compressionSampler;
 
         protected ThreadAccessRecorder threadAccessRecorder = new ThreadAccessRecorder();
 
@@ -451,6 +456,9 @@ public class StreamSession implements Disposable {
             this.output = new ByteArrayOutputStream(bufferSize);
             this.freeBuffer = new Semaphore(bufferSize, true);
             this.bufferSize = bufferSize;
+
+            if (basedService.getCompressible()[streamID])
+                this.compressionSampler = new CompressionSampler();
         }
 
         @Override
@@ -666,6 +674,17 @@ public class StreamSession implements Disposable {
             return streamID;
         }
 
+        /**
+         * @param data
+         *            data returned by {@link #getData(boolean)}
+         * @return <code>true</code> if the data should be compressed for
+         *         sending
+         */
+        protected boolean compressData(byte[] data) {
+            return compressionSampler != null
+                && compressionSampler.shouldCompress(data);
+        }
+
         protected StreamPath getStreamPath(int size) {
             return new StreamPath(initiator, sessionID, streamID, size);
         }
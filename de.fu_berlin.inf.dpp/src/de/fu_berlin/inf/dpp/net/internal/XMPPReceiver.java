@@ -1,10 +1,10 @@
 package de.fu_berlin.inf.dpp.net.internal;
 
 import java.io.ByteArrayInputStream;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.log4j.Logger;
 import org.jivesoftware.smack.Connection;
@@ -22,26 +22,30 @@ import de.fu_berlin.inf.dpp.annotations.Component;
 import de.fu_berlin.inf.dpp.net.ConnectionState;
 import de.fu_berlin.inf.dpp.net.IConnectionListener;
 import de.fu_berlin.inf.dpp.net.IReceiver;
+import de.fu_berlin.inf.dpp.net.ITransferObjectListener;
 import de.fu_berlin.inf.dpp.net.IncomingTransferObject;
-import de.fu_berlin.inf.dpp.net.IncomingTransferObject.IncomingTransferObjectExtensionProvider;
+import de.fu_berlin.inf.dpp.net.JID;
 import de.fu_berlin.inf.dpp.net.SarosNet;
 import de.fu_berlin.inf.dpp.net.SarosPacketCollector;
 import de.fu_berlin.inf.dpp.net.SarosPacketCollector.CancelHook;
 import de.fu_berlin.inf.dpp.net.business.DispatchThreadContext;
+import de.fu_berlin.inf.dpp.net.internal.PacketListenerIndex.Route;
+import de.fu_berlin.inf.dpp.net.internal.extensions.XStreamExtensionProvider;
 
 @Component(module = "net")
 public class XMPPReceiver implements IReceiver {
 
     private static final Logger LOG = Logger.getLogger(XMPPReceiver.class);
 
-    private final IncomingTransferObjectExtensionProvider incomingExtProv;
-
     private final DispatchThreadContext dispatchThreadContext;
 
-    private Map<PacketListener, PacketFilter> listeners = Collections
-        .synchronizedMap(new HashMap<PacketListener, PacketFilter>());
+    /** guarded by itself, changes are published in {@link #listenerIndex} */
+    private final Map<PacketListener, PacketFilter> listeners = new HashMap<PacketListener, PacketFilter>();
+
+    /** rebuilt whenever the listeners change */
+    private volatile PacketListenerIndex listenerIndex = PacketListenerIndex.EMPTY;
 
-    private XmlPullParser parser;
+    private final List<ITransferObjectListener> transferObjectListeners = new CopyOnWriteArrayList<ITransferObjectListener>();
 
     private final PacketListener smackPacketListener = new PacketListener() {
 
@@ -71,34 +75,64 @@ public class XMPPReceiver implements IReceiver {
     };
 
     public XMPPReceiver(DispatchThreadContext dispatchThreadContext,
-        SarosNet sarosNet,
-        IncomingTransferObjectExtensionProvider incomingExtProv) {
+        SarosNet sarosNet) {
 
         this.dispatchThreadContext = dispatchThreadContext;
-        this.incomingExtProv = incomingExtProv;
-        this.parser = new MXParser();
 
         sarosNet.addListener(connectionListener);
     }
 
     @Override
     public void addPacketListener(PacketListener listener, PacketFilter filter) {
-        listeners.put(listener, filter);
+        synchronized (listeners) {
+            listeners.put(listener, filter);
+            listenerIndex = new PacketListenerIndex(listeners);
+        }
     }
 
     @Override
     public void removePacketListener(PacketListener listener) {
-        listeners.remove(listener);
+        synchronized (listeners) {
+            if (listeners.remove(listener) != null)
+                listenerIndex = new PacketListenerIndex(listeners);
+        }
+    }
+
+    @Override
+    public void addTransferObjectListener(ITransferObjectListener listener) {
+        transferObjectListeners.add(listener);
+    }
+
+    @Override
+    public void removeTransferObjectListener(ITransferObjectListener listener) {
+        transferObjectListeners.remove(listener);
     }
 
     @Override
     public void processPacket(final Packet packet) {
-        dispatchThreadContext.executeAsDispatch(new Runnable() {
-            @Override
-            public void run() {
-                forwardPacket(packet);
-            }
-        });
+        dispatchThreadContext.executeAsDispatch(getDispatchKey(packet),
+            new Runnable() {
+                @Override
+                public void run() {
+                    forwardPacket(packet);
+                }
+            });
+    }
+
+    /**
+     * Packets of the same sender are dispatched in the order they were
+     * received, regardless of their namespace, so e.g. a leave message can
+     * not overtake the activities sent before it. Packets of different senders
+     * may be dispatched in parallel.
+     */
+    private Object getDispatchKey(Packet packet) {
+        String from = packet.getFrom();
+        return from == null ? "" : new JID(from);
+    }
+
+    private Object getDispatchKey(TransferDescription description) {
+        JID sender = description.getSender();
+        return sender == null ? "" : sender;
     }
 
     @Override
@@ -119,108 +153,58 @@ public class XMPPReceiver implements IReceiver {
     public void processTransferObject(
         final IncomingTransferObject transferObject) {
 
-        dispatchThreadContext.executeAsDispatch(new Runnable() {
+        dispatchThreadContext.executeAsDispatch(
+            getDispatchKey(transferObject.getTransferDescription()),
+            new Runnable() {
 
-            @Override
-            public void run() {
+                @Override
+                public void run() {
 
-                // StreamServiceManager forward
-                if (forwardTransferObject(transferObject))
-                    return;
+                    if (forwardTransferObject(transferObject))
+                        return;
 
-                Packet packet = convertTransferObjectToPacket(transferObject);
+                    Packet packet = convertTransferObjectToPacket(
+                        transferObject);
 
-                if (packet != null)
-                    forwardPacket(packet);
-            }
-        });
+                    if (packet != null)
+                        forwardPacket(packet);
+                }
+            });
     }
 
     /**
-     * Dispatches the packet to all registered listeners.
+     * Dispatches the packet to all registered listeners whose filter accepts
+     * it.
      * 
-     * @sarosThread must be called from the Dispatch Thread
+     * @sarosThread must be called from a Dispatch Thread
      */
     private void forwardPacket(Packet packet) {
-        Map<PacketListener, PacketFilter> copy;
-
-        synchronized (listeners) {
-            copy = new HashMap<PacketListener, PacketFilter>(listeners);
-        }
-        for (Entry<PacketListener, PacketFilter> entry : copy.entrySet()) {
-            PacketListener listener = entry.getKey();
-            PacketFilter filter = entry.getValue();
-
-            if (filter == null || filter.accept(packet)) {
-                listener.processPacket(packet);
-            }
-        }
+        for (Route route : listenerIndex.getRoutes(packet))
+            route.forward(packet);
     }
 
     /**
-     * Forwards the transfer object to all registered listeners by wrapping the
-     * transfer object into a packet extension.
+     * Forwards the transfer object to all registered transfer object
+     * listeners.
      * 
      * @return <code>true</code> if the transfer object was processed by a
      *         listener, <code>false</code> otherwise
      * 
-     * @sarosThread must be called from the Dispatch Thread
-     */
-    /*
-     * Note: left as a separate method because of different functionality.
-     * Furthermore the next refactoring step is to incorporate an
-     * IncomingTransferObject listener. It does not make sense to convert it to
-     * a packet first.
+     * @sarosThread must be called from a Dispatch Thread
      */
     private boolean forwardTransferObject(IncomingTransferObject transferObject) {
-        Map<PacketListener, PacketFilter> copy;
-
-        Packet packet = wrapTransferObject(transferObject);
-
-        synchronized (listeners) {
-            copy = new HashMap<PacketListener, PacketFilter>(listeners);
-        }
-
         boolean processed = false;
 
-        for (Entry<PacketListener, PacketFilter> entry : copy.entrySet()) {
-            PacketListener listener = entry.getKey();
-            PacketFilter filter = entry.getValue();
-
-            if (filter == null || filter.accept(packet)) {
-                listener.processPacket(packet);
-                processed = true;
-            }
-        }
+        for (ITransferObjectListener listener : transferObjectListeners)
+            processed |= listener.processTransferObject(transferObject);
 
         return processed;
     }
 
-    // FIXME doc: what kind of extension !
-    /**
-     * Creates a new packet that contains the transfer object as packet
-     * extension.
-     */
-    private Packet wrapTransferObject(IncomingTransferObject transferObject) {
-
-        TransferDescription description = transferObject
-            .getTransferDescription();
-
-        Packet packet = new Message();
-        packet.setPacketID(Packet.ID_NOT_AVAILABLE);
-        packet.setFrom(description.getSender().toString());
-        packet.addExtension(incomingExtProv.create(transferObject));
-        return packet;
-
-    }
-
     /**
      * Deserializes the payload of an {@link IncomingTransferObject} back to its
      * original {@link PacketExtension} and returns a new packet containing the
      * deserialized packet extension.
-     * 
-     * This method is <b>not</b> thread safe and <b>must not</b> accessed by
-     * multiple threads concurrently.
      */
     private Packet convertTransferObjectToPacket(
         IncomingTransferObject transferObject) {
@@ -232,10 +216,17 @@ public class XMPPReceiver implements IReceiver {
         String namespace = description.getNamespace();
         // IQ provider?
 
+        boolean isBinary = XStreamExtensionProvider.BINARY_NAMESPACE
+            .equals(namespace);
+
+        if (isBinary)
+            namespace = XStreamExtensionProvider.NAMESPACE;
+
         PacketExtensionProvider provider = (PacketExtensionProvider) ProviderManager
             .getInstance().getExtensionProvider(name, namespace);
 
-        if (provider == null) {
+        if (provider == null
+            || (isBinary && !(provider instanceof XStreamExtensionProvider<?>))) {
             LOG.warn("could not deserialize transfer object because no provider with namespace '"
                 + namespace + "' and element name '" + name + "' is installed");
             return null;
@@ -244,21 +235,25 @@ public class XMPPReceiver implements IReceiver {
         PacketExtension extension = null;
 
         try {
-            parser.setInput(
-                new ByteArrayInputStream(transferObject.getPayload()), "UTF-8");
-            /*
-             * We have to skip the empty start tag because Smack expects a
-             * parser that already has started parsing.
-             */
-            parser.next();
-            extension = provider.parseExtension(parser);
+            if (isBinary) {
+                extension = ((XStreamExtensionProvider<?>) provider)
+                    .parseBinary(transferObject.getPayload());
+            } else {
+                // transfer objects of different senders are parsed in parallel
+                XmlPullParser parser = new MXParser();
+                parser.setInput(new ByteArrayInputStream(transferObject
+                    .getPayload()), "UTF-8");
+                /*
+                 * We have to skip the empty start tag because Smack expects a
+                 * parser that already has started parsing.
+                 */
+                parser.next();
+                extension = provider.parseExtension(parser);
+            }
         } catch (Exception e) {
             LOG.error(
                 "could not deserialize transfer object payload: "
                     + e.getMessage(), e);
-
-            // just to be safe
-            parser = new MXParser();
             return null;
         }
 
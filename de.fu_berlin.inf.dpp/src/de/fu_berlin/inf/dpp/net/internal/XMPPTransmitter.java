@@ -26,6 +26,7 @@ import org.jivesoftware.smack.Connection;
 import org.jivesoftware.smack.packet.Message;
 import org.jivesoftware.smack.packet.Packet;
 import org.jivesoftware.smack.packet.PacketExtension;
+import org.jivesoftware.smackx.ServiceDiscoveryManager;
 
 import de.fu_berlin.inf.dpp.annotations.Component;
 import de.fu_berlin.inf.dpp.net.ConnectionState;
@@ -33,6 +34,10 @@ import de.fu_berlin.inf.dpp.net.IConnectionListener;
 import de.fu_berlin.inf.dpp.net.ITransmitter;
 import de.fu_berlin.inf.dpp.net.JID;
 import de.fu_berlin.inf.dpp.net.SarosNet;
+import de.fu_berlin.inf.dpp.net.discoverymanager.DiscoveryManager;
+import de.fu_berlin.inf.dpp.net.discoverymanager.DiscoveryManager.CacheMissException;
+import de.fu_berlin.inf.dpp.net.internal.extensions.XStreamExtensionProvider;
+import de.fu_berlin.inf.dpp.net.internal.extensions.XStreamExtensionProvider.XStreamPacketExtension;
 import de.fu_berlin.inf.dpp.util.Utils;
 
 /**
@@ -50,13 +55,23 @@ public class XMPPTransmitter implements ITransmitter, IConnectionListener {
             "de.fu_berlin.inf.dpp.net.transmitter.PACKET_EXTENSION_COMPRESS_THRESHOLD",
             32);
 
+    /** enables the binary encoding of XStream packet extensions */
+    private static final boolean ENABLE_BINARY_ENCODING = Boolean
+        .valueOf(System.getProperty(
+            "de.fu_berlin.inf.dpp.net.transmitter.ENABLE_BINARY_ENCODING",
+            "true"));
+
     private final DataTransferManager dataManager;
 
+    private final DiscoveryManager discoveryManager;
+
     private Connection connection;
 
-    public XMPPTransmitter(DataTransferManager dataManager, SarosNet sarosNet) {
+    public XMPPTransmitter(DataTransferManager dataManager, SarosNet sarosNet,
+        DiscoveryManager discoveryManager) {
         sarosNet.addListener(this);
         this.dataManager = dataManager;
+        this.discoveryManager = discoveryManager;
     }
 
     @Override
@@ -76,10 +91,18 @@ public class XMPPTransmitter implements ITransmitter, IConnectionListener {
         TransferDescription transferDescription = TransferDescription
             .createCustomTransferDescription().setRecipient(recipient)
             // .setSender(set by DataTransferManager)
-            .setType(extension.getElementName())
-            .setNamespace(extension.getNamespace());
+            .setType(extension.getElementName());
 
-        byte[] data = extension.toXML().getBytes("UTF-8");
+        byte[] data;
+
+        if (isBinaryEncodingSupported(recipient, extension)) {
+            transferDescription
+                .setNamespace(XStreamExtensionProvider.BINARY_NAMESPACE);
+            data = ((XStreamPacketExtension<?>) extension).toBinary();
+        } else {
+            transferDescription.setNamespace(extension.getNamespace());
+            data = extension.toXML().getBytes("UTF-8");
+        }
 
         if (data.length > PACKET_EXTENSION_COMPRESS_THRESHOLD)
             transferDescription.setCompressContent(true);
@@ -130,6 +153,30 @@ public class XMPPTransmitter implements ITransmitter, IConnectionListener {
         }
     }
 
+    /**
+     * Determines if the given extension can be send in its binary
+     * representation to the recipient. This is only the case if the extension
+     * was created by an {@link XStreamExtensionProvider} and the recipient
+     * announced the {@link XStreamExtensionProvider#BINARY_NAMESPACE} feature.
+     * If the feature is not cached yet the XML representation will be used.
+     */
+    private boolean isBinaryEncodingSupported(JID recipient,
+        PacketExtension extension) {
+
+        if (!ENABLE_BINARY_ENCODING
+            || !(extension instanceof XStreamPacketExtension<?>)
+            || !XStreamExtensionProvider.NAMESPACE.equals(extension
+                .getNamespace()))
+            return false;
+
+        try {
+            return discoveryManager.isSupportedNonBlock(recipient,
+                XStreamExtensionProvider.BINARY_NAMESPACE);
+        } catch (CacheMissException e) {
+            return false;
+        }
+    }
+
     /**
      * Determines if the connection can be used. Helper method for error
      * handling.
@@ -148,6 +195,11 @@ public class XMPPTransmitter implements ITransmitter, IConnectionListener {
         case CONNECTING:
             this.connection = connection;
             break;
+        case CONNECTED:
+            if (ENABLE_BINARY_ENCODING)
+                ServiceDiscoveryManager.getInstanceFor(connection).addFeature(
+                    XStreamExtensionProvider.BINARY_NAMESPACE);
+            break;
         case ERROR:
         case NOT_CONNECTED:
             this.connection = null;
@@ -0,0 +1,48 @@
+package de.fu_berlin.inf.dpp.net.internal.extensions;
+
+import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+
+/**
+ * Acknowledges all activities of a session up to, but not including, the
+ * given sequence number. If {@link #isResendRequested()} is set, the receiver
+ * of this extension has to send all activities starting at this sequence
+ * number again, because some of them are missing.
+ */
+public class ActivitiesAcknowledgementExtension extends
+    SarosSessionPacketExtension {
+
+    public static final Provider PROVIDER = new Provider();
+
+    @XStreamAsAttribute
+    private final int nextSequenceNumber;
+
+    @XStreamAsAttribute
+    private final boolean resend;
+
+    public ActivitiesAcknowledgementExtension(String sessionID,
+        int nextSequenceNumber, boolean resend) {
+        super(sessionID);
+        this.nextSequenceNumber = nextSequenceNumber;
+        this.resend = resend;
+    }
+
+    /**
+     * @return the sequence number of the first activity that was not received
+     *         in order yet
+     */
+    public int getNextSequenceNumber() {
+        return nextSequenceNumber;
+    }
+
+    public boolean isResendRequested() {
+        return resend;
+    }
+
+    public static class Provider extends
+        SarosSessionPacketExtension.Provider<ActivitiesAcknowledgementExtension> {
+        private Provider() {
+            super("activitiesAcknowledgement",
+                ActivitiesAcknowledgementExtension.class);
+        }
+    }
+}
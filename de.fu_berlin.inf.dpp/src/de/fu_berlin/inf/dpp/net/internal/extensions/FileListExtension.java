@@ -5,6 +5,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+
 import de.fu_berlin.inf.dpp.FileList;
 import de.fu_berlin.inf.dpp.util.Utils;
 
@@ -14,12 +16,17 @@ public class FileListExtension extends ProjectNegotiationExtension {
 
     private final List<byte[]> serializedFileLists;
 
+    @XStreamAsAttribute
+    private final int archiveFormat;
+
     private transient List<FileList> deserializedFileLists;
 
     public FileListExtension(String sessionID, String negotiationID,
-        FileList... fileLists) {
+        int archiveFormat, FileList... fileLists) {
         super(sessionID, negotiationID);
 
+        this.archiveFormat = archiveFormat;
+
         serializedFileLists = new ArrayList<byte[]>(fileLists.length);
 
         try {
@@ -34,6 +41,15 @@ public class FileListExtension extends ProjectNegotiationExtension {
         }
     }
 
+    /**
+     * @return the version of the archive format the sender expects the
+     *         missing files in or <code>0</code> if the sender did not
+     *         announce it
+     */
+    public int getArchiveFormat() {
+        return archiveFormat;
+    }
+
     /**
      * Returns an unmodifiable list of the file lists.
      * 
@@ -0,0 +1,71 @@
+package de.fu_berlin.inf.dpp.net.internal.extensions;
+
+import org.jivesoftware.smack.filter.AndFilter;
+import org.jivesoftware.smack.filter.PacketFilter;
+import org.jivesoftware.smack.packet.Packet;
+
+/**
+ * A filter for packets that contain an extension with the given element name
+ * and namespace and, if a session ID is given, belong to that session.
+ * 
+ * The element name, namespace and session ID are only used by the receiver to
+ * look up the listeners that may be interested in a packet. Whether a packet
+ * is accepted is always decided by the wrapped filter, which therefore has to
+ * check all of them itself.
+ */
+public class IndexedPacketFilter implements PacketFilter {
+
+    private final String elementName;
+
+    private final String namespace;
+
+    private final String sessionID;
+
+    private final PacketFilter filter;
+
+    /**
+     * @param sessionID
+     *            the session ID of the accepted packets or <code>null</code>
+     *            if packets of any or no session are accepted
+     */
+    public IndexedPacketFilter(String elementName, String namespace,
+        String sessionID, PacketFilter filter) {
+
+        if (elementName == null || namespace == null || filter == null)
+            throw new IllegalArgumentException();
+
+        this.elementName = elementName;
+        this.namespace = namespace;
+        this.sessionID = sessionID;
+        this.filter = filter;
+    }
+
+    public String getElementName() {
+        return elementName;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * @return the session ID of the accepted packets or <code>null</code>
+     */
+    public String getSessionID() {
+        return sessionID;
+    }
+
+    /**
+     * Returns a filter with the same index that additionally requires the
+     * given filter to accept a packet.
+     */
+    public IndexedPacketFilter and(PacketFilter other) {
+        return new IndexedPacketFilter(elementName, namespace, sessionID,
+            new AndFilter(filter, other));
+    }
+
+    @Override
+    public boolean accept(Packet packet) {
+        return filter.accept(packet);
+    }
+}
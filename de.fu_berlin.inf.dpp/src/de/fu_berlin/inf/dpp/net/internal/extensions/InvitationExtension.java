@@ -1,6 +1,5 @@
 package de.fu_berlin.inf.dpp.net.internal.extensions;
 
-import org.jivesoftware.smack.filter.AndFilter;
 import org.jivesoftware.smack.filter.PacketFilter;
 import org.jivesoftware.smack.packet.Packet;
 
@@ -26,9 +25,9 @@ public abstract class InvitationExtension extends SarosPacketExtension {
             super(elementName, classes);
         }
 
-        public PacketFilter getPacketFilter(final String invitationID) {
+        public IndexedPacketFilter getPacketFilter(final String invitationID) {
 
-            return new AndFilter(super.getPacketFilter(), new PacketFilter() {
+            return super.getPacketFilter().and(new PacketFilter() {
                 @Override
                 public boolean accept(Packet packet) {
                     InvitationExtension extension = getPayload(packet);
@@ -1,6 +1,5 @@
 package de.fu_berlin.inf.dpp.net.internal.extensions;
 
-import org.jivesoftware.smack.filter.AndFilter;
 import org.jivesoftware.smack.filter.PacketFilter;
 import org.jivesoftware.smack.packet.Packet;
 
@@ -25,22 +24,20 @@ public abstract class ProjectNegotiationExtension extends
             super(elementName, classes);
         }
 
-        public PacketFilter getPacketFilter(final String sessionID,
+        public IndexedPacketFilter getPacketFilter(final String sessionID,
             final String negotiationID) {
 
-            return new AndFilter(super.getPacketFilter(sessionID),
-                new PacketFilter() {
-                    @Override
-                    public boolean accept(Packet packet) {
-                        ProjectNegotiationExtension extension = getPayload(packet);
+            return super.getPacketFilter(sessionID).and(new PacketFilter() {
+                @Override
+                public boolean accept(Packet packet) {
+                    ProjectNegotiationExtension extension = getPayload(packet);
 
-                        if (extension == null)
-                            return false;
+                    if (extension == null)
+                        return false;
 
-                        return negotiationID.equals(extension
-                            .getNegotiationID());
-                    }
-                });
+                    return negotiationID.equals(extension.getNegotiationID());
+                }
+            });
         }
     }
 }
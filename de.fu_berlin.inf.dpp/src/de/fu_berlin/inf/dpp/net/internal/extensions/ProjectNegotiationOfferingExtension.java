@@ -2,6 +2,8 @@ package de.fu_berlin.inf.dpp.net.internal.extensions;
 
 import java.util.List;
 
+import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+
 import de.fu_berlin.inf.dpp.activities.ProjectExchangeInfo;
 
 public class ProjectNegotiationOfferingExtension extends
@@ -9,12 +11,17 @@ public class ProjectNegotiationOfferingExtension extends
 
     private List<ProjectExchangeInfo> projectInfos;
 
+    @XStreamAsAttribute
+    private int archiveFormat;
+
     public static final Provider PROVIDER = new Provider();
 
     public ProjectNegotiationOfferingExtension(String sessionID,
-        List<ProjectExchangeInfo> projectInfos, String negotiationID) {
+        List<ProjectExchangeInfo> projectInfos, String negotiationID,
+        int archiveFormat) {
         super(sessionID, negotiationID);
         this.projectInfos = projectInfos;
+        this.archiveFormat = archiveFormat;
     }
 
     /**
@@ -24,6 +31,15 @@ public class ProjectNegotiationOfferingExtension extends
         return projectInfos;
     }
 
+    /**
+     * @return the version of the archive format the sender uses for the
+     *         missing files or <code>0</code> if the sender did not announce
+     *         it
+     */
+    public int getArchiveFormat() {
+        return archiveFormat;
+    }
+
     public static class Provider
         extends
         ProjectNegotiationExtension.Provider<ProjectNegotiationOfferingExtension> {
@@ -1,6 +1,5 @@
 package de.fu_berlin.inf.dpp.net.internal.extensions;
 
-import org.jivesoftware.smack.filter.AndFilter;
 import org.jivesoftware.smack.filter.PacketFilter;
 import org.jivesoftware.smack.packet.Packet;
 
@@ -18,9 +17,9 @@ public abstract class SarosPacketExtension {
         }
 
         @Override
-        public PacketFilter getPacketFilter() {
+        public IndexedPacketFilter getPacketFilter() {
 
-            return new AndFilter(super.getPacketFilter(), new PacketFilter() {
+            return super.getPacketFilter().and(new PacketFilter() {
                 @Override
                 public boolean accept(Packet packet) {
                     SarosPacketExtension extension = getPayload(packet);
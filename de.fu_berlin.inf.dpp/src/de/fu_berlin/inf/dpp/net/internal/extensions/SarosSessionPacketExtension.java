@@ -23,9 +23,9 @@ public abstract class SarosSessionPacketExtension extends SarosPacketExtension {
             super(elementName, classes);
         }
 
-        public PacketFilter getPacketFilter(final String sessionID) {
+        public IndexedPacketFilter getPacketFilter(final String sessionID) {
 
-            return new AndFilter(super.getPacketFilter(), new PacketFilter() {
+            PacketFilter sessionFilter = new PacketFilter() {
                 @Override
                 public boolean accept(Packet packet) {
                     SarosSessionPacketExtension extension = getPayload(packet);
@@ -35,7 +35,11 @@ public abstract class SarosSessionPacketExtension extends SarosPacketExtension {
 
                     return sessionID.equals(extension.getSessionID());
                 }
-            });
+            };
+
+            return new IndexedPacketFilter(getElementName(), getNamespace(),
+                sessionID,
+                new AndFilter(super.getPacketFilter(), sessionFilter));
         }
     }
 }
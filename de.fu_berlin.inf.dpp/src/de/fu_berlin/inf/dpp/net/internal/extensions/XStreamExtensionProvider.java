@@ -19,6 +19,8 @@
  */
 package de.fu_berlin.inf.dpp.net.internal.extensions;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
 
@@ -37,6 +39,8 @@ import org.xmlpull.v1.XmlPullParser;
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
 import com.thoughtworks.xstream.annotations.XStreamOmitField;
+import com.thoughtworks.xstream.io.binary.BinaryStreamReader;
+import com.thoughtworks.xstream.io.binary.BinaryStreamWriter;
 import com.thoughtworks.xstream.io.xml.CompactWriter;
 
 import de.fu_berlin.inf.dpp.util.xstream.IPathConverter;
@@ -56,6 +60,15 @@ public class XStreamExtensionProvider<T> implements PacketExtensionProvider,
 
     public static final String NAMESPACE = "de.fu_berlin.inf.dpp";
 
+    /**
+     * Namespace that marks a payload which was marshalled with
+     * {@link XStreamPacketExtension#toBinary()} instead of
+     * {@link XStreamPacketExtension#toXML()}. It is also announced as a service
+     * discovery feature so that peers which do not understand the binary
+     * format still receive XML.
+     */
+    public static final String BINARY_NAMESPACE = NAMESPACE + "/binary/V1";
+
     protected final String namespace;
 
     protected final String elementName;
@@ -113,6 +126,14 @@ public class XStreamExtensionProvider<T> implements PacketExtensionProvider,
         public T getPayload() {
             return child.getPayload();
         }
+
+        /**
+         * Returns the extension that is sent as child element of this
+         * IQPacket.
+         */
+        public XStreamPacketExtension<T> getChild() {
+            return child;
+        }
     }
 
     public static class XStreamPacketExtension<T> implements PacketExtension {
@@ -165,6 +186,23 @@ public class XStreamExtensionProvider<T> implements PacketExtensionProvider,
             provider.xstream.marshal(this, new CompactWriter(writer));
             return writer.toString();
         }
+
+        /**
+         * Returns the binary representation of this extension. The format is
+         * the XStream token stream where all element and attribute names are
+         * only transmitted once per extension and referenced by an id
+         * afterwards, which is a lot more compact and faster to parse than the
+         * XML representation.
+         * 
+         * @see XStreamExtensionProvider#parseBinary(byte[])
+         */
+        public byte[] toBinary() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            BinaryStreamWriter writer = new BinaryStreamWriter(out);
+            provider.xstream.marshal(this, writer);
+            writer.flush();
+            return out.toByteArray();
+        }
     }
 
     /**
@@ -172,8 +210,9 @@ public class XStreamExtensionProvider<T> implements PacketExtensionProvider,
      * {@link XStreamExtensionProvider#elementName} and
      * {@link XStreamExtensionProvider#NAMESPACE}.
      */
-    public PacketFilter getPacketFilter() {
-        return new PacketExtensionFilter(getElementName(), getNamespace());
+    public IndexedPacketFilter getPacketFilter() {
+        return new IndexedPacketFilter(getElementName(), getNamespace(), null,
+            new PacketExtensionFilter(getElementName(), getNamespace()));
     }
 
     public String getNamespace() {
@@ -184,17 +223,18 @@ public class XStreamExtensionProvider<T> implements PacketExtensionProvider,
         return elementName;
     }
 
-    public PacketFilter getIQFilter() {
-        return new PacketFilter() {
-            @Override
-            public boolean accept(Packet packet) {
-                if (!(packet instanceof XStreamIQPacket<?>))
-                    return false;
-
-                return ((XStreamIQPacket<?>) packet)
-                    .accept(XStreamExtensionProvider.this);
-            }
-        };
+    public IndexedPacketFilter getIQFilter() {
+        return new IndexedPacketFilter(getElementName(), getNamespace(), null,
+            new PacketFilter() {
+                @Override
+                public boolean accept(Packet packet) {
+                    if (!(packet instanceof XStreamIQPacket<?>))
+                        return false;
+
+                    return ((XStreamIQPacket<?>) packet)
+                        .accept(XStreamExtensionProvider.this);
+                }
+            });
     }
 
     @Override
@@ -254,6 +294,27 @@ public class XStreamExtensionProvider<T> implements PacketExtensionProvider,
         return null;
     }
 
+    /**
+     * Reconstructs the packet extension out of the data returned from
+     * {@link XStreamPacketExtension#toBinary()}.
+     * 
+     * @return the packet extension or a {@link DropSilentlyPacketExtension} if
+     *         the data is malformed
+     */
+    @SuppressWarnings("unchecked")
+    public PacketExtension parseBinary(byte[] data) {
+        try {
+            XStreamPacketExtension<T> result = (XStreamPacketExtension<T>) xstream
+                .unmarshal(new BinaryStreamReader(new ByteArrayInputStream(
+                    data)));
+            result.provider = this;
+            return result;
+        } catch (RuntimeException e) {
+            log.error("Malformed data received!", e);
+            return new DropSilentlyPacketExtension();
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public T parseString(String string) throws IOException {
         try {
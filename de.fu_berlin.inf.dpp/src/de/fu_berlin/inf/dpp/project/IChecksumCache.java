@@ -35,4 +35,46 @@ public interface IChecksumCache {
      */
     public abstract boolean addChecksum(String path, long checksum);
 
+    /**
+     * Returns the checksum for the given unique identifier. Unlike
+     * {@link #getChecksum(String)} an implementation may also return a
+     * checksum that was stored persistently during a former run, as long as it
+     * was stored with the same size and time stamps.
+     * 
+     * @param path
+     *            a unique identifier
+     * @param size
+     *            the current size of the file
+     * @param localTimeStamp
+     *            the current local time stamp of the file
+     * @param modificationStamp
+     *            the current modification stamp of the file
+     * @return the checksum or <code>null</code> if no checksum for this
+     *         identifier exists or the checksum has become invalid
+     */
+    public abstract Long getChecksum(String path, long size,
+        long localTimeStamp, long modificationStamp);
+
+    /**
+     * Adds or update a checksum in the cache. The size and time stamps are
+     * used to validate the checksum if it is stored persistently.
+     * 
+     * @param path
+     *            a unique identifier
+     * @param checksum
+     *            the checksum to add
+     * @param size
+     *            the size of the file the checksum was calculated for
+     * @param localTimeStamp
+     *            the local time stamp of the file the checksum was calculated
+     *            for
+     * @param modificationStamp
+     *            the modification stamp of the file the checksum was
+     *            calculated for
+     * @return <code>true</code> if the former checksum was invalid,
+     *         <code>false</code> otherwise
+     */
+    public abstract boolean addChecksum(String path, long checksum, long size,
+        long localTimeStamp, long modificationStamp);
+
 }
\ No newline at end of file
@@ -142,9 +142,13 @@ public interface ISarosSessionManager {
      *            see: {@link ProjectExchangeInfo}
      * @param processID
      *            ID of the exchanging process
+     * @param archiveFormat
+     *            version of the archive format the inviter sends the missing
+     *            files in
      */
     public void incomingProjectReceived(JID from,
-        List<ProjectExchangeInfo> projectInfos, String processID);
+        List<ProjectExchangeInfo> projectInfos, String processID,
+        int archiveFormat);
 
     /**
      * Call this when a new project was added.
@@ -409,10 +409,14 @@ public class SarosSessionManager implements ISarosSessionManager {
      *            see: {@link ProjectExchangeInfo}
      * @param processID
      *            ID of the exchanging process
+     * @param archiveFormat
+     *            version of the archive format the inviter sends the missing
+     *            files in
      */
     @Override
     public void incomingProjectReceived(JID from,
-        List<ProjectExchangeInfo> projectInfos, String processID) {
+        List<ProjectExchangeInfo> projectInfos, String processID,
+        int archiveFormat) {
 
         INegotiationHandler handler = negotiationHandler;
 
@@ -431,7 +435,8 @@ public class SarosSessionManager implements ISarosSessionManager {
 
             try {
                 process = new IncomingProjectNegotiation(getSarosSession(),
-                    from, processID, projectInfos, sarosContext);
+                    from, processID, projectInfos, archiveFormat,
+                    sarosContext);
 
                 process.setProcessListener(processListener);
                 currentProjectNegotiations.addProjectExchangeProcess(process);
@@ -13,6 +13,7 @@ import org.eclipse.jface.window.Window;
 import org.picocontainer.Startable;
 
 import de.fu_berlin.inf.dpp.User;
+import de.fu_berlin.inf.dpp.activities.SPath;
 import de.fu_berlin.inf.dpp.activities.business.ChecksumActivity;
 import de.fu_berlin.inf.dpp.activities.business.FileActivity;
 import de.fu_berlin.inf.dpp.activities.business.IActivity;
@@ -49,6 +50,11 @@ public final class ActivityHandler implements Startable {
 
     private static final int DISPATCH_MODE;
 
+    /**
+     * Number of locks the documents are spread over on the host
+     */
+    private static final int DOCUMENT_LOCKS = 64;
+
     static {
         int dispatchModeToUse = Integer.getInteger(
             "de.fu_berlin.inf.dpp.session.ACTIVITY_DISPATCH_MODE",
@@ -80,6 +86,16 @@ public final class ActivityHandler implements Startable {
 
     private final LinkedBlockingQueue<List<IActivity>> dispatchQueue = new LinkedBlockingQueue<List<IActivity>>();
 
+    /*
+     * The activities of a document must be transformed, sent and queued for
+     * local execution in the same order on the host, otherwise the Jupiter
+     * instances of the clients would receive the operations in another order
+     * than they were transformed in. Documents are spread over a fixed number
+     * of locks so activities of different documents (mostly) do not block
+     * each other.
+     */
+    private final Object[] documentLocks = new Object[DOCUMENT_LOCKS];
+
     private final IActivityHandlerCallback callback;
 
     private final ISarosSession session;
@@ -103,11 +119,22 @@ public final class ActivityHandler implements Startable {
         public void run() {
             LOG.debug("activity dispatcher started");
             while (!Thread.currentThread().isInterrupted()) {
+                List<IActivity> activities;
+
                 try {
-                    dispatchAndExecuteActivities(dispatchQueue.take());
+                    activities = new ArrayList<IActivity>(dispatchQueue.take());
                 } catch (InterruptedException e) {
                     break;
                 }
+
+                // execute all activities that are queued with one SWT call
+                List<List<IActivity>> queuedActivities = new ArrayList<List<IActivity>>();
+                dispatchQueue.drainTo(queuedActivities);
+
+                for (List<IActivity> queued : queuedActivities)
+                    activities.addAll(queued);
+
+                dispatchAndExecuteActivities(activities);
             }
             LOG.debug("activity dispatcher stopped");
         }
@@ -122,6 +149,9 @@ public final class ActivityHandler implements Startable {
         this.documentServer = documentServer;
         this.documentClient = documentClient;
         this.synchronizer = synchronizer;
+
+        for (int i = 0; i < documentLocks.length; i++)
+            documentLocks[i] = new Object();
     }
 
     /**
@@ -129,21 +159,74 @@ public final class ActivityHandler implements Startable {
      * {@linkplain IActivityHandlerCallback callback} will be notified about the
      * results.
      * 
+     * This method may be called concurrently for the activities of different
+     * users. On the host, only activities of the same document are
+     * transformed one after another.
+     * 
      * @param activities
      *            an <b>immutable</b> list containing the activities
      */
-    public synchronized void handleIncomingActivities(List<IActivity> activities) {
-        if (session.isHost()) {
+    public void handleIncomingActivities(List<IActivity> activities) {
+        if (!session.isHost()) {
+            dispatch(activities);
+            return;
+        }
 
-            TransformationResult result = directServerActivities(activities);
-            activities = result.getLocalActivities();
-            for (QueueItem item : result.getSendToPeers()) {
+        TransformationResult result = new TransformationResult(
+            session.getLocalUser());
+
+        for (IActivity activity : activities) {
+            Object documentLock = getDocumentLock(activity);
 
-                List<User> recipients = getRecipientsForQueueItem(item);
-                callback.send(recipients, item.activity);
+            if (documentLock == null) {
+                directServerActivity(activity, result);
+                continue;
             }
+
+            /*
+             * also sends and queues the results of the preceding activities to
+             * keep the order of the activities of this user
+             */
+            synchronized (documentLock) {
+                directServerActivity(activity, result);
+                sendAndDispatch(result);
+            }
+
+            result = new TransformationResult(session.getLocalUser());
         }
 
+        sendAndDispatch(result);
+    }
+
+    /**
+     * Returns the lock of the document the given activity is transformed for
+     * on the host or <code>null</code> if the activity does not need to be
+     * transformed.
+     */
+    private Object getDocumentLock(IActivity activity) {
+        if (!(activity instanceof JupiterActivity
+            || activity instanceof ChecksumActivity
+            || activity instanceof FileActivity))
+            return null;
+
+        SPath path = ((IResourceActivity) activity).getPath();
+
+        int hash = path == null ? 0 : path.hashCode();
+
+        return documentLocks[(hash & Integer.MAX_VALUE) % documentLocks.length];
+    }
+
+    private void sendAndDispatch(TransformationResult result) {
+        for (QueueItem item : result.getSendToPeers()) {
+
+            List<User> recipients = getRecipientsForQueueItem(item);
+            callback.send(recipients, item.activity);
+        }
+
+        dispatch(result.getLocalActivities());
+    }
+
+    private void dispatch(List<IActivity> activities) {
         if (activities.isEmpty())
             return;
 
@@ -342,55 +425,51 @@ public final class ActivityHandler implements Startable {
     }
 
     /**
-     * This method is responsible for directing activities received at the
+     * This method is responsible for directing an activity received at the
      * server to the various clients.
      * 
-     * @param activities
-     *            A list of incoming activities
-     * @return A number of targeted activities.
+     * @param activity
+     *            an incoming activity
+     * @param result
+     *            the result to add the targeted activities to
      */
-    private TransformationResult directServerActivities(
-        List<IActivity> activities) {
-
-        TransformationResult result = new TransformationResult(
-            session.getLocalUser());
+    private void directServerActivity(IActivity activity,
+        TransformationResult result) {
 
-        final List<User> remoteUsers = session.getRemoteUsers();
-        final List<User> allUsers = session.getUsers();
+        if (activity instanceof FileActivity) {
+            documentServer.checkFileDeleted(activity);
+        }
 
-        for (IActivity activity : activities) {
+        if (activity instanceof JupiterActivity
+            || activity instanceof ChecksumActivity) {
 
-            if (activity instanceof FileActivity) {
-                documentServer.checkFileDeleted(activity);
-            }
-
-            if (activity instanceof JupiterActivity
-                || activity instanceof ChecksumActivity) {
+            result.addAll(documentServer.transformIncoming(activity));
+            return;
+        }
 
-                result.addAll(documentServer.transformIncoming(activity));
-            } else if (activity instanceof ITargetedActivity) {
-                ITargetedActivity target = (ITargetedActivity) activity;
-                result.add(new QueueItem(target.getTarget(), activity));
+        if (activity instanceof ITargetedActivity) {
+            ITargetedActivity target = (ITargetedActivity) activity;
+            result.add(new QueueItem(target.getTarget(), activity));
+            return;
+        }
 
-            } else if (remoteUsers.size() > 0) {
+        if (session.getRemoteUsers().size() > 0) {
 
-                // We must not send the activity back to the sender
-                List<User> receivers = new ArrayList<User>();
-                for (User user : allUsers) {
-                    if (!user.equals(activity.getSource())) {
-                        receivers.add(user);
-                    }
+            // We must not send the activity back to the sender
+            List<User> receivers = new ArrayList<User>();
+            for (User user : session.getUsers()) {
+                if (!user.equals(activity.getSource())) {
+                    receivers.add(user);
                 }
-                result.add(new QueueItem(receivers, activity));
-
-                /*
-                 * should we really execute an activity from a user that is
-                 * about to or has left the session ?
-                 */
-            } else if (!(session.getLocalUser().equals(activity.getSource()))) {
-                result.executeLocally.add(activity);
             }
+            result.add(new QueueItem(receivers, activity));
+
+            /*
+             * should we really execute an activity from a user that is about
+             * to or has left the session ?
+             */
+        } else if (!(session.getLocalUser().equals(activity.getSource()))) {
+            result.executeLocally.add(activity);
         }
-        return result;
     }
 }
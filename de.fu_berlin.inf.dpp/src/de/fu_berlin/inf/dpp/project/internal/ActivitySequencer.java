@@ -22,13 +22,13 @@ package de.fu_berlin.inf.dpp.project.internal;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.jivesoftware.smack.PacketListener;
@@ -42,10 +42,12 @@ import de.fu_berlin.inf.dpp.net.IReceiver;
 import de.fu_berlin.inf.dpp.net.ITransmitter;
 import de.fu_berlin.inf.dpp.net.JID;
 import de.fu_berlin.inf.dpp.net.business.DispatchThreadContext;
+import de.fu_berlin.inf.dpp.net.internal.extensions.ActivitiesAcknowledgementExtension;
 import de.fu_berlin.inf.dpp.net.internal.extensions.ActivitiesExtension;
 import de.fu_berlin.inf.dpp.observables.SessionIDObservable;
 import de.fu_berlin.inf.dpp.project.ISarosSession;
 import de.fu_berlin.inf.dpp.util.ActivityUtils;
+import de.fu_berlin.inf.dpp.util.NamedThreadFactory;
 import de.fu_berlin.inf.dpp.util.Utils;
 
 /**
@@ -53,6 +55,11 @@ import de.fu_berlin.inf.dpp.util.Utils;
  * {@linkplain IActivityDataObject activities} are sent and received in the
  * right order.
  * 
+ * The receiver periodically acknowledges the activities it received in order.
+ * The sender keeps all activities until they are acknowledged and sends them
+ * again if the receiver reports that some of them are missing or if they are
+ * not acknowledged in time, so lost activities are never skipped.
+ * 
  * @author rdjemili
  * @author coezbek
  * @author marrin
@@ -68,6 +75,47 @@ public class ActivitySequencer implements Startable {
      */
     private static final int FIRST_SEQUENCE_NUMBER = 0;
 
+    /**
+     * Interval in milliseconds in which the received activities are
+     * acknowledged and missing activities are looked for.
+     */
+    private static final long ACKNOWLEDGE_INTERVAL = Long.getLong(
+        "de.fu_berlin.inf.dpp.sequencer.ACKNOWLEDGE_INTERVAL", 1000L);
+
+    /**
+     * Time in milliseconds an activity may be missing while activities with
+     * higher sequence numbers from the same sender have been received, before
+     * the sender is asked to send it again. The sender also sends activities
+     * again that are not acknowledged for twice this time.
+     */
+    private static final long RESEND_DELAY = Long.getLong(
+        "de.fu_berlin.inf.dpp.sequencer.RESEND_DELAY", 2000L);
+
+    /**
+     * Maximum number of activities per sender that are buffered while waiting
+     * for a missing activity. Activities beyond this window are dropped and
+     * requested again later.
+     */
+    private static final int MAX_BUFFERED_ACTIVITIES = Integer.getInteger(
+        "de.fu_berlin.inf.dpp.sequencer.MAX_BUFFERED_ACTIVITIES", 10000);
+
+    /**
+     * Maximum number of activities that are sent to a single recipient without
+     * being acknowledged. No further activities are sent to that recipient
+     * until some of them are acknowledged.
+     */
+    private static final int MAX_UNACKNOWLEDGED_ACTIVITIES = Integer
+        .getInteger(
+            "de.fu_berlin.inf.dpp.sequencer.MAX_UNACKNOWLEDGED_ACTIVITIES",
+            10000);
+
+    /**
+     * Number of pending outgoing activities for a single recipient at which a
+     * warning is logged.
+     */
+    private static final int OUTGOING_QUEUE_WARNING_SIZE = Integer.getInteger(
+        "de.fu_berlin.inf.dpp.sequencer.OUTGOING_QUEUE_WARNING_SIZE", 1000);
+
     private static class SequencedActivity {
         private final int sequenceNumber;
         private final IActivityDataObject activity;
@@ -79,120 +127,389 @@ public class ActivitySequencer implements Startable {
         }
     }
 
-    private static class SequencedActivities {
-        private final int sequenceNumber;
-        private final List<IActivityDataObject> activites;
-
-        private SequencedActivities(List<IActivityDataObject> activites,
-            int sequenceNumber) {
-            this.activites = activites;
-            this.sequenceNumber = sequenceNumber;
-        }
-    }
+    /**
+     * Buffer for the outgoing activities of one recipient. Every recipient has
+     * its own buffer and sender thread so a slow connection to one recipient
+     * does not delay the activities for the other recipients.
+     */
+    private class OutgoingActivityBuffer implements Runnable {
+        private final JID recipient;
 
-    private static class ActivityBuffer<T> {
         /**
          * Helper flag to signal that there pending data is still send even if
          * the buffer is already empty.
          */
         private boolean isInTransmission;
+        private boolean isStopped;
+        private boolean isResendRequested;
         private int nextSequenceNumber;
-        private final Deque<T> activities = new LinkedList<T>();
+        private final List<IActivityDataObject> activities = new ArrayList<IActivityDataObject>();
+
+        /**
+         * The sent activities that the recipient has not acknowledged yet, in
+         * the order of their sequence numbers
+         */
+        private final LinkedList<SequencedActivity> unacknowledgedActivities = new LinkedList<SequencedActivity>();
 
-        private ActivityBuffer(int firstSequenceNumber) {
+        /**
+         * Time stamp at which the recipient last acknowledged an activity or
+         * the first unacknowledged activity was sent
+         */
+        private long lastAcknowledgedAt;
+
+        private Thread sendThread;
+
+        private OutgoingActivityBuffer(JID recipient, int firstSequenceNumber) {
+            this.recipient = recipient;
             nextSequenceNumber = firstSequenceNumber;
         }
-    }
 
-    private final PacketListener activitiesPacketListener = new PacketListener() {
+        private synchronized void add(IActivityDataObject activity) {
+            activities.add(activity);
 
-        @Override
-        public void processPacket(Packet packet) {
-            receiveActivities(packet);
+            if (activities.size() == OUTGOING_QUEUE_WARNING_SIZE)
+                LOG.warn(activities.size()
+                    + " activities are waiting to be sent to " + recipient
+                    + ", the connection may be too slow");
+
+            notifyAll();
         }
-    };
 
-    private final Runnable activitySender = new Runnable() {
+        private synchronized void startSending() {
+            if (sendThread == null && !isStopped)
+                sendThread = Utils.runSafeAsync("ActivitySender-"
+                    + recipient.getBase(), LOG, this);
+        }
 
-        @Override
-        public void run() {
+        /**
+         * Stops the sender thread of this buffer and discards all pending
+         * activities. Activities that are currently transmitted are still
+         * sent.
+         */
+        private synchronized void stopSending() {
+            isStopped = true;
+            activities.clear();
+            unacknowledgedActivities.clear();
+            notifyAll();
+        }
 
-            Map<JID, SequencedActivities> activitiesToSend = new HashMap<JID, SequencedActivities>();
+        /**
+         * Discards all sent activities with a sequence number lower than the
+         * given one, as the recipient has received them.
+         * 
+         * @param resend
+         *            if <code>true</code> the remaining sent activities are
+         *            sent again
+         */
+        private synchronized void acknowledge(int nextSequenceNumber,
+            boolean resend) {
 
-            send: while (true) {
-                activitiesToSend.clear();
+            boolean acknowledged = false;
 
-                synchronized (bufferedOutgoingActivities) {
-                    if (stopSending)
-                        return;
+            while (!unacknowledgedActivities.isEmpty()
+                && unacknowledgedActivities.getFirst().sequenceNumber
+                    - nextSequenceNumber < 0) {
+                unacknowledgedActivities.removeFirst();
+                acknowledged = true;
+            }
 
-                    for (Entry<JID, ActivityBuffer<IActivityDataObject>> entry : bufferedOutgoingActivities
-                        .entrySet()) {
+            if (acknowledged)
+                lastAcknowledgedAt = System.currentTimeMillis();
 
-                        ActivityBuffer<IActivityDataObject> buffer = entry
-                            .getValue();
+            if (resend)
+                requestResend();
 
-                        if (buffer == null || buffer.activities.isEmpty())
-                            continue;
+            notifyAll();
+        }
+
+        /**
+         * Sends all activities that are not acknowledged again, if the
+         * recipient did not acknowledge any of them for too long.
+         */
+        private synchronized void checkAcknowledgements() {
+            if (unacknowledgedActivities.isEmpty() || isResendRequested)
+                return;
 
-                        List<IActivityDataObject> optimizedActivities = ActivityUtils
-                            .optimize(buffer.activities);
+            long age = System.currentTimeMillis() - lastAcknowledgedAt;
 
-                        buffer.activities.clear();
-                        buffer.isInTransmission = true;
+            if (age < 2 * RESEND_DELAY)
+                return;
 
-                        int currentSequenceNumber = buffer.nextSequenceNumber;
-                        buffer.nextSequenceNumber += optimizedActivities.size();
+            LOG.warn(recipient + " did not acknowledge "
+                + unacknowledgedActivities.size() + " activities for " + age
+                + " ms, sending them again");
 
-                        activitiesToSend.put(entry.getKey(),
-                            new SequencedActivities(optimizedActivities,
-                                currentSequenceNumber));
-                    }
+            requestResend();
+        }
+
+        private synchronized void requestResend() {
+            if (unacknowledgedActivities.isEmpty())
+                return;
+
+            isResendRequested = true;
+            lastAcknowledgedAt = System.currentTimeMillis();
+            notifyAll();
+        }
+
+        /**
+         * Waits until all buffered activities are sent or this buffer is
+         * stopped.
+         */
+        private synchronized void flush() {
+            while (!isStopped && (!activities.isEmpty() || isInTransmission)) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private void join() {
+            Thread thread;
+
+            synchronized (this) {
+                thread = sendThread;
+            }
+
+            if (thread == null || thread == Thread.currentThread())
+                return;
+
+            boolean interrupted = false;
+
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
 
-                    if (activitiesToSend.isEmpty()) {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                List<IActivityDataObject> optimizedActivities;
+                int sequenceNumber;
+
+                synchronized (this) {
+                    while (!isStopped
+                        && !isResendRequested
+                        && (activities.isEmpty() || unacknowledgedActivities
+                            .size() >= MAX_UNACKNOWLEDGED_ACTIVITIES)) {
                         try {
-                            bufferedOutgoingActivities.wait();
-                            continue send;
+                            wait();
                         } catch (InterruptedException e) {
                             return;
                         }
                     }
+
+                    if (isStopped)
+                        return;
+
+                    if (isResendRequested) {
+                        isResendRequested = false;
+
+                        if (unacknowledgedActivities.isEmpty())
+                            continue;
+
+                        optimizedActivities = new ArrayList<IActivityDataObject>(
+                            unacknowledgedActivities.size());
+
+                        for (SequencedActivity sent : unacknowledgedActivities)
+                            optimizedActivities.add(sent.activity);
+
+                        sequenceNumber = unacknowledgedActivities
+                            .getFirst().sequenceNumber;
+
+                        LOG.debug("sending " + optimizedActivities.size()
+                            + " unacknowledged activities to " + recipient
+                            + " again");
+                    } else {
+                        optimizedActivities = ActivityUtils
+                            .optimize(activities);
+
+                        activities.clear();
+
+                        sequenceNumber = nextSequenceNumber;
+                        nextSequenceNumber += optimizedActivities.size();
+
+                        if (unacknowledgedActivities.isEmpty())
+                            lastAcknowledgedAt = System.currentTimeMillis();
+
+                        int sentSequenceNumber = sequenceNumber;
+
+                        for (IActivityDataObject activity : optimizedActivities)
+                            unacknowledgedActivities.add(new SequencedActivity(
+                                activity, sentSequenceNumber++));
+                    }
+
+                    isInTransmission = true;
                 }
 
-                for (Entry<JID, SequencedActivities> e : activitiesToSend
-                    .entrySet()) {
-                    sendActivities(e.getKey(), e.getValue().activites,
-                        e.getValue().sequenceNumber);
+                try {
+                    sendActivities(recipient, optimizedActivities,
+                        sequenceNumber);
+                } finally {
+                    synchronized (this) {
+                        isInTransmission = false;
+                        // notify waiting threads in flush method that we are
+                        // done
+                        notifyAll();
+                    }
                 }
+            }
+        }
+    }
 
-                synchronized (bufferedOutgoingActivities) {
-                    for (Entry<JID, ActivityBuffer<IActivityDataObject>> entry : bufferedOutgoingActivities
-                        .entrySet()) {
+    /**
+     * Reorder buffer for the activities of one sender. Activities that arrive
+     * out of order are indexed by their sequence number so the next expected
+     * activity can be looked up in constant time.
+     */
+    private static class IncomingActivityBuffer {
+        private int nextSequenceNumber;
 
-                        ActivityBuffer<IActivityDataObject> buffer = entry
-                            .getValue();
+        /**
+         * Whether the sender has to be told the {@link #nextSequenceNumber},
+         * because activities were received since the last acknowledgement or
+         * the sender sent activities again that were already received
+         */
+        private boolean isAcknowledgementPending;
 
-                        if (buffer == null)
-                            continue;
+        /**
+         * Time stamp at which the missing activities were last requested
+         */
+        private long lastResendRequestAt;
 
-                        buffer.isInTransmission = false;
-                    }
+        /**
+         * Time stamp at which the activity with the
+         * {@link #nextSequenceNumber} was first missed or <code>-1</code> if
+         * no activity is missing
+         */
+        private long gapOpenedAt = -1;
+
+        private final Map<Integer, IActivityDataObject> activities = new HashMap<Integer, IActivityDataObject>();
 
-                    // notify waiting threads in flush method that we are done
-                    bufferedOutgoingActivities.notifyAll();
+        private IncomingActivityBuffer(int firstSequenceNumber) {
+            nextSequenceNumber = firstSequenceNumber;
+        }
+
+        /**
+         * Buffers the given activity, unless it was already received or is too
+         * far ahead of the missing activities. Those activities are sent again
+         * by the sender when they are requested.
+         * 
+         * @return <code>false</code> if the activity was discarded
+         */
+        private boolean add(SequencedActivity sequencedActivity) {
+            // handles overflowing sequence numbers
+            int distance = sequencedActivity.sequenceNumber
+                - nextSequenceNumber;
+
+            if (distance < 0 || distance >= MAX_BUFFERED_ACTIVITIES) {
+                // the sender may have missed the last acknowledgement
+                isAcknowledgementPending |= distance < 0;
+                return false;
+            }
+
+            activities.put(sequencedActivity.sequenceNumber,
+                sequencedActivity.activity);
+
+            return true;
+        }
+
+        /**
+         * Moves all activities that can be executed in order to the given list
+         * and updates the gap state of this buffer.
+         */
+        private void drainTo(List<IActivityDataObject> executableActivities) {
+            IActivityDataObject activity;
+
+            while ((activity = activities.remove(nextSequenceNumber)) != null) {
+                executableActivities.add(activity);
+                nextSequenceNumber++;
+                isAcknowledgementPending = true;
+
+                if (gapOpenedAt != -1) {
+                    LOG.debug("received missing activity " + activity
+                        + " after " + getGapAge() + " ms");
+                    gapOpenedAt = -1;
                 }
             }
+
+            if (!activities.isEmpty() && gapOpenedAt == -1)
+                gapOpenedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * Returns how long the activity with the {@link #nextSequenceNumber} is
+         * already missing in milliseconds or <code>0</code> if no activity is
+         * missing.
+         */
+        private long getGapAge() {
+            return gapOpenedAt == -1 ? 0 : System.currentTimeMillis()
+                - gapOpenedAt;
+        }
+
+        /**
+         * Returns <code>true</code> if the missing activities should be
+         * requested from the sender, because they are missing for too long
+         * and were not requested recently.
+         */
+        private boolean isResendNeeded() {
+            long sinceLastRequest = System.currentTimeMillis()
+                - lastResendRequestAt;
+
+            return getGapAge() >= RESEND_DELAY
+                && sinceLastRequest >= RESEND_DELAY;
+        }
+
+        private int getLowestBufferedSequenceNumber() {
+            int lowest = nextSequenceNumber;
+            int lowestDistance = Integer.MAX_VALUE;
+
+            for (int sequenceNumber : activities.keySet()) {
+                // handles overflowing sequence numbers
+                int distance = sequenceNumber - nextSequenceNumber;
+
+                if (distance >= 0 && distance < lowestDistance) {
+                    lowest = sequenceNumber;
+                    lowestDistance = distance;
+                }
+            }
+
+            return lowest;
+        }
+    }
+
+    private final PacketListener activitiesPacketListener = new PacketListener() {
+
+        @Override
+        public void processPacket(Packet packet) {
+            receiveActivities(packet);
+        }
+    };
+
+    private final PacketListener acknowledgementPacketListener = new PacketListener() {
+
+        @Override
+        public void processPacket(Packet packet) {
+            receiveAcknowledgement(packet);
         }
     };
 
     private boolean started = false;
 
-    private boolean stopSending = false;
+    private ScheduledExecutorService acknowledgementTimer;
 
     private String currentSessionID;
 
-    private Thread activitySendThread;
-
     private final ISarosSession sarosSession;
 
     private final SessionIDObservable sessionIDObservable;
@@ -203,9 +520,9 @@ public class ActivitySequencer implements Startable {
 
     private final DispatchThreadContext dispatchThread;
 
-    private final Map<JID, ActivityBuffer<SequencedActivity>> bufferedIncomingActivities;
+    private final Map<JID, IncomingActivityBuffer> bufferedIncomingActivities;
 
-    private final Map<JID, ActivityBuffer<IActivityDataObject>> bufferedOutgoingActivities;
+    private final Map<JID, OutgoingActivityBuffer> bufferedOutgoingActivities;
 
     public ActivitySequencer(final ISarosSession sarosSession,
         final ITransmitter transmitter, final IReceiver receiver,
@@ -218,8 +535,8 @@ public class ActivitySequencer implements Startable {
         this.receiver = receiver;
         this.sessionIDObservable = sessionIDObservable;
 
-        this.bufferedIncomingActivities = new HashMap<JID, ActivityBuffer<SequencedActivity>>();
-        this.bufferedOutgoingActivities = new HashMap<JID, ActivityBuffer<IActivityDataObject>>();
+        this.bufferedIncomingActivities = new HashMap<JID, IncomingActivityBuffer>();
+        this.bufferedOutgoingActivities = new HashMap<JID, OutgoingActivityBuffer>();
     }
 
     /**
@@ -242,10 +559,30 @@ public class ActivitySequencer implements Startable {
         receiver.addPacketListener(activitiesPacketListener,
             ActivitiesExtension.PROVIDER.getPacketFilter(currentSessionID));
 
-        started = true;
+        receiver.addPacketListener(acknowledgementPacketListener,
+            ActivitiesAcknowledgementExtension.PROVIDER
+                .getPacketFilter(currentSessionID));
 
-        activitySendThread = Utils.runSafeAsync("ActivitySender", LOG,
-            activitySender);
+        acknowledgementTimer = Executors
+            .newSingleThreadScheduledExecutor(new NamedThreadFactory(
+                "ActivityAcknowledger", false));
+
+        acknowledgementTimer.scheduleWithFixedDelay(
+            Utils.wrapSafe(LOG, new Runnable() {
+                @Override
+                public void run() {
+                    checkAcknowledgements();
+                }
+            }), ACKNOWLEDGE_INTERVAL, ACKNOWLEDGE_INTERVAL,
+            TimeUnit.MILLISECONDS);
+
+        synchronized (bufferedOutgoingActivities) {
+            started = true;
+
+            for (OutgoingActivityBuffer buffer : bufferedOutgoingActivities
+                .values())
+                buffer.startSending();
+        }
     }
 
     /**
@@ -263,32 +600,29 @@ public class ActivitySequencer implements Startable {
             throw new IllegalStateException("sequencer is not started");
 
         receiver.removePacketListener(activitiesPacketListener);
+        receiver.removePacketListener(acknowledgementPacketListener);
 
-        while (true) {
-            try {
-                synchronized (bufferedOutgoingActivities) {
-                    stopSending = true;
-                    bufferedOutgoingActivities.notifyAll();
-                }
-                activitySendThread.join();
-                break;
-            } catch (InterruptedException e) {
-                //
-            }
-        }
+        acknowledgementTimer.shutdownNow();
+
+        List<OutgoingActivityBuffer> buffers;
 
         synchronized (bufferedOutgoingActivities) {
+            buffers = new ArrayList<OutgoingActivityBuffer>(
+                bufferedOutgoingActivities.values());
+
             bufferedOutgoingActivities.clear();
-            bufferedOutgoingActivities.notifyAll();
+            started = false;
         }
 
+        for (OutgoingActivityBuffer buffer : buffers)
+            buffer.stopSending();
+
+        for (OutgoingActivityBuffer buffer : buffers)
+            buffer.join();
+
         synchronized (bufferedIncomingActivities) {
             bufferedIncomingActivities.clear();
         }
-
-        stopSending = false;
-        activitySendThread = null;
-        started = false;
     }
 
     /*
@@ -301,8 +635,8 @@ public class ActivitySequencer implements Startable {
 
         List<IActivityDataObject> serializedActivities = new ArrayList<IActivityDataObject>();
 
-        synchronized (this) {
-            ActivityBuffer<SequencedActivity> buffer = bufferedIncomingActivities
+        synchronized (bufferedIncomingActivities) {
+            IncomingActivityBuffer buffer = bufferedIncomingActivities
                 .get(sender);
 
             if (buffer == null) {
@@ -313,42 +647,16 @@ public class ActivitySequencer implements Startable {
                 return;
             }
 
-            buffer.activities.add(sequencedActivity);
-
-            /*
-             * it is very VERY uncommon to receive an activity with a sequence
-             * number that is 2^32 steps apart from the current expected
-             * sequencer number, so this algorithm does not check for duplicate
-             * sequence numbers
-             */
-            while (true) {
-
-                sequencedActivity = null;
-
-                for (Iterator<SequencedActivity> it = buffer.activities
-                    .iterator(); it.hasNext();) {
-
-                    sequencedActivity = it.next();
-
-                    if (sequencedActivity.sequenceNumber == buffer.nextSequenceNumber) {
-                        it.remove();
-                        break;
-                    }
-
-                    sequencedActivity = null;
-                }
-
-                if (sequencedActivity == null) {
-                    /*
-                     * TODO shut down the session if a activity does not arrive
-                     * in a given timeout
-                     */
-                    break;
-                }
-
-                serializedActivities.add(sequencedActivity.activity);
-                buffer.nextSequenceNumber++;
+            if (!buffer.add(sequencedActivity)) {
+                LOG.trace("discarding activity " + sequencedActivity.activity
+                    + " with sequence number "
+                    + sequencedActivity.sequenceNumber + " from " + sender
+                    + ", expected sequence number is "
+                    + buffer.nextSequenceNumber);
+                return;
             }
+
+            buffer.drainTo(serializedActivities);
         }
 
         if (!serializedActivities.isEmpty())
@@ -372,7 +680,7 @@ public class ActivitySequencer implements Startable {
             LOG.trace("dispatching activity " + activity
                 + " to the local user: " + user.getJID());
 
-            dispatchThread.executeAsDispatch(new Runnable() {
+            dispatchThread.executeAsDispatch(user.getJID(), new Runnable() {
                 @Override
                 public void run() {
                     sarosSession.exec(Collections.singletonList(activity));
@@ -383,23 +691,23 @@ public class ActivitySequencer implements Startable {
         if (remoteRecipients.isEmpty())
             return;
 
-        synchronized (bufferedOutgoingActivities) {
-            for (User recipient : remoteRecipients) {
-                ActivityBuffer<IActivityDataObject> buffer = bufferedOutgoingActivities
-                    .get(recipient.getJID());
-
-                if (buffer == null) {
-                    LOG.warn("cannot send activity to "
-                        + recipient
-                        + " because it is currently not registers, dropped activity: "
-                        + activity);
-                    continue;
-                }
-                buffer.activities.add(activity);
+        for (User recipient : remoteRecipients) {
+            OutgoingActivityBuffer buffer;
+
+            synchronized (bufferedOutgoingActivities) {
+                buffer = bufferedOutgoingActivities.get(recipient.getJID());
             }
 
-            // ActivitySender thread is flushing the buffers
-            bufferedOutgoingActivities.notifyAll();
+            if (buffer == null) {
+                LOG.warn("cannot send activity to "
+                    + recipient
+                    + " because it is currently not registers, dropped activity: "
+                    + activity);
+                continue;
+            }
+
+            // the ActivitySender thread of the recipient is flushing the buffer
+            buffer.add(activity);
         }
     }
 
@@ -413,17 +721,38 @@ public class ActivitySequencer implements Startable {
      */
     public void registerUser(User user) {
         synchronized (bufferedOutgoingActivities) {
-            if (bufferedOutgoingActivities.get(user.getJID()) == null)
-                bufferedOutgoingActivities.put(user.getJID(),
-                    new ActivityBuffer<IActivityDataObject>(
-                        FIRST_SEQUENCE_NUMBER));
+            if (bufferedOutgoingActivities.get(user.getJID()) == null) {
+                OutgoingActivityBuffer buffer = new OutgoingActivityBuffer(
+                    user.getJID(), FIRST_SEQUENCE_NUMBER);
+
+                bufferedOutgoingActivities.put(user.getJID(), buffer);
+
+                if (started)
+                    buffer.startSending();
+            }
         }
 
         synchronized (bufferedIncomingActivities) {
             if (bufferedIncomingActivities.get(user.getJID()) == null)
-                bufferedIncomingActivities
-                    .put(user.getJID(), new ActivityBuffer<SequencedActivity>(
-                        FIRST_SEQUENCE_NUMBER));
+                bufferedIncomingActivities.put(user.getJID(),
+                    new IncomingActivityBuffer(FIRST_SEQUENCE_NUMBER));
+        }
+    }
+
+    /**
+     * Returns how long activities of the given user are already missing while
+     * later activities of that user are waiting to be executed.
+     * 
+     * @param user
+     * @return the age of the current gap in milliseconds or <code>0</code> if
+     *         no activity is missing
+     */
+    public long getGapAge(User user) {
+        synchronized (bufferedIncomingActivities) {
+            IncomingActivityBuffer buffer = bufferedIncomingActivities.get(user
+                .getJID());
+
+            return buffer == null ? 0 : buffer.getGapAge();
         }
     }
 
@@ -445,23 +774,14 @@ public class ActivitySequencer implements Startable {
      * @param user
      */
     public void flush(User user) {
+        OutgoingActivityBuffer buffer;
 
         synchronized (bufferedOutgoingActivities) {
-            while (true) {
-                ActivityBuffer<IActivityDataObject> buffer = bufferedOutgoingActivities
-                    .get(user.getJID());
-
-                if (buffer == null
-                    || (buffer.activities.size() == 0 && !buffer.isInTransmission))
-                    break;
-
-                try {
-                    bufferedOutgoingActivities.wait();
-                } catch (InterruptedException e) {
-                    return;
-                }
-            }
+            buffer = bufferedOutgoingActivities.get(user.getJID());
         }
+
+        if (buffer != null)
+            buffer.flush();
     }
 
     private void unregisterUser(JID jid) {
@@ -472,13 +792,17 @@ public class ActivitySequencer implements Startable {
          * the user is not present.
          */
 
+        OutgoingActivityBuffer buffer;
+
         synchronized (bufferedOutgoingActivities) {
-            bufferedOutgoingActivities.put(jid, null);
-            bufferedOutgoingActivities.notifyAll();
+            buffer = bufferedOutgoingActivities.remove(jid);
         }
 
+        if (buffer != null)
+            buffer.stopSending();
+
         synchronized (bufferedIncomingActivities) {
-            bufferedIncomingActivities.put(jid, null);
+            bufferedIncomingActivities.remove(jid);
         }
     }
 
@@ -548,6 +872,98 @@ public class ActivitySequencer implements Startable {
         }
     }
 
+    private void receiveAcknowledgement(Packet acknowledgementPacket) {
+
+        ActivitiesAcknowledgementExtension payload = ActivitiesAcknowledgementExtension.PROVIDER
+            .getPayload(acknowledgementPacket);
+
+        if (payload == null) {
+            LOG.warn("acknowledgement packet payload is corrupted");
+            return;
+        }
+
+        JID from = new JID(acknowledgementPacket.getFrom());
+
+        OutgoingActivityBuffer buffer;
+
+        synchronized (bufferedOutgoingActivities) {
+            buffer = bufferedOutgoingActivities.get(from);
+        }
+
+        if (buffer == null)
+            return;
+
+        if (payload.isResendRequested())
+            LOG.warn(from + " is missing activities starting at "
+                + payload.getNextSequenceNumber() + ", sending them again");
+
+        buffer.acknowledge(payload.getNextSequenceNumber(),
+            payload.isResendRequested());
+    }
+
+    /**
+     * Acknowledges the activities received since the last call to their
+     * senders, asks the senders for activities that are missing for too long
+     * and sends activities again that were not acknowledged for too long.
+     */
+    private void checkAcknowledgements() {
+        Map<JID, ActivitiesAcknowledgementExtension> acknowledgements = new HashMap<JID, ActivitiesAcknowledgementExtension>();
+
+        synchronized (bufferedIncomingActivities) {
+            for (Map.Entry<JID, IncomingActivityBuffer> entry : bufferedIncomingActivities
+                .entrySet()) {
+
+                JID sender = entry.getKey();
+                IncomingActivityBuffer buffer = entry.getValue();
+
+                boolean resend = buffer.isResendNeeded();
+
+                if (!resend && !buffer.isAcknowledgementPending)
+                    continue;
+
+                if (resend) {
+                    LOG.warn("activities " + buffer.nextSequenceNumber
+                        + " - " + (buffer.getLowestBufferedSequenceNumber() - 1)
+                        + " from " + sender + " are missing for "
+                        + buffer.getGapAge() + " ms ("
+                        + buffer.activities.size()
+                        + " activities buffered), requesting them again");
+
+                    buffer.lastResendRequestAt = System.currentTimeMillis();
+                }
+
+                buffer.isAcknowledgementPending = false;
+
+                acknowledgements.put(sender,
+                    new ActivitiesAcknowledgementExtension(currentSessionID,
+                        buffer.nextSequenceNumber, resend));
+            }
+        }
+
+        for (Map.Entry<JID, ActivitiesAcknowledgementExtension> entry : acknowledgements
+            .entrySet()) {
+            try {
+                transmitter.sendToSessionUser(
+                    ISarosSession.SESSION_CONNECTION_ID, entry.getKey(),
+                    ActivitiesAcknowledgementExtension.PROVIDER.create(entry
+                        .getValue()));
+            } catch (IOException e) {
+                LOG.warn("failed to acknowledge activities of "
+                    + entry.getKey(), e);
+            }
+        }
+
+        List<OutgoingActivityBuffer> buffers;
+
+        synchronized (bufferedOutgoingActivities) {
+            buffers = new ArrayList<OutgoingActivityBuffer>(
+                bufferedOutgoingActivities.values());
+        }
+
+        for (OutgoingActivityBuffer buffer : buffers)
+            buffer.checkAcknowledgements();
+    }
+
     /**
      * For testing purposes only.
      * 
@@ -171,6 +171,26 @@ public final class ChecksumCacheImpl implements IChecksumCache {
         return false;
     }
 
+    /**
+     * {@inheritDoc} This implementation does not store checksums persistently,
+     * the size and time stamps are ignored.
+     */
+    @Override
+    public Long getChecksum(String path, long size, long localTimeStamp,
+        long modificationStamp) {
+        return getChecksum(path);
+    }
+
+    /**
+     * {@inheritDoc} This implementation does not store checksums persistently,
+     * the size and time stamps are ignored.
+     */
+    @Override
+    public boolean addChecksum(String path, long checksum, long size,
+        long localTimeStamp, long modificationStamp) {
+        return addChecksum(path, checksum);
+    }
+
     @SuppressWarnings("unchecked")
     private Murmur3Hash<Long> getHash(String path, Murmur3Hash<Long> hash) {
         Object object = cache.get(path.hashCode());
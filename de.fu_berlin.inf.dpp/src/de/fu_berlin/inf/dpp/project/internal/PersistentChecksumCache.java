@@ -0,0 +1,302 @@
+package de.fu_berlin.inf.dpp.project.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.picocontainer.Disposable;
+
+import de.fu_berlin.inf.dpp.Saros;
+import de.fu_berlin.inf.dpp.project.IChecksumCache;
+
+/**
+ * A checksum cache that additionally stores all checksums together with the
+ * size and time stamps of their files in an index file, so checksums survive a
+ * restart and do not have to be recalculated for unchanged files.
+ * 
+ * The index file is an append-only log of put and remove records. It is
+ * compacted when it is loaded and when this cache is disposed.
+ * 
+ * During a run checksums are invalidated by the
+ * {@link IFileContentChangedNotifier}. Checksums of a former run are only
+ * returned if the size and time stamps of the file still match.
+ */
+public final class PersistentChecksumCache implements IChecksumCache,
+    Disposable {
+
+    private static final Logger LOG = Logger
+        .getLogger(PersistentChecksumCache.class);
+
+    private static final String INDEX_FILE_NAME = "checksums.idx";
+
+    private static final int INDEX_VERSION = 1;
+
+    private static final byte RECORD_PUT = 0;
+
+    private static final byte RECORD_REMOVE = 1;
+
+    private static class IndexEntry {
+        private final long checksum;
+        private final long size;
+        private final long localTimeStamp;
+        private final long modificationStamp;
+
+        private IndexEntry(long checksum, long size, long localTimeStamp,
+            long modificationStamp) {
+            this.checksum = checksum;
+            this.size = size;
+            this.localTimeStamp = localTimeStamp;
+            this.modificationStamp = modificationStamp;
+        }
+
+        private boolean matches(long size, long localTimeStamp,
+            long modificationStamp) {
+            return this.size == size && this.localTimeStamp == localTimeStamp
+                && this.modificationStamp == modificationStamp;
+        }
+    }
+
+    private final IFileContentChangedListener fileContentChangedListener = new IFileContentChangedListener() {
+
+        @Override
+        public void fileContentChanged(String path) {
+            synchronized (PersistentChecksumCache.this) {
+                if (index.remove(path) != null)
+                    appendRemove(path);
+            }
+        }
+    };
+
+    private final IChecksumCache cache;
+
+    private final File indexFile;
+
+    private final Map<String, IndexEntry> index = new HashMap<String, IndexEntry>();
+
+    private DataOutputStream log;
+
+    public PersistentChecksumCache(
+        IFileContentChangedNotifier fileContentChangedNotifier, Saros saros) {
+        this(fileContentChangedNotifier, new File(saros.getStateLocation()
+            .toFile(), INDEX_FILE_NAME));
+    }
+
+    PersistentChecksumCache(
+        IFileContentChangedNotifier fileContentChangedNotifier, File indexFile) {
+        this.cache = new ChecksumCacheImpl(fileContentChangedNotifier);
+        this.indexFile = indexFile;
+
+        load();
+        compact();
+
+        fileContentChangedNotifier
+            .addFileContentChangedListener(fileContentChangedListener);
+    }
+
+    @Override
+    public synchronized Long getChecksum(String path) {
+        return cache.getChecksum(path);
+    }
+
+    @Override
+    public synchronized boolean addChecksum(String path, long checksum) {
+        if (index.remove(path) != null)
+            appendRemove(path);
+
+        return cache.addChecksum(path, checksum);
+    }
+
+    @Override
+    public synchronized Long getChecksum(String path, long size,
+        long localTimeStamp, long modificationStamp) {
+
+        Long checksum = cache.getChecksum(path);
+
+        if (checksum != null)
+            return checksum;
+
+        IndexEntry entry = index.get(path);
+
+        if (entry == null)
+            return null;
+
+        if (!entry.matches(size, localTimeStamp, modificationStamp)) {
+            if (LOG.isTraceEnabled())
+                LOG.trace("stored checksum is outdated for file: " + path);
+
+            index.remove(path);
+            appendRemove(path);
+            return null;
+        }
+
+        cache.addChecksum(path, entry.checksum);
+        return entry.checksum;
+    }
+
+    @Override
+    public synchronized boolean addChecksum(String path, long checksum,
+        long size, long localTimeStamp, long modificationStamp) {
+
+        IndexEntry entry = new IndexEntry(checksum, size, localTimeStamp,
+            modificationStamp);
+
+        index.put(path, entry);
+        appendPut(path, entry);
+
+        return cache.addChecksum(path, checksum);
+    }
+
+    /**
+     * Rewrites the index file and closes it.
+     */
+    @Override
+    public synchronized void dispose() {
+        compact();
+        IOUtils.closeQuietly(log);
+        log = null;
+    }
+
+    private void load() {
+        if (!indexFile.exists())
+            return;
+
+        DataInputStream in = null;
+
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(indexFile)));
+
+            if (in.readInt() != INDEX_VERSION) {
+                LOG.debug("discarding checksum index with unknown version: "
+                    + indexFile);
+                return;
+            }
+
+            while (true) {
+                byte type;
+
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                String path = in.readUTF();
+
+                if (type == RECORD_PUT) {
+                    long checksum = in.readLong();
+                    long size = in.readLong();
+                    long localTimeStamp = in.readLong();
+                    long modificationStamp = in.readLong();
+
+                    index.put(path, new IndexEntry(checksum, size,
+                        localTimeStamp, modificationStamp));
+                } else if (type == RECORD_REMOVE) {
+                    index.remove(path);
+                } else {
+                    throw new IOException("unknown record type: " + type);
+                }
+            }
+        } catch (IOException e) {
+            /*
+             * a truncated last record is expected if the workbench was not
+             * shut down properly, all records before it are still valid
+             */
+            LOG.warn("checksum index is corrupted, using " + index.size()
+                + " entries read so far: " + indexFile, e);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+
+        LOG.debug("loaded " + index.size() + " checksums from " + indexFile);
+    }
+
+    /**
+     * Writes all current entries to a new index file and opens it for
+     * appending further records.
+     */
+    private void compact() {
+        IOUtils.closeQuietly(log);
+        log = null;
+
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+
+        DataOutputStream out = null;
+
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tempFile)));
+
+            out.writeInt(INDEX_VERSION);
+
+            for (Map.Entry<String, IndexEntry> entry : index.entrySet())
+                writePut(out, entry.getKey(), entry.getValue());
+
+            out.close();
+            out = null;
+
+            if (indexFile.exists() && !indexFile.delete())
+                throw new IOException("could not delete " + indexFile);
+
+            if (!tempFile.renameTo(indexFile))
+                throw new IOException("could not rename " + tempFile + " to "
+                    + indexFile);
+
+            log = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(indexFile, true)));
+        } catch (IOException e) {
+            LOG.warn("could not write checksum index: " + indexFile, e);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    private void appendPut(String path, IndexEntry entry) {
+        if (log == null)
+            return;
+
+        try {
+            writePut(log, path, entry);
+        } catch (IOException e) {
+            closeLog(e);
+        }
+    }
+
+    private void appendRemove(String path) {
+        if (log == null)
+            return;
+
+        try {
+            log.writeByte(RECORD_REMOVE);
+            log.writeUTF(path);
+        } catch (IOException e) {
+            closeLog(e);
+        }
+    }
+
+    private void closeLog(IOException e) {
+        LOG.warn("could not update checksum index: " + indexFile, e);
+        IOUtils.closeQuietly(log);
+        log = null;
+    }
+
+    private static void writePut(DataOutputStream out, String path,
+        IndexEntry entry) throws IOException {
+        out.writeByte(RECORD_PUT);
+        out.writeUTF(path);
+        out.writeLong(entry.checksum);
+        out.writeLong(entry.size);
+        out.writeLong(entry.localTimeStamp);
+        out.writeLong(entry.modificationStamp);
+    }
+}
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -51,10 +52,13 @@ import de.fu_berlin.inf.dpp.Saros;
 import de.fu_berlin.inf.dpp.User;
 import de.fu_berlin.inf.dpp.User.Permission;
 import de.fu_berlin.inf.dpp.activities.SPath;
+import de.fu_berlin.inf.dpp.activities.SPathDataObject;
 import de.fu_berlin.inf.dpp.activities.business.ChecksumActivity;
+import de.fu_berlin.inf.dpp.activities.business.ChecksumErrorActivity;
 import de.fu_berlin.inf.dpp.activities.business.EditorActivity;
 import de.fu_berlin.inf.dpp.activities.business.FileActivity;
 import de.fu_berlin.inf.dpp.activities.business.FileActivity.Purpose;
+import de.fu_berlin.inf.dpp.activities.business.FileActivity.Type;
 import de.fu_berlin.inf.dpp.activities.business.FolderActivity;
 import de.fu_berlin.inf.dpp.activities.business.IActivity;
 import de.fu_berlin.inf.dpp.activities.business.IResourceActivity;
@@ -62,6 +66,7 @@ import de.fu_berlin.inf.dpp.activities.business.JupiterActivity;
 import de.fu_berlin.inf.dpp.activities.business.NOPActivity;
 import de.fu_berlin.inf.dpp.activities.business.TextSelectionActivity;
 import de.fu_berlin.inf.dpp.activities.business.ViewportActivity;
+import de.fu_berlin.inf.dpp.activities.serializable.FileActivityDataObject;
 import de.fu_berlin.inf.dpp.activities.serializable.IActivityDataObject;
 import de.fu_berlin.inf.dpp.concurrent.management.ConcurrentDocumentClient;
 import de.fu_berlin.inf.dpp.concurrent.management.ConcurrentDocumentServer;
@@ -85,6 +90,7 @@ import de.fu_berlin.inf.dpp.net.ITransmitter;
 import de.fu_berlin.inf.dpp.net.JID;
 import de.fu_berlin.inf.dpp.net.SarosNet;
 import de.fu_berlin.inf.dpp.net.internal.DataTransferManager;
+import de.fu_berlin.inf.dpp.net.internal.StreamServiceManager;
 import de.fu_berlin.inf.dpp.net.internal.extensions.KickUserExtension;
 import de.fu_berlin.inf.dpp.net.internal.extensions.SarosLeaveExtension;
 import de.fu_berlin.inf.dpp.observables.ProjectNegotiationObservable;
@@ -100,8 +106,10 @@ import de.fu_berlin.inf.dpp.synchronize.StopManager;
 import de.fu_berlin.inf.dpp.synchronize.UISynchronizer;
 import de.fu_berlin.inf.dpp.ui.util.CollaborationUtils;
 import de.fu_berlin.inf.dpp.util.ArrayUtils;
+import de.fu_berlin.inf.dpp.util.FileUtils;
 import de.fu_berlin.inf.dpp.util.StackTrace;
 import de.fu_berlin.inf.dpp.util.Utils;
+import de.fu_berlin.inf.dpp.util.sendfile.FileContentStreamService;
 
 /**
  * TODO Review if SarosSession, ConcurrentDocumentManager, ActivitySequencer all
@@ -138,6 +146,12 @@ public final class SarosSession implements ISarosSession {
     @Inject
     private EditorManager editorManager;
 
+    @Inject
+    private StreamServiceManager streamServiceManager;
+
+    @Inject
+    private FileContentStreamService fileContentStreamService;
+
     private final ISarosContext sarosContext;
 
     private final ConcurrentDocumentClient concurrentDocumentClient;
@@ -188,6 +202,13 @@ public final class SarosSession implements ISarosSession {
 
     private final ActivityQueuer activityQueuer;
 
+    /**
+     * The activities that are held back until the content of a preceding file
+     * activity of the same sender is fetched, keyed by the JID the activities
+     * were received from.
+     */
+    private final Map<JID, List<IActivityDataObject>> heldBackActivities = new HashMap<JID, List<IActivityDataObject>>();
+
     private final IActivityListener activityListener = new IActivityListener() {
 
         /**
@@ -701,9 +722,97 @@ public final class SarosSession implements ISarosSession {
 
     @Override
     public void exec(List<IActivityDataObject> ados) {
+        final List<IActivityDataObject> ready = new ArrayList<IActivityDataObject>();
+        final Set<JID> fetchers = new HashSet<JID>();
+
+        /*
+         * Contents are fetched by a separate thread, as the stream session
+         * needs the dispatch threads to be negotiated and to receive the
+         * content. All activities of the sender that follow such a file
+         * activity are held back until the content is fetched to keep their
+         * order.
+         */
+        synchronized (heldBackActivities) {
+            for (IActivityDataObject ado : activityQueuer.process(ados)) {
+                // all activities are relayed by the host
+                JID sender = isHost() ? ado.getSource() : getHost().getJID();
+
+                List<IActivityDataObject> heldBack = heldBackActivities
+                    .get(sender);
+
+                if (heldBack == null
+                    && ado instanceof FileActivityDataObject
+                    && ((FileActivityDataObject) ado).getContentID() != null) {
+                    heldBack = new ArrayList<IActivityDataObject>();
+                    heldBackActivities.put(sender, heldBack);
+                    fetchers.add(sender);
+                }
+
+                if (heldBack != null)
+                    heldBack.add(ado);
+                else
+                    ready.add(ado);
+            }
+        }
+
+        execute(ready);
+
+        for (final JID sender : fetchers) {
+            Utils.runSafeAsync("FileContentFetcher-" + sender.getBase(), log,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        executeHeldBackActivities(sender);
+                    }
+                });
+        }
+    }
+
+    /**
+     * Fetches the contents of the activities held back for the given sender
+     * and executes them, until no more activities are held back.
+     */
+    private void executeHeldBackActivities(JID sender) {
+        while (true) {
+            List<IActivityDataObject> ados;
+
+            synchronized (heldBackActivities) {
+                ados = heldBackActivities.get(sender);
+
+                if (ados == null)
+                    return;
+
+                if (ados.isEmpty()) {
+                    heldBackActivities.remove(sender);
+                    return;
+                }
+
+                heldBackActivities.put(sender,
+                    new ArrayList<IActivityDataObject>());
+            }
+
+            List<IActivityDataObject> fetched = new ArrayList<IActivityDataObject>(
+                ados.size());
+
+            for (IActivityDataObject ado : ados) {
+                if (ado instanceof FileActivityDataObject
+                    && !fetchContent((FileActivityDataObject) ado))
+                    continue;
+
+                fetched.add(ado);
+            }
+
+            execute(fetched);
+        }
+    }
+
+    private void execute(List<IActivityDataObject> ados) {
+        if (ados.isEmpty())
+            return;
+
         final List<IActivity> activities = new ArrayList<IActivity>();
 
-        for (IActivityDataObject ado : activityQueuer.process(ados)) {
+        for (IActivityDataObject ado : ados) {
             try {
                 activities.add(ado.getActivity(this));
             } catch (IllegalArgumentException e) {
@@ -715,6 +824,75 @@ public final class SarosSession implements ISarosSession {
         activityHandler.handleIncomingActivities(activities);
     }
 
+    /**
+     * Fetches the content of the given data object if it was sent separately
+     * from the activity. The local version of the file is used as base, so
+     * only the changed parts of the file are transferred. If the content
+     * cannot be fetched, a recovery of the affected files is requested from
+     * the host.
+     * 
+     * @blocking until the content is transferred
+     * 
+     * @return <code>false</code> if the content could not be fetched and the
+     *         data object has to be dropped
+     */
+    private boolean fetchContent(FileActivityDataObject dataObject) {
+        String contentID = dataObject.getContentID();
+
+        if (contentID == null)
+            return true;
+
+        // only the host detaches contents
+        if (isHost()) {
+            log.error("received content reference from a client: "
+                + dataObject);
+            return false;
+        }
+
+        SPathDataObject basePath = dataObject.getPath();
+
+        if (dataObject.getType() == Type.MOVED)
+            basePath = dataObject.getOldPath();
+
+        byte[] base = null;
+
+        try {
+            IFile file = basePath.toSPath(this).getFile();
+
+            if (file.exists())
+                base = FileUtils.getLocalFileContent(file);
+        } catch (IllegalArgumentException e) {
+            log.debug("no local version of " + basePath + " available", e);
+        }
+
+        try {
+            dataObject.setContent(fileContentStreamService.fetch(
+                streamServiceManager, getHost(), contentID,
+                dataObject.getChecksum(), base));
+            return true;
+        } catch (IOException e) {
+            log.error("could not fetch content of " + dataObject
+                + ", requesting a recovery from the host", e);
+        }
+
+        List<SPath> paths = new ArrayList<SPath>();
+
+        try {
+            paths.add(dataObject.getPath().toSPath(this));
+
+            if (dataObject.getType() == Type.MOVED)
+                paths.add(dataObject.getOldPath().toSPath(this));
+        } catch (IllegalArgumentException e) {
+            log.error("could not request a recovery of " + dataObject, e);
+            return false;
+        }
+
+        activityListener.activityCreated(new ChecksumErrorActivity(
+            getLocalUser(), getHost(), paths, null));
+
+        return false;
+    }
+
     /*
      * FIXME most (if not all checks) to send or not activities should be
      * handled by the activity handler and not here !
@@ -771,13 +949,51 @@ public final class SarosSession implements ISarosSession {
             return;
 
         try {
-            activitySequencer.sendActivity(recipients,
-                activity.getActivityDataObject(this));
+            IActivityDataObject dataObject = activity
+                .getActivityDataObject(this);
+
+            if (isHost() && dataObject instanceof FileActivityDataObject) {
+                sendFileActivity(recipients, activity,
+                    (FileActivityDataObject) dataObject);
+                return;
+            }
+
+            activitySequencer.sendActivity(recipients, dataObject);
         } catch (IllegalArgumentException e) {
             log.warn("could not serialize activity: " + activity, e);
         }
     }
 
+    /**
+     * Sends the file activity to the recipients who are able to fetch its
+     * content with a reference to the content only, and to all others with
+     * the content.
+     */
+    private void sendFileActivity(List<User> recipients, IActivity activity,
+        FileActivityDataObject dataObject) {
+
+        List<User> fetchingRecipients = new ArrayList<User>();
+        List<User> inlineRecipients = new ArrayList<User>();
+
+        for (User recipient : recipients) {
+            if (fileContentStreamService.isSupported(recipient))
+                fetchingRecipients.add(recipient);
+            else
+                inlineRecipients.add(recipient);
+        }
+
+        if (!fetchingRecipients.isEmpty()) {
+            FileActivityDataObject detached = (FileActivityDataObject) activity
+                .getActivityDataObject(this);
+
+            fileContentStreamService.detachContent(detached);
+            activitySequencer.sendActivity(fetchingRecipients, detached);
+        }
+
+        if (!inlineRecipients.isEmpty())
+            activitySequencer.sendActivity(inlineRecipients, dataObject);
+    }
+
     /**
      * Convenient method to determine if Project of given {@link IActivity} is
      * currently transmitted.
@@ -0,0 +1,350 @@
+package de.fu_berlin.inf.dpp.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * rsync style deltas between two versions of a file.
+ * 
+ * The receiver, who already has an old version of the file (the base),
+ * computes the {@linkplain Signature signature} of the base and hands it to
+ * the sender. The sender uses the signature to find the blocks of the base
+ * that occur anywhere in the new version and
+ * {@linkplain #writeDelta(byte[], Signature, DataOutputStream) writes} a delta
+ * that only contains references to these blocks and the literal bytes of
+ * everything else. The receiver then
+ * {@linkplain #applyDelta(byte[], Signature, DataInputStream) applies} the
+ * delta to its base to get the new version.
+ * 
+ * Blocks are looked up by a weak rolling checksum, which can be moved along
+ * the new version byte by byte, and are confirmed by an MD5 hash.
+ */
+public class BlockDelta {
+
+    protected static final int MIN_BLOCK_SIZE = 512;
+
+    protected static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+    protected static final byte END = 0;
+
+    protected static final byte COPY = 1;
+
+    protected static final byte LITERAL = 2;
+
+    /**
+     * The checksums of the blocks of a base.
+     */
+    public static class Signature implements Serializable {
+
+        private static final long serialVersionUID = 2838412536217391307L;
+
+        protected final int blockSize;
+
+        protected final int length;
+
+        protected final int[] weakChecksums;
+
+        protected final byte[][] strongChecksums;
+
+        protected Signature(int blockSize, int length, int[] weakChecksums,
+            byte[][] strongChecksums) {
+            this.blockSize = blockSize;
+            this.length = length;
+            this.weakChecksums = weakChecksums;
+            this.strongChecksums = strongChecksums;
+        }
+
+        public int getBlockSize() {
+            return blockSize;
+        }
+
+        /**
+         * @return the length of the base in bytes
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return the number of complete blocks of the base
+         */
+        public int getBlockCount() {
+            return weakChecksums.length;
+        }
+    }
+
+    /**
+     * The rsync checksum of a window of bytes, which can be moved one byte
+     * ahead in constant time.
+     */
+    protected static class RollingChecksum {
+
+        protected final int windowSize;
+
+        protected int a;
+
+        protected int b;
+
+        protected RollingChecksum(byte[] data, int offset, int windowSize) {
+            this.windowSize = windowSize;
+
+            for (int i = 0; i < windowSize; i++) {
+                int value = data[offset + i] & 0xff;
+                a += value;
+                b += (windowSize - i) * value;
+            }
+        }
+
+        /**
+         * Moves the window one byte ahead.
+         * 
+         * @param outgoing
+         *            the first byte of the current window
+         * @param incoming
+         *            the byte following the current window
+         */
+        protected void roll(byte outgoing, byte incoming) {
+            int out = outgoing & 0xff;
+            a += (incoming & 0xff) - out;
+            b += a - windowSize * out;
+        }
+
+        protected int getValue() {
+            return (b << 16) | (a & 0xffff);
+        }
+    }
+
+    /**
+     * Returns a block size for a base of the given length, which is the
+     * square root of the length within reasonable bounds, like rsync does.
+     */
+    public static int getBlockSize(int length) {
+        int blockSize = (int) Math.sqrt(length);
+        return Math.min(MAX_BLOCK_SIZE, Math.max(MIN_BLOCK_SIZE, blockSize));
+    }
+
+    /**
+     * Computes the signature of the given base with a
+     * {@linkplain #getBlockSize(int) suitable} block size.
+     */
+    public static Signature computeSignature(byte[] base) {
+        return computeSignature(base, getBlockSize(base.length));
+    }
+
+    public static Signature computeSignature(byte[] base, int blockSize) {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("block size must be positive");
+
+        int blockCount = base.length / blockSize;
+
+        int[] weakChecksums = new int[blockCount];
+        byte[][] strongChecksums = new byte[blockCount][];
+
+        MessageDigest md5 = createMD5();
+
+        for (int i = 0; i < blockCount; i++) {
+            int offset = i * blockSize;
+            weakChecksums[i] = new RollingChecksum(base, offset, blockSize)
+                .getValue();
+            md5.update(base, offset, blockSize);
+            strongChecksums[i] = md5.digest();
+        }
+
+        return new Signature(blockSize, base.length, weakChecksums,
+            strongChecksums);
+    }
+
+    /**
+     * Writes the delta that turns the base with the given signature into the
+     * given content.
+     */
+    public static void writeDelta(byte[] content, Signature signature,
+        DataOutputStream out) throws IOException {
+
+        int blockSize = signature.blockSize;
+
+        Map<Integer, List<Integer>> blocks = new HashMap<Integer, List<Integer>>();
+
+        for (int i = 0; i < signature.weakChecksums.length; i++) {
+            List<Integer> candidates = blocks.get(signature.weakChecksums[i]);
+
+            if (candidates == null) {
+                candidates = new ArrayList<Integer>(1);
+                blocks.put(signature.weakChecksums[i], candidates);
+            }
+
+            candidates.add(i);
+        }
+
+        MessageDigest md5 = createMD5();
+
+        int literalStart = 0;
+        int position = 0;
+
+        // the run of consecutive blocks that has not been written yet
+        int copyStart = 0;
+        int copyCount = 0;
+
+        RollingChecksum checksum = null;
+
+        if (!blocks.isEmpty() && content.length >= blockSize)
+            checksum = new RollingChecksum(content, 0, blockSize);
+
+        while (checksum != null) {
+            int block = findBlock(blocks.get(checksum.getValue()), content,
+                position, signature, md5);
+
+            if (block != -1) {
+                if (literalStart < position) {
+                    copyCount = writeCopy(out, copyStart, copyCount);
+                    writeLiteral(out, content, literalStart, position);
+                }
+
+                if (copyCount > 0 && copyStart + copyCount == block) {
+                    copyCount++;
+                } else {
+                    copyCount = writeCopy(out, copyStart, copyCount);
+                    copyStart = block;
+                    copyCount = 1;
+                }
+
+                position += blockSize;
+                literalStart = position;
+
+                checksum = null;
+
+                if (position + blockSize <= content.length)
+                    checksum = new RollingChecksum(content, position,
+                        blockSize);
+            } else if (position + blockSize < content.length) {
+                checksum.roll(content[position], content[position + blockSize]);
+                position++;
+            } else {
+                checksum = null;
+            }
+        }
+
+        writeCopy(out, copyStart, copyCount);
+
+        if (literalStart < content.length)
+            writeLiteral(out, content, literalStart, content.length);
+
+        out.writeByte(END);
+    }
+
+    /**
+     * Reads a delta and applies it to the given base.
+     * 
+     * @param signature
+     *            the signature of the base the delta was computed for
+     * @return the content described by the delta
+     * @throws IOException
+     *             if the delta could not be read or does not fit the base
+     */
+    public static byte[] applyDelta(byte[] base, Signature signature,
+        DataInputStream in) throws IOException {
+
+        if (base.length != signature.length)
+            throw new IOException("the base does not match the signature");
+
+        int blockSize = signature.blockSize;
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream(base.length);
+
+        while (true) {
+            byte instruction = in.readByte();
+
+            switch (instruction) {
+            case END:
+                return result.toByteArray();
+            case COPY:
+                int block = in.readInt();
+                int count = in.readInt();
+
+                if (block < 0 || count <= 0
+                    || block + count > signature.getBlockCount())
+                    throw new IOException("invalid block range " + block
+                        + " + " + count);
+
+                result.write(base, block * blockSize, count * blockSize);
+                break;
+            case LITERAL:
+                int length = in.readInt();
+
+                if (length <= 0)
+                    throw new IOException("invalid literal length " + length);
+
+                byte[] literal = new byte[length];
+                in.readFully(literal);
+                result.write(literal);
+                break;
+            default:
+                throw new IOException("unknown delta instruction "
+                    + instruction);
+            }
+        }
+    }
+
+    /**
+     * @return the first of the candidate blocks that matches the block of the
+     *         content at the given position or <code>-1</code> if none does
+     */
+    protected static int findBlock(List<Integer> candidates, byte[] content,
+        int position, Signature signature, MessageDigest md5) {
+
+        if (candidates == null)
+            return -1;
+
+        md5.update(content, position, signature.blockSize);
+        byte[] strongChecksum = md5.digest();
+
+        for (int block : candidates) {
+            if (Arrays.equals(strongChecksum, signature.strongChecksums[block]))
+                return block;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the number of blocks that are still to be copied, which is
+     *         always zero
+     */
+    protected static int writeCopy(DataOutputStream out, int block, int count)
+        throws IOException {
+
+        if (count == 0)
+            return 0;
+
+        out.writeByte(COPY);
+        out.writeInt(block);
+        out.writeInt(count);
+        return 0;
+    }
+
+    protected static void writeLiteral(DataOutputStream out, byte[] content,
+        int start, int end) throws IOException {
+
+        out.writeByte(LITERAL);
+        out.writeInt(end - start);
+        out.write(content, start, end - start);
+    }
+
+    protected static MessageDigest createMD5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
@@ -72,6 +72,17 @@ public class FileUtils {
         return adler.getValue();
     }
 
+    /**
+     * Calculate Adler32 checksum for the given file content.
+     * 
+     * @return checksum of the content
+     */
+    public static long checksum(byte[] content) {
+        Adler32 adler = new Adler32();
+        adler.update(content);
+        return adler.getValue();
+    }
+
     /**
      * Makes the given file read-only (</code>readOnly == true</code>) or
      * writable (<code>readOnly == false</code>).
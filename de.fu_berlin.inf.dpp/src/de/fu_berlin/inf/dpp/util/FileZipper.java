@@ -10,6 +10,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -81,11 +82,57 @@ public class FileZipper {
             if (fileSystemPath != null)
                 totalFileSizes += fileSystemPath.toFile().length();
 
-            filesToZip.add(new EclipseFileWrapper(project.getFile(path)));
+            filesToZip.add(new EclipseFileWrapper(project.getFile(path), ""));
         }
 
-        internalZipFiles(filesToZip, archive, true, true, totalFileSizes,
-            listener);
+        internalZipFiles(filesToZip, archive, true, totalFileSizes, listener);
+    }
+
+    /**
+     * Creates a single Zip archive of the files of several projects. The name
+     * of every entry is the project relative path of the file prefixed with the
+     * prefix the file is mapped under, so all projects can be unpacked from the
+     * archive in a single pass. All directories that are included in the path
+     * of a file will be stored too. The archive will automatically be deleted
+     * if the operation fails or is canceled.
+     * 
+     * @param files
+     *            the files to archive, mapped by the prefix of their entry
+     *            names
+     * @param archive
+     *            the archive file that will contain the compressed content, if
+     *            the archive file already exists it will be overwritten
+     * @param listener
+     *            a {@link ZipListener} which will receive status updates or
+     *            <code>null</code>
+     * 
+     * @cancelable This operation can be canceled via the given listener.
+     * 
+     * @throws IOException
+     *             if an I/O error occurred while creating the archive
+     * @throws OperationCanceledException
+     *             if the user canceled the operation, see also
+     *             {@link ZipListener}
+     */
+    public static void createProjectZipArchive(Map<String, List<IFile>> files,
+        File archive, ZipListener listener) throws IOException,
+        OperationCanceledException {
+
+        long totalFileSizes = 0;
+
+        List<FileWrapper> filesToZip = new ArrayList<FileWrapper>();
+
+        for (Map.Entry<String, List<IFile>> entry : files.entrySet()) {
+            for (IFile file : entry.getValue()) {
+                IPath fileSystemPath = file.getLocation();
+                if (fileSystemPath != null)
+                    totalFileSizes += fileSystemPath.toFile().length();
+
+                filesToZip.add(new EclipseFileWrapper(file, entry.getKey()));
+            }
+        }
+
+        internalZipFiles(filesToZip, archive, true, totalFileSizes, listener);
     }
 
     /**
@@ -124,12 +171,12 @@ public class FileZipper {
                 filesToZip.add(new JavaFileWrapper(file));
             }
 
-        internalZipFiles(filesToZip, archive, compress, false, -1L, listener);
+        internalZipFiles(filesToZip, archive, compress, -1L, listener);
     }
 
     private static void internalZipFiles(List<FileWrapper> files, File archive,
-        boolean compress, boolean includeDirectories, long totalSize,
-        ZipListener listener) throws IOException, OperationCanceledException {
+        boolean compress, long totalSize, ZipListener listener)
+        throws IOException, OperationCanceledException {
 
         byte[] buffer = new byte[BUFFER_SIZE];
 
@@ -151,8 +198,7 @@ public class FileZipper {
 
         try {
             for (FileWrapper file : files) {
-                String entryName = includeDirectories ? file.getPath() : file
-                    .getName();
+                String entryName = file.getEntryName();
 
                 if (listener != null)
                     isCanceled = listener.update(file.getPath());
@@ -209,6 +255,8 @@ public class FileZipper {
         public String getName();
 
         public String getPath();
+
+        public String getEntryName();
     }
 
     private static class JavaFileWrapper implements FileWrapper {
@@ -237,13 +285,20 @@ public class FileZipper {
         public String getPath() {
             return file.getPath().replace('\\', '/');
         }
+
+        @Override
+        public String getEntryName() {
+            return getName();
+        }
     }
 
     private static class EclipseFileWrapper implements FileWrapper {
         protected IFile file;
+        protected String entryPrefix;
 
-        public EclipseFileWrapper(IFile file) {
+        public EclipseFileWrapper(IFile file, String entryPrefix) {
             this.file = file;
+            this.entryPrefix = entryPrefix;
         }
 
         @Override
@@ -269,5 +324,10 @@ public class FileZipper {
         public String getPath() {
             return file.getProjectRelativePath().toPortableString();
         }
+
+        @Override
+        public String getEntryName() {
+            return entryPrefix + getPath();
+        }
     }
 }
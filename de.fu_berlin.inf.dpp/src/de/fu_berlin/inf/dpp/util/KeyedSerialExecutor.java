@@ -0,0 +1,225 @@
+package de.fu_berlin.inf.dpp.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Executes tasks on a shared {@link Executor} so that tasks with the same key
+ * run one after another in the order they were submitted, while tasks with
+ * different keys may run in parallel.
+ * 
+ * Every task of a key is submitted to the executor on its own, so a key with
+ * many pending tasks does not occupy a thread of the executor longer than
+ * others.
+ * 
+ * For every key the number of pending tasks and the time spent executing them
+ * is recorded, see {@link #getStatistics()}.
+ */
+public class KeyedSerialExecutor {
+
+    private static final Logger log = Logger
+        .getLogger(KeyedSerialExecutor.class);
+
+    /**
+     * Snapshot of the recorded values of one key.
+     */
+    public static class Statistic {
+
+        private final Object key;
+        private final int queueDepth;
+        private final int maxQueueDepth;
+        private final long executed;
+        private final long totalServiceTime;
+        private final long maxServiceTime;
+
+        Statistic(Object key, int queueDepth, int maxQueueDepth,
+            long executed, long totalServiceTime, long maxServiceTime) {
+            this.key = key;
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.executed = executed;
+            this.totalServiceTime = totalServiceTime;
+            this.maxServiceTime = maxServiceTime;
+        }
+
+        public Object getKey() {
+            return key;
+        }
+
+        /**
+         * @return number of tasks that are not finished yet, including the
+         *         running one
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+
+        public long getExecuted() {
+            return executed;
+        }
+
+        /**
+         * @return the time in milliseconds all executed tasks took
+         */
+        public long getTotalServiceTime() {
+            return totalServiceTime;
+        }
+
+        /**
+         * @return the time in milliseconds the longest task took
+         */
+        public long getMaxServiceTime() {
+            return maxServiceTime;
+        }
+
+        @Override
+        public String toString() {
+            return key + ": queue depth: " + queueDepth + " (max "
+                + maxQueueDepth + "), executed: " + executed
+                + ", service time: " + totalServiceTime + "ms (max "
+                + maxServiceTime + "ms)";
+        }
+    }
+
+    /**
+     * The tasks of one key, guarded by the lock of {@link #queues}.
+     */
+    private class SerialQueue implements Runnable {
+
+        private final Object key;
+
+        private final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+
+        /** whether the head of tasks is submitted to the executor */
+        private boolean scheduled = false;
+
+        private int maxQueueDepth = 0;
+        private long executed = 0;
+        private long totalServiceTime = 0;
+        private long maxServiceTime = 0;
+
+        SerialQueue(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            Runnable task;
+
+            synchronized (queues) {
+                task = tasks.getFirst();
+            }
+
+            long start = System.currentTimeMillis();
+
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Internal error in task for " + key + ":", e);
+            } finally {
+                long serviceTime = System.currentTimeMillis() - start;
+
+                synchronized (queues) {
+                    tasks.removeFirst();
+                    executed++;
+                    totalServiceTime += serviceTime;
+                    maxServiceTime = Math.max(maxServiceTime, serviceTime);
+                    scheduled = false;
+
+                    try {
+                        scheduleNext(this);
+                    } catch (RejectedExecutionException e) {
+                        log.debug("executor is shut down, discarded tasks for "
+                            + key);
+                    }
+                }
+            }
+        }
+
+        Statistic getStatistic() {
+            return new Statistic(key, tasks.size(), maxQueueDepth, executed,
+                totalServiceTime, maxServiceTime);
+        }
+    }
+
+    private final Executor executor;
+
+    private final Map<Object, SerialQueue> queues = new HashMap<Object, SerialQueue>();
+
+    /**
+     * @param executor
+     *            the executor to run the tasks of all keys
+     */
+    public KeyedSerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Executes the task after all tasks previously submitted with the same key
+     * have finished.
+     * 
+     * @throws RejectedExecutionException
+     *             if the executor does not accept the task
+     */
+    public void execute(Object key, Runnable task) {
+        synchronized (queues) {
+            SerialQueue queue = queues.get(key);
+
+            if (queue == null) {
+                queue = new SerialQueue(key);
+                queues.put(key, queue);
+            }
+
+            queue.tasks.add(task);
+            queue.maxQueueDepth = Math.max(queue.maxQueueDepth,
+                queue.tasks.size());
+
+            scheduleNext(queue);
+        }
+    }
+
+    /*
+     * must be called while holding the lock of queues, discards all tasks of
+     * the queue if the executor rejects it
+     */
+    private void scheduleNext(SerialQueue queue) {
+        if (queue.scheduled || queue.tasks.isEmpty())
+            return;
+
+        queue.scheduled = true;
+
+        try {
+            executor.execute(queue);
+        } catch (RejectedExecutionException e) {
+            queue.scheduled = false;
+            queue.tasks.clear();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the statistics of all keys that were used so far
+     */
+    public List<Statistic> getStatistics() {
+        synchronized (queues) {
+            List<Statistic> statistics = new ArrayList<Statistic>(
+                queues.size());
+
+            for (SerialQueue queue : queues.values())
+                statistics.add(queue.getStatistic());
+
+            return statistics;
+        }
+    }
+}
@@ -400,6 +400,7 @@ public final class Utils {
             bos.write(buf, 0, count);
             monitor.worked(1);
         }
+        compressor.end();
         IOUtils.closeQuietly(bos);
 
         monitor.done();
@@ -439,6 +440,7 @@ public final class Utils {
             log.error("Failed to inflate bytearray", ex);
             throw new IOException(ex);
         } finally {
+            decompressor.end();
             IOUtils.closeQuietly(bos);
             monitor.done();
         }
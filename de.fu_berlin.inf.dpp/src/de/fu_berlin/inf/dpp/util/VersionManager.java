@@ -12,7 +12,6 @@ import java.util.Properties;
 import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 import org.jivesoftware.smack.PacketListener;
-import org.jivesoftware.smack.filter.AndFilter;
 import org.jivesoftware.smack.filter.PacketFilter;
 import org.jivesoftware.smack.packet.IQ;
 import org.jivesoftware.smack.packet.Packet;
@@ -174,7 +173,7 @@ public class VersionManager {
 
                 log.debug("send version info to " + iq.getFrom());
             }
-        }, new AndFilter(VERSION_PROVIDER.getIQFilter(), new PacketFilter() {
+        }, VERSION_PROVIDER.getIQFilter().and(new PacketFilter() {
             @Override
             public boolean accept(Packet packet) {
                 return ((IQ) packet).getType() == IQ.Type.GET;
@@ -215,7 +214,7 @@ public class VersionManager {
         final String packetID = request.getPacketID();
 
         SarosPacketCollector collector = receiver
-            .createCollector(new AndFilter(VERSION_PROVIDER.getIQFilter(),
+            .createCollector(VERSION_PROVIDER.getIQFilter().and(
                 new PacketFilter() {
                     @Override
                     public boolean accept(Packet packet) {
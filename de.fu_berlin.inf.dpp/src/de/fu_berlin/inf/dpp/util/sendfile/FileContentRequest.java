@@ -0,0 +1,20 @@
+package de.fu_berlin.inf.dpp.util.sendfile;
+
+import java.io.Serializable;
+
+import de.fu_berlin.inf.dpp.util.BlockDelta.Signature;
+
+/**
+ * Asks for the content with the given ID, to be sent as delta against the
+ * base with the given signature.
+ */
+public class FileContentRequest implements Serializable {
+    private static final long serialVersionUID = -6310927402795716542L;
+    String contentID;
+    Signature signature;
+
+    protected FileContentRequest(String contentID, Signature signature) {
+        this.contentID = contentID;
+        this.signature = signature;
+    }
+}
@@ -0,0 +1,374 @@
+package de.fu_berlin.inf.dpp.util.sendfile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.jivesoftware.smack.Connection;
+import org.jivesoftware.smackx.ServiceDiscoveryManager;
+
+import de.fu_berlin.inf.dpp.Saros;
+import de.fu_berlin.inf.dpp.User;
+import de.fu_berlin.inf.dpp.activities.serializable.FileActivityDataObject;
+import de.fu_berlin.inf.dpp.exceptions.StreamException;
+import de.fu_berlin.inf.dpp.net.ConnectionState;
+import de.fu_berlin.inf.dpp.net.IConnectionListener;
+import de.fu_berlin.inf.dpp.net.SarosNet;
+import de.fu_berlin.inf.dpp.net.discoverymanager.DiscoveryManager;
+import de.fu_berlin.inf.dpp.net.discoverymanager.DiscoveryManager.CacheMissException;
+import de.fu_berlin.inf.dpp.net.internal.StreamService;
+import de.fu_berlin.inf.dpp.net.internal.StreamServiceManager;
+import de.fu_berlin.inf.dpp.net.internal.StreamSession;
+import de.fu_berlin.inf.dpp.net.internal.StreamSession.StreamSessionInputStream;
+import de.fu_berlin.inf.dpp.net.internal.StreamSession.StreamSessionListener;
+import de.fu_berlin.inf.dpp.project.AbstractSarosSessionListener;
+import de.fu_berlin.inf.dpp.project.ISarosSession;
+import de.fu_berlin.inf.dpp.project.ISarosSessionManager;
+import de.fu_berlin.inf.dpp.util.BlockDelta;
+import de.fu_berlin.inf.dpp.util.BlockDelta.Signature;
+import de.fu_berlin.inf.dpp.util.FileUtils;
+import de.fu_berlin.inf.dpp.util.NamedThreadFactory;
+import de.fu_berlin.inf.dpp.util.Utils;
+
+/**
+ * Transfers the content of large files outside of the activity stream, so a
+ * large file does not delay the activities sent after it.
+ * 
+ * The sender of a file activity
+ * {@linkplain #detachContent(FileActivityDataObject) moves} the content into
+ * the store of this service, where it is kept under its SHA-1 hash, and only
+ * sends that ID with the activity. The receiver
+ * {@linkplain #fetch(StreamServiceManager, User, String, long, byte[])
+ * fetches} the content over a stream session, sending the signature of its
+ * own copy of the file along, so only the blocks that changed are transferred
+ * (see {@link BlockDelta}). The result is verified by the Adler32 checksum of
+ * the activity.
+ * 
+ * Contents are only detached for users who announced the {@link #FEATURE} of
+ * this service, and never for recoveries, which therefore remain a reliable
+ * way to send a file whose content could not be fetched.
+ * 
+ * The store only holds the most recently used contents up to a total size. A
+ * content that was evicted before it was fetched cannot be transferred
+ * anymore, the receiver has to request a recovery of the file in this case.
+ */
+public class FileContentStreamService extends StreamService {
+    private static final Logger log = Logger
+        .getLogger(FileContentStreamService.class);
+
+    /**
+     * The feature announced by users who are able to fetch detached contents.
+     */
+    public static final String FEATURE = Saros.NAMESPACE + "/fileContent/V1";
+
+    /**
+     * Contents smaller than this number of bytes are still sent inside the
+     * activity.
+     */
+    protected static final int INLINE_LIMIT = Integer.getInteger(
+        "de.fu_berlin.inf.dpp.util.sendfile.FILE_CONTENT_INLINE_LIMIT",
+        16 * 1024);
+
+    /**
+     * The number of bytes the store may hold.
+     */
+    protected static final long STORE_SIZE = Long.getLong(
+        "de.fu_berlin.inf.dpp.util.sendfile.FILE_CONTENT_STORE_SIZE",
+        64L * 1024 * 1024);
+
+    /**
+     * The number of milliseconds a fetch may wait for further data before it
+     * is aborted.
+     */
+    protected static final long READ_TIMEOUT = Long.getLong(
+        "de.fu_berlin.inf.dpp.util.sendfile.FILE_CONTENT_READ_TIMEOUT",
+        60L * 1000);
+
+    /**
+     * The contents that can be fetched, the least recently used first.
+     */
+    protected final LinkedHashMap<String, byte[]> contents = new LinkedHashMap<String, byte[]>(
+        16, 0.75f, true);
+
+    protected long storedBytes = 0;
+
+    protected final ScheduledExecutorService readTimer = Executors
+        .newSingleThreadScheduledExecutor(new NamedThreadFactory(
+            "FileContentReadTimer", false));
+
+    protected final DiscoveryManager discoveryManager;
+
+    public FileContentStreamService(ISarosSessionManager sessionManager,
+        SarosNet sarosNet, DiscoveryManager discoveryManager) {
+        this.discoveryManager = discoveryManager;
+
+        sarosNet.addListener(new IConnectionListener() {
+            @Override
+            public void connectionStateChanged(Connection connection,
+                ConnectionState state) {
+                if (state == ConnectionState.CONNECTED)
+                    ServiceDiscoveryManager.getInstanceFor(connection)
+                        .addFeature(FEATURE);
+            }
+        });
+
+        sessionManager
+            .addSarosSessionListener(new AbstractSarosSessionListener() {
+                @Override
+                public void sessionEnded(ISarosSession oldSarosSession) {
+                    clear();
+                }
+            });
+    }
+
+    @Override
+    public int[] getChunkSize() {
+        return new int[] { 64 * 1024 };
+    }
+
+    @Override
+    public String getServiceName() {
+        return "FileContent"; //$NON-NLS-1$
+    }
+
+    @Override
+    public int getStreamsPerSession() {
+        return 1;
+    }
+
+    @Override
+    public long[] getMaximumDelay() {
+        return new long[] { 500 };
+    }
+
+    @Override
+    public boolean sessionRequest(User from, Object initial) {
+        if (!(initial instanceof FileContentRequest)) {
+            log.error("Other party sent no FileContentRequest!");
+            return false;
+        }
+
+        String contentID = ((FileContentRequest) initial).contentID;
+
+        if (get(contentID) == null) {
+            log.warn(from + " requested unknown content " + contentID);
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public void startSession(final StreamSession newSession) {
+        newSession.setListener(new StreamSessionListener() {
+            @Override
+            public void sessionStopped() {
+                newSession.shutdownFinished();
+            }
+
+            @Override
+            public void errorOccured(StreamException e) {
+                log.error("Sending content to " + newSession.getRemoteJID()
+                    + " failed: ", e);
+            }
+        });
+
+        final FileContentRequest request = (FileContentRequest) newSession
+            .getInitiationDescription();
+        final byte[] content = get(request.contentID);
+
+        if (content == null) {
+            // evicted since the request was accepted
+            newSession.stopSession();
+            return;
+        }
+
+        Utils.runSafeAsync("FileContentSender-" + request.contentID, log,
+            new Runnable() {
+                @Override
+                public void run() {
+                    OutputStream out = newSession.getOutputStream(0);
+                    try {
+                        DataOutputStream delta = new DataOutputStream(
+                            new BufferedOutputStream(out, 64 * 1024));
+                        BlockDelta.writeDelta(content, request.signature,
+                            delta);
+                        delta.flush();
+                    } catch (IOException e) {
+                        log.error("Could not send content "
+                            + request.contentID + " to "
+                            + newSession.getRemoteJID(), e);
+                    } finally {
+                        // the receiver stops the session when it is done
+                        IOUtils.closeQuietly(out);
+                    }
+                }
+            });
+    }
+
+    /**
+     * Determines if the content of file activities can be detached for the
+     * given user. This is only the case if the user announced the
+     * {@link #FEATURE} of this service. If the feature is not cached yet the
+     * content is sent inside the activity.
+     */
+    public boolean isSupported(User user) {
+        if (user.isLocal())
+            return false;
+
+        try {
+            return discoveryManager.isSupportedNonBlock(user.getJID(),
+                FEATURE);
+        } catch (CacheMissException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the content of the given data object by a reference to the
+     * content in the store, if the content is large enough to delay the
+     * activities sent after it and can be verified by a checksum. The content
+     * of recoveries is never detached.
+     */
+    public void detachContent(FileActivityDataObject dataObject) {
+        byte[] data = dataObject.getData();
+
+        if (data == null || data.length < INLINE_LIMIT
+            || dataObject.getChecksum() == null || dataObject.isRecovery())
+            return;
+
+        dataObject.setContentReference(put(data));
+    }
+
+    /**
+     * Returns the content with the given ID. If it is not in the store, it is
+     * fetched from the given user, who only sends the blocks that are not
+     * already contained in the given base.
+     * 
+     * @blocking until the content is transferred or no data arrived for
+     *           {@link #READ_TIMEOUT} milliseconds
+     * 
+     * @param base
+     *            the local version of the content or <code>null</code> if
+     *            there is none
+     * @throws IOException
+     *             if the content could not be fetched or does not match the
+     *             checksum
+     */
+    public byte[] fetch(StreamServiceManager streamServiceManager,
+        User from, String contentID, long checksum, byte[] base)
+        throws IOException {
+
+        byte[] content = get(contentID);
+
+        if (content != null)
+            return content;
+
+        if (base == null)
+            base = new byte[0];
+
+        Signature signature = BlockDelta.computeSignature(base);
+
+        StreamSession session;
+        try {
+            session = streamServiceManager.createSession(this, from,
+                new FileContentRequest(contentID, signature), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while requesting "
+                + "content " + contentID);
+        } catch (Exception e) {
+            throw new IOException("could not request content " + contentID
+                + " from " + from, e);
+        }
+
+        final StreamSessionInputStream in = (StreamSessionInputStream) session
+            .getInputStream(0);
+
+        final AtomicBoolean timedOut = new AtomicBoolean(false);
+
+        ScheduledFuture<?> timeout = readTimer.scheduleWithFixedDelay(
+            Utils.wrapSafe(log, new Runnable() {
+                @Override
+                public void run() {
+                    if (in.getReadBytes() > 0)
+                        return;
+
+                    // interrupts the blocked read
+                    timedOut.set(true);
+                    IOUtils.closeQuietly(in);
+                }
+            }), READ_TIMEOUT, READ_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        try {
+            content = BlockDelta.applyDelta(base, signature,
+                new DataInputStream(new BufferedInputStream(in)));
+        } catch (IOException e) {
+            if (timedOut.get())
+                throw new IOException("no data of content " + contentID
+                    + " received for " + READ_TIMEOUT + " ms", e);
+
+            throw e;
+        } finally {
+            timeout.cancel(false);
+
+            // clear the interruption of the read that timed out
+            if (timedOut.get())
+                Thread.interrupted();
+
+            session.stopSession();
+        }
+
+        if (FileUtils.checksum(content) != checksum)
+            throw new IOException("checksum of content " + contentID
+                + " does not match");
+
+        return content;
+    }
+
+    /**
+     * Puts the content into the store, evicting the least recently used
+     * contents if the store gets too large.
+     * 
+     * @return the ID of the content
+     */
+    protected synchronized String put(byte[] content) {
+        String contentID = DigestUtils.shaHex(content);
+
+        if (contents.put(contentID, content) == null)
+            storedBytes += content.length;
+
+        Iterator<byte[]> it = contents.values().iterator();
+
+        // never evict the content that was just added
+        while (storedBytes > STORE_SIZE && contents.size() > 1) {
+            storedBytes -= it.next().length;
+            it.remove();
+        }
+
+        return contentID;
+    }
+
+    protected synchronized byte[] get(String contentID) {
+        return contents.get(contentID);
+    }
+
+    protected synchronized void clear() {
+        contents.clear();
+        storedBytes = 0;
+    }
+}
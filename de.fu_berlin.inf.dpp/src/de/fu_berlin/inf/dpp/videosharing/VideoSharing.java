@@ -39,6 +39,7 @@ import de.fu_berlin.inf.dpp.editor.internal.EditorAPI;
 import de.fu_berlin.inf.dpp.exceptions.ConnectionException;
 import de.fu_berlin.inf.dpp.exceptions.SarosCancellationException;
 import de.fu_berlin.inf.dpp.exceptions.StreamException;
+import de.fu_berlin.inf.dpp.net.internal.DataTransferManager;
 import de.fu_berlin.inf.dpp.net.internal.StreamServiceManager;
 import de.fu_berlin.inf.dpp.net.internal.StreamSession;
 import de.fu_berlin.inf.dpp.net.internal.StreamSession.StreamSessionListener;
@@ -87,6 +88,8 @@ public class VideoSharing {
     @Inject
     protected StreamServiceManager streamServiceManager;
     @Inject
+    protected DataTransferManager dataTransferManager;
+    @Inject
     protected SarosUI sarosUI;
     @Inject
     protected SarosSessionObservable sarosSessionObservable;
@@ -468,7 +471,9 @@ public class VideoSharing {
 
             connectionManager = new ConnectionManager(
                 connectionFactory.getVideoOutputStream(), encoder,
-                connectionFactory.getDecodingStatisticsInputStream(), this);
+                connectionFactory.getDecodingStatisticsInputStream(), this,
+                dataTransferManager.getTransferModeDispatch(),
+                remoteUser.getJID());
 
             encoder.startEncoding();
         }
@@ -53,6 +53,17 @@ public class VideoSharingService extends StreamService {
         return 2;
     }
 
+    // the video is already encoded, only the activities are compressible
+    @Override
+    public boolean[] getCompressible() {
+        return new boolean[] { false, true };
+    }
+
+    @Override
+    public int getWeight() {
+        return 4;
+    }
+
     @Override
     public long[] getMaximumDelay() {
         return new long[] { 50, 50 };
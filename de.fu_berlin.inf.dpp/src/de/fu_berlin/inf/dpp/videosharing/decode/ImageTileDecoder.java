@@ -20,12 +20,13 @@
 package de.fu_berlin.inf.dpp.videosharing.decode;
 
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
-import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 
 import javax.imageio.ImageIO;
@@ -37,6 +38,7 @@ import de.fu_berlin.inf.dpp.videosharing.encode.ImageTileEncoder;
 import de.fu_berlin.inf.dpp.videosharing.encode.ImageTileEncoder.Tile;
 import de.fu_berlin.inf.dpp.videosharing.exceptions.DecoderInitializationException;
 import de.fu_berlin.inf.dpp.videosharing.exceptions.DecodingException;
+import de.fu_berlin.inf.dpp.videosharing.source.MousePointer;
 
 /**
  * This class is responsible for decoding the received tiles from the
@@ -47,22 +49,24 @@ import de.fu_berlin.inf.dpp.videosharing.exceptions.DecodingException;
 public class ImageTileDecoder extends Decoder {
     private static final Logger log = Logger.getLogger(ImageTileEncoder.class);
 
-    private ObjectInputStream objectInput;
+    private DataInputStream tileInput;
 
     /** the buffered image which is updated with tiles */
     private BufferedImage image;
 
+    /**
+     * reused copy of the image the mouse pointer is painted on, so the image
+     * itself stays unchanged for the next tiles
+     */
+    private BufferedImage displayImage;
+
     public ImageTileDecoder(InputStream input, ObjectOutputStream statisticOut,
         int width, int height, String imageFormat,
         VideoSharingSession videoSharingSession)
         throws DecoderInitializationException {
         super(input, statisticOut, width, height, imageFormat,
             videoSharingSession);
-        try {
-            objectInput = new ObjectInputStream(input);
-        } catch (IOException e) {
-            throw new DecoderInitializationException(e);
-        }
+        tileInput = new DataInputStream(new BufferedInputStream(input));
         // currently not used
         // this.imageFormat = imageFormat;
 
@@ -75,9 +79,9 @@ public class ImageTileDecoder extends Decoder {
 
         while (!Thread.interrupted()) {
             try {
-                Tile tile = (Tile) objectInput.readObject();
+                Tile tile = Tile.read(tileInput);
 
-                if (tile.imageData.length != 0) {
+                if (!tile.isEndOfFrame()) {
                     BufferedImage subImage = ImageIO
                         .read(new ByteArrayInputStream(tile.imageData));
 
@@ -92,7 +96,11 @@ public class ImageTileDecoder extends Decoder {
                     statistic.dataRead(tile.imageData.length);
                 } else {
                     statistic.renderedFrame();
-                    updatePlayer(image);
+
+                    if (tile.hasPointer())
+                        updatePlayer(withPointer(tile.x, tile.y));
+                    else
+                        updatePlayer(image);
                 }
 
             } catch (IOException e) {
@@ -112,4 +120,20 @@ public class ImageTileDecoder extends Decoder {
             }
         }
     }
+
+    private BufferedImage withPointer(int x, int y) {
+        if (image == null)
+            return null;
+
+        if (displayImage == null || displayImage.getWidth() != image.getWidth()
+            || displayImage.getHeight() != image.getHeight()
+            || displayImage.getType() != image.getType())
+            displayImage = new BufferedImage(image.getWidth(),
+                image.getHeight(), image.getType());
+
+        displayImage.setData(image.getRaster());
+        MousePointer.paint(displayImage, x, y);
+
+        return displayImage;
+    }
 }
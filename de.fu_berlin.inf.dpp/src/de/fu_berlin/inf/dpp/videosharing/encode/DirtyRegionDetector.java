@@ -0,0 +1,268 @@
+package de.fu_berlin.inf.dpp.videosharing.encode;
+
+/**
+ * <p>
+ * Detects the regions that differ between two images of the same size and
+ * coalesces them to a small number of rectangles.
+ * </p>
+ * 
+ * <p>
+ * The images are compared row by row in the order they are stored in memory.
+ * The pixels of each row are compared in segments of 8 pixels, one segment for
+ * every 8x8 tile. Segments of tiles that are already known to be dirty are
+ * skipped, so does the rest of a tile row once all of its tiles are dirty.
+ * </p>
+ * 
+ * <p>
+ * Afterwards the dirty tiles of each tile row are joined to runs. Runs which
+ * are separated by at most {@link #MAXIMUM_GAP} clean tiles are joined as
+ * well, because encoding a few unchanged pixels is cheaper than the overhead of
+ * an additional image. Runs that cover exactly the same columns in consecutive
+ * tile rows are merged to one rectangle.
+ * </p>
+ * 
+ * All buffers are allocated once, so this class does not create any garbage
+ * while detecting regions. This class is not thread safe.
+ */
+final class DirtyRegionDetector {
+
+    /**
+     * Maximum number of clean tiles between two dirty tiles of a tile row
+     * which are still merged into one region
+     */
+    static final int MAXIMUM_GAP = 2;
+
+    private final int width;
+
+    private final int height;
+
+    private final int tilesX;
+
+    private final int tilesY;
+
+    /** dirty flags of the tiles of the tile row that is currently compared */
+    private final boolean[] dirtyTiles;
+
+    /** start column and end column (exclusive) of the runs of the last row */
+    private final int[] runStart;
+    private final int[] runEnd;
+
+    /** index of the region each run of the last row belongs to */
+    private final int[] runRegion;
+
+    private int runCount;
+
+    /** runs of the current row */
+    private final int[] nextRunStart;
+    private final int[] nextRunEnd;
+    private final int[] nextRunRegion;
+
+    /** position and size of the regions in tiles */
+    private final int[] regionX;
+    private final int[] regionY;
+    private final int[] regionWidth;
+    private final int[] regionHeight;
+
+    private int regionCount;
+
+    private int dirtyTileCount;
+
+    /**
+     * @param width
+     *            width of the images in pixels, must be a multiple of 8
+     * @param height
+     *            height of the images in pixels, must be a multiple of 8
+     */
+    DirtyRegionDetector(int width, int height) {
+        if ((width & 7) != 0 || (height & 7) != 0 || width <= 0 || height <= 0)
+            throw new IllegalArgumentException(
+                "width and height must be a positive multiple of 8: " + width
+                    + "x" + height);
+
+        this.width = width;
+        this.height = height;
+        this.tilesX = width >>> 3;
+        this.tilesY = height >>> 3;
+
+        dirtyTiles = new boolean[tilesX];
+
+        int maximumRuns = (tilesX + 1) / 2;
+
+        runStart = new int[maximumRuns];
+        runEnd = new int[maximumRuns];
+        runRegion = new int[maximumRuns];
+        nextRunStart = new int[maximumRuns];
+        nextRunEnd = new int[maximumRuns];
+        nextRunRegion = new int[maximumRuns];
+
+        int maximumRegions = maximumRuns * tilesY;
+
+        regionX = new int[maximumRegions];
+        regionY = new int[maximumRegions];
+        regionWidth = new int[maximumRegions];
+        regionHeight = new int[maximumRegions];
+    }
+
+    /**
+     * Detects the dirty regions between the given images. The regions can be
+     * retrieved afterwards with {@link #getX(int)}, {@link #getY(int)},
+     * {@link #getWidth(int)} and {@link #getHeight(int)}.
+     * 
+     * @param bufferOld
+     *            pixels of the old image
+     * @param bufferNew
+     *            pixels of the new image
+     * @return the number of dirty regions
+     */
+    int detect(int[] bufferOld, int[] bufferNew) {
+        if (bufferOld.length < width * height
+            || bufferNew.length < width * height)
+            throw new IllegalArgumentException("image buffers are too small");
+
+        regionCount = 0;
+        runCount = 0;
+        dirtyTileCount = 0;
+
+        int rowOffset = 0;
+
+        for (int tileY = 0; tileY < tilesY; tileY++) {
+            int cleanTiles = tilesX;
+
+            for (int i = 0; i < tilesX; i++)
+                dirtyTiles[i] = false;
+
+            for (int row = 0; row < 8 && cleanTiles > 0; row++) {
+                int offset = rowOffset + row * width;
+
+                for (int tileX = 0; tileX < tilesX; tileX++, offset += 8) {
+                    if (dirtyTiles[tileX])
+                        continue;
+
+                    if (isSegmentDirty(bufferOld, bufferNew, offset)) {
+                        dirtyTiles[tileX] = true;
+                        cleanTiles--;
+                    }
+                }
+            }
+
+            dirtyTileCount += tilesX - cleanTiles;
+
+            addRuns(tileY);
+
+            rowOffset += width << 3;
+        }
+
+        return regionCount;
+    }
+
+    /**
+     * @return the number of dirty 8x8 tiles found by the last detection
+     */
+    int getDirtyTileCount() {
+        return dirtyTileCount;
+    }
+
+    /**
+     * @return the number of pixels covered by the regions of the last
+     *         detection
+     */
+    int getDirtyArea() {
+        int area = 0;
+
+        for (int i = 0; i < regionCount; i++)
+            area += regionWidth[i] * regionHeight[i];
+
+        return area << 6;
+    }
+
+    int getX(int region) {
+        return regionX[region] << 3;
+    }
+
+    int getY(int region) {
+        return regionY[region] << 3;
+    }
+
+    int getWidth(int region) {
+        return regionWidth[region] << 3;
+    }
+
+    int getHeight(int region) {
+        return regionHeight[region] << 3;
+    }
+
+    /**
+     * Joins the dirty tiles of the current tile row to runs and either extends
+     * the region of a run of the last tile row or starts a new region.
+     */
+    private void addRuns(int tileY) {
+        int nextRunCount = 0;
+        int lastRun = 0;
+
+        int tileX = 0;
+
+        while (tileX < tilesX) {
+            if (!dirtyTiles[tileX]) {
+                tileX++;
+                continue;
+            }
+
+            int start = tileX;
+            int end = ++tileX;
+
+            while (tileX < tilesX && tileX - end <= MAXIMUM_GAP) {
+                if (dirtyTiles[tileX])
+                    end = tileX + 1;
+
+                tileX++;
+            }
+
+            tileX = end;
+
+            // runs of both rows are sorted by their start column
+            while (lastRun < runCount && runStart[lastRun] < start)
+                lastRun++;
+
+            int region;
+
+            if (lastRun < runCount && runStart[lastRun] == start
+                && runEnd[lastRun] == end) {
+                region = runRegion[lastRun];
+                regionHeight[region]++;
+            } else {
+                region = regionCount++;
+                regionX[region] = start;
+                regionY[region] = tileY;
+                regionWidth[region] = end - start;
+                regionHeight[region] = 1;
+            }
+
+            nextRunStart[nextRunCount] = start;
+            nextRunEnd[nextRunCount] = end;
+            nextRunRegion[nextRunCount] = region;
+            nextRunCount++;
+        }
+
+        System.arraycopy(nextRunStart, 0, runStart, 0, nextRunCount);
+        System.arraycopy(nextRunEnd, 0, runEnd, 0, nextRunCount);
+        System.arraycopy(nextRunRegion, 0, runRegion, 0, nextRunCount);
+        runCount = nextRunCount;
+    }
+
+    /**
+     * @return <code>true</code> if one of the 8 pixels starting at the given
+     *         offset differs
+     */
+    private static boolean isSegmentDirty(int[] bufferOld, int[] bufferNew,
+        int offset) {
+        // unrolled on purpose, this avoids a branch for every pixel
+        return ((bufferOld[offset] ^ bufferNew[offset])
+            | (bufferOld[offset + 1] ^ bufferNew[offset + 1])
+            | (bufferOld[offset + 2] ^ bufferNew[offset + 2])
+            | (bufferOld[offset + 3] ^ bufferNew[offset + 3])
+            | (bufferOld[offset + 4] ^ bufferNew[offset + 4])
+            | (bufferOld[offset + 5] ^ bufferNew[offset + 5])
+            | (bufferOld[offset + 6] ^ bufferNew[offset + 6])
+            | (bufferOld[offset + 7] ^ bufferNew[offset + 7])) != 0;
+    }
+}
@@ -205,6 +205,13 @@ public abstract class Encoder implements Runnable {
         return isEncoding;
     }
 
+    /**
+     * @return the frames per second that are currently encoded
+     */
+    public int getFps() {
+        return framerate;
+    }
+
     /**
      * Adjust bandwidth used by the encoded image-sequence.
      * 
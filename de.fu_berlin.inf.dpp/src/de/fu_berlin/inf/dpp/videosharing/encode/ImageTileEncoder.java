@@ -20,21 +20,21 @@
 package de.fu_berlin.inf.dpp.videosharing.encode;
 
 import java.awt.Graphics2D;
+import java.awt.Point;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferInt;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
-
-import javax.imageio.ImageIO;
-import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
@@ -53,7 +53,9 @@ import de.fu_berlin.inf.dpp.videosharing.source.ImageSource;
  * Algorithm:
  * </p>
  * <ol>
- * <li>Capture an image and possible scale it down</li>
+ * <li>Capture an image and possible scale it down. If the image source
+ * returned the same image as before, only the position of the mouse pointer is
+ * sent</li>
  * <li>If this is the first captured image or the image that was captured is not
  * a 24 or 32 bit RGB images then compress the whole image and send it to the
  * receiver</li>
@@ -70,8 +72,7 @@ import de.fu_berlin.inf.dpp.videosharing.source.ImageSource;
  * 
  * <p>
  * Where each X represents a dirty tile. Now all dirty tiles are aggregated to
- * maximum square blocks (this is currently not implemented, only the tiles per
- * row are aggregated)
+ * rectangles, see {@link DirtyRegionDetector}
  * </p>
  * 
  * <p>
@@ -91,8 +92,9 @@ import de.fu_berlin.inf.dpp.videosharing.source.ImageSource;
  * </pre>
  * 
  * </li>
- * <li>Each of these maximum square block is now compressed and then send to the
- * receiver</li>
+ * <li>Each of these blocks is now compressed in parallel by a
+ * {@link JpegTileCompressor} and then send to the receiver as a {@link Tile}
+ * </li>
  * <li>Continue with step 1</li>
  * </ol>
  * 
@@ -101,8 +103,12 @@ import de.fu_berlin.inf.dpp.videosharing.source.ImageSource;
  */
 public final class ImageTileEncoder extends Encoder {
 
-    public static class Tile implements Serializable {
-        private static final long serialVersionUID = 2961263497738302562L;
+    /**
+     * A compressed part of an image. A tile without image data marks the end
+     * of a frame, if it has a size of 1x1 its position is the position of the
+     * mouse pointer in this frame.
+     */
+    public static class Tile {
 
         /** image date of the tile */
         public byte[] imageData;
@@ -135,6 +141,68 @@ public final class ImageTileEncoder extends Encoder {
             this.ih = ih;
         }
 
+        /**
+         * Writes this tile as a header of six unsigned shorts for the position
+         * and dimensions, followed by the length and the image data.
+         */
+        public void write(DataOutputStream out) throws IOException {
+            out.writeShort(x);
+            out.writeShort(y);
+            out.writeShort(w);
+            out.writeShort(h);
+            out.writeShort(iw);
+            out.writeShort(ih);
+            out.writeInt(imageData.length);
+            out.write(imageData);
+        }
+
+        /**
+         * Reads a tile that was written by {@link #write(DataOutputStream)}.
+         */
+        public static Tile read(DataInputStream in) throws IOException {
+            int x = in.readUnsignedShort();
+            int y = in.readUnsignedShort();
+            int w = in.readUnsignedShort();
+            int h = in.readUnsignedShort();
+            int iw = in.readUnsignedShort();
+            int ih = in.readUnsignedShort();
+
+            int length = in.readInt();
+
+            if (length < 0)
+                throw new IOException("invalid tile length: " + length);
+
+            byte[] imageData = new byte[length];
+            in.readFully(imageData);
+
+            return new Tile(imageData, x, y, w, h, iw, ih);
+        }
+
+        /**
+         * @param pointer
+         *            position of the mouse pointer or <code>null</code> if no
+         *            pointer should be shown
+         * @return the tile that marks the end of a frame
+         */
+        public static Tile endOfFrame(Point pointer) {
+            if (pointer == null)
+                return new Tile(new byte[0], 0, 0, 0, 0, 0, 0);
+
+            return new Tile(new byte[0], pointer.x, pointer.y, 1, 1, 0, 0);
+        }
+
+        public boolean isEndOfFrame() {
+            return imageData.length == 0;
+        }
+
+        /**
+         * @return <code>true</code> if this tile marks the end of a frame and
+         *         carries the position of the mouse pointer
+         */
+        public boolean hasPointer() {
+            return isEndOfFrame() && w == 1 && h == 1;
+        }
+
         @Override
         public String toString() {
             return "[" + imageData.length + ":" + x + ":" + y + ":" + w + ":"
@@ -146,20 +214,40 @@ public final class ImageTileEncoder extends Encoder {
 
     private final static int MAX_ALLOWED_FRAMES_TO_DROP = 20;
 
-    /** Threshold in percent if an image should be completely encoded */
-    // currently set to 30% because our aggregation algorithm is bad
-    private static final int DIRTY_TILES_THRESHOLD = 30;
+    /**
+     * Threshold in percent of the image area covered by dirty regions at which
+     * the image is completely encoded
+     */
+    private static final int DIRTY_AREA_THRESHOLD = 60;
+
+    private static final int TILE_BUFFER_SIZE = 64 * 1024;
 
     private int droppedFrames = 0;
 
     private int maxBandwidthUsed = 0;
 
-    private ObjectOutputStream objectOut;
+    /** bandwidth in bytes per second, 0 if not limited */
+    private volatile int bandwidth = 0;
 
-    private ByteArrayOutputStream imageOutput = new ByteArrayOutputStream();
+    private DataOutputStream tileOut;
 
     private BufferedImage lastImage = null;
 
+    /** the image of the source the last image was created from */
+    private BufferedImage lastSourceImage = null;
+
+    /**
+     * reused images to scale the captured images into, the image that is not
+     * the last image is always overwritten with the next scaled image
+     */
+    private final BufferedImage[] scaledImages = new BufferedImage[2];
+
+    private final DirtyRegionDetector dirtyRegionDetector;
+
+    private final JpegTileCompressor compressor = new JpegTileCompressor();
+
+    private final List<Future<byte[]>> compressedRegions = new ArrayList<Future<byte[]>>();
+
     public ImageTileEncoder(OutputStream out, ImageSource source,
         VideoSharingSession videoSharingSession)
         throws EncoderInitializationException {
@@ -169,17 +257,27 @@ public final class ImageTileEncoder extends Encoder {
             throw new EncoderInitializationException(
                 "The screen capture resolution must be a multiple of 8 for width and height. Current resolution is:"
                     + width + "x" + height);
+
+        dirtyRegionDetector = new DirtyRegionDetector(width, height);
+
+        tileOut = new DataOutputStream(new BufferedOutputStream(out,
+            TILE_BUFFER_SIZE));
+    }
+
+    @Override
+    public void run() {
         try {
-            objectOut = new ObjectOutputStream(out);
-        } catch (IOException e) {
-            throw new EncoderInitializationException(e);
+            encode();
+        } finally {
+            // the loop can also end by an unexpected error or too many dropped
+            // frames without stopEncodingInternal() being called
+            compressor.dispose();
         }
     }
 
     /* main encoder loop */
 
-    @Override
-    public void run() {
+    private void encode() {
 
         while (isEncoding) {
             isPaused();
@@ -191,71 +289,39 @@ public final class ImageTileEncoder extends Encoder {
 
             long startTime = System.currentTimeMillis();
 
-            imageOutput.reset();
-            BufferedImage image = imageSource.toImage();
-
-            if (image.getWidth() != width || image.getHeight() != height) {
-                BufferedImage scaledImage = new BufferedImage(width, height,
-                    image.getType());
-                Graphics2D g2 = scaledImage.createGraphics();
-                g2.setRenderingHint(RenderingHints.KEY_RENDERING,
-                    RenderingHints.VALUE_RENDER_SPEED);
-                g2.drawImage(image, 0, 0, width, height, null);
-                g2.dispose();
-                image = scaledImage;
-            }
+            BufferedImage sourceImage = imageSource.toImage();
+            Point pointer = scalePointer(imageSource.getPointer(), sourceImage);
+
+            int bytesWritten = 0;
 
             try {
 
-                if (lastImage == null
-                    || image.getRaster().getDataBuffer().getDataType() != DataBuffer.TYPE_INT) {
-                    lastImage = image;
-                    imageOutput.reset();
-                    ImageIO.write(image, "jpeg",
-                        new MemoryCacheImageOutputStream(imageOutput));
-                    maxBandwidthUsed = Math.max(maxBandwidthUsed,
-                        imageOutput.size());
-                    objectOut.writeObject(new Tile(imageOutput.toByteArray(),
-                        0, 0, image.getWidth(), image.getHeight(), image
-                            .getWidth(), image.getHeight()));
+                if (sourceImage == lastSourceImage) {
+                    // the screen did not change, only the pointer is updated
                 } else {
+                    BufferedImage image = scale(sourceImage);
 
-                    int[] rasterOld = ((DataBufferInt) lastImage.getRaster()
-                        .getDataBuffer()).getData();
-                    int[] rasterNew = ((DataBufferInt) image.getRaster()
-                        .getDataBuffer()).getData();
-
-                    int bytesWritten = 0;
-
-                    for (DirtyTile dirtyTile : getDirtyTiles(rasterOld,
-                        rasterNew)) {
-
-                        BufferedImage dirtySubImage = image.getSubimage(
-                            dirtyTile.x, dirtyTile.y, dirtyTile.w, dirtyTile.h);
-
-                        imageOutput.reset();
-                        ImageIO.write(dirtySubImage, "jpeg",
-                            new MemoryCacheImageOutputStream(imageOutput));
-                        bytesWritten += imageOutput.size();
-                        objectOut.writeObject(new Tile(imageOutput
-                            .toByteArray(), dirtyTile.x, dirtyTile.y,
-                            dirtyTile.w, dirtyTile.h, image.getWidth(), image
-                                .getHeight()));
+                    if (lastImage == null
+                        || image.getRaster().getDataBuffer().getDataType() != DataBuffer.TYPE_INT) {
+                        bytesWritten = writeTile(image, 0, 0, width, height);
+                    } else {
+                        bytesWritten = writeDirtyRegions(image);
                     }
 
-                    maxBandwidthUsed = Math.max(maxBandwidthUsed, bytesWritten);
-
                     lastImage = image;
-
                 }
 
+                lastSourceImage = sourceImage;
+
+                maxBandwidthUsed = Math.max(maxBandwidthUsed, bytesWritten);
+
                 /*
-                 * send final tile as empty tile to update the picture and / or
-                 * the fps of the receiver (could be the case that no tile was
-                 * send at all
+                 * send final tile as empty tile to update the picture, the
+                 * pointer and / or the fps of the receiver (could be the case
+                 * that no tile was send at all
                  */
-                objectOut.writeObject(new Tile(new byte[0], 0, 0, 0, 0, 0, 0));
-                objectOut.flush();
+                Tile.endOfFrame(pointer).write(tileOut);
+                tileOut.flush();
 
             } catch (IOException e) {
                 log.error(e.getMessage(), e);
@@ -263,6 +329,9 @@ public final class ImageTileEncoder extends Encoder {
                 if (!(e instanceof EOFException))
                     videoSharingSession.reportError(new EncodingException(e));
                 return;
+            } catch (InterruptedException e) {
+                stopEncodingInternal();
+                return;
             } catch (Exception e) {
                 log.error(e.getMessage(), e);
                 videoSharingSession.reportError(new EncodingException(e));
@@ -272,6 +341,16 @@ public final class ImageTileEncoder extends Encoder {
             long elapsedTime = System.currentTimeMillis() - startTime;
             long frameIntervall = (1000L / framerate);
 
+            /*
+             * stay within the bandwidth by waiting longer after large frames,
+             * this is not counted as a dropped frame
+             */
+            int currentBandwidth = bandwidth;
+
+            if (currentBandwidth > 0)
+                frameIntervall = Math.max(frameIntervall, bytesWritten * 1000L
+                    / currentBandwidth);
+
             if (elapsedTime < frameIntervall) {
                 try {
                     Thread.sleep(frameIntervall - elapsedTime);
@@ -289,237 +368,183 @@ public final class ImageTileEncoder extends Encoder {
         }
     }
 
-    // WTF ?!!!!
+    /**
+     * Scales the given image to the size of the video. The result is drawn
+     * into one of the {@link #scaledImages} that is not the last image.
+     */
+    private BufferedImage scale(BufferedImage image) {
+        if (image.getWidth() == width && image.getHeight() == height)
+            return image;
 
-    @Override
-    public void stopEncodingInternal() {
-        try {
-            objectOut.close();
-        } catch (IOException e) {
-            // ignore
+        int index = scaledImages[0] == lastImage ? 1 : 0;
+
+        BufferedImage scaledImage = scaledImages[index];
+
+        if (scaledImage == null || scaledImage.getType() != image.getType()) {
+            int type = image.getType();
+
+            if (type == BufferedImage.TYPE_CUSTOM)
+                type = BufferedImage.TYPE_INT_RGB;
+
+            scaledImage = new BufferedImage(width, height, type);
+            scaledImages[index] = scaledImage;
         }
-    }
 
-    @Override
-    public void setBandwidth(int newBandwidth) {
-        // not supported
-    }
+        Graphics2D g2 = scaledImage.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_RENDERING,
+            RenderingHints.VALUE_RENDER_SPEED);
+        g2.drawImage(image, 0, 0, width, height, null);
+        g2.dispose();
 
-    @Override
-    public void setFps(int newFps) {
-        framerate = newFps;
+        return scaledImage;
     }
 
-    @Override
-    public void setQuality(int newQuality) {
-        // TODO can be implemented, but FPS should be enough
-    }
+    /**
+     * @return the position of the pointer in the scaled image or
+     *         <code>null</code> if the pointer is not shown
+     */
+    private Point scalePointer(Point pointer, BufferedImage image) {
+        if (pointer == null)
+            return null;
 
-    @Override
-    public boolean supportSetBandwidth() {
-        return false;
+        return new Point(pointer.x * width / image.getWidth(), pointer.y
+            * height / image.getHeight());
     }
 
-    @Override
-    public boolean supportSetFps() {
-        return true;
+    /**
+     * Compresses the given part of the image and writes it as one tile.
+     * 
+     * @return the number of bytes of the compressed image data
+     */
+    private int writeTile(BufferedImage image, int x, int y, int w, int h)
+        throws IOException, InterruptedException {
+        compressedRegions.clear();
+        compressedRegions.add(compressor.compress(getSubimage(image, x, y, w,
+            h)));
+
+        byte[] imageData = getCompressedRegion(0);
+        new Tile(imageData, x, y, w, h, width, height).write(tileOut);
+        return imageData.length;
     }
 
-    @Override
-    public boolean supportSetQuality() {
-        return false;
+    /**
+     * Compares the image with the last image and writes the parts that
+     * changed.
+     * 
+     * @return the number of bytes of the compressed image data
+     */
+    private int writeDirtyRegions(BufferedImage image) throws IOException,
+        InterruptedException {
+        int[] rasterOld = ((DataBufferInt) lastImage.getRaster()
+            .getDataBuffer()).getData();
+        int[] rasterNew = ((DataBufferInt) image.getRaster().getDataBuffer())
+            .getData();
+
+        int regions = dirtyRegionDetector.detect(rasterOld, rasterNew);
+
+        if (dirtyRegionDetector.getDirtyArea() * 100 >= width * height
+            * DIRTY_AREA_THRESHOLD)
+            return writeTile(image, 0, 0, width, height);
+
+        return writeRegions(image, regions);
     }
 
     /**
-     * Return a list of dirty 8x8 tiles from the difference of two images. The
-     * two arrays <b>must</b> have the same length.
+     * Compresses the dirty regions found by the {@link #dirtyRegionDetector}
+     * in parallel and writes them in their original order.
      * 
-     * @param bufferOld
-     *            image data from the old image
-     * @param bufferNew
-     *            image data from the old image
-     * @return a list of 8x8 tiles which differs from the old picture
+     * @return the number of bytes of the compressed image data
      */
-    private List<DirtyTile> getDirtyTiles(int[] bufferOld, int[] bufferNew) {
+    private int writeRegions(BufferedImage image, int regions)
+        throws IOException, InterruptedException {
+        compressedRegions.clear();
 
-        List<DirtyTile> dirtyTiles = new ArrayList<DirtyTile>();
+        for (int i = 0; i < regions; i++)
+            compressedRegions.add(compressor.compress(getSubimage(image,
+                dirtyRegionDetector.getX(i), dirtyRegionDetector.getY(i),
+                dirtyRegionDetector.getWidth(i),
+                dirtyRegionDetector.getHeight(i))));
 
-        int tilesX = width >>> 3;
-        int tilesY = height >>> 3;
+        int bytesWritten = 0;
 
-        int offset = 0;
-        int offsetY = 0;
+        for (int i = 0; i < regions; i++) {
+            byte[] imageData = getCompressedRegion(i);
 
-        int dirtyTilesFound = 0;
-        List<List<Integer>> dirtyXTilesPerRow = new ArrayList<List<Integer>>(
-            tilesY);
+            new Tile(imageData, dirtyRegionDetector.getX(i),
+                dirtyRegionDetector.getY(i), dirtyRegionDetector.getWidth(i),
+                dirtyRegionDetector.getHeight(i), width, height)
+                .write(tileOut);
 
-        for (int y = 0; y < height; y += 8) {
-            offset = offsetY;
-
-            List<Integer> dirtyXTiles = new ArrayList<Integer>(tilesX);
-            for (int x = 0; x < width; x += 8) {
-                if (isTileDirty8x8(bufferOld, bufferNew, offset, width)) {
-                    dirtyXTiles.add(x);
-                    dirtyTilesFound++;
-                }
-                offset += 8;
-            }
-            dirtyXTilesPerRow.add(dirtyXTiles);
-            offsetY += (width << 3);
+            bytesWritten += imageData.length;
         }
 
-        if ((dirtyTilesFound * 100) / (tilesX * tilesY) >= DIRTY_TILES_THRESHOLD) {
-            dirtyTiles.add(new DirtyTile(0, 0, width, height));
-            return dirtyTiles;
-        }
+        return bytesWritten;
+    }
 
-        /*
-         * aggregate the dirty tiles to greater blocks if possible. currently it
-         * only aggregates the blocks per row use a better algorithm here eg. An
-         * Efficient Algorithm for Finding all Maximal Square Blocks in a Matrix
-         * from Heinz Breu
-         */
-        int y = 0;
-        for (List<Integer> dirtyXTiles : dirtyXTilesPerRow) {
+    private static BufferedImage getSubimage(BufferedImage image, int x,
+        int y, int w, int h) {
+        if (x == 0 && y == 0 && w == image.getWidth()
+            && h == image.getHeight())
+            return image;
 
-            int len = dirtyXTiles.size();
-            if (len == 0) {
-                y += 8;
-                continue;
-            }
+        return image.getSubimage(x, y, w, h);
+    }
 
-            int start;
-            int current;
-            start = current = dirtyXTiles.get(0);
-            for (int i = 1; i < len; i++) {
-                if (dirtyXTiles.get(i) - 8 == current) {
-                    current += 8;
-                } else {
-                    dirtyTiles.add(new DirtyTile(start, y, current - start + 8,
-                        8));
-                    start = current = dirtyXTiles.get(i);
-                }
-            }
-            dirtyTiles.add(new DirtyTile(start, y, current - start + 8, 8));
+    private byte[] getCompressedRegion(int index) throws IOException,
+        InterruptedException {
+        try {
+            return compressedRegions.get(index).get();
+        } catch (ExecutionException e) {
+            for (Future<byte[]> future : compressedRegions)
+                future.cancel(true);
 
-            y += 8;
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
 
+            throw new IOException(e.getCause());
         }
+    }
+
+    @Override
+    public void stopEncodingInternal() {
+        compressor.dispose();
 
-        return dirtyTiles;
+        try {
+            tileOut.close();
+        } catch (IOException e) {
+            // ignore
+        }
     }
 
-    /**
-     * @param oldBuffer
-     *            image data from the old image
-     * @param newBuffer
-     *            image data from the new image
-     * @param offset
-     *            the offset to start comparison
-     * @param delta
-     *            the width of the image in pixels
-     * @return true if the 8x8 tile changed in the new image
-     */
-    private boolean isTileDirty8x8(int[] oldBuffer, int[] newBuffer,
-        int offset, int delta) {
-        /*
-         * DO NOT REFACTOR THIS CODE ! THIS IS AN UNROLLED LOOP THAT AVOIDS
-         * PIPELINE STALLS AND BRANCH PREDICTION
-         */
-        int y0 = (oldBuffer[offset + 0] ^ newBuffer[offset + 0])
-            | (oldBuffer[offset + 1] ^ newBuffer[offset + 1])
-            | (oldBuffer[offset + 2] ^ newBuffer[offset + 2])
-            | (oldBuffer[offset + 3] ^ newBuffer[offset + 3])
-            | (oldBuffer[offset + 4] ^ newBuffer[offset + 4])
-            | (oldBuffer[offset + 5] ^ newBuffer[offset + 5])
-            | (oldBuffer[offset + 6] ^ newBuffer[offset + 6])
-            | (oldBuffer[offset + 7] ^ newBuffer[offset + 7]);
-        offset += delta;
-        int y1 = (oldBuffer[offset + 0] ^ newBuffer[offset + 0])
-            | (oldBuffer[offset + 1] ^ newBuffer[offset + 1])
-            | (oldBuffer[offset + 2] ^ newBuffer[offset + 2])
-            | (oldBuffer[offset + 3] ^ newBuffer[offset + 3])
-            | (oldBuffer[offset + 4] ^ newBuffer[offset + 4])
-            | (oldBuffer[offset + 5] ^ newBuffer[offset + 5])
-            | (oldBuffer[offset + 6] ^ newBuffer[offset + 6])
-            | (oldBuffer[offset + 7] ^ newBuffer[offset + 7]);
-        offset += delta;
-        int y2 = (oldBuffer[offset + 0] ^ newBuffer[offset + 0])
-            | (oldBuffer[offset + 1] ^ newBuffer[offset + 1])
-            | (oldBuffer[offset + 2] ^ newBuffer[offset + 2])
-            | (oldBuffer[offset + 3] ^ newBuffer[offset + 3])
-            | (oldBuffer[offset + 4] ^ newBuffer[offset + 4])
-            | (oldBuffer[offset + 5] ^ newBuffer[offset + 5])
-            | (oldBuffer[offset + 6] ^ newBuffer[offset + 6])
-            | (oldBuffer[offset + 7] ^ newBuffer[offset + 7]);
-        offset += delta;
-        int y3 = (oldBuffer[offset + 0] ^ newBuffer[offset + 0])
-            | (oldBuffer[offset + 1] ^ newBuffer[offset + 1])
-            | (oldBuffer[offset + 2] ^ newBuffer[offset + 2])
-            | (oldBuffer[offset + 3] ^ newBuffer[offset + 3])
-            | (oldBuffer[offset + 4] ^ newBuffer[offset + 4])
-            | (oldBuffer[offset + 5] ^ newBuffer[offset + 5])
-            | (oldBuffer[offset + 6] ^ newBuffer[offset + 6])
-            | (oldBuffer[offset + 7] ^ newBuffer[offset + 7]);
-        offset += delta;
-        int y4 = (oldBuffer[offset + 0] ^ newBuffer[offset + 0])
-            | (oldBuffer[offset + 1] ^ newBuffer[offset + 1])
-            | (oldBuffer[offset + 2] ^ newBuffer[offset + 2])
-            | (oldBuffer[offset + 3] ^ newBuffer[offset + 3])
-            | (oldBuffer[offset + 4] ^ newBuffer[offset + 4])
-            | (oldBuffer[offset + 5] ^ newBuffer[offset + 5])
-            | (oldBuffer[offset + 6] ^ newBuffer[offset + 6])
-            | (oldBuffer[offset + 7] ^ newBuffer[offset + 7]);
-        offset += delta;
-        int y5 = (oldBuffer[offset + 0] ^ newBuffer[offset + 0])
-            | (oldBuffer[offset + 1] ^ newBuffer[offset + 1])
-            | (oldBuffer[offset + 2] ^ newBuffer[offset + 2])
-            | (oldBuffer[offset + 3] ^ newBuffer[offset + 3])
-            | (oldBuffer[offset + 4] ^ newBuffer[offset + 4])
-            | (oldBuffer[offset + 5] ^ newBuffer[offset + 5])
-            | (oldBuffer[offset + 6] ^ newBuffer[offset + 6])
-            | (oldBuffer[offset + 7] ^ newBuffer[offset + 7]);
-        offset += delta;
-        int y6 = (oldBuffer[offset + 0] ^ newBuffer[offset + 0])
-            | (oldBuffer[offset + 1] ^ newBuffer[offset + 1])
-            | (oldBuffer[offset + 2] ^ newBuffer[offset + 2])
-            | (oldBuffer[offset + 3] ^ newBuffer[offset + 3])
-            | (oldBuffer[offset + 4] ^ newBuffer[offset + 4])
-            | (oldBuffer[offset + 5] ^ newBuffer[offset + 5])
-            | (oldBuffer[offset + 6] ^ newBuffer[offset + 6])
-            | (oldBuffer[offset + 7] ^ newBuffer[offset + 7]);
-        offset += delta;
-        int y7 = (oldBuffer[offset + 0] ^ newBuffer[offset + 0])
-            | (oldBuffer[offset + 1] ^ newBuffer[offset + 1])
-            | (oldBuffer[offset + 2] ^ newBuffer[offset + 2])
-            | (oldBuffer[offset + 3] ^ newBuffer[offset + 3])
-            | (oldBuffer[offset + 4] ^ newBuffer[offset + 4])
-            | (oldBuffer[offset + 5] ^ newBuffer[offset + 5])
-            | (oldBuffer[offset + 6] ^ newBuffer[offset + 6])
-            | (oldBuffer[offset + 7] ^ newBuffer[offset + 7]);
-
-        int s = y0 | y1 | y2 | y3 | y4 | y5 | y6 | y7;
-        return s != 0;
+    @Override
+    public void setBandwidth(int newBandwidth) {
+        bandwidth = Math.max(0, newBandwidth);
     }
 
-    private static class DirtyTile {
-        int x;
-        int y;
-        int w;
-        int h;
+    @Override
+    public void setFps(int newFps) {
+        framerate = newFps;
+    }
 
-        public DirtyTile(int x, int y, int w, int h) {
-            this.x = x;
-            this.y = y;
-            this.w = w;
-            this.h = h;
-        }
+    @Override
+    public void setQuality(int newQuality) {
+        compressor.setQuality(JpegTileCompressor.DEFAULT_QUALITY * newQuality
+            / 100F);
+    }
 
-        @Override
-        public String toString() {
-            return "[" + x + ":" + y + ":" + w + ":" + h + "]";
-        }
+    @Override
+    public boolean supportSetBandwidth() {
+        return true;
+    }
+
+    @Override
+    public boolean supportSetFps() {
+        return true;
+    }
+
+    @Override
+    public boolean supportSetQuality() {
+        return true;
     }
 
     private void reportMaxDroppedFramesReached() {
@@ -0,0 +1,138 @@
+package de.fu_berlin.inf.dpp.videosharing.encode;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import de.fu_berlin.inf.dpp.util.NamedThreadFactory;
+
+/**
+ * <p>
+ * Compresses images to JPEG on a pool of threads, so the dirty regions of a
+ * frame can be compressed in parallel.
+ * </p>
+ * 
+ * <p>
+ * An {@link ImageWriter} can only be used by one thread at a time, and looking
+ * one up for every image is expensive. This class therefore keeps a pool with
+ * one writer per thread which are reused for all images.
+ * </p>
+ * 
+ * This class is thread safe.
+ */
+final class JpegTileCompressor {
+
+    static final int THREADS = Integer.getInteger(
+        "de.fu_berlin.inf.dpp.videosharing.encode.THREADS", Runtime
+            .getRuntime().availableProcessors());
+
+    /** quality that is used by the JPEG writer if none is set explicitly */
+    static final float DEFAULT_QUALITY = 0.75F;
+
+    private final ExecutorService executor;
+
+    private final BlockingQueue<ImageWriter> writers;
+
+    private volatile float quality = DEFAULT_QUALITY;
+
+    JpegTileCompressor() {
+        int threads = Math.max(1, THREADS);
+
+        executor = Executors.newFixedThreadPool(threads,
+            new NamedThreadFactory("VideosharingTileCompressor-"));
+
+        writers = new ArrayBlockingQueue<ImageWriter>(threads);
+    }
+
+    /**
+     * Sets the JPEG quality for all images compressed afterwards.
+     * 
+     * @param quality
+     *            0..1, where 1 is the best quality
+     */
+    void setQuality(float quality) {
+        this.quality = Math.max(0F, Math.min(1F, quality));
+    }
+
+    /**
+     * Schedules the compression of the given image.
+     * 
+     * @param image
+     *            the image to compress, must not be changed until the
+     *            compression is finished
+     * @return a future that returns the compressed image
+     */
+    Future<byte[]> compress(final BufferedImage image) {
+        return executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return compressImage(image);
+            }
+        });
+    }
+
+    /**
+     * Stops all threads and releases the writers. Running compressions are
+     * interrupted.
+     */
+    void dispose() {
+        executor.shutdownNow();
+
+        ImageWriter writer;
+        while ((writer = writers.poll()) != null)
+            writer.dispose();
+    }
+
+    private byte[] compressImage(BufferedImage image) throws IOException {
+        ImageWriter writer = writers.poll();
+
+        if (writer == null)
+            writer = createWriter();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        MemoryCacheImageOutputStream imageOut = new MemoryCacheImageOutputStream(
+            out);
+
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+
+            writer.setOutput(imageOut);
+            writer.write(null, new IIOImage(image, null, null), param);
+            imageOut.flush();
+        } finally {
+            imageOut.close();
+            writer.reset();
+
+            if (!writers.offer(writer))
+                writer.dispose();
+        }
+
+        return out.toByteArray();
+    }
+
+    private static ImageWriter createWriter() throws IOException {
+        Iterator<ImageWriter> writers = ImageIO
+            .getImageWritersByFormatName("jpeg");
+
+        if (!writers.hasNext())
+            throw new IOException("no JPEG writer available");
+
+        return writers.next();
+    }
+}
@@ -20,6 +20,9 @@
 package de.fu_berlin.inf.dpp.videosharing.encode;
 
 import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.OutputStream;
 
@@ -37,11 +40,11 @@ import com.xuggle.xuggler.video.IConverter;
 
 import de.fu_berlin.inf.dpp.preferences.PreferenceConstants;
 import de.fu_berlin.inf.dpp.videosharing.VideoSharing.VideoSharingSession;
-import de.fu_berlin.inf.dpp.videosharing.decode.Decoder;
 import de.fu_berlin.inf.dpp.videosharing.exceptions.EncoderInitializationException;
 import de.fu_berlin.inf.dpp.videosharing.exceptions.EncodingException;
 import de.fu_berlin.inf.dpp.videosharing.exceptions.xuggler.XugglerNotInstalledException;
 import de.fu_berlin.inf.dpp.videosharing.source.ImageSource;
+import de.fu_berlin.inf.dpp.videosharing.source.MousePointer;
 
 /**
  * @author s-lau
@@ -85,6 +88,9 @@ public class XugglerEncoder extends Encoder {
      */
     private Dimension lastRenderedPictureSize = null;
 
+    /** reused image the captured images are scaled into */
+    private BufferedImage frameImage = null;
+
     public XugglerEncoder(OutputStream out, ImageSource source,
         VideoSharingSession videoSharingSession)
         throws EncoderInitializationException {
@@ -195,12 +201,12 @@ public class XugglerEncoder extends Encoder {
             }
         }
 
-        image = Decoder.resample(image, new Dimension(width, height));
+        BufferedImage frame = toFrame(image, imageSource.getPointer());
 
         long timeStamp = (now - firstTimestamp) * 1000; // convert to
         // microseconds
-        com.xuggle.xuggler.IVideoPicture outFrame = converter.toPicture(
-            convertToType(image, BufferedImage.TYPE_3BYTE_BGR), timeStamp);
+        com.xuggle.xuggler.IVideoPicture outFrame = converter.toPicture(frame,
+            timeStamp);
 
         if ((errorNumber = coder.encodeVideo(packet, outFrame, 0)) < 0) {
             videoSharingSession.reportError(new EncodingException(IError.make(
@@ -217,6 +223,28 @@ public class XugglerEncoder extends Encoder {
         }
     }
 
+    /**
+     * Scales the image into the reused {@link #frameImage} in the format of
+     * the converter and paints the mouse pointer on it.
+     */
+    protected BufferedImage toFrame(BufferedImage image, Point pointer) {
+        if (frameImage == null)
+            frameImage = new BufferedImage(width, height,
+                BufferedImage.TYPE_3BYTE_BGR);
+
+        Graphics2D graphics = frameImage.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+            RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, width, height, null);
+        graphics.dispose();
+
+        if (pointer != null)
+            MousePointer.paint(frameImage, pointer.x * width / image.getWidth(),
+                pointer.y * height / image.getHeight());
+
+        return frameImage;
+    }
+
     /*
      * (non-Javadoc)
      * 
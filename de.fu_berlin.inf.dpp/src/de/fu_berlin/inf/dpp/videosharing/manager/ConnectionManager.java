@@ -27,8 +27,15 @@ import java.io.OutputStream;
 import org.apache.log4j.Logger;
 import org.picocontainer.Disposable;
 
+import de.fu_berlin.inf.dpp.net.ITransferModeListener;
+import de.fu_berlin.inf.dpp.net.JID;
+import de.fu_berlin.inf.dpp.net.NetTransferMode;
+import de.fu_berlin.inf.dpp.net.internal.IByteStreamConnection;
+import de.fu_berlin.inf.dpp.net.internal.StreamSession.StreamSessionOutputStream;
+import de.fu_berlin.inf.dpp.net.internal.TransferModeDispatch;
 import de.fu_berlin.inf.dpp.util.Utils;
 import de.fu_berlin.inf.dpp.videosharing.VideoSharing.VideoSharingSession;
+import de.fu_berlin.inf.dpp.videosharing.decode.DecodingStatisticPacket;
 import de.fu_berlin.inf.dpp.videosharing.encode.Encoder;
 
 /**
@@ -42,6 +49,9 @@ public class ConnectionManager implements Disposable {
 
     private static final Logger log = Logger.getLogger(ConnectionManager.class);
 
+    /** milliseconds between two adjustments of the encoder */
+    protected static final long CONTROL_INTERVAL = 500;
+
     protected OutputStream out;
     protected ObjectInputStream decodeStatistics;
     protected Encoder encoder;
@@ -50,14 +60,32 @@ public class ConnectionManager implements Disposable {
     protected DecodingStatisticManager decodingStatisticManager;
     protected Thread decodingStatisticManagerThread;
     protected VideoSharingSession videoSharingSession;
+    protected TransferModeDispatch transferModeDispatch;
+    protected ThroughputListener throughputListener;
 
+    /**
+     * @param transferModeDispatch
+     *            used to measure the throughput to <code>receiver</code>, can
+     *            be <code>null</code>
+     * @param receiver
+     *            the receiver of the video, can be <code>null</code> if
+     *            <code>transferModeDispatch</code> is <code>null</code>
+     */
     public ConnectionManager(OutputStream out, Encoder encoder,
         ObjectInputStream decodeStatistics,
-        VideoSharingSession videoSharingSession) {
+        VideoSharingSession videoSharingSession,
+        TransferModeDispatch transferModeDispatch, JID receiver) {
         this.out = out;
         this.encoder = encoder;
         this.decodeStatistics = decodeStatistics;
         this.videoSharingSession = videoSharingSession;
+        this.transferModeDispatch = transferModeDispatch;
+
+        if (transferModeDispatch != null) {
+            throughputListener = new ThroughputListener(receiver);
+            transferModeDispatch.add(throughputListener);
+        }
+
         this.encoderManager = new EncoderManager();
         this.decodingStatisticManager = new DecodingStatisticManager();
         encoderManagerThread = Utils.runSafeAsync("EncoderManager", log,
@@ -71,6 +99,9 @@ public class ConnectionManager implements Disposable {
         // streams will be closed by ConnectionFactory
         encoderManagerThread.interrupt();
         decodingStatisticManagerThread.interrupt();
+
+        if (transferModeDispatch != null)
+            transferModeDispatch.remove(throughputListener);
     }
 
     public class DecodingStatisticManager implements Runnable {
@@ -79,7 +110,13 @@ public class ConnectionManager implements Disposable {
         public void run() {
             while (true && !Thread.interrupted()) {
                 try {
-                    log.debug(decodeStatistics.readObject());
+                    Object statistic = decodeStatistics.readObject();
+                    log.debug(statistic);
+
+                    if (statistic instanceof DecodingStatisticPacket) {
+                        DecodingStatisticPacket packet = (DecodingStatisticPacket) statistic;
+                        encoderManager.statisticReceived(packet);
+                    }
                 } catch (IOException e) {
                     if (!(e instanceof InterruptedIOException))
                         videoSharingSession.reportError(e);
@@ -93,8 +130,21 @@ public class ConnectionManager implements Disposable {
 
     }
 
+    /**
+     * Adjusts the {@link Encoder} with a {@link RateController} from the
+     * decoding statistics of the receiver, the data waiting in the video
+     * stream and the throughput of the link.
+     */
     public class EncoderManager implements Runnable {
 
+        protected RateController rateController;
+
+        protected synchronized void statisticReceived(
+            DecodingStatisticPacket statistic) {
+            if (rateController != null)
+                rateController.statisticReceived(statistic);
+        }
+
         @Override
         public void run() {
             if (!encoder.isEncoding())
@@ -103,9 +153,113 @@ public class ConnectionManager implements Disposable {
                 } catch (InterruptedException e1) {
                     return;
                 }
-            // TODO eval statistics and control encoder
+
+            synchronized (this) {
+                rateController = new RateController(encoder.getFps(),
+                    encoder.supportSetQuality());
+            }
+
+            while (!Thread.interrupted()) {
+                try {
+                    Thread.sleep(CONTROL_INTERVAL);
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                if (!encoder.isEncoding())
+                    return;
+
+                control();
+            }
+        }
+
+        protected synchronized void control() {
+            if (throughputListener != null)
+                rateController.throughputMeasured(throughputListener
+                    .getThroughput());
+
+            if (!rateController.update(getBacklog()))
+                return;
+
+            if (log.isDebugEnabled())
+                log.debug("adjusting encoder: " + rateController);
+
+            if (encoder.supportSetFps())
+                encoder.setFps(rateController.getFps());
+
+            if (encoder.supportSetQuality())
+                encoder.setQuality(rateController.getQuality());
+
+            if (encoder.supportSetBandwidth())
+                encoder.setBandwidth(rateController.getBandwidth());
         }
 
+        /**
+         * @return fraction of the video stream's buffer that is in use
+         */
+        protected double getBacklog() {
+            if (!(out instanceof StreamSessionOutputStream))
+                return 0;
+
+            StreamSessionOutputStream stream = (StreamSessionOutputStream) out;
+
+            int total = stream.getTotalBuffer();
+
+            if (total <= 0)
+                return 0;
+
+            return (total - stream.getFreeBuffer()) / (double) total;
+        }
+    }
+
+    /**
+     * Measures the throughput of the outgoing transfers to the receiver.
+     */
+    protected static class ThroughputListener implements ITransferModeListener {
+
+        protected final JID receiver;
+
+        protected long bytes = 0;
+
+        protected long millis = 0;
+
+        protected ThroughputListener(JID receiver) {
+            this.receiver = receiver;
+        }
+
+        /**
+         * @return the throughput in bytes per second since the last call or 0
+         *         if nothing was sent
+         */
+        protected synchronized long getThroughput() {
+            long throughput = millis > 0 ? bytes * 1000 / millis : 0;
+            bytes = 0;
+            millis = 0;
+            return throughput;
+        }
+
+        @Override
+        public synchronized void transferFinished(JID jid,
+            NetTransferMode newMode, boolean incoming, long sizeTransferred,
+            long sizeUncompressed, long transmissionMillisecs) {
+            if (incoming || !receiver.equals(jid))
+                return;
+
+            bytes += sizeTransferred;
+            millis += transmissionMillisecs;
+        }
+
+        @Override
+        public void connectionChanged(JID jid,
+            IByteStreamConnection connection) {
+            // nothing to do
+        }
+
+        @Override
+        public synchronized void clear() {
+            bytes = 0;
+            millis = 0;
+        }
     }
 
 }
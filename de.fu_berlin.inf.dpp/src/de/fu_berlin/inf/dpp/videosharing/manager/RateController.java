@@ -0,0 +1,179 @@
+package de.fu_berlin.inf.dpp.videosharing.manager;
+
+import de.fu_berlin.inf.dpp.videosharing.decode.DecodingStatisticPacket;
+
+/**
+ * <p>
+ * Computes the frame rate, quality and bandwidth an encoder should use from
+ * the state of the connection to the receiver.
+ * </p>
+ * 
+ * <p>
+ * The connection is considered congested if the send buffer of the video
+ * stream fills up or the receiver renders considerably less frames than are
+ * encoded, because it can not decode them fast enough or they arrive too
+ * late. The controller then decreases multiplicatively, first the quality
+ * down to {@link #MINIMUM_QUALITY} and then the frame rate down to
+ * {@link #MINIMUM_FPS}. If the send buffer is almost empty, it increases
+ * additively in reverse order, first the frame rate up to the initial frame
+ * rate and then the quality. After a decrease it waits
+ * {@link #HOLD_SAMPLES} samples before increasing again. If the encoder can
+ * not set the quality, only the frame rate is changed.
+ * </p>
+ * 
+ * <p>
+ * The bandwidth is not limited initially. While the connection is congested
+ * it is kept below the measured throughput of the link, otherwise it grows
+ * again by 10 percent per sample.
+ * </p>
+ * 
+ * This class is not thread safe.
+ */
+public class RateController {
+
+    public static final int MINIMUM_FPS = 1;
+
+    public static final int MINIMUM_QUALITY = 20;
+
+    public static final int MAXIMUM_QUALITY = 100;
+
+    /** fraction of the send buffer in use at which the link is congested */
+    static final double HIGH_BACKLOG = 0.5;
+
+    /** fraction of the send buffer in use below which the link is idle */
+    static final double LOW_BACKLOG = 0.1;
+
+    /** rendered frames per encoded frame below which the receiver lags */
+    static final double MINIMUM_RENDERED_RATIO = 0.75;
+
+    static final int HOLD_SAMPLES = 4;
+
+    static final int QUALITY_STEP = 5;
+
+    private final int maximumFps;
+
+    private final boolean qualitySupported;
+
+    private int fps;
+
+    private int quality = MAXIMUM_QUALITY;
+
+    private int bandwidth = 0;
+
+    private long throughput = 0;
+
+    private DecodingStatisticPacket statistic = null;
+
+    private int hold = 0;
+
+    /**
+     * @param fps
+     *            the initial frame rate which is never exceeded
+     * @param qualitySupported
+     *            <code>true</code> if the encoder can set the quality
+     */
+    public RateController(int fps, boolean qualitySupported) {
+        this.maximumFps = Math.max(MINIMUM_FPS, fps);
+        this.fps = maximumFps;
+        this.qualitySupported = qualitySupported;
+    }
+
+    /**
+     * Stores the latest statistic of the receiver, it is evaluated by the next
+     * call of {@link #update(double)}.
+     */
+    public void statisticReceived(DecodingStatisticPacket statistic) {
+        this.statistic = statistic;
+    }
+
+    /**
+     * Stores the throughput measured for the link to the receiver.
+     * 
+     * @param bytesPerSecond
+     *            the throughput or 0 if it is unknown
+     */
+    public void throughputMeasured(long bytesPerSecond) {
+        this.throughput = bytesPerSecond;
+    }
+
+    /**
+     * Evaluates the current state of the connection and adjusts the frame
+     * rate, quality and bandwidth.
+     * 
+     * @param backlog
+     *            fraction of the send buffer that is in use, 0..1
+     * @return <code>true</code> if any value changed
+     */
+    public boolean update(double backlog) {
+        int oldFps = fps;
+        int oldQuality = quality;
+        int oldBandwidth = bandwidth;
+
+        boolean congested = backlog >= HIGH_BACKLOG || isReceiverLagging();
+
+        statistic = null;
+
+        if (congested) {
+            hold = HOLD_SAMPLES;
+
+            if (qualitySupported && quality > MINIMUM_QUALITY)
+                quality = Math.max(MINIMUM_QUALITY, quality * 3 / 4);
+            else
+                fps = Math.max(MINIMUM_FPS, fps * 3 / 4);
+
+            if (throughput > 0) {
+                int limit = (int) Math.min(Integer.MAX_VALUE,
+                    Math.max(1, throughput * 9 / 10));
+
+                bandwidth = bandwidth == 0 ? limit : Math.min(bandwidth, limit);
+            }
+
+        } else if (hold > 0) {
+            hold--;
+
+        } else if (backlog < LOW_BACKLOG) {
+            if (fps < maximumFps)
+                fps++;
+            else if (qualitySupported && quality < MAXIMUM_QUALITY)
+                quality = Math.min(MAXIMUM_QUALITY, quality + QUALITY_STEP);
+
+            if (bandwidth > 0)
+                bandwidth = (int) Math.min(Integer.MAX_VALUE,
+                    bandwidth * 11L / 10 + 1);
+        }
+
+        return oldFps != fps || oldQuality != quality
+            || oldBandwidth != bandwidth;
+    }
+
+    private boolean isReceiverLagging() {
+        if (statistic == null)
+            return false;
+
+        return statistic.getFps() < fps * MINIMUM_RENDERED_RATIO;
+    }
+
+    public int getFps() {
+        return fps;
+    }
+
+    /**
+     * @return 0..100, where 100 is the quality the encoder started with
+     */
+    public int getQuality() {
+        return quality;
+    }
+
+    /**
+     * @return bandwidth in bytes per second or 0 if it is not limited
+     */
+    public int getBandwidth() {
+        return bandwidth;
+    }
+
+    @Override
+    public String toString() {
+        return "fps: " + fps + " quality: " + quality + " bandwidth: "
+            + bandwidth + " throughput: " + throughput;
+    }
+}
@@ -0,0 +1,120 @@
+package de.fu_berlin.inf.dpp.videosharing.source;
+
+/**
+ * <p>
+ * Detects a static screen by hashing the pixels of consecutive captures.
+ * </p>
+ * 
+ * <p>
+ * After {@link #IDLE_FRAMES} captures with the same hash the screen is
+ * considered idle and only every {@link #IDLE_CAPTURE_INTERVAL}th frame is
+ * captured, the others reuse the last image. Any change of the pixels or of
+ * the captured area ends the idle mode immediately. Setting
+ * {@link #IDLE_FRAMES} to 0 disables the idle mode.
+ * </p>
+ * 
+ * This class is not thread safe.
+ */
+class IdleDetector {
+
+    static final int IDLE_FRAMES = Integer.getInteger(
+        "de.fu_berlin.inf.dpp.videosharing.source.IDLE_FRAMES", 10);
+
+    static final int IDLE_CAPTURE_INTERVAL = Integer.getInteger(
+        "de.fu_berlin.inf.dpp.videosharing.source.IDLE_CAPTURE_INTERVAL", 5);
+
+    private final int idleFrames;
+
+    private final int captureInterval;
+
+    private long lastHash = 0;
+
+    private boolean hasHash = false;
+
+    /** number of consecutive captures with the same hash */
+    private int unchangedFrames = 0;
+
+    /** frames skipped since the last capture while idle */
+    private int skippedFrames = 0;
+
+    IdleDetector() {
+        this(IDLE_FRAMES, IDLE_CAPTURE_INTERVAL);
+    }
+
+    IdleDetector(int idleFrames, int captureInterval) {
+        this.idleFrames = idleFrames;
+        this.captureInterval = Math.max(1, captureInterval);
+    }
+
+    /**
+     * @return <code>true</code> if the screen has not changed for
+     *         {@link #IDLE_FRAMES} captures
+     */
+    boolean isIdle() {
+        return idleFrames > 0 && unchangedFrames >= idleFrames;
+    }
+
+    /**
+     * @return <code>true</code> if the next frame should be captured,
+     *         <code>false</code> if the last image can be reused
+     */
+    boolean shouldCapture() {
+        if (!isIdle())
+            return true;
+
+        if (++skippedFrames < captureInterval)
+            return false;
+
+        skippedFrames = 0;
+        return true;
+    }
+
+    /**
+     * Must be called after each capture.
+     * 
+     * @param pixels
+     *            the pixels of the captured image
+     * @return <code>true</code> if the pixels differ from the last capture
+     */
+    boolean captured(int[] pixels) {
+        long hash = hash(pixels);
+
+        boolean changed = !hasHash || hash != lastHash;
+
+        lastHash = hash;
+        hasHash = true;
+
+        if (changed) {
+            unchangedFrames = 0;
+            skippedFrames = 0;
+        } else {
+            unchangedFrames++;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Forgets the last capture, e.g. because the captured area changed.
+     */
+    void reset() {
+        hasHash = false;
+        unchangedFrames = 0;
+        skippedFrames = 0;
+    }
+
+    /**
+     * 64 bit FNV-1a style hash over all pixels, a collision is unlikely
+     * enough for a few thousand frames.
+     */
+    static long hash(int[] pixels) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < pixels.length; i++) {
+            hash ^= pixels[i];
+            hash *= 0x100000001b3L;
+        }
+
+        return hash;
+    }
+}
@@ -19,6 +19,7 @@
  */
 package de.fu_berlin.inf.dpp.videosharing.source;
 
+import java.awt.Point;
 import java.awt.image.BufferedImage;
 
 import org.picocontainer.Disposable;
@@ -33,8 +34,21 @@ import de.fu_berlin.inf.dpp.videosharing.activities.VideoActivity;
  */
 public interface ImageSource extends Disposable {
 
+    /**
+     * Returns the current image. If nothing changed since the last call, the
+     * same instance can be returned again. A returned image is never modified
+     * afterwards.
+     */
     public BufferedImage toImage();
 
+    /**
+     * @return the position of the mouse pointer in the image that was returned
+     *         by the last call of {@link #toImage()} or <code>null</code> if
+     *         no pointer should be shown. The pointer is not painted into the
+     *         image.
+     */
+    public Point getPointer();
+
     public void processActivity(VideoActivity activity);
 
     public void switchMode();
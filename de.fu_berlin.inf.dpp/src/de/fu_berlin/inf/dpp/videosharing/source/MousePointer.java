@@ -0,0 +1,45 @@
+package de.fu_berlin.inf.dpp.videosharing.source;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.image.BufferedImage;
+
+/**
+ * Paints the mouse pointer of the shared screen. The pointer is not part of
+ * the captured image but transmitted separately, so moving it does not change
+ * the pixels that have to be encoded.
+ */
+public class MousePointer {
+
+    private MousePointer() {
+        // utility class
+    }
+
+    /**
+     * Paints the pointer at the given position. The pointer is stretched on
+     * big images so it remains visible.
+     */
+    public static void paint(BufferedImage image, int x, int y) {
+        double heightStretch = Math.max(200, image.getHeight()) / 200D;
+        double widthStretch = Math.max(200, image.getWidth()) / 200D;
+
+        Polygon mousePointer = new Polygon();
+        mousePointer.addPoint(x, y);
+        mousePointer.addPoint(x, (int) (y + 17 * heightStretch));
+        mousePointer.addPoint((int) (x + 10 * widthStretch),
+            (int) (y + 12 * heightStretch));
+
+        Graphics2D graphics2d = image.createGraphics();
+
+        try {
+            graphics2d.setColor(Color.WHITE);
+            graphics2d.fill(mousePointer);
+
+            graphics2d.setColor(Color.BLACK);
+            graphics2d.draw(mousePointer);
+        } finally {
+            graphics2d.dispose();
+        }
+    }
+}
@@ -26,11 +26,13 @@ import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.MouseInfo;
 import java.awt.Point;
-import java.awt.Polygon;
+import java.awt.PointerInfo;
 import java.awt.Rectangle;
 import java.awt.Robot;
 import java.awt.Toolkit;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
 
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.picocontainer.annotations.Inject;
@@ -40,12 +42,16 @@ import com.thoughtworks.xstream.InitializationException;
 import de.fu_berlin.inf.dpp.Saros;
 import de.fu_berlin.inf.dpp.SarosPluginContext;
 import de.fu_berlin.inf.dpp.preferences.PreferenceConstants;
+import de.fu_berlin.inf.dpp.util.Utils;
 import de.fu_berlin.inf.dpp.videosharing.VideoSharing.VideoSharingSession;
 import de.fu_berlin.inf.dpp.videosharing.activities.KeyPressedVideoActivity;
 import de.fu_berlin.inf.dpp.videosharing.activities.VideoActivity;
 
 /**
- * Responsible for taking screenshots.
+ * Responsible for taking screenshots. The mouse pointer is not painted into
+ * the screenshots, it is provided by {@link #getPointer()}. While the screen
+ * does not change, the last screenshot is returned again and fewer
+ * screenshots are taken, see {@link IdleDetector}.
  * 
  * @author s-lau
  * 
@@ -94,6 +100,24 @@ public class Screen implements ImageSource {
 
     protected Robot robot = null;
 
+    /**
+     * skips captures while the screen does not change
+     */
+    protected IdleDetector idleDetector = new IdleDetector();
+
+    /**
+     * the last image returned by {@link #toImage()} with the area and the info
+     * text it was captured with
+     */
+    protected BufferedImage lastImage = null;
+    protected Rectangle lastArea = null;
+    protected String lastText = null;
+
+    /**
+     * position of the mouse pointer in {@link #lastImage}
+     */
+    protected Point pointer = null;
+
     /**
      * @throws InitializationException
      *             Could not create screen-grabber
@@ -123,11 +147,46 @@ public class Screen implements ImageSource {
 
     @Override
     public synchronized BufferedImage toImage() {
-        final BufferedImage capture = robot
-            .createScreenCapture(followsMouse() ? mouseRectangle() : screenArea);
+        PointerInfo pointerInfo = MouseInfo.getPointerInfo();
+
+        // sometimes a pointer is not available
+        Point mousePosition = pointerInfo == null ? null : pointerInfo
+            .getLocation();
+
+        Rectangle area = screenArea;
+
+        if (followsMouse())
+            area = updateMouseRectangle(mousePosition == null ? new Point()
+                : mousePosition);
 
         String text = infoText.getText();
 
+        boolean unchanged = lastImage != null && area.equals(lastArea)
+            && Utils.equals(text, lastText);
+
+        if (!unchanged)
+            idleDetector.reset();
+
+        if (unchanged && !idleDetector.shouldCapture()) {
+            updatePointer(mousePosition);
+            return lastImage;
+        }
+
+        final BufferedImage capture = robot.createScreenCapture(area);
+
+        DataBuffer dataBuffer = capture.getRaster().getDataBuffer();
+
+        boolean changed = true;
+
+        if (dataBuffer instanceof DataBufferInt)
+            changed = idleDetector.captured(((DataBufferInt) dataBuffer)
+                .getData());
+
+        if (unchanged && !changed) {
+            updatePointer(mousePosition);
+            return lastImage;
+        }
+
         if (text != null) {
             // get graphic to paint on
             Graphics2D pic = capture.createGraphics();
@@ -146,64 +205,36 @@ public class Screen implements ImageSource {
             }
         }
 
-        if (showMousePointer) {
-            Graphics2D graphics2d = capture.createGraphics();
-
-            int mouseX = 0, mouseY = 0;
-            double heightStretch = 0, widthStretch = 0;
-            Point mousePoint = MouseInfo.getPointerInfo().getLocation();
-            switch (mode) {
-            case FULL_SCREEN:
-                mouseX = mousePoint.x;
-                mouseY = mousePoint.y;
-                heightStretch = fullScreenArea.height;
-                widthStretch = fullScreenArea.width;
-                break;
-            case FOLLOW_MOUSE:
-                mouseX = Math.min(mouseArea.width / 2, mousePoint.x);
-                mouseY = Math.min(mouseArea.height / 2, mousePoint.y);
-                if ((fullScreenArea.width - mouseArea.width / 2) < mousePoint.x)
-                    mouseX = mouseArea.width - fullScreenArea.width
-                        + mousePoint.x;
-                if ((fullScreenArea.height - mouseArea.height / 2) < mousePoint.y)
-                    mouseY = mouseArea.height - fullScreenArea.height
-                        + mousePoint.y;
-                heightStretch = mouseArea.height;
-                widthStretch = mouseArea.width;
-                break;
-            }
-
-            // stretch pointer on big screens to see it
-            heightStretch = Math.max(200, heightStretch) / 200;
-            widthStretch = Math.max(200, widthStretch) / 200;
-
-            Polygon mousePointer = new Polygon();
-            mousePointer.addPoint(mouseX, mouseY);
-            mousePointer.addPoint(mouseX, (int) (mouseY + 17 * heightStretch));
-            mousePointer.addPoint((int) (mouseX + 10 * widthStretch),
-                (int) (mouseY + 12 * heightStretch));
-            // mousePointer.addPoint((int) (mouseX + 12 * widthStretch),
-            // (int) (mouseY + 10 * widthStretch));
-
-            graphics2d.setColor(Color.WHITE);
-            graphics2d.fill(mousePointer);
+        lastImage = capture;
+        lastArea = area;
+        lastText = text;
 
-            graphics2d.setColor(Color.BLACK);
-            graphics2d.draw(mousePointer);
-
-            graphics2d.dispose();
-        }
+        updatePointer(mousePosition);
 
         return capture;
     }
 
-    protected Rectangle mouseRectangle() {
-        if (MouseInfo.getPointerInfo() == null) {
-            // sometimes a pointer is not available
-            return updateMouseRectangle(new Point());
+    @Override
+    public synchronized Point getPointer() {
+        return pointer;
+    }
+
+    /**
+     * Computes the position of the pointer in the last captured area.
+     * 
+     * @param mousePosition
+     *            the position on the screen or <code>null</code> if it is not
+     *            available
+     */
+    protected void updatePointer(Point mousePosition) {
+        if (!showMousePointer || mousePosition == null
+            || !lastArea.contains(mousePosition)) {
+            pointer = null;
+            return;
         }
-        Point mousePosition = MouseInfo.getPointerInfo().getLocation();
-        return updateMouseRectangle(mousePosition);
+
+        pointer = new Point(mousePosition.x - lastArea.x, mousePosition.y
+            - lastArea.y);
     }
 
     protected Rectangle updateMouseRectangle(Point mousePosition) {
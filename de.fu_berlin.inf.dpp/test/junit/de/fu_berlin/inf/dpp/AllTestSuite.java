@@ -16,6 +16,8 @@ de.fu_berlin.inf.dpp.concurrent.TestSuite.class,
 
 de.fu_berlin.inf.dpp.concurrent.jupiter.test.puzzles.TestSuite.class,
 
+de.fu_berlin.inf.dpp.concurrent.management.TestSuite.class,
+
 de.fu_berlin.inf.dpp.concurrent.undo.TestSuite.class,
 
 de.fu_berlin.inf.dpp.editor.colorstorage.TestSuite.class,
@@ -38,7 +40,13 @@ de.fu_berlin.inf.dpp.synchronize.TestSuite.class,
 
 de.fu_berlin.inf.dpp.ui.model.roster.TestSuite.class,
 
-de.fu_berlin.inf.dpp.util.TestSuite.class
+de.fu_berlin.inf.dpp.util.TestSuite.class,
+
+de.fu_berlin.inf.dpp.videosharing.encode.TestSuite.class,
+
+de.fu_berlin.inf.dpp.videosharing.manager.TestSuite.class,
+
+de.fu_berlin.inf.dpp.videosharing.source.TestSuite.class
 
 })
 public class AllTestSuite {
@@ -0,0 +1,123 @@
+package de.fu_berlin.inf.dpp.concurrent.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DocumentChecksumTest {
+
+    private IDocument document;
+
+    private DocumentChecksum checksum;
+
+    @Before
+    public void setUp() {
+        document = new Document();
+        checksum = new DocumentChecksum(null);
+        checksum.bind(document);
+    }
+
+    private void assertChecksumMatches() {
+        checksum.update();
+        assertEquals("wrong length", document.getLength(),
+            checksum.getLength());
+        assertEquals("wrong hash", document.get().hashCode(),
+            checksum.getHash());
+    }
+
+    @Test
+    public void testEmptyDocument() {
+        assertChecksumMatches();
+    }
+
+    @Test
+    public void testMissingDocument() {
+        checksum.bind(null);
+        checksum.update();
+        assertFalse(checksum.existsFile());
+    }
+
+    @Test
+    public void testSmallChanges() throws BadLocationException {
+        document.set("Hello World");
+        assertChecksumMatches();
+
+        document.replace(5, 0, ",");
+        assertChecksumMatches();
+
+        document.replace(0, 5, "Goodbye");
+        assertChecksumMatches();
+
+        document.replace(0, document.getLength(), "");
+        assertChecksumMatches();
+    }
+
+    @Test
+    public void testRandomChanges() throws BadLocationException {
+        Random random = new Random(4711);
+
+        StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < 100000; i++)
+            content.append((char) ('a' + random.nextInt(26)));
+
+        document.set(content.toString());
+        assertChecksumMatches();
+
+        for (int i = 0; i < 1000; i++) {
+            int offset = random.nextInt(document.getLength() + 1);
+            int length = random.nextInt(Math.min(10000, document.getLength()
+                - offset) + 1);
+
+            StringBuilder text = new StringBuilder();
+
+            for (int j = random.nextInt(10000); j > 0; j--)
+                text.append((char) ('a' + random.nextInt(26)));
+
+            document.replace(offset, length, text.toString());
+
+            if (i % 10 == 0)
+                assertChecksumMatches();
+        }
+
+        assertChecksumMatches();
+    }
+
+    @Test
+    public void testManySmallChanges() throws BadLocationException {
+        Random random = new Random(42);
+
+        StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < 100000; i++)
+            content.append((char) ('a' + random.nextInt(26)));
+
+        document.set(content.toString());
+        assertChecksumMatches();
+
+        for (int i = 0; i < 10000; i++) {
+            int offset = random.nextInt(document.getLength() + 1);
+
+            if (random.nextBoolean() && offset < document.getLength())
+                document.replace(offset, 1, "");
+            else
+                document.replace(offset, 0,
+                    String.valueOf((char) ('a' + random.nextInt(26))));
+        }
+
+        assertChecksumMatches();
+
+        int fullBlocks = document.getLength() / 4096;
+
+        assertTrue("too many blocks: " + checksum.getBlockCount(),
+            checksum.getBlockCount() <= 2 * fullBlocks + 1);
+    }
+}
@@ -2,10 +2,13 @@ package de.fu_berlin.inf.dpp.editor.internal;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.easymock.EasyMock;
 import org.eclipse.jface.preference.IPreferenceStore;
@@ -20,6 +23,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import de.fu_berlin.inf.dpp.User;
+import de.fu_berlin.inf.dpp.editor.annotations.ContributionAnnotation;
 import de.fu_berlin.inf.dpp.net.JID;
 import de.fu_berlin.inf.dpp.net.SarosNet;
 import de.fu_berlin.inf.dpp.preferences.PreferenceConstants;
@@ -95,6 +99,79 @@ public class ContributionAnnotationManagerTest {
 
     }
 
+    @Test
+    public void testAdjacentContributionsOfDifferentUsers() {
+        User alice = new User(new JID("alice@test"), false, false, 0, 0);
+        User bob = new User(new JID("bob@test"), false, false, 1, 1);
+
+        AnnotationModel model = new AnnotationModel();
+
+        manager.insertAnnotation(model, 0, 5, alice);
+        manager.insertAnnotation(model, 5, 5, bob);
+
+        Map<Position, User> sources = getAnnotationSources(model);
+
+        assertEquals(2, sources.size());
+        assertEquals(alice, sources.get(new Position(0, 5)));
+        assertEquals(bob, sources.get(new Position(5, 5)));
+    }
+
+    @Test
+    public void testContributionIsCutOutOfOtherUsersAnnotation() {
+        User alice = new User(new JID("alice@test"), false, false, 0, 0);
+        User bob = new User(new JID("bob@test"), false, false, 1, 1);
+
+        AnnotationModel model = new AnnotationModel();
+
+        manager.insertAnnotation(model, 0, 10, alice);
+        manager.insertAnnotation(model, 4, 2, bob);
+
+        Map<Position, User> sources = getAnnotationSources(model);
+
+        assertEquals(3, sources.size());
+        assertEquals(alice, sources.get(new Position(0, 4)));
+        assertEquals(bob, sources.get(new Position(4, 2)));
+        assertEquals(alice, sources.get(new Position(6, 4)));
+    }
+
+    @Test
+    public void testSplitAnnotation() {
+        User alice = new User(new JID("alice@test"), false, false, 0, 0);
+
+        AnnotationModel model = new AnnotationModel();
+
+        manager.insertAnnotation(model, 0, 10, alice);
+        manager.splitAnnotation(model, 0);
+        manager.splitAnnotation(model, 10);
+
+        assertEquals(1, getAnnotationCount(model));
+
+        manager.splitAnnotation(model, 4);
+
+        List<Position> positions = getAnnotationPositions(model);
+
+        assertEquals(2, positions.size());
+        assertTrue(positions.contains(new Position(0, 4)));
+        assertTrue(positions.contains(new Position(4, 6)));
+    }
+
+    @Test
+    public void testRemovedAnnotationsAreIgnored() {
+        User alice = new User(new JID("alice@test"), false, false, 0, 0);
+
+        AnnotationModel model = new AnnotationModel();
+
+        manager.insertAnnotation(model, 0, 5, alice);
+        model.removeAllAnnotations();
+
+        manager.insertAnnotation(model, 5, 5, alice);
+
+        List<Position> positions = getAnnotationPositions(model);
+
+        assertEquals(1, positions.size());
+        assertTrue(positions.contains(new Position(5, 5)));
+    }
+
     @SuppressWarnings("unchecked")
     private int getAnnotationCount(AnnotationModel model) {
         int count = 0;
@@ -123,4 +200,20 @@ public class ContributionAnnotationManagerTest {
 
         return positions;
     }
+
+    @SuppressWarnings("unchecked")
+    private Map<Position, User> getAnnotationSources(AnnotationModel model) {
+
+        Map<Position, User> sources = new HashMap<Position, User>();
+
+        Iterator<Annotation> it = model.getAnnotationIterator();
+
+        while (it.hasNext()) {
+            ContributionAnnotation annotation = (ContributionAnnotation) it
+                .next();
+            sources.put(model.getPosition(annotation), annotation.getSource());
+        }
+
+        return sources;
+    }
 }
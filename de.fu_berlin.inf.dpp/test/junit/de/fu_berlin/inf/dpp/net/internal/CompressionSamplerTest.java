@@ -0,0 +1,69 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CompressionSamplerTest {
+
+    private final CompressionSampler sampler = new CompressionSampler();
+
+    private static byte[] createRandomData(int size) {
+        byte[] data = new byte[size];
+        new Random(4711).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] createText(int size) {
+        byte[] data = new byte[size];
+
+        for (int i = 0; i < size; i++)
+            data[i] = (byte) ('a' + i % 7);
+
+        return data;
+    }
+
+    @Test
+    public void testCompressibleData() {
+        byte[] data = createText(8 * 1024);
+
+        for (int i = 0; i < CompressionSampler.SAMPLE_INTERVAL * 2; i++)
+            assertTrue(sampler.shouldCompress(data));
+    }
+
+    @Test
+    public void testIncompressibleData() {
+        byte[] data = createRandomData(8 * 1024);
+
+        for (int i = 0; i < CompressionSampler.SAMPLE_INTERVAL * 2; i++)
+            assertFalse(sampler.shouldCompress(data));
+    }
+
+    @Test
+    public void testCompressionIsTurnedOnAgain() {
+        byte[] random = createRandomData(8 * 1024);
+        byte[] text = createText(8 * 1024);
+
+        assertFalse(sampler.shouldCompress(random));
+
+        for (int i = 1; i < CompressionSampler.SAMPLE_INTERVAL; i++)
+            assertFalse(sampler.shouldCompress(text));
+
+        assertTrue(sampler.shouldCompress(text));
+    }
+
+    @Test
+    public void testSmallPacketsKeepDecision() {
+        byte[] small = new byte[8];
+        Arrays.fill(small, (byte) 1);
+
+        assertFalse(sampler.shouldCompress(createRandomData(1024)));
+
+        for (int i = 1; i < CompressionSampler.SAMPLE_INTERVAL * 2; i++)
+            assertFalse(sampler.shouldCompress(small));
+    }
+}
@@ -0,0 +1,112 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jivesoftware.smack.PacketListener;
+import org.jivesoftware.smack.filter.PacketFilter;
+import org.jivesoftware.smack.packet.Message;
+import org.jivesoftware.smack.packet.Packet;
+import org.junit.Test;
+
+import de.fu_berlin.inf.dpp.net.internal.PacketListenerIndex.Route;
+import de.fu_berlin.inf.dpp.net.internal.extensions.KickUserExtension;
+import de.fu_berlin.inf.dpp.net.internal.extensions.SarosLeaveExtension;
+
+public class PacketListenerIndexTest {
+
+    private final Map<PacketListener, PacketFilter> listeners = new HashMap<PacketListener, PacketFilter>();
+
+    private final List<String> received = new ArrayList<String>();
+
+    private void addListener(final String name, PacketFilter filter) {
+        listeners.put(new PacketListener() {
+            @Override
+            public void processPacket(Packet packet) {
+                received.add(name);
+            }
+        }, filter);
+    }
+
+    private List<String> forward(Packet packet) {
+        received.clear();
+
+        for (Route route : new PacketListenerIndex(listeners)
+            .getRoutes(packet))
+            route.forward(packet);
+
+        return received;
+    }
+
+    private Packet createKickPacket(String sessionID) {
+        Packet packet = new Message();
+        packet.addExtension(KickUserExtension.PROVIDER
+            .create(new KickUserExtension(sessionID)));
+        return packet;
+    }
+
+    @Test
+    public void testRoutingBySession() {
+        addListener("kick1", KickUserExtension.PROVIDER.getPacketFilter("1"));
+        addListener("kick2", KickUserExtension.PROVIDER.getPacketFilter("2"));
+        addListener("kick", KickUserExtension.PROVIDER.getPacketFilter());
+        addListener("leave1",
+            SarosLeaveExtension.PROVIDER.getPacketFilter("1"));
+
+        List<String> result = forward(createKickPacket("1"));
+
+        assertEquals(2, result.size());
+        assertTrue(result.contains("kick1"));
+        assertTrue(result.contains("kick"));
+    }
+
+    @Test
+    public void testIndexedFiltersAreOnlyAskedForTheirExtension() {
+        final List<Packet> asked = new ArrayList<Packet>();
+
+        addListener("leave", SarosLeaveExtension.PROVIDER.getPacketFilter()
+            .and(new PacketFilter() {
+                @Override
+                public boolean accept(Packet packet) {
+                    asked.add(packet);
+                    return true;
+                }
+            }));
+
+        assertTrue(forward(createKickPacket("1")).isEmpty());
+        assertTrue(asked.isEmpty());
+    }
+
+    @Test
+    public void testUnindexedListenersReceiveEveryPacket() {
+        addListener("all", null);
+        addListener("messages", new PacketFilter() {
+            @Override
+            public boolean accept(Packet packet) {
+                return packet instanceof Message;
+            }
+        });
+
+        List<String> result = forward(createKickPacket("1"));
+
+        assertEquals(2, result.size());
+        assertEquals(2, forward(new Message()).size());
+    }
+
+    @Test
+    public void testRoutingOfIQPackets() {
+        addListener("iq", KickUserExtension.PROVIDER.getIQFilter());
+        addListener("extension", KickUserExtension.PROVIDER.getPacketFilter());
+
+        List<String> result = forward(KickUserExtension.PROVIDER
+            .createIQ(new KickUserExtension("1")));
+
+        assertEquals(1, result.size());
+        assertEquals("iq", result.get(0));
+    }
+}
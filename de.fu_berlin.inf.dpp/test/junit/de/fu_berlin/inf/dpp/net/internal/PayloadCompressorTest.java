@@ -0,0 +1,73 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PayloadCompressorTest {
+
+    private final PayloadCompressor compressor = new PayloadCompressor();
+
+    @Test
+    public void testDeflateInflate() throws IOException {
+        Random random = new Random(4711);
+
+        for (int size : new int[] { 0, 1, 100, 64 * 1024, 3 * 1024 * 1024 }) {
+            byte[] data = new byte[size];
+
+            for (int i = 0; i < size; i++)
+                data[i] = (byte) ('a' + random.nextInt(8));
+
+            byte[] compressed = compressor.deflate(data);
+
+            assertArrayEquals(data, compressor.inflate(compressed, size));
+            assertArrayEquals(data, compressor.inflate(compressed, 0));
+        }
+    }
+
+    @Test
+    public void testIncompressibleData() throws IOException {
+        byte[] data = new byte[256 * 1024];
+        new Random(4711).nextBytes(data);
+
+        byte[] compressed = compressor.deflate(data);
+
+        assertArrayEquals(data, compressor.inflate(compressed, data.length));
+        assertArrayEquals(data, compressor.inflate(compressed, -1));
+    }
+
+    @Test
+    public void testImplausibleSizeHint() throws IOException {
+        byte[] data = new byte[64 * 1024];
+        byte[] compressed = compressor.deflate(data);
+
+        assertArrayEquals(data,
+            compressor.inflate(compressed, Integer.MAX_VALUE));
+        assertArrayEquals(data, compressor.inflate(compressed, Long.MAX_VALUE));
+        assertArrayEquals(data, compressor.inflate(compressed, 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void testInflateTruncatedData() throws IOException {
+        byte[] compressed = compressor.deflate(new byte[64 * 1024]);
+        byte[] truncated = new byte[compressed.length / 2];
+
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+
+        compressor.inflate(truncated, 0);
+    }
+
+    @Test
+    public void testReuseAfterDispose() throws IOException {
+        byte[] data = "foobar".getBytes("UTF-8");
+
+        compressor.deflate(data);
+        compressor.dispose();
+
+        assertArrayEquals(data,
+            compressor.inflate(compressor.deflate(data), data.length));
+    }
+}
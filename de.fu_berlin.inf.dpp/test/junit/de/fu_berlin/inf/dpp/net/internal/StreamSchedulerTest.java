@@ -0,0 +1,116 @@
+package de.fu_berlin.inf.dpp.net.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class StreamSchedulerTest {
+
+    private final StreamScheduler<String, Integer> scheduler = new StreamScheduler<String, Integer>();
+
+    @Test
+    public void testItemsOfOneFlowKeepTheirOrder() throws InterruptedException {
+        for (int i = 0; i < 10; i++)
+            scheduler.add("a", 1, i);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Integer.valueOf(i), scheduler.take());
+            scheduler.charge("a", StreamScheduler.QUANTUM);
+        }
+    }
+
+    @Test
+    public void testBulkFlowDoesNotDelayOtherFlow() throws InterruptedException {
+        for (int i = 0; i < 100; i++)
+            scheduler.add("bulk", 1, i);
+
+        scheduler.add("interactive", 1, -1);
+
+        int position = 0;
+
+        while (true) {
+            int item = scheduler.take();
+
+            if (item == -1)
+                break;
+
+            scheduler.charge("bulk", StreamScheduler.QUANTUM);
+            position++;
+        }
+
+        assertTrue("interactive item was sent after " + position
+            + " bulk items", position <= 1);
+    }
+
+    @Test
+    public void testBandwidthIsSharedByWeight() throws InterruptedException {
+        int size = StreamScheduler.QUANTUM / 4;
+
+        for (int i = 0; i < 1000; i++) {
+            scheduler.add("light", 1, 1);
+            scheduler.add("heavy", 3, 3);
+        }
+
+        int light = 0;
+        int heavy = 0;
+
+        for (int i = 0; i < 400; i++) {
+            if (scheduler.take() == 1) {
+                scheduler.charge("light", size);
+                light++;
+            } else {
+                scheduler.charge("heavy", size);
+                heavy++;
+            }
+        }
+
+        assertEquals(100, light);
+        assertEquals(300, heavy);
+    }
+
+    @Test
+    public void testClosedFlowDiscardsItems() throws InterruptedException {
+        scheduler.add("a", 1, 1);
+        scheduler.add("b", 1, 2);
+        scheduler.add("a", 1, 3);
+
+        assertTrue(scheduler.close("a"));
+        assertFalse(scheduler.close("a"));
+        assertTrue(scheduler.isClosed("a"));
+        assertFalse(scheduler.add("a", 1, 4));
+
+        assertEquals(Integer.valueOf(2), scheduler.take());
+    }
+
+    @Test
+    public void testStatistics() throws InterruptedException {
+        scheduler.add("a", 2, 1);
+        scheduler.add("a", 2, 2);
+        scheduler.add("b", 1, 3);
+
+        scheduler.take();
+        scheduler.charge("a", 100);
+
+        List<StreamScheduler.FlowStatistics> statistics = scheduler
+            .getStatistics();
+
+        assertEquals(2, statistics.size());
+
+        for (StreamScheduler.FlowStatistics flow : statistics) {
+            if (flow.key.equals("a")) {
+                assertEquals(2, flow.weight);
+                assertEquals(1, flow.queueDepth);
+                assertEquals(2, flow.maximumQueueDepth);
+                assertEquals(1, flow.items);
+                assertEquals(100, flow.bytes);
+            } else {
+                assertEquals(1, flow.queueDepth);
+                assertEquals(0, flow.items);
+            }
+        }
+    }
+}
@@ -5,7 +5,9 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ BinaryChannelConnectionTest.class,
-    DataTransferManagerTest.class, TransferDescriptionTest.class })
+    CompressionSamplerTest.class, DataTransferManagerTest.class,
+    PayloadCompressorTest.class, StreamSchedulerTest.class,
+    TransferDescriptionTest.class, PacketListenerIndexTest.class })
 public class TestSuite {
     // the class remains completely empty,
     // being used only as a holder for the above annotations
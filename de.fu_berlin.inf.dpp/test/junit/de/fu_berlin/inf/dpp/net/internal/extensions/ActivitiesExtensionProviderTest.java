@@ -1,6 +1,8 @@
 package de.fu_berlin.inf.dpp.net.internal.extensions;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -12,6 +14,7 @@ import de.fu_berlin.inf.dpp.activities.business.EditorActivity;
 import de.fu_berlin.inf.dpp.activities.serializable.EditorActivityDataObject;
 import de.fu_berlin.inf.dpp.activities.serializable.IActivityDataObject;
 import de.fu_berlin.inf.dpp.net.JID;
+import de.fu_berlin.inf.dpp.net.internal.extensions.XStreamExtensionProvider.XStreamPacketExtension;
 
 public class ActivitiesExtensionProviderTest {
 
@@ -34,4 +37,30 @@ public class ActivitiesExtensionProviderTest {
         assertFalse(marshalled.contains("\t"));
         assertFalse(marshalled.contains("  "));
     }
+
+    @Test
+    public void testBinaryMarshalling() throws Exception {
+        IActivityDataObject activityDataObject = new EditorActivityDataObject(
+            new JID("alice@test"), EditorActivity.Type.ACTIVATED, null);
+
+        List<IActivityDataObject> activities = new ArrayList<IActivityDataObject>();
+
+        activities.add(activityDataObject);
+        activities.add(activityDataObject);
+
+        XStreamPacketExtension<ActivitiesExtension> extension = ActivitiesExtension.PROVIDER
+            .create(new ActivitiesExtension("Session-ID", activities, 42));
+
+        byte[] marshalled = extension.toBinary();
+
+        assertTrue("binary representation is not smaller than XML",
+            marshalled.length < extension.toXML().getBytes("UTF-8").length);
+
+        ActivitiesExtension unmarshalled = ActivitiesExtension.PROVIDER
+            .getPayload(ActivitiesExtension.PROVIDER.parseBinary(marshalled));
+
+        assertEquals("Session-ID", unmarshalled.getSessionID());
+        assertEquals(42, unmarshalled.getSequenceNumber());
+        assertEquals(activities, unmarshalled.getActivityDataObjects());
+    }
 }
@@ -2,6 +2,7 @@ package de.fu_berlin.inf.dpp.project.internal;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -10,8 +11,14 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.easymock.EasyMock;
+import org.jivesoftware.smack.PacketListener;
+import org.jivesoftware.smack.packet.Message;
+import org.jivesoftware.smack.packet.Packet;
 import org.jivesoftware.smack.packet.PacketExtension;
 import org.junit.After;
 import org.junit.Before;
@@ -23,6 +30,8 @@ import de.fu_berlin.inf.dpp.activities.serializable.IActivityDataObject;
 import de.fu_berlin.inf.dpp.net.IReceiver;
 import de.fu_berlin.inf.dpp.net.ITransmitter;
 import de.fu_berlin.inf.dpp.net.JID;
+import de.fu_berlin.inf.dpp.net.internal.extensions.ActivitiesAcknowledgementExtension;
+import de.fu_berlin.inf.dpp.net.internal.extensions.ActivitiesExtension;
 import de.fu_berlin.inf.dpp.observables.SessionIDObservable;
 import de.fu_berlin.inf.dpp.test.fakes.net.FakeConnectionFactory;
 import de.fu_berlin.inf.dpp.test.fakes.net.FakeConnectionFactory.FakeConnectionFactoryResult;
@@ -338,4 +347,196 @@ public class ActivitySequencerTest {
             "received activies although the session id is different on local and remote side",
             0, receivedActivities.size());
     }
+
+    @Test(timeout = 30000)
+    public void testReceiveOutOfOrder() {
+
+        int activityCount = 1000;
+
+        bobSequencer = new ActivitySequencer(sessionStubBob, bobTransmitter,
+            bobReceiver, null, SESSION_ID_ALICE);
+
+        bobSequencer.start();
+
+        User aliceUserInBobSession = new User(ALICE_JID, true, false, 0, 0);
+        User bobUserInAliceSession = new User(BOB_JID, false, false, 0, 0);
+
+        sessionStubBob.addUser(aliceUserInBobSession);
+
+        bobSequencer.registerUser(aliceUserInBobSession);
+
+        // deliver the activities in reverse order
+        for (int i = activityCount - 1; i >= 0; i--) {
+            IActivityDataObject activity = new NOPActivity(aliceUser,
+                bobUserInAliceSession, i)
+                .getActivityDataObject(sessionStubAlice);
+
+            bobReceiver.processPacket(createActivityPacket(
+                SESSION_ID_ALICE.getValue(), activity, i));
+
+            assertEquals("activities are executed although one is missing",
+                i == 0 ? activityCount : 0, sessionStubBob
+                    .getReceivedActivities().size());
+        }
+
+        assertEquals("gap is still open", 0,
+            bobSequencer.getGapAge(aliceUserInBobSession));
+
+        List<IActivityDataObject> receivedActivities = sessionStubBob
+            .getReceivedActivities();
+
+        for (int i = 0; i < activityCount; i++) {
+            NOPActivity activity = (NOPActivity) receivedActivities.get(i)
+                .getActivity(sessionStubBob);
+            assertEquals("activity is out of order", i, activity.getID());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testDiscardDuplicateActivities() {
+
+        bobSequencer = new ActivitySequencer(sessionStubBob, bobTransmitter,
+            bobReceiver, null, SESSION_ID_ALICE);
+
+        bobSequencer.start();
+
+        User aliceUserInBobSession = new User(ALICE_JID, true, false, 0, 0);
+        User bobUserInAliceSession = new User(BOB_JID, false, false, 0, 0);
+
+        sessionStubBob.addUser(aliceUserInBobSession);
+
+        bobSequencer.registerUser(aliceUserInBobSession);
+
+        for (int i : new int[] { 0, 0, 2, 1, 2, 1 }) {
+            IActivityDataObject activity = new NOPActivity(aliceUser,
+                bobUserInAliceSession, i)
+                .getActivityDataObject(sessionStubAlice);
+
+            bobReceiver.processPacket(createActivityPacket(
+                SESSION_ID_ALICE.getValue(), activity, i));
+        }
+
+        List<IActivityDataObject> receivedActivities = sessionStubBob
+            .getReceivedActivities();
+
+        assertEquals("duplicate activities were executed", 3,
+            receivedActivities.size());
+
+        for (int i = 0; i < 3; i++) {
+            NOPActivity activity = (NOPActivity) receivedActivities.get(i)
+                .getActivity(sessionStubBob);
+            assertEquals("activity is out of order", i, activity.getID());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testRequestMissingActivities() throws Exception {
+
+        final BlockingQueue<ActivitiesAcknowledgementExtension> acknowledgements = new LinkedBlockingQueue<ActivitiesAcknowledgementExtension>();
+
+        aliceReceiver.addPacketListener(new PacketListener() {
+            @Override
+            public void processPacket(Packet packet) {
+                acknowledgements.add(ActivitiesAcknowledgementExtension.PROVIDER
+                    .getPayload(packet));
+            }
+        }, ActivitiesAcknowledgementExtension.PROVIDER
+            .getPacketFilter(SESSION_ID_ALICE.getValue()));
+
+        bobSequencer = new ActivitySequencer(sessionStubBob, bobTransmitter,
+            bobReceiver, null, SESSION_ID_ALICE);
+
+        bobSequencer.start();
+
+        User aliceUserInBobSession = new User(ALICE_JID, true, false, 0, 0);
+        User bobUserInAliceSession = new User(BOB_JID, false, false, 0, 0);
+
+        sessionStubBob.addUser(aliceUserInBobSession);
+
+        bobSequencer.registerUser(aliceUserInBobSession);
+
+        // the activity with the sequence number 0 is lost
+        bobReceiver.processPacket(createActivityPacket(
+            SESSION_ID_ALICE.getValue(), new NOPActivity(aliceUser,
+                bobUserInAliceSession, 1)
+                .getActivityDataObject(sessionStubAlice), 1));
+
+        ActivitiesAcknowledgementExtension acknowledgement = acknowledgements
+            .poll(20, TimeUnit.SECONDS);
+
+        assertNotNull("missing activity was not requested", acknowledgement);
+        assertTrue("missing activity was not requested",
+            acknowledgement.isResendRequested());
+        assertEquals("wrong activity requested", 0,
+            acknowledgement.getNextSequenceNumber());
+
+        bobReceiver.processPacket(createActivityPacket(
+            SESSION_ID_ALICE.getValue(), new NOPActivity(aliceUser,
+                bobUserInAliceSession, 0)
+                .getActivityDataObject(sessionStubAlice), 0));
+
+        assertEquals("activities were not executed", 2, sessionStubBob
+            .getReceivedActivities().size());
+
+        acknowledgement = acknowledgements.poll(20, TimeUnit.SECONDS);
+
+        assertNotNull("activities were not acknowledged", acknowledgement);
+        assertEquals("wrong activities acknowledged", 2,
+            acknowledgement.getNextSequenceNumber());
+    }
+
+    @Test(timeout = 30000)
+    public void testResendUnacknowledgedActivities() throws Exception {
+
+        final BlockingQueue<ActivitiesExtension> sentActivities = new LinkedBlockingQueue<ActivitiesExtension>();
+
+        // Bob is not running a sequencer and never acknowledges anything
+        bobReceiver.addPacketListener(new PacketListener() {
+            @Override
+            public void processPacket(Packet packet) {
+                sentActivities.add(ActivitiesExtension.PROVIDER
+                    .getPayload(packet));
+            }
+        }, ActivitiesExtension.PROVIDER.getPacketFilter(SESSION_ID_ALICE
+            .getValue()));
+
+        aliceSequencer = new ActivitySequencer(sessionStubAlice,
+            aliceTransmitter, aliceReceiver, null, SESSION_ID_ALICE);
+
+        aliceSequencer.start();
+
+        User bobUserInAliceSession = new User(BOB_JID, false, false, 0, 0);
+
+        sessionStubAlice.addUser(bobUserInAliceSession);
+
+        aliceSequencer.registerUser(bobUserInAliceSession);
+
+        aliceSequencer.sendActivity(Collections
+            .singletonList(bobUserInAliceSession), new NOPActivity(aliceUser,
+            bobUserInAliceSession, 0).getActivityDataObject(sessionStubAlice));
+
+        ActivitiesExtension sent = sentActivities.poll(20, TimeUnit.SECONDS);
+        assertNotNull("activity was not sent", sent);
+
+        ActivitiesExtension resent = sentActivities.poll(20, TimeUnit.SECONDS);
+        assertNotNull("unacknowledged activity was not sent again", resent);
+
+        assertEquals("activity was sent again with another sequence number",
+            sent.getSequenceNumber(), resent.getSequenceNumber());
+
+        NOPActivity activity = (NOPActivity) resent.getActivityDataObjects()
+            .get(0).getActivity(sessionStubAlice);
+        assertEquals("another activity was sent again", 0, activity.getID());
+    }
+
+    private static Packet createActivityPacket(String sessionID,
+        IActivityDataObject activity, int sequenceNumber) {
+        Packet packet = new Message();
+        packet.setFrom(ALICE_JID.toString());
+        packet.setTo(BOB_JID.toString());
+        packet.addExtension(ActivitiesExtension.PROVIDER
+            .create(new ActivitiesExtension(sessionID, Collections
+                .singletonList(activity), sequenceNumber)));
+        return packet;
+    }
 }
@@ -0,0 +1,139 @@
+package de.fu_berlin.inf.dpp.project.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PersistentChecksumCacheTest {
+
+    private static class Notifier implements IFileContentChangedNotifier {
+
+        private final CopyOnWriteArrayList<IFileContentChangedListener> listeners = new CopyOnWriteArrayList<IFileContentChangedListener>();
+
+        @Override
+        public void addFileContentChangedListener(
+            IFileContentChangedListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void removeFileContentChangedListener(
+            IFileContentChangedListener listener) {
+            listeners.remove(listener);
+        }
+
+        private void fileContentChanged(String path) {
+            for (IFileContentChangedListener listener : listeners)
+                listener.fileContentChanged(path);
+        }
+    }
+
+    private File indexFile;
+
+    @Before
+    public void setUp() throws IOException {
+        indexFile = File.createTempFile("saros-junit-test", ".idx");
+        indexFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        indexFile.delete();
+    }
+
+    @Test
+    public void testChecksumSurvivesRestart() {
+        PersistentChecksumCache cache = new PersistentChecksumCache(
+            new Notifier(), indexFile);
+
+        cache.addChecksum("/foo/a", 5L, 10L, 20L, 30L);
+        cache.addChecksum("/foo/b", 6L, 11L, 21L, 31L);
+        cache.dispose();
+
+        cache = new PersistentChecksumCache(new Notifier(), indexFile);
+
+        assertEquals(Long.valueOf(5),
+            cache.getChecksum("/foo/a", 10L, 20L, 30L));
+        assertEquals(Long.valueOf(6),
+            cache.getChecksum("/foo/b", 11L, 21L, 31L));
+        cache.dispose();
+    }
+
+    @Test
+    public void testChecksumOfChangedFileIsInvalid() {
+        PersistentChecksumCache cache = new PersistentChecksumCache(
+            new Notifier(), indexFile);
+
+        cache.addChecksum("/foo/a", 5L, 10L, 20L, 30L);
+        cache.addChecksum("/foo/b", 6L, 11L, 21L, 31L);
+        cache.addChecksum("/foo/c", 7L, 12L, 22L, 32L);
+        cache.dispose();
+
+        cache = new PersistentChecksumCache(new Notifier(), indexFile);
+
+        assertNull(cache.getChecksum("/foo/a", 9L, 20L, 30L));
+        assertNull(cache.getChecksum("/foo/b", 11L, 99L, 31L));
+        assertNull(cache.getChecksum("/foo/c", 12L, 22L, 99L));
+
+        // outdated entries must not come back after reverting the stamps
+        assertNull(cache.getChecksum("/foo/a", 10L, 20L, 30L));
+        cache.dispose();
+    }
+
+    @Test
+    public void testFileContentChangedRemovesStoredChecksum() {
+        Notifier notifier = new Notifier();
+
+        PersistentChecksumCache cache = new PersistentChecksumCache(notifier,
+            indexFile);
+
+        cache.addChecksum("/foo/a", 5L, 10L, 20L, 30L);
+        notifier.fileContentChanged("/foo/a");
+
+        assertNull(cache.getChecksum("/foo/a", 10L, 20L, 30L));
+        cache.dispose();
+
+        cache = new PersistentChecksumCache(new Notifier(), indexFile);
+        assertNull(cache.getChecksum("/foo/a", 10L, 20L, 30L));
+        cache.dispose();
+    }
+
+    @Test
+    public void testTruncatedIndexIsRecovered() throws IOException {
+        PersistentChecksumCache cache = new PersistentChecksumCache(
+            new Notifier(), indexFile);
+
+        cache.addChecksum("/foo/a", 5L, 10L, 20L, 30L);
+        cache.addChecksum("/foo/b", 6L, 11L, 21L, 31L);
+        cache.dispose();
+
+        RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+
+        try {
+            file.setLength(file.length() - 1);
+        } finally {
+            file.close();
+        }
+
+        cache = new PersistentChecksumCache(new Notifier(), indexFile);
+
+        int found = 0;
+
+        if (cache.getChecksum("/foo/a", 10L, 20L, 30L) != null)
+            found++;
+
+        if (cache.getChecksum("/foo/b", 11L, 21L, 31L) != null)
+            found++;
+
+        assertEquals(1, found);
+        cache.dispose();
+    }
+}
@@ -47,6 +47,7 @@ import de.fu_berlin.inf.dpp.net.JID;
 import de.fu_berlin.inf.dpp.net.SarosNet;
 import de.fu_berlin.inf.dpp.net.business.DispatchThreadContext;
 import de.fu_berlin.inf.dpp.net.internal.DataTransferManager;
+import de.fu_berlin.inf.dpp.net.internal.StreamServiceManager;
 import de.fu_berlin.inf.dpp.net.internal.TransferModeDispatch;
 import de.fu_berlin.inf.dpp.observables.FileReplacementInProgressObservable;
 import de.fu_berlin.inf.dpp.observables.ProjectNegotiationObservable;
@@ -60,6 +61,7 @@ import de.fu_berlin.inf.dpp.test.fakes.synchonize.NonUISynchronizer;
 import de.fu_berlin.inf.dpp.test.util.MemoryPreferenceStore;
 import de.fu_berlin.inf.dpp.ui.SarosUI;
 import de.fu_berlin.inf.dpp.util.Utils;
+import de.fu_berlin.inf.dpp.util.sendfile.FileContentStreamService;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest({ Utils.class, StatisticManager.class, ResourcesPlugin.class })
@@ -159,6 +161,10 @@ public class SarosSessionTest {
             EasyMock.createMock(AudioServiceManager.class));
         container.addComponent(ConsistencyWatchdogClient.class,
             EasyMock.createMock(ConsistencyWatchdogClient.class));
+        container.addComponent(StreamServiceManager.class,
+            EasyMock.createMock(StreamServiceManager.class));
+        container.addComponent(FileContentStreamService.class,
+            EasyMock.createMock(FileContentStreamService.class));
 
         // Adding the real class here.
 
@@ -6,8 +6,8 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ ActivityHandlerTest.class, ActivityQueuerTest.class,
     ActivitySequencerTest.class, ChecksumCacheTest.class,
-    SarosProjectMapperTest.class, SarosSessionTest.class,
-    UserInformationHandlerTest.class })
+    PersistentChecksumCacheTest.class, SarosProjectMapperTest.class,
+    SarosSessionTest.class, UserInformationHandlerTest.class })
 public class TestSuite {
     // the class remains completely empty,
     // being used only as a holder for the above annotations
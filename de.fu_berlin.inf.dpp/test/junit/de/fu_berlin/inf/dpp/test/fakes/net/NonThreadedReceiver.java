@@ -9,6 +9,7 @@ import org.jivesoftware.smack.filter.PacketFilter;
 import org.jivesoftware.smack.packet.Packet;
 
 import de.fu_berlin.inf.dpp.net.IReceiver;
+import de.fu_berlin.inf.dpp.net.ITransferObjectListener;
 import de.fu_berlin.inf.dpp.net.IncomingTransferObject;
 import de.fu_berlin.inf.dpp.net.SarosPacketCollector;
 import de.fu_berlin.inf.dpp.net.SarosPacketCollector.CancelHook;
@@ -53,6 +54,16 @@ class NonThreadedReceiver implements IReceiver {
         return collector;
     }
 
+    @Override
+    public void addTransferObjectListener(ITransferObjectListener listener) {
+        // NOP
+    }
+
+    @Override
+    public void removeTransferObjectListener(ITransferObjectListener listener) {
+        // NOP
+    }
+
     @Override
     public void processTransferObject(IncomingTransferObject transferObject) {
         // NOP
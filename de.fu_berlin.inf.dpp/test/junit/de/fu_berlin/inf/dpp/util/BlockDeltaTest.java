@@ -0,0 +1,140 @@
+package de.fu_berlin.inf.dpp.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.fu_berlin.inf.dpp.util.BlockDelta.Signature;
+
+public class BlockDeltaTest {
+
+    private static final int BLOCK_SIZE = 512;
+
+    private final Random random = new Random(42);
+
+    private byte[] randomBytes(int length) {
+        byte[] result = new byte[length];
+        random.nextBytes(result);
+        return result;
+    }
+
+    private byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (byte[] part : parts)
+            out.write(part, 0, part.length);
+
+        return out.toByteArray();
+    }
+
+    private byte[] range(byte[] data, int start, int end) {
+        byte[] result = new byte[end - start];
+        System.arraycopy(data, start, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Transfers the content from a sender to a receiver who has the given base
+     * and returns the size of the delta.
+     */
+    private int transfer(byte[] base, byte[] content) throws IOException {
+        Signature signature = BlockDelta.computeSignature(base, BLOCK_SIZE);
+
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        BlockDelta.writeDelta(content, signature, new DataOutputStream(delta));
+
+        byte[] result = BlockDelta.applyDelta(base, signature,
+            new DataInputStream(new ByteArrayInputStream(delta.toByteArray())));
+
+        assertArrayEquals(content, result);
+        return delta.size();
+    }
+
+    @Test
+    public void testUnchangedContent() throws IOException {
+        byte[] base = randomBytes(100 * BLOCK_SIZE + 17);
+
+        int size = transfer(base, base);
+
+        // two copies and the literal for the incomplete last block
+        assertTrue("delta too large: " + size, size < 64);
+    }
+
+    @Test
+    public void testInsertedBytes() throws IOException {
+        byte[] base = randomBytes(100 * BLOCK_SIZE);
+        byte[] content = concat(range(base, 0, 1000), randomBytes(10),
+            range(base, 1000, base.length));
+
+        int size = transfer(base, content);
+
+        // only the blocks around the insertion are sent
+        assertTrue("delta too large: " + size, size < 3 * BLOCK_SIZE);
+    }
+
+    @Test
+    public void testMovedBlocks() throws IOException {
+        byte[] base = randomBytes(100 * BLOCK_SIZE);
+        byte[] content = concat(range(base, 50 * BLOCK_SIZE, base.length),
+            range(base, 0, 50 * BLOCK_SIZE));
+
+        int size = transfer(base, content);
+
+        assertTrue("delta too large: " + size, size < 64);
+    }
+
+    @Test
+    public void testRepeatedContent() throws IOException {
+        byte[] block = randomBytes(BLOCK_SIZE);
+        byte[] base = concat(block, block, block);
+
+        transfer(base, concat(block, randomBytes(3), block, block, block));
+    }
+
+    @Test
+    public void testEmptyBaseAndContent() throws IOException {
+        byte[] content = randomBytes(3 * BLOCK_SIZE + 1);
+
+        transfer(new byte[0], content);
+        transfer(randomBytes(10), content);
+        transfer(content, new byte[0]);
+        transfer(new byte[0], new byte[0]);
+    }
+
+    @Test
+    public void testRandomEdits() throws IOException {
+        byte[] content = randomBytes(20 * BLOCK_SIZE);
+
+        for (int i = 0; i < 50; i++) {
+            byte[] base = content;
+            int start = random.nextInt(base.length);
+            int end = Math.min(base.length, start + random.nextInt(2000));
+
+            content = concat(range(base, 0, start),
+                randomBytes(random.nextInt(2000)),
+                range(base, end, base.length));
+
+            transfer(base, content);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testDeltaForOtherBase() throws IOException {
+        byte[] base = randomBytes(10 * BLOCK_SIZE);
+        Signature signature = BlockDelta.computeSignature(base, BLOCK_SIZE);
+
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        BlockDelta.writeDelta(base, signature, new DataOutputStream(delta));
+
+        BlockDelta.applyDelta(range(base, 0, 5 * BLOCK_SIZE), signature,
+            new DataInputStream(new ByteArrayInputStream(delta.toByteArray())));
+    }
+}
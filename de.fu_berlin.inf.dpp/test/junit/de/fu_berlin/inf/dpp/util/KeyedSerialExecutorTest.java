@@ -0,0 +1,177 @@
+package de.fu_berlin.inf.dpp.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.fu_berlin.inf.dpp.util.KeyedSerialExecutor.Statistic;
+
+public class KeyedSerialExecutorTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    private final KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testTasksOfOneKeyAreExecutedInOrder() throws Exception {
+        final List<Integer> executed = Collections
+            .synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(1);
+
+        for (int i = 0; i < 100; i++) {
+            final int n = i;
+            executor.execute("key", new Runnable() {
+                @Override
+                public void run() {
+                    executed.add(n);
+                }
+            });
+        }
+
+        executor.execute("key", new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 100; i++)
+            assertEquals(Integer.valueOf(i), executed.get(i));
+    }
+
+    @Test
+    public void testBlockedKeyDoesNotBlockOtherKeys() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch otherDone = new CountDownLatch(1);
+
+        executor.execute("blocked", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        executor.execute("other", new Runnable() {
+            @Override
+            public void run() {
+                otherDone.countDown();
+            }
+        });
+
+        assertTrue("task of other key was blocked",
+            otherDone.await(10, TimeUnit.SECONDS));
+
+        release.countDown();
+    }
+
+    @Test
+    public void testFailingTaskDoesNotStopKey() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute("key", new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("expected");
+            }
+        });
+
+        executor.execute("key", new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+
+        executor.execute("key", new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        executor.execute("key", new Runnable() {
+            @Override
+            public void run() {
+                // NOP
+            }
+        });
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute("key", new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        Statistic statistic = executor.getStatistics().get(0);
+
+        assertEquals("key", statistic.getKey());
+        assertEquals(3, statistic.getQueueDepth());
+        assertEquals(3, statistic.getMaxQueueDepth());
+        assertEquals(0, statistic.getExecuted());
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        // the statistic is updated after the task returned
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        statistic = executor.getStatistics().get(0);
+
+        assertEquals(0, statistic.getQueueDepth());
+        assertEquals(3, statistic.getMaxQueueDepth());
+        assertEquals(3, statistic.getExecuted());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testShutdownExecutor() {
+        pool.shutdown();
+
+        executor.execute("key", new Runnable() {
+            @Override
+            public void run() {
+                // NOP
+            }
+        });
+    }
+}
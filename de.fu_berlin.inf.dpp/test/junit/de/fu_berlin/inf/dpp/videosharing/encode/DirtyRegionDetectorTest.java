@@ -0,0 +1,113 @@
+package de.fu_berlin.inf.dpp.videosharing.encode;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class DirtyRegionDetectorTest {
+
+    private static final int WIDTH = 128;
+
+    private static final int HEIGHT = 64;
+
+    private final DirtyRegionDetector detector = new DirtyRegionDetector(
+        WIDTH, HEIGHT);
+
+    private final int[] oldImage = new int[WIDTH * HEIGHT];
+
+    private final int[] newImage = new int[WIDTH * HEIGHT];
+
+    private void change(int x, int y) {
+        newImage[y * WIDTH + x]++;
+    }
+
+    private void assertRegion(int region, int x, int y, int w, int h) {
+        assertEquals("x", x, detector.getX(region));
+        assertEquals("y", y, detector.getY(region));
+        assertEquals("width", w, detector.getWidth(region));
+        assertEquals("height", h, detector.getHeight(region));
+    }
+
+    @Test
+    public void testEqualImages() {
+        assertEquals(0, detector.detect(oldImage, newImage));
+        assertEquals(0, detector.getDirtyTileCount());
+        assertEquals(0, detector.getDirtyArea());
+    }
+
+    @Test
+    public void testSinglePixel() {
+        change(17, 42);
+
+        assertEquals(1, detector.detect(oldImage, newImage));
+        assertEquals(1, detector.getDirtyTileCount());
+        assertRegion(0, 16, 40, 8, 8);
+    }
+
+    @Test
+    public void testRectangleIsCoalesced() {
+        for (int y = 10; y < 30; y++)
+            for (int x = 20; x < 50; x++)
+                change(x, y);
+
+        assertEquals(1, detector.detect(oldImage, newImage));
+        assertEquals(5 * 3, detector.getDirtyTileCount());
+        assertRegion(0, 16, 8, 40, 24);
+        assertEquals(40 * 24, detector.getDirtyArea());
+    }
+
+    @Test
+    public void testSmallGapsAreMerged() {
+        // tiles 0 and 3 of the first row, gap of two tiles
+        change(0, 0);
+        change(24, 0);
+
+        assertEquals(1, detector.detect(oldImage, newImage));
+        assertRegion(0, 0, 0, 32, 8);
+    }
+
+    @Test
+    public void testLargeGapsAreNotMerged() {
+        // tiles 0 and 4 of the first row, gap of three tiles
+        change(0, 0);
+        change(39, 7);
+
+        assertEquals(2, detector.detect(oldImage, newImage));
+        assertRegion(0, 0, 0, 8, 8);
+        assertRegion(1, 32, 0, 8, 8);
+    }
+
+    @Test
+    public void testDifferentRunsStartNewRegions() {
+        change(0, 0);
+        change(0, 8);
+        change(8, 8);
+        change(8, 16);
+
+        assertEquals(3, detector.detect(oldImage, newImage));
+        assertRegion(0, 0, 0, 8, 8);
+        assertRegion(1, 0, 8, 16, 8);
+        assertRegion(2, 8, 16, 8, 8);
+    }
+
+    @Test
+    public void testColumnsAreCoalesced() {
+        for (int y = 0; y < HEIGHT; y++) {
+            change(0, y);
+            change(WIDTH - 1, y);
+        }
+
+        assertEquals(2, detector.detect(oldImage, newImage));
+        assertRegion(0, 0, 0, 8, HEIGHT);
+        assertRegion(1, WIDTH - 8, 0, 8, HEIGHT);
+    }
+
+    @Test
+    public void testDetectorIsReusable() {
+        change(0, 0);
+        assertEquals(1, detector.detect(oldImage, newImage));
+
+        assertEquals(0, detector.detect(oldImage, oldImage));
+        assertEquals(0, detector.getDirtyArea());
+    }
+}
@@ -0,0 +1,139 @@
+package de.fu_berlin.inf.dpp.videosharing.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.fu_berlin.inf.dpp.videosharing.decode.DecodingStatisticPacket;
+
+public class RateControllerTest {
+
+    private static final int FPS = 10;
+
+    private final RateController controller = new RateController(FPS, true);
+
+    private void congest(int times) {
+        for (int i = 0; i < times; i++)
+            controller.update(1.0);
+    }
+
+    private void idle(int times) {
+        for (int i = 0; i < times; i++)
+            controller.update(0.0);
+    }
+
+    @Test
+    public void testInitialValues() {
+        assertEquals(FPS, controller.getFps());
+        assertEquals(RateController.MAXIMUM_QUALITY, controller.getQuality());
+        assertEquals(0, controller.getBandwidth());
+        assertFalse(controller.update(0.0));
+    }
+
+    @Test
+    public void testQualityIsDecreasedBeforeFps() {
+        assertTrue(controller.update(1.0));
+        assertEquals(75, controller.getQuality());
+        assertEquals(FPS, controller.getFps());
+
+        congest(10);
+        assertEquals(RateController.MINIMUM_QUALITY, controller.getQuality());
+        assertTrue(controller.getFps() < FPS);
+
+        congest(10);
+        assertEquals(RateController.MINIMUM_FPS, controller.getFps());
+        assertFalse(controller.update(1.0));
+    }
+
+    @Test
+    public void testFpsIsDecreasedIfQualityIsUnsupported() {
+        RateController fpsController = new RateController(FPS, false);
+
+        assertTrue(fpsController.update(1.0));
+        assertEquals(7, fpsController.getFps());
+        assertEquals(RateController.MAXIMUM_QUALITY,
+            fpsController.getQuality());
+
+        for (int i = 0; i < RateController.HOLD_SAMPLES + 3; i++)
+            fpsController.update(0.0);
+
+        assertEquals(FPS, fpsController.getFps());
+        assertFalse(fpsController.update(0.0));
+        assertEquals(RateController.MAXIMUM_QUALITY,
+            fpsController.getQuality());
+    }
+
+    @Test
+    public void testFpsIsIncreasedBeforeQuality() {
+        congest(20);
+        idle(RateController.HOLD_SAMPLES);
+
+        assertEquals(RateController.MINIMUM_FPS, controller.getFps());
+
+        idle(FPS - RateController.MINIMUM_FPS);
+        assertEquals(FPS, controller.getFps());
+        assertEquals(RateController.MINIMUM_QUALITY, controller.getQuality());
+
+        idle(1);
+        assertEquals(RateController.MINIMUM_QUALITY
+            + RateController.QUALITY_STEP, controller.getQuality());
+
+        idle(100);
+        assertEquals(FPS, controller.getFps());
+        assertEquals(RateController.MAXIMUM_QUALITY, controller.getQuality());
+    }
+
+    @Test
+    public void testHoldAfterDecrease() {
+        congest(1);
+
+        for (int i = 0; i < RateController.HOLD_SAMPLES; i++)
+            assertFalse(controller.update(0.0));
+
+        assertTrue(controller.update(0.0));
+    }
+
+    @Test
+    public void testModerateBacklogKeepsValues() {
+        congest(1);
+        idle(RateController.HOLD_SAMPLES);
+
+        assertFalse(controller.update(0.3));
+        assertEquals(75, controller.getQuality());
+    }
+
+    @Test
+    public void testBandwidthIsLimitedByThroughput() {
+        controller.throughputMeasured(100000);
+        idle(1);
+        assertEquals(0, controller.getBandwidth());
+
+        congest(1);
+        assertEquals(90000, controller.getBandwidth());
+
+        controller.throughputMeasured(200000);
+        congest(1);
+        assertEquals(90000, controller.getBandwidth());
+
+        idle(RateController.HOLD_SAMPLES + 1);
+        assertEquals(99001, controller.getBandwidth());
+    }
+
+    @Test
+    public void testLaggingReceiver() {
+        // 15 frames in 3 seconds
+        controller.statisticReceived(new DecodingStatisticPacket(3000, 15, 0,
+            0));
+        assertTrue(controller.update(0.0));
+        assertEquals(75, controller.getQuality());
+
+        // the statistic is only evaluated once
+        idle(RateController.HOLD_SAMPLES);
+        controller.statisticReceived(new DecodingStatisticPacket(3000,
+            3 * FPS, 0, 0));
+        assertTrue(controller.update(0.0));
+        assertEquals(80, controller.getQuality());
+    }
+}
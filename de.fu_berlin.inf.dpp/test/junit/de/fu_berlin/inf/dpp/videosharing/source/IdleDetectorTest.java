@@ -0,0 +1,89 @@
+package de.fu_berlin.inf.dpp.videosharing.source;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IdleDetectorTest {
+
+    private static final int IDLE_FRAMES = 3;
+
+    private static final int CAPTURE_INTERVAL = 4;
+
+    private final IdleDetector detector = new IdleDetector(IDLE_FRAMES,
+        CAPTURE_INTERVAL);
+
+    private final int[] pixels = new int[64];
+
+    private void captureUnchanged(int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(detector.shouldCapture());
+            assertFalse(detector.captured(pixels));
+        }
+    }
+
+    @Test
+    public void testFirstCaptureIsChanged() {
+        assertTrue(detector.shouldCapture());
+        assertTrue(detector.captured(pixels));
+        assertFalse(detector.isIdle());
+    }
+
+    @Test
+    public void testChangedPixels() {
+        detector.captured(pixels);
+        pixels[17] = 0xFF00FF;
+        assertTrue(detector.captured(pixels));
+        assertFalse(detector.captured(pixels));
+    }
+
+    @Test
+    public void testIdleSkipsCaptures() {
+        detector.captured(pixels);
+        captureUnchanged(IDLE_FRAMES);
+
+        assertTrue(detector.isIdle());
+
+        for (int i = 0; i < CAPTURE_INTERVAL - 1; i++)
+            assertFalse(detector.shouldCapture());
+
+        assertTrue(detector.shouldCapture());
+        assertFalse(detector.captured(pixels));
+        assertFalse(detector.shouldCapture());
+    }
+
+    @Test
+    public void testChangeEndsIdleMode() {
+        detector.captured(pixels);
+        captureUnchanged(IDLE_FRAMES);
+
+        pixels[0] = 1;
+        assertTrue(detector.captured(pixels));
+        assertFalse(detector.isIdle());
+        assertTrue(detector.shouldCapture());
+    }
+
+    @Test
+    public void testReset() {
+        detector.captured(pixels);
+        captureUnchanged(IDLE_FRAMES);
+
+        detector.reset();
+        assertFalse(detector.isIdle());
+        assertTrue(detector.shouldCapture());
+        assertTrue(detector.captured(pixels));
+    }
+
+    @Test
+    public void testDisabled() {
+        IdleDetector disabled = new IdleDetector(0, CAPTURE_INTERVAL);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(disabled.shouldCapture());
+            disabled.captured(pixels);
+        }
+
+        assertFalse(disabled.isIdle());
+    }
+}